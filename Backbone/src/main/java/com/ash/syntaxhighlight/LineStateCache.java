@@ -0,0 +1,308 @@
+/*
+ * Copyright (C) 2013 The CyanogenMod Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.ash.syntaxhighlight;
+
+import android.text.TextUtils;
+
+/**
+ * A cache of the lines of a document and the state of the tokenizer at the end of
+ * every line.<br/>
+ * <br/>
+ * The lines are updated with every change of the document, so only the lines affected
+ * by a change have to be processed again. The states are valid until the first line
+ * changed; the states after it are kept, so the processor can detect when the state
+ * reaches a known state and stop there.
+ */
+final class LineStateCache {
+
+    /**
+     * The state of a line that was never processed
+     */
+    static final int STATE_UNKNOWN = Integer.MIN_VALUE;
+
+    private static final int SCAN_BUFFER_SIZE = 8192;
+
+    private int[] mStarts;
+    private int[] mStates;
+    private boolean[] mPainted;
+    private int mLines;
+    private int mValidStates;
+    private int mLength;
+
+    /**
+     * Constructor of <code>LineStateCache</code>
+     */
+    LineStateCache() {
+        super();
+        this.mStarts = new int[64];
+        this.mStates = new int[64];
+        this.mPainted = new boolean[64];
+        this.mLines = 0;
+        this.mValidStates = 0;
+        this.mLength = -1;
+    }
+
+    /**
+     * Method that indexes all the lines of a document. All the lines are unprocessed
+     *
+     * @param text The document
+     */
+    void reset(CharSequence text) {
+        this.mLines = 0;
+        this.mValidStates = 0;
+        add(0);
+        scan(text, 0, text.length());
+        this.mLength = text.length();
+    }
+
+    /**
+     * Method that updates the lines after a change of the document
+     *
+     * @param text The document after the change
+     * @param start The start of the change
+     * @param before The length of the replaced text
+     * @param count The length of the new text
+     * @return boolean If the lines were updated. Otherwise, the cache doesn't match the
+     * document before the change and must be reset
+     */
+    boolean edit(CharSequence text, int start, int before, int count) {
+        int length = text.length();
+        if (this.mLength != length - count + before) {
+            return false;
+        }
+        int delta = count - before;
+
+        // The changed lines (the previous line too, because a new line feed after
+        // a carriage return is the same line separator)
+        int first = getLine(Math.max(0, start - 1));
+        int last = getLine(start + before);
+        int regionStart = this.mStarts[first];
+        int next = last + 1;
+        while (next < this.mLines) {
+            int end = this.mStarts[next] + delta;
+            if (text.charAt(end - 1) != '\r' || end >= length || text.charAt(end) != '\n') {
+                break;
+            }
+            next++;
+        }
+        int regionEnd = next < this.mLines ? this.mStarts[next] + delta : length;
+
+        // Index the lines of the region in the place of the old lines
+        int tail = this.mLines - next;
+        int[] starts = new int[tail];
+        int[] states = new int[tail];
+        boolean[] painted = new boolean[tail];
+        System.arraycopy(this.mStarts, next, starts, 0, tail);
+        System.arraycopy(this.mStates, next, states, 0, tail);
+        System.arraycopy(this.mPainted, next, painted, 0, tail);
+        this.mLines = first;
+        add(regionStart);
+        scan(text, regionStart, regionEnd);
+        if (tail > 0) {
+            // The start of the next line was added by the scan
+            this.mLines--;
+        }
+        ensureCapacity(this.mLines + tail);
+        for (int i = 0; i < tail; i++) {
+            this.mStarts[this.mLines + i] = starts[i] + delta;
+        }
+        System.arraycopy(states, 0, this.mStates, this.mLines, tail);
+        System.arraycopy(painted, 0, this.mPainted, this.mLines, tail);
+        this.mLines += tail;
+        this.mValidStates = Math.min(this.mValidStates, first);
+        this.mLength = length;
+        return true;
+    }
+
+    /**
+     * Method that returns the number of lines of the document
+     *
+     * @return int The number of lines
+     */
+    int getLines() {
+        return this.mLines;
+    }
+
+    /**
+     * Method that returns the line that contains a position of the document
+     *
+     * @param offset The position
+     * @return int The line
+     */
+    int getLine(int offset) {
+        int lo = 0;
+        int hi = this.mLines - 1;
+        while (lo < hi) {
+            int mid = (lo + hi + 1) >>> 1;
+            if (this.mStarts[mid] <= offset) {
+                lo = mid;
+            } else {
+                hi = mid - 1;
+            }
+        }
+        return lo;
+    }
+
+    /**
+     * Method that returns the start position of a line
+     *
+     * @param line The line
+     * @return int The start position
+     */
+    int getStart(int line) {
+        return this.mStarts[line];
+    }
+
+    /**
+     * Method that returns the end position of a line (without the line separator)
+     *
+     * @param text The document
+     * @param line The line
+     * @return int The end position
+     */
+    int getEnd(CharSequence text, int line) {
+        if (line + 1 >= this.mLines) {
+            return text.length();
+        }
+        int end = this.mStarts[line + 1] - 1;
+        if (text.charAt(end) == '\n' && end > this.mStarts[line] &&
+                text.charAt(end - 1) == '\r') {
+            end--;
+        }
+        return end;
+    }
+
+    /**
+     * Method that returns the number of lines, from the start of the document, that
+     * have a valid state
+     *
+     * @return int The number of lines with a valid state
+     */
+    int getValidStates() {
+        return this.mValidStates;
+    }
+
+    /**
+     * Method that returns the state at the start of a line. The state of the previous
+     * line must be valid
+     *
+     * @param line The line
+     * @param initial The state at the start of the document
+     * @return int The state at the start of the line
+     */
+    int getEntryState(int line, int initial) {
+        return line == 0 ? initial : this.mStates[line - 1];
+    }
+
+    /**
+     * Method that sets the state at the end of the first line without a valid state.
+     * If the state changed, the next line has to be processed again.
+     *
+     * @param state The state at the end of the line
+     */
+    void setNextState(int state) {
+        int line = this.mValidStates;
+        if (this.mStates[line] != state && line + 1 < this.mLines) {
+            this.mPainted[line + 1] = false;
+        }
+        this.mStates[line] = state;
+        this.mValidStates++;
+    }
+
+    /**
+     * Method that returns if a line is highlighted.
+     *
+     * @param line The line
+     * @return boolean If the line is highlighted
+     */
+    boolean isPainted(int line) {
+        return this.mPainted[line];
+    }
+
+    /**
+     * Method that marks a line as highlighted.
+     *
+     * @param line The line
+     */
+    void setPainted(int line) {
+        this.mPainted[line] = true;
+    }
+
+    /**
+     * Method that adds a new line
+     *
+     * @param start The start position of the line
+     */
+    private void add(int start) {
+        ensureCapacity(this.mLines + 1);
+        this.mStarts[this.mLines] = start;
+        this.mStates[this.mLines] = STATE_UNKNOWN;
+        this.mPainted[this.mLines] = false;
+        this.mLines++;
+    }
+
+    /**
+     * Method that adds the lines that start in a region of the document
+     *
+     * @param text The document
+     * @param start The start of the region (the start of a line)
+     * @param end The end of the region
+     */
+    private void scan(CharSequence text, int start, int end) {
+        int length = text.length();
+        char[] buffer = new char[Math.min(SCAN_BUFFER_SIZE, Math.max(1, end - start))];
+        boolean cr = false;
+        for (int pos = start; pos < end; pos += buffer.length) {
+            int count = Math.min(buffer.length, end - pos);
+            TextUtils.getChars(text, pos, pos + count, buffer, 0);
+            for (int i = 0; i < count; i++) {
+                char c = buffer[i];
+                if (cr && c != '\n') {
+                    add(pos + i);
+                }
+                cr = c == '\r';
+                if (c == '\n') {
+                    add(pos + i + 1);
+                }
+            }
+        }
+        if (cr && (end >= length || text.charAt(end) != '\n')) {
+            add(end);
+        }
+    }
+
+    /**
+     * Method that ensures the capacity of the cache
+     *
+     * @param lines The number of lines
+     */
+    private void ensureCapacity(int lines) {
+        if (lines <= this.mStarts.length) {
+            return;
+        }
+        int capacity = Math.max(lines, this.mStarts.length * 2);
+        int[] starts = new int[capacity];
+        int[] states = new int[capacity];
+        boolean[] painted = new boolean[capacity];
+        System.arraycopy(this.mStarts, 0, starts, 0, this.mLines);
+        System.arraycopy(this.mStates, 0, states, 0, this.mLines);
+        System.arraycopy(this.mPainted, 0, painted, 0, this.mLines);
+        this.mStarts = starts;
+        this.mStates = states;
+        this.mPainted = painted;
+    }
+}
@@ -16,19 +16,56 @@
 
 package com.ash.syntaxhighlight;
 
+import android.os.Handler;
+import android.os.Looper;
+import android.os.SystemClock;
 import android.text.Spannable;
 import android.text.Spanned;
+import android.text.TextUtils;
 import android.text.style.ForegroundColorSpan;
 
 import java.io.File;
 
 /**
  * The base class for all the syntax highlight processors.</br>
+ * </br>
+ * The processors highlight a document line by line. The state of the tokenizer at the
+ * end of every line is cached, so a change of the document only highlights the changed
+ * lines, and the next lines until the state is the same as before the change. A full
+ * process highlights the visible lines first, and the rest of the document in small
+ * slices in the main thread, so the editor remains responsive.</br>
+ * </br>
+ * All the methods must be invoked from the main thread.
  */
 public abstract class SyntaxHighlightProcessor {
 
+    /**
+     * The state of the tokenizer at the start of a document
+     */
+    protected static final int STATE_INITIAL = 0;
+
+    // The maximum number of lines highlighted synchronously by a request. The rest
+    // of the lines are highlighted by the background pass
+    private static final int MAX_SYNC_LINES = 80;
+    // The maximum time of a slice of the background pass (in ms)
+    private static final long PASS_SLICE_TIME = 8L;
+
     protected final ISyntaxHighlightResourcesResolver mResourcesResolver;
 
+    private final LineStateCache mLines;
+    private Spannable mDocument;
+    private int mVisibleStart;
+    private int mVisibleEnd;
+    private int mPassLine;
+    private Handler mHandler;
+
+    private final Runnable mPass = new Runnable() {
+        @Override
+        public void run() {
+            doPass();
+        }
+    };
+
     /**
      * Constructor of <code>SyntaxHighlightProcessor</code>
      *
@@ -37,6 +74,9 @@ public abstract class SyntaxHighlightProcessor {
     public SyntaxHighlightProcessor(ISyntaxHighlightResourcesResolver resolver) {
         super();
         this.mResourcesResolver = resolver;
+        this.mLines = new LineStateCache();
+        this.mVisibleStart = -1;
+        this.mVisibleEnd = -1;
     }
 
     /**
@@ -53,36 +93,132 @@ public abstract class SyntaxHighlightProcessor {
      */
     public abstract void initialize();
 
+    /**
+     * Method that highlights a line of the document.
+     *
+     * @param spanable The spannable source to highlight
+     * @param line The text of the line (without the line separator)
+     * @param start The start position of the line
+     * @param end The end position of the line
+     * @param state The state of the tokenizer at the start of the line
+     * @return int The state of the tokenizer at the end of the line
+     */
+    protected abstract int highlightLine(
+            Spannable spanable, CharSequence line, int start, int end, int state);
+
+    /**
+     * Method that computes the state of the tokenizer at the end of a line, without
+     * highlight it. It must return the same state that {@link #highlightLine}.
+     *
+     * @param line The text of the line (without the line separator)
+     * @param state The state of the tokenizer at the start of the line
+     * @return int The state of the tokenizer at the end of the line
+     */
+    protected abstract int scanLine(CharSequence line, int state);
+
     /**
      * Method that request to the syntax highlight processor to do process and highlight a
-     * document. This method request a full process.
+     * document. This method request a full process. The visible lines are highlighted
+     * now, and the rest of the document in background.
      *
      * @param spanable The spannable source to highlight
      */
-    public abstract void process(Spannable spanable);
+    public void process(Spannable spanable) {
+        cancel();
+        attach(spanable);
+        paintVisibleLines(MAX_SYNC_LINES);
+        schedule();
+    }
 
     /**
      * Method that request to the syntax highlight processor to process and highlight a
-     * document. This method request a partial process.
+     * document. This method request a partial process (the changed lines and the lines
+     * affected by the change).
      *
      * @param spanable The spannable source to highlight
      * @param start The start of spannable to process
      * @param end The end of spannable to process
      */
-    public abstract void process(Spannable spanable, int start, int end);
+    public void process(Spannable spanable, int start, int end) {
+        if (spanable != this.mDocument) {
+            attach(spanable);
+        }
+        int first = this.mLines.getLine(start);
+        int last = this.mLines.getLine(end);
+        int lines = this.mLines.getLines();
+        int painted = 0;
+        for (int i = first; i < lines && painted < MAX_SYNC_LINES; i++) {
+            if (!this.mLines.isPainted(i)) {
+                paint(i);
+                painted++;
+            } else if (i > last) {
+                // The state is the same as before the change
+                break;
+            }
+        }
+        this.mPassLine = Math.min(this.mPassLine, first);
+        schedule();
+    }
+
+    /**
+     * Method that notifies a change of the document. Must be invoked from
+     * {@link android.text.TextWatcher#onTextChanged(CharSequence, int, int, int)}.
+     *
+     * @param spanable The document
+     * @param start The start of the change
+     * @param before The length of the replaced text
+     * @param count The length of the new text
+     */
+    public void onTextChanged(Spannable spanable, int start, int before, int count) {
+        if (spanable != this.mDocument) {
+            return;
+        }
+        if (!this.mLines.edit(spanable, start, before, count)) {
+            // The changes are out of sync. Start again with the next request
+            cancel();
+            return;
+        }
+        this.mPassLine = Math.min(this.mPassLine, this.mLines.getLine(start));
+    }
 
     /**
-     * Method that cancels the active processor
+     * Method that sets the visible region of the document. The visible lines are
+     * highlighted before the rest of the document.
+     *
+     * @param spanable The document
+     * @param start The start of the visible region
+     * @param end The end of the visible region
      */
-    public abstract void cancel();
+    public void setVisibleRange(Spannable spanable, int start, int end) {
+        if (spanable != this.mDocument) {
+            return;
+        }
+        if (start != this.mVisibleStart || end != this.mVisibleEnd) {
+            this.mVisibleStart = start;
+            this.mVisibleEnd = end;
+            schedule();
+        }
+    }
+
+    /**
+     * Method that cancels the active processor and releases the document
+     */
+    public void cancel() {
+        if (this.mHandler != null) {
+            this.mHandler.removeCallbacks(this.mPass);
+        }
+        this.mDocument = null;
+    }
 
     /**
      * Method that clear all the existent spans
      *
      * @param spanable The spannable
      */
-    @SuppressWarnings("static-method")
     public void clear(Spannable spanable) {
+        if (spanable == this.mDocument) {
+            cancel();
+        }
         ForegroundColorSpan[] spans =
                 spanable.getSpans(0, spanable.length(), ForegroundColorSpan.class);
         int cc = spans.length;
@@ -91,7 +227,6 @@ public abstract class SyntaxHighlightProcessor {
         }
     }
 
-
     /**
      * Method that sets a new <code>Spannable</code>.
      *
@@ -109,4 +244,114 @@ public abstract class SyntaxHighlightProcessor {
                 end,
                 Spanned.SPAN_EXCLUSIVE_EXCLUSIVE);
     }
+
+    /**
+     * Method that starts to track a new document
+     *
+     * @param spanable The document
+     */
+    private void attach(Spannable spanable) {
+        this.mDocument = spanable;
+        this.mLines.reset(spanable);
+        this.mPassLine = 0;
+        this.mVisibleStart = -1;
+        this.mVisibleEnd = -1;
+    }
+
+    /**
+     * Method that highlights the visible lines that aren't highlighted. If the visible
+     * region is unknown, the first lines of the document are the visible lines.
+     *
+     * @param max The maximum number of lines to highlight
+     */
+    private void paintVisibleLines(int max) {
+        int first = 0;
+        int last = max - 1;
+        if (this.mVisibleStart >= 0) {
+            first = this.mLines.getLine(this.mVisibleStart);
+            last = this.mLines.getLine(this.mVisibleEnd);
+        }
+        // Computed in long, because max could be Integer.MAX_VALUE
+        last = (int)Math.min(Math.min(last, (long)first + max - 1), this.mLines.getLines() - 1);
+        for (int i = first; i <= last; i++) {
+            if (!this.mLines.isPainted(i)) {
+                paint(i);
+            }
+        }
+    }
+
+    /**
+     * Method that highlights a line
+     *
+     * @param line The line
+     */
+    private void paint(int line) {
+        int state = ensureState(line);
+        int start = this.mLines.getStart(line);
+        int end = this.mLines.getEnd(this.mDocument, line);
+        int next = highlightLine(
+                this.mDocument, TextUtils.substring(this.mDocument, start, end),
+                start, end, state);
+        this.mLines.setPainted(line);
+        if (line == this.mLines.getValidStates()) {
+            this.mLines.setNextState(next);
+        }
+    }
+
+    /**
+     * Method that computes the states of the lines until a line
+     *
+     * @param line The line
+     * @return int The state of the tokenizer at the start of the line
+     */
+    private int ensureState(int line) {
+        while (this.mLines.getValidStates() < line) {
+            int i = this.mLines.getValidStates();
+            int start = this.mLines.getStart(i);
+            int end = this.mLines.getEnd(this.mDocument, i);
+            this.mLines.setNextState(
+                    scanLine(TextUtils.substring(this.mDocument, start, end),
+                            this.mLines.getEntryState(i, STATE_INITIAL)));
+        }
+        return this.mLines.getEntryState(line, STATE_INITIAL);
+    }
+
+    /**
+     * Method that schedules a slice of the background pass
+     */
+    private void schedule() {
+        if (this.mDocument == null) {
+            return;
+        }
+        if (this.mHandler == null) {
+            this.mHandler = new Handler(Looper.getMainLooper());
+        }
+        this.mHandler.removeCallbacks(this.mPass);
+        this.mHandler.post(this.mPass);
+    }
+
+    /**
+     * Method that highlights the lines that aren't highlighted, the visible lines first,
+     * until the time of the slice is consumed
+     */
+    void doPass() {
+        if (this.mDocument == null) {
+            return;
+        }
+        long deadline = SystemClock.uptimeMillis() + PASS_SLICE_TIME;
+        if (this.mVisibleStart >= 0) {
+            paintVisibleLines(Integer.MAX_VALUE);
+        }
+        int lines = this.mLines.getLines();
+        while (this.mPassLine < lines) {
+            if (!this.mLines.isPainted(this.mPassLine)) {
+                paint(this.mPassLine);
+            }
+            this.mPassLine++;
+            if (SystemClock.uptimeMillis() >= deadline) {
+                this.mHandler.post(this.mPass);
+                return;
+            }
+        }
+    }
 }
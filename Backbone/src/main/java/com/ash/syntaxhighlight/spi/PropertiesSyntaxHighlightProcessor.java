@@ -20,10 +20,7 @@ import android.text.Spannable;
 import android.text.style.ForegroundColorSpan;
 import com.ash.syntaxhighlight.HighlightColors;
 import com.ash.syntaxhighlight.ISyntaxHighlightResourcesResolver;
-import com.ash.syntaxhighlight.RegExpUtil;
 import com.ash.syntaxhighlight.SyntaxHighlightProcessor;
-import com.ash.syntaxhighlight.scanners.NewLineScanner;
-import com.ash.syntaxhighlight.scanners.NewLineScanner.NewLineScannerListener;
 
 import java.io.File;
 import java.util.regex.Matcher;
@@ -49,14 +46,12 @@ public class PropertiesSyntaxHighlightProcessor extends SyntaxHighlightProcessor
     private static final String EXT_PROP = "prop"; //$NON-NLS-1$
     private static final String EXT_PROPERTIES = "properties"; //$NON-NLS-1$
 
-    private static final Pattern COMMENT = Pattern.compile("^\\s*#.*"); //$NON-NLS-1$
-    private static final Pattern MULTILINE = Pattern.compile(".*\\\\\\s*$"); //$NON-NLS-1$
+    // The state at the end of a line that continues in the next line
+    private static final int STATE_MULTILINE = 1;
+
     private static final Pattern ASSIGNMENT = Pattern.compile("="); //$NON-NLS-1$
     private static final Pattern ARGUMENT = Pattern.compile("\\{\\d+\\}"); //$NON-NLS-1$
 
-    protected Spannable mSpannable;
-    private boolean mMultiLine;
-
     private int mKeyColor;
     private int mAssignmentColor;
     private int mCommentColor;
@@ -88,8 +83,6 @@ public class PropertiesSyntaxHighlightProcessor extends SyntaxHighlightProcessor
      */
     @Override
     public void initialize() {
-        this.mMultiLine = false;
-        this.mSpannable = null;
         if (this.mResourcesResolver != null) {
             this.mKeyColor = this.mResourcesResolver.getColor(
                     HighlightColors.TEXT.getId(),
@@ -125,121 +118,47 @@ public class PropertiesSyntaxHighlightProcessor extends SyntaxHighlightProcessor
      * {@inheritDoc}
      */
     @Override
-    public void process(final Spannable spanable) {
-        this.mMultiLine = false;
-        this.mSpannable = spanable;
-        clear(spanable);
-        NewLineScanner scanner = new NewLineScanner(spanable, new NewLineScannerListener() {
-            @Override
-            public boolean onNewLine(CharSequence newline, int start, int end, CharSequence sep) {
-                processNewLine(newline, start, end);
-                return true;
-            }
-
-        });
-        scanner.scan();
-        this.mSpannable = null;
-    }
-
-    /**
-     * {@inheritDoc}
-     */
-    @Override
-    public void process(final Spannable spanable, final int start, final int end) {
-        // We need a Retrieve the previous line
-        this.mMultiLine = false;
-        this.mSpannable = spanable;
-        CharSequence seqs = spanable.subSequence(0, start);
-        CharSequence seqe = spanable.subSequence(end, spanable.length());
-        int s1 = RegExpUtil.getLastMatch(RegExpUtil.NEWLINE_PATTERN, seqs, false);
-        if (s1 == RegExpUtil.NO_MATCH) {
-            s1 = 0;
-        }
-        int e1 = RegExpUtil.getNextMatch(RegExpUtil.NEWLINE_PATTERN, seqe, false);
-        if (e1 == RegExpUtil.NO_MATCH) {
-            e1 = spanable.length();
-        } else {
-            e1 += end;
+    protected int scanLine(CharSequence line, int state) {
+        if (isComment(line)) {
+            return STATE_INITIAL;
         }
-
-        // Also, we need to know about if the previous line is multiline
-        if (s1 > 0) {
-            int s2 = RegExpUtil.getLastMatch(RegExpUtil.NEWLINE_PATTERN, seqs, true);
-            CharSequence seqnl = spanable.subSequence(0, s2);
-            int snl = RegExpUtil.getLastMatch(RegExpUtil.NEWLINE_PATTERN, seqnl, false);
-            Matcher mlm = MULTILINE.matcher(
-                    spanable.subSequence(snl != RegExpUtil.NO_MATCH ? snl : 0, s2));
-            this.mMultiLine = mlm.matches();
-        }
-
-        // Process the new line
-        if (s1 != e1) {
-            processNewLine(spanable.subSequence(s1, e1), s1, e1);
-        }
-
-        // Now, multiline again (next line). We check always the next line, because we
-        // don't know if user delete multiline flag in the current line
-        e1 = RegExpUtil.getNextMatch(RegExpUtil.NEWLINE_PATTERN, seqe, true);
-        if (e1 != RegExpUtil.NO_MATCH) {
-            e1 += end;
-            seqe = spanable.subSequence(e1, spanable.length());
-            int e2 = RegExpUtil.getNextMatch(RegExpUtil.NEWLINE_PATTERN, seqe, false);
-            if (e2 == RegExpUtil.NO_MATCH) {
-                e2 = spanable.length();
-            } else {
-                e2 += e1;
-            }
-            processNewLine(spanable.subSequence(e1, e2), e1, e2);
-        }
-
-        this.mSpannable = null;
+        return isMultiLine(line) ? STATE_MULTILINE : STATE_INITIAL;
     }
 
     /**
      * {@inheritDoc}
      */
     @Override
-    public void cancel() {
-        // Not needed by this processor
-    }
-
-    /**
-     * A method to process every new line
-     *
-     * @param newline The newline
-     * @param start The start position of the line
-     * @param end The end position of the line
-     * @hide
-     */
-    void processNewLine(CharSequence newline, int start, int end) {
+    protected int highlightLine(
+            Spannable spanable, CharSequence newline, int start, int end, int state) {
         // Remove all spannable of the line (this processor doesn't multiline spans and
         // only uses ForegroundColorSpan spans)
-        ForegroundColorSpan[] spans =
-                this.mSpannable.getSpans(start, end, ForegroundColorSpan.class);
-        int cc = spans.length;
-        for (int i = 0; i < cc; i++) {
-            this.mSpannable.removeSpan(spans[i]);
+        if (start < end) {
+            ForegroundColorSpan[] spans =
+                    spanable.getSpans(start, end, ForegroundColorSpan.class);
+            int cc = spans.length;
+            for (int i = 0; i < cc; i++) {
+                spanable.removeSpan(spans[i]);
+            }
         }
 
         // Find comment
-        Matcher cm = COMMENT.matcher(newline);
-        if (cm.matches()) {
+        if (isComment(newline)) {
             // All the line is a comment
-            setSpan(this.mSpannable, this.mCommentColor, start, end);
-            this.mMultiLine = false;
-            return;
+            setSpan(spanable, this.mCommentColor, start, end);
+            return STATE_INITIAL;
         }
 
         // Has multiline
-        Matcher mlm = MULTILINE.matcher(newline);
-        boolean ml = mlm.matches();
+        boolean multiLine = state == STATE_MULTILINE;
+        boolean ml = isMultiLine(newline);
 
         //Find the assignment
-        int k = this.mMultiLine ? -1 : start;
+        int k = multiLine ? -1 : start;
         int v = start;
         int v2 = 0;
         int a = -1;
-        if (!this.mMultiLine) {
+        if (!multiLine) {
             Matcher am = ASSIGNMENT.matcher(newline);
             if (am.find()) {
                 // Assignment found
@@ -250,31 +169,76 @@ public class PropertiesSyntaxHighlightProcessor extends SyntaxHighlightProcessor
         }
 
         // All the string is a key
-        if (!this.mMultiLine && a == -1) {
-            setSpan(this.mSpannable, this.mKeyColor, start, end);
+        if (!multiLine && a == -1) {
+            setSpan(spanable, this.mKeyColor, start, end);
 
         } else {
             // Key
-            if (!this.mMultiLine) {
-                setSpan(this.mSpannable, this.mKeyColor, k, a);
+            if (!multiLine) {
+                setSpan(spanable, this.mKeyColor, k, a);
             }
             // Assignment
-            if (!this.mMultiLine) {
-                setSpan(this.mSpannable, this.mAssignmentColor, a, a + 1);
+            if (!multiLine) {
+                setSpan(spanable, this.mAssignmentColor, a, a + 1);
             }
             // Value
-            setSpan(this.mSpannable, this.mValueColor, v, end);
+            setSpan(spanable, this.mValueColor, v, end);
             // Argument
             Matcher argm = ARGUMENT.matcher(newline);
             while (argm.find(v2)) {
                 int s = start + argm.start();
                 int e = start + argm.end();
-                setSpan(this.mSpannable, this.mArgumentColor, s, e);
+                setSpan(spanable, this.mArgumentColor, s, e);
                 v2 = argm.end();
             }
         }
 
         // Multiline?
-        this.mMultiLine = ml;
+        return ml ? STATE_MULTILINE : STATE_INITIAL;
+    }
+
+    /**
+     * Method that checks if a line is a comment (only spaces are allowed prior to
+     * the comment char)
+     *
+     * @param line The line
+     * @return boolean If the line is a comment
+     */
+    private static boolean isComment(CharSequence line) {
+        int cc = line.length();
+        for (int i = 0; i < cc; i++) {
+            char c = line.charAt(i);
+            if (!isWhitespace(c)) {
+                return c == '#';
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Method that checks if a line continues in the next line (the last char, ignoring
+     * the trailing spaces, is "\")
+     *
+     * @param line The line
+     * @return boolean If the line continues in the next line
+     */
+    private static boolean isMultiLine(CharSequence line) {
+        for (int i = line.length() - 1; i >= 0; i--) {
+            char c = line.charAt(i);
+            if (!isWhitespace(c)) {
+                return c == '\\';
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Method that checks if a char is a space (the chars of the \s regexp class)
+     *
+     * @param c The char
+     * @return boolean If the char is a space
+     */
+    private static boolean isWhitespace(char c) {
+        return c == ' ' || c == '\t' || c == '\n' || c == '\u000B' || c == '\f' || c == '\r';
     }
 }
@@ -24,6 +24,7 @@ import android.content.IntentFilter;
 import android.content.pm.ApplicationInfo;
 import android.util.Log;
 
+import me.toolify.backbone.commands.shell.CommandRegistry;
 import me.toolify.backbone.console.Console;
 import me.toolify.backbone.console.ConsoleAllocException;
 import me.toolify.backbone.console.ConsoleBuilder;
@@ -270,6 +271,13 @@ public final class FileManagerApplication extends Application {
         Theme theme = ThemeManager.getCurrentTheme(getApplicationContext());
         theme.setBaseTheme(getApplicationContext(), false);
 
+        //Force the load of the command definitions
+        try {
+            CommandRegistry.load(getResources());
+        } catch (Exception e) {
+            Log.e(TAG, "Command definitions failed.", e); //$NON-NLS-1$
+        }
+
         //Create a console for background tasks
         allocBackgroundConsole(getApplicationContext());
 
@@ -34,6 +34,8 @@ import android.os.Handler;
 import android.preference.PreferenceActivity;
 import android.text.Editable;
 import android.text.InputType;
+import android.text.Layout;
+import android.text.Spannable;
 import android.text.SpannableStringBuilder;
 import android.text.TextUtils;
 import android.text.TextWatcher;
@@ -41,6 +43,7 @@ import android.util.Log;
 import android.view.*;
 import android.widget.EditText;
 import android.widget.ProgressBar;
+import android.widget.ScrollView;
 import android.widget.TextView;
 import android.widget.TextView.BufferType;
 import android.widget.Toast;
@@ -57,6 +60,7 @@ import com.ash.syntaxhighlight.SyntaxHighlightProcessor;
 import me.toolify.backbone.commands.AsyncResultListener;
 import me.toolify.backbone.commands.WriteExecutable;
 import me.toolify.backbone.console.ConsoleBuilder;
+import me.toolify.backbone.console.OperationTimeoutException;
 import me.toolify.backbone.model.FileSystemObject;
 import me.toolify.backbone.preferences.FileManagerSettings;
 import me.toolify.backbone.preferences.Preferences;
@@ -68,12 +72,19 @@ import me.toolify.backbone.util.DialogHelper;
 import me.toolify.backbone.util.ExceptionUtil;
 import me.toolify.backbone.util.ExceptionUtil.OnRelaunchCommandResult;
 import me.toolify.backbone.util.FileHelper;
+import me.toolify.backbone.util.MappedTextFile;
 import me.toolify.backbone.util.ResourcesHelper;
 
 import java.io.ByteArrayInputStream;
 import java.io.ByteArrayOutputStream;
 import java.io.File;
+import java.io.IOException;
 import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.charset.Charset;
+import java.nio.charset.CharsetEncoder;
+import java.nio.charset.CodingErrorAction;
 import java.util.Arrays;
 import java.util.UUID;
 
@@ -87,6 +98,12 @@ public class EditorActivity extends Activity implements TextWatcher {
     private static boolean DEBUG = false;
 
     private static final int WRITE_RETRIES = 3;
+    // The maximum time to wait for the end of a write, once all the data is written
+    private static final long WRITE_END_TIMEOUT = 10000L;
+    // The minimum number of chars encoded and written in every chunk when saving
+    private static final int WRITE_CHUNK_SIZE = 16 * 1024;
+    // The number of lines set in the editor by the viewer of large files
+    private static final int VIEWER_WINDOW_LINES = 1500;
 
     private final BroadcastReceiver mNotificationReceiver = new BroadcastReceiver() {
         @Override
@@ -285,12 +302,34 @@ public class EditorActivity extends Activity implements TextWatcher {
     private class AsyncWriter implements AsyncResultListener {
 
         Exception mCause;
+        private boolean mEnded;
 
         /**
          * Constructor of <code>AsyncWriter</code>. For enclosing access.
          */
         public AsyncWriter() {
             super();
+            this.mEnded = false;
+        }
+
+        /**
+         * Method that waits until the write command ends.
+         *
+         * @param timeout The maximum time to wait in milliseconds
+         * @return boolean If the write command ended
+         */
+        public synchronized boolean waitForEnd(long timeout) {
+            final long deadline = System.currentTimeMillis() + timeout;
+            long remaining = timeout;
+            while (!this.mEnded && remaining > 0) {
+                try {
+                    wait(remaining);
+                } catch (InterruptedException iex) {
+                    break;
+                }
+                remaining = deadline - System.currentTimeMillis();
+            }
+            return this.mEnded;
         }
 
         /**
@@ -303,7 +342,10 @@ public class EditorActivity extends Activity implements TextWatcher {
          * {@inheritDoc}
          */
         @Override
-        public void onAsyncEnd(boolean cancelled) {/**NON BLOCK**/}
+        public synchronized void onAsyncEnd(boolean cancelled) {
+            this.mEnded = true;
+            notifyAll();
+        }
 
         /**
          * {@inheritDoc}
@@ -326,6 +368,224 @@ public class EditorActivity extends Activity implements TextWatcher {
         }
     }
 
+    /**
+     * A read-only viewer of the files that exceed the maximum size of the editor.<br/>
+     * <br/>
+     * The file is memory-mapped and only a window of lines is set in the editor. When
+     * the viewport gets near to the edges of the window, a new window centered on the
+     * first visible line is read, and the viewport is restored to the same line.
+     */
+    private class LargeFileViewer implements ViewTreeObserver.OnScrollChangedListener {
+        final MappedTextFile mFile;
+        MappedTextFile.Window mWindow;
+        boolean mLoading;
+        boolean mClosed;
+        long mStartTime;
+
+        /**
+         * Constructor of <code>LargeFileViewer</code>.
+         *
+         * @param file The file to view
+         */
+        LargeFileViewer(MappedTextFile file) {
+            super();
+            this.mFile = file;
+        }
+
+        /**
+         * Method that shows the first lines of the file and starts to index it.
+         */
+        void start() {
+            this.mStartTime = System.currentTimeMillis();
+            getWindow().getDecorView().getViewTreeObserver().addOnScrollChangedListener(this);
+            this.mFile.startIndexing(new Runnable() {
+                @Override
+                public void run() {
+                    EditorActivity.this.mHandler.post(new Runnable() {
+                        @Override
+                        public void run() {
+                            if (!LargeFileViewer.this.mClosed) {
+                                getActionBar().setSubtitle(getString(
+                                        R.string.editor_large_file_lines,
+                                        Integer.valueOf(
+                                                LargeFileViewer.this.mFile.getIndexedLines())));
+                            }
+                        }
+                    });
+                }
+            });
+            load(0, 0, 0, 0);
+        }
+
+        /**
+         * Method that closes the viewer.
+         */
+        void close() {
+            this.mClosed = true;
+            ViewTreeObserver observer = getWindow().getDecorView().getViewTreeObserver();
+            if (observer.isAlive()) {
+                observer.removeOnScrollChangedListener(this);
+            }
+            this.mFile.close();
+        }
+
+        /**
+         * {@inheritDoc}
+         */
+        @Override
+        public void onScrollChanged() {
+            final EditorActivity activity = EditorActivity.this;
+            if (this.mLoading || this.mClosed || this.mWindow == null) {
+                return;
+            }
+
+            // Is the viewport near to the edges of the window?
+            ScrollView scroller = getVerticalScroller();
+            int y = scroller.getScrollY();
+            int height = scroller.getHeight();
+            int bottom = activity.mEditor.getTop() + activity.mEditor.getHeight();
+            boolean nearTop = y < height && this.mWindow.getFirstLine() > 0;
+            boolean nearBottom = y + (height * 2) > bottom && !this.mWindow.isEof();
+            if (!nearTop && !nearBottom) {
+                return;
+            }
+            Layout layout = activity.mEditor.getLayout();
+            if (layout == null) {
+                return;
+            }
+
+            // Find the first visible line of the file (and the position inside the
+            // line, because wrapped lines have more than one visual line)
+            String text = this.mWindow.getText();
+            int top = Math.max(0,
+                    y - activity.mEditor.getTop() - activity.mEditor.getTotalPaddingTop());
+            int visualLine = layout.getLineForVertical(top);
+            int offset = Math.min(layout.getLineStart(visualLine), text.length());
+            int lineStart = text.lastIndexOf('\n', offset - 1) + 1;
+            int line = this.mWindow.getFirstLine() + countLines(text, lineStart);
+            int firstLine = Math.max(0, line - (VIEWER_WINDOW_LINES / 2));
+            if (firstLine == this.mWindow.getFirstLine()) {
+                return;
+            }
+            load(firstLine, line, offset - lineStart, top - layout.getLineTop(visualLine));
+        }
+
+        /**
+         * Method that reads a window of lines in background and sets it in the editor.
+         *
+         * @param firstLine The first line of the window
+         * @param anchorLine The line of the file to show at the top of the viewport
+         * @param column The position inside the anchor line to show at the top
+         * @param delta The pixels of the viewport above the visual line of the position
+         */
+        void load(final int firstLine,
+                final int anchorLine, final int column, final int delta) {
+            this.mLoading = true;
+            AsyncTask<Void, Void, MappedTextFile.Window> task =
+                    new AsyncTask<Void, Void, MappedTextFile.Window>() {
+                private Exception mCause;
+
+                @Override
+                protected MappedTextFile.Window doInBackground(Void... params) {
+                    try {
+                        return LargeFileViewer.this.mFile.readLines(
+                                firstLine, VIEWER_WINDOW_LINES);
+                    } catch (Exception e) {
+                        this.mCause = e;
+                        return null;
+                    }
+                }
+
+                @Override
+                protected void onPostExecute(MappedTextFile.Window window) {
+                    if (LargeFileViewer.this.mClosed) {
+                        return;
+                    }
+                    if (window == null) {
+                        LargeFileViewer.this.mLoading = false;
+                        ExceptionUtil.translateException(EditorActivity.this, this.mCause);
+                        return;
+                    }
+                    show(window, anchorLine, column, delta);
+                }
+            };
+            task.execute();
+        }
+
+        /**
+         * Method that sets a window of lines in the editor and restores the viewport.
+         *
+         * @param window The window of lines
+         * @param anchorLine The line of the file to show at the top of the viewport
+         * @param column The position inside the anchor line to show at the top
+         * @param delta The pixels of the viewport above the visual line of the position
+         */
+        void show(MappedTextFile.Window window,
+                int anchorLine, int column, final int delta) {
+            final EditorActivity activity = EditorActivity.this;
+            boolean first = this.mWindow == null;
+            this.mWindow = window;
+            String text = window.getText();
+            activity.mEditor.setText(text, BufferType.NORMAL);
+            setDirty(false);
+            if (first) {
+                Log.i(TAG, String.format("Viewer opened %d bytes in %d ms", //$NON-NLS-1$
+                        Long.valueOf(this.mFile.getSize()),
+                        Long.valueOf(System.currentTimeMillis() - this.mStartTime)));
+                this.mLoading = false;
+                return;
+            }
+
+            // Find the anchor in the new window
+            int offset = 0;
+            int skip = anchorLine - window.getFirstLine();
+            for (int i = 0; i < skip && offset >= 0; i++) {
+                offset = text.indexOf('\n', offset);
+                offset = offset < 0 ? -1 : offset + 1;
+            }
+            final int anchor = offset < 0 ? 0 : Math.min(offset + column, text.length());
+
+            // The editor has to be measured with the new text before scroll it
+            final ViewTreeObserver observer = activity.mEditor.getViewTreeObserver();
+            observer.addOnGlobalLayoutListener(new ViewTreeObserver.OnGlobalLayoutListener() {
+                @Override
+                @SuppressWarnings("deprecation")
+                public void onGlobalLayout() {
+                    ViewTreeObserver vto = activity.mEditor.getViewTreeObserver();
+                    if (vto.isAlive()) {
+                        vto.removeGlobalOnLayoutListener(this);
+                    }
+                    Layout layout = activity.mEditor.getLayout();
+                    if (layout != null) {
+                        ScrollView scroller = getVerticalScroller();
+                        int y = activity.mEditor.getTop() +
+                                activity.mEditor.getTotalPaddingTop() +
+                                layout.getLineTop(layout.getLineForOffset(anchor)) + delta;
+                        scroller.scrollTo(scroller.getScrollX(), y);
+                    }
+                    LargeFileViewer.this.mLoading = false;
+                }
+            });
+        }
+
+        /**
+         * Method that counts the lines of a text until a position.
+         *
+         * @param text The text
+         * @param end The position
+         * @return int The number of line breaks before the position
+         */
+        private int countLines(String text, int end) {
+            int lines = 0;
+            for (int i = 0; i < end; i++) {
+                if (text.charAt(i) == '\n') {
+                    lines++;
+                }
+            }
+            return lines;
+        }
+    }
+
     /**
      * An internal class to resolve resources for the syntax highlight library.
      * @hide
@@ -466,8 +726,14 @@ public class EditorActivity extends Activity implements TextWatcher {
     boolean mNoSuggestions;
 
     // Word wrap status
-    private ViewGroup mWordWrapView;
-    private ViewGroup mNoWordWrapView;
+    /**
+     * @hide
+     */
+    ViewGroup mWordWrapView;
+    /**
+     * @hide
+     */
+    ViewGroup mNoWordWrapView;
     /**
      * @hide
      */
@@ -487,6 +753,9 @@ public class EditorActivity extends Activity implements TextWatcher {
 
     private View mOptionsAnchorView;
 
+    // The viewer of the files that exceed the maximum size of the editor
+    private LargeFileViewer mViewer;
+
     private final Object mExecSync = new Object();
 
     /**
@@ -568,6 +837,17 @@ public class EditorActivity extends Activity implements TextWatcher {
             /**NON BLOCK**/
         }
 
+        // Stop the background pass of the syntax highlight
+        if (this.mSyntaxHighlightProcessor != null) {
+            this.mSyntaxHighlightProcessor.cancel();
+        }
+
+        // Release the mapped file
+        if (this.mViewer != null) {
+            this.mViewer.close();
+            this.mViewer = null;
+        }
+
         //All destroy. Continue
         super.onDestroy();
     }
@@ -701,6 +981,48 @@ public class EditorActivity extends Activity implements TextWatcher {
         this.mProgress = findViewById(R.id.editor_progress);
         this.mProgressBar = (ProgressBar)findViewById(R.id.editor_progress_bar);
         this.mProgressBarMsg = (TextView)findViewById(R.id.editor_progress_msg);
+
+        // The syntax highlight processes the visible lines first
+        this.mEditor.getViewTreeObserver().addOnScrollChangedListener(
+                new ViewTreeObserver.OnScrollChangedListener() {
+            @Override
+            public void onScrollChanged() {
+                updateSyntaxHighlightViewport();
+            }
+        });
+    }
+
+    /**
+     * Method that returns the scroll view that scrolls the editor vertically.
+     *
+     * @return ScrollView The vertical scroll view
+     * @hide
+     */
+    ScrollView getVerticalScroller() {
+        return this.mWordWrap
+                ? (ScrollView)this.mWordWrapView
+                : (ScrollView)this.mNoWordWrapView.getChildAt(0);
+    }
+
+    /**
+     * Method that notifies the syntax highlight processor about the visible text of
+     * the editor
+     * @hide
+     */
+    void updateSyntaxHighlightViewport() {
+        if (!this.mSyntaxHighlight || this.mSyntaxHighlightProcessor == null) {
+            return;
+        }
+        Layout layout = this.mEditor.getLayout();
+        if (layout == null) {
+            return;
+        }
+        ScrollView scroller = getVerticalScroller();
+        int top = Math.max(0,
+                scroller.getScrollY() - this.mEditor.getTop() - this.mEditor.getTotalPaddingTop());
+        int start = layout.getLineStart(layout.getLineForVertical(top));
+        int end = layout.getLineEnd(layout.getLineForVertical(top + scroller.getHeight()));
+        this.mSyntaxHighlightProcessor.setVisibleRange(this.mEditor.getText(), start, end);
     }
 
     /**
@@ -763,6 +1085,7 @@ public class EditorActivity extends Activity implements TextWatcher {
             }
 
             this.mSyntaxHighlight = !this.mSyntaxHighlight;
+            updateSyntaxHighlightViewport();
         }
     }
 
@@ -776,6 +1099,7 @@ public class EditorActivity extends Activity implements TextWatcher {
                 try {
                     this.mSyntaxHighlightProcessor.initialize();
                     this.mSyntaxHighlightProcessor.process(this.mEditor.getText());
+                    updateSyntaxHighlightViewport();
                 } catch (Exception ex) {
                     // An error in a syntax library, should not break down app.
                     Log.e(TAG, "Syntax highlight failed.", ex); //$NON-NLS-1$
@@ -862,10 +1186,13 @@ public class EditorActivity extends Activity implements TextWatcher {
             return;
         }
 
-        // Check that we can handle the length of the file (by device)
+        // Check that we can handle the length of the file (by device). Bigger files
+        // are opened in the read-only viewer, if the application can read them itself
         if (this.mMaxFileSize < this.mFso.getSize()) {
-            DialogHelper.showToast(
-                    this, R.string.editor_file_exceed_size_msg, Toast.LENGTH_SHORT);
+            if (!f.canRead() || !openViewer(f)) {
+                DialogHelper.showToast(
+                        this, R.string.editor_file_exceed_size_msg, Toast.LENGTH_SHORT);
+            }
             return;
         }
 
@@ -909,6 +1236,31 @@ public class EditorActivity extends Activity implements TextWatcher {
         }
     }
 
+    /**
+     * Method that opens a file in the read-only viewer of large files
+     *
+     * @param file The file to open
+     * @return boolean If the file was opened
+     */
+    private boolean openViewer(File file) {
+        MappedTextFile mapped;
+        try {
+            mapped = new MappedTextFile(file);
+        } catch (IOException ioex) {
+            Log.e(TAG, "Failed to map the file", ioex); //$NON-NLS-1$
+            return false;
+        }
+
+        // The viewer doesn't support edition nor syntax highlight
+        this.mReadOnly = true;
+        this.mSyntaxHighlightProcessor = null;
+        this.mEditor.setEnabled(false);
+        this.mViewer = new LargeFileViewer(mapped);
+        this.mViewer.start();
+        DialogHelper.showToast(this, R.string.editor_large_file_mode, Toast.LENGTH_SHORT);
+        return true;
+    }
+
     /**
      * Method that does the read of the file in background
      * @hide
@@ -1038,6 +1390,7 @@ public class EditorActivity extends Activity implements TextWatcher {
                             try {
                                 activity.mSyntaxHighlightProcessor.process(
                                         activity.mEditor.getText());
+                                activity.updateSyntaxHighlightViewport();
                             } catch (Exception ex) {
                                 // An error in a syntax library, should not break down app.
                                 Log.e(TAG, "Syntax highlight failed.", ex); //$NON-NLS-1$
@@ -1198,35 +1551,66 @@ public class EditorActivity extends Activity implements TextWatcher {
     }
 
     /**
-     * Method that checks that the write to disk operation was successfully and the
-     * expected bytes are written to disk.
+     * Method that writes the file in background, and checks that the write to disk
+     * operation was successfully and the expected bytes are written to disk.
      * @hide
      */
     void ensureSyncWrite() {
+        // The text can't change while it's written
+        this.mEditor.setEnabled(false);
+
+        AsyncTask<Void, Void, Boolean> writeTask = new AsyncTask<Void, Void, Boolean>() {
+            @Override
+            protected Boolean doInBackground(Void... params) {
+                return Boolean.valueOf(doSyncWrite());
+            }
+
+            @Override
+            protected void onPostExecute(Boolean result) {
+                final EditorActivity activity = EditorActivity.this;
+                activity.mEditor.setEnabled(!activity.mReadOnly);
+                if (!result.booleanValue()) {
+                    // Something was wrong. The file probably is corrupted
+                    DialogHelper.showToast(
+                            activity, R.string.msgs_operation_failure, Toast.LENGTH_SHORT);
+                    return;
+                }
+
+                // Success. The file was saved
+                DialogHelper.showToast(
+                        activity, R.string.editor_successfully_saved, Toast.LENGTH_SHORT);
+                activity.setDirty(false);
+
+                // Send a message that allow other activities to update his data
+                Intent intent = new Intent(FileManagerSettings.INTENT_FILE_CHANGED);
+                intent.putExtra(
+                        FileManagerSettings.EXTRA_FILE_CHANGED_KEY,
+                        activity.mFso.getFullPath());
+                activity.sendBroadcast(intent);
+            }
+        };
+        writeTask.execute();
+    }
+
+    /**
+     * Method that writes the file, and retries the write while it fails.
+     *
+     * @return boolean If the file was written
+     * @hide
+     */
+    boolean doSyncWrite() {
         try {
+            final CharSequence text = this.mEditor.getText();
             for (int i = 0; i < WRITE_RETRIES; i++) {
                 // Configure the writer
                 AsyncWriter writer = new AsyncWriter();
 
-                // Write to disk
-                final byte[] data = this.mEditor.getText().toString().getBytes();
-                long expected = data.length;
-                syncWrite(writer, data);
-
-                // Sleep a bit
-                Thread.sleep(150L);
+                // Write to disk (the text is encoded while it's written)
+                long expected = syncWrite(writer, text);
 
                 // Is error?
                 if (writer.mCause != null) {
                     Log.e(TAG, "Write operation failed. Retries: " + i, writer.mCause);
-                    if (i == (WRITE_RETRIES-1)) {
-                        // Something was wrong. The file probably is corrupted
-                        DialogHelper.showToast(
-                                this, R.string.msgs_operation_failure, Toast.LENGTH_SHORT);
-                        break;
-                    }
-
-                    // Retry
                     continue;
                 }
 
@@ -1237,78 +1621,116 @@ public class EditorActivity extends Activity implements TextWatcher {
                     Log.e(TAG, String.format(
                             "Size is not the same. Expected: %d, Written: %d. Retries: %d",
                             expected, fso == null ? -1 : fso.getSize(), i));
-                    if (i == (WRITE_RETRIES-1)) {
-                        // Something was wrong. The destination data is not the same
-                        // as the source data
-                        DialogHelper.showToast(
-                                this, R.string.msgs_operation_failure, Toast.LENGTH_SHORT);
-                        break;
-                    }
-
-                    // Retry
                     continue;
                 }
 
-                // Success. The file was saved
-                DialogHelper.showToast(
-                        this, R.string.editor_successfully_saved, Toast.LENGTH_SHORT);
-                setDirty(false);
-
-                // Send a message that allow other activities to update his data
-                Intent intent = new Intent(FileManagerSettings.INTENT_FILE_CHANGED);
-                intent.putExtra(
-                        FileManagerSettings.EXTRA_FILE_CHANGED_KEY, this.mFso.getFullPath());
-                sendBroadcast(intent);
-
                 // Done
-                break;
-
+                return true;
             }
         } catch (Exception ex) {
             // Something was wrong, but the file was NOT written
             Log.e(TAG, "The file wasn't written.", ex);
-            DialogHelper.showToast(
-                    this, R.string.msgs_operation_failure, Toast.LENGTH_SHORT);
         }
+        return false;
     }
 
     /**
-     * Method that write the file.
+     * Method that write the file, and waits until the write command ends.
      *
      * @param writer The command listener
-     * @param bytes The bytes to write
+     * @param text The text to write
+     * @return long The number of bytes written
      * @throws Exception If something was wrong
      */
-    private void syncWrite(AsyncWriter writer, byte[] bytes) throws Exception {
+    private long syncWrite(AsyncWriter writer, CharSequence text) throws Exception {
+        // The shell write command needs to know the number of bytes to write
+        long length = writeText(text, null);
+
         // Create the writable command
         WriteExecutable cmd =
-                CommandHelper.write(this, this.mFso.getFullPath(), writer, null);
+                CommandHelper.write(this, this.mFso.getFullPath(), length, writer, null);
 
         // Obtain access to the buffer (IMP! don't close the buffer here, it's manage
         // by the command)
         OutputStream os = cmd.createOutputStream();
+        long written;
         try {
-            // Retrieve the text from the editor
-            ByteArrayInputStream bais = new ByteArrayInputStream(bytes);
-            try {
-                // Buffered write
-                byte[] data = new byte[this.mBufferSize];
-                int read = 0, written = 0;
-                while ((read = bais.read(data, 0, this.mBufferSize)) != -1) {
-                    os.write(data, 0, read);
-                    written += read;
-                }
-                Log.i(TAG, "Bytes written: " + written); //$NON-NLS-1$
-            } finally {
-                try {
-                    bais.close();
-                } catch (Exception e) {/**NON BLOCK**/}
-            }
-
+            written = writeText(text, os);
         } finally {
             // Ok. Data is written or ensure buffer close
             cmd.end();
         }
+        if (!writer.waitForEnd(WRITE_END_TIMEOUT)) {
+            writer.mCause = new OperationTimeoutException(
+                    WRITE_END_TIMEOUT, "write " + this.mFso.getFullPath()); //$NON-NLS-1$
+        }
+        return written;
+    }
+
+    /**
+     * Method that encodes a text and writes it to a stream in chunks. The text is never
+     * materialized as a whole (string or byte array), so the memory used doesn't depend
+     * on the size of the file, and the stream applies the backpressure of the target.
+     *
+     * @param text The text to write
+     * @param os The stream where to write the text, or <code>null</code> to only count
+     * the bytes of the encoded text
+     * @return long The number of bytes written
+     * @throws IOException If the text couldn't be written
+     */
+    private long writeText(CharSequence text, OutputStream os) throws IOException {
+        final long start = System.currentTimeMillis();
+        final Runtime runtime = Runtime.getRuntime();
+        long peakHeap = runtime.totalMemory() - runtime.freeMemory();
+
+        // Use the same replacement that String.getBytes() for malformed chars
+        final CharsetEncoder encoder = Charset.defaultCharset().newEncoder()
+                .onMalformedInput(CodingErrorAction.REPLACE)
+                .onUnmappableCharacter(CodingErrorAction.REPLACE);
+        final int size = Math.max(this.mBufferSize, WRITE_CHUNK_SIZE);
+        final char[] chars = new char[size];
+        final CharBuffer in = CharBuffer.wrap(chars);
+        final ByteBuffer out =
+                ByteBuffer.allocate((int)Math.ceil(size * encoder.maxBytesPerChar()) + 1);
+        in.limit(0);
+
+        final int len = text.length();
+        int pos = 0;
+        long written = 0;
+        while (true) {
+            // Fill the buffer after the chars not encoded (half of a surrogate pair)
+            in.compact();
+            int count = Math.min(in.remaining(), len - pos);
+            TextUtils.getChars(text, pos, pos + count, chars, in.position());
+            in.position(in.position() + count);
+            in.flip();
+            pos += count;
+
+            final boolean eof = pos == len;
+            out.clear();
+            encoder.encode(in, out, eof);
+            if (eof) {
+                encoder.flush(out);
+            }
+            if (os != null) {
+                os.write(out.array(), 0, out.position());
+            }
+            written += out.position();
+            peakHeap = Math.max(peakHeap, runtime.totalMemory() - runtime.freeMemory());
+            if (eof) {
+                break;
+            }
+        }
+
+        if (os != null) {
+            long elapsed = Math.max(1, System.currentTimeMillis() - start);
+            Log.i(TAG, String.format(
+                    "Bytes written: %d in %d ms (%d KB/s). Peak heap: %d KB", //$NON-NLS-1$
+                    Long.valueOf(written), Long.valueOf(elapsed),
+                    Long.valueOf((written * 1000L / elapsed) / 1024L),
+                    Long.valueOf(peakHeap / 1024L)));
+        }
+        return written;
     }
 
     /**
@@ -1325,6 +1747,10 @@ public class EditorActivity extends Activity implements TextWatcher {
     public void onTextChanged(CharSequence s, int start, int before, int count) {
         this.mEditStart = start;
         this.mEditEnd = start + count;
+        if (this.mSyntaxHighlight && this.mSyntaxHighlightProcessor != null &&
+            s instanceof Spannable) {
+            this.mSyntaxHighlightProcessor.onTextChanged((Spannable)s, start, before, count);
+        }
     }
 
     /**
@@ -1333,7 +1759,7 @@ public class EditorActivity extends Activity implements TextWatcher {
     @Override
     public void afterTextChanged(Editable s) {
         setDirty(true);
-        if (this.mSyntaxHighlightProcessor != null) {
+        if (this.mSyntaxHighlight && this.mSyntaxHighlightProcessor != null) {
             this.mSyntaxHighlightProcessor.process(s, this.mEditStart, this.mEditEnd);
         }
     }
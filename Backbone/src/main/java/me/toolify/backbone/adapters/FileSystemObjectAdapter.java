@@ -18,11 +18,11 @@ package me.toolify.backbone.adapters;
 
 import android.content.Context;
 import android.content.res.Resources;
-import android.graphics.drawable.Drawable;
 import android.view.LayoutInflater;
 import android.view.View;
 import android.view.View.OnClickListener;
 import android.view.ViewGroup;
+import android.widget.AbsListView.RecyclerListener;
 import android.widget.ArrayAdapter;
 import android.widget.ImageButton;
 import android.widget.ImageView;
@@ -30,7 +30,15 @@ import android.widget.RelativeLayout;
 import android.widget.TextView;
 
 import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
 
 import de.greenrobot.event.EventBus;
 import me.toolify.backbone.R;
@@ -42,16 +50,23 @@ import me.toolify.backbone.preferences.Preferences;
 import me.toolify.backbone.ui.IconHolder;
 import me.toolify.backbone.ui.ThemeManager;
 import me.toolify.backbone.ui.ThemeManager.Theme;
+import me.toolify.backbone.ui.image.ApkInfoCache;
 import me.toolify.backbone.ui.image.ImageFetcher;
+import me.toolify.backbone.ui.image.ImageWorker;
 import me.toolify.backbone.util.FileHelper;
 import me.toolify.backbone.util.MimeTypeHelper;
 import me.toolify.backbone.util.MimeTypeHelper.MimeTypeCategory;
 
 /**
- * An implementation of {@link ArrayAdapter} for display file system objects.
+ * An implementation of {@link ArrayAdapter} for display file system objects.<br/>
+ * <br/>
+ * The data of the rows (icon, summary, size, ...) is computed when the rows are
+ * displayed, and only the data of the last displayed rows is retained, so the cost
+ * of load a directory doesn't depend on the number of files. The data of the rows
+ * around the displayed rows is prefetched in a background thread.
  */
 public class FileSystemObjectAdapter
-    extends ArrayAdapter<FileSystemObject> implements OnClickListener {
+    extends ArrayAdapter<FileSystemObject> implements OnClickListener, RecyclerListener {
 
     /**
      * An interface to communicate selection changes events.
@@ -94,21 +109,36 @@ public class FileSystemObjectAdapter
         public DataHolder() {
             super();
         }
-        boolean mSelected;
-        Drawable mDwCheck;
-        Drawable mDwIcon;
+        String mIcon;
         String mName;
         String mSummary;
         String mSize;
         String mImagePath;
+        long mLastModified;
         boolean mDynamic;
+        boolean mApk;
     }
 
-
-    private DataHolder[] mData;
+    // The maximum number of rows which data is retained
+    private static final int MAX_CACHED_ROWS = 256;
+    // The number of rows around a displayed row which data is prefetched
+    private static final int PREFETCH_ROWS = 32;
+
+    // The thread that prefetches the data of the rows (shared by all the adapters)
+    private static final ExecutorService sPrefetchExecutor =
+            new ThreadPoolExecutor(
+                    0, 1, 60L, TimeUnit.SECONDS, new LinkedBlockingQueue<Runnable>());
+
+    private final Map<Integer, DataHolder> mData;
+    // The generation of the data. Prefetched data of previous generations is discarded
+    private int mGeneration;
+    // The rows which data prefetch was requested
+    private int mPrefetchFrom;
+    private int mPrefetchTo;
     private IconHolder mIconHolder;
     private final int mItemViewResourceId;
-    private List<FileSystemObject> mSelectedItems;
+    // In order of selection. A set, because the selection is checked in every bind
+    private LinkedHashSet<FileSystemObject> mSelectedItems;
     private final boolean mPickable;
     private ImageFetcher mImageFetcher;
     private boolean displayThumbs;
@@ -143,12 +173,17 @@ public class FileSystemObjectAdapter
         super(context, RESOURCE_ITEM_NAME, files);
         this.mDisposed  = false;
         this.mItemViewResourceId = itemViewResourceId;
-        this.mSelectedItems = new ArrayList<FileSystemObject>();
+        this.mSelectedItems = new LinkedHashSet<FileSystemObject>();
         this.mPickable = pickable;
         this.mImageFetcher = imageFetcher;
+        this.mData = new LinkedHashMap<Integer, DataHolder>(MAX_CACHED_ROWS, 0.75f, true) {
+            private static final long serialVersionUID = 1L;
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Integer, DataHolder> eldest) {
+                return size() > MAX_CACHED_ROWS;
+            }
+        };
         notifyThemeChanged(); // Reload icons
-
-        processData();
     }
 
     /**
@@ -177,7 +212,7 @@ public class FileSystemObjectAdapter
         if (this.mDisposed) {
             return;
         }
-        processData();
+        invalidateData();
         super.notifyDataSetChanged();
     }
 
@@ -187,7 +222,7 @@ public class FileSystemObjectAdapter
     public void dispose() {
         this.mDisposed = true;
         clear();
-        this.mData = null;
+        invalidateData();
         if (mIconHolder != null) {
             mIconHolder.cleanup();
             mIconHolder = null;
@@ -214,56 +249,141 @@ public class FileSystemObjectAdapter
     }
 
     /**
-     * Method that process the data before use {@link #getView} method.
+     * Method that discards the data of the rows (the items changed).
      */
-    private void processData() {
-        Theme theme = ThemeManager.getCurrentTheme(getContext());
-        Resources res = getContext().getResources();
-        int cc = getCount();
-
-        this.mData = new DataHolder[cc];
-
-        for (int i = 0; i < cc; i++) {
-            //File system object info
-            FileSystemObject fso = getItem(i);
+    private void invalidateData() {
+        synchronized (this.mData) {
+            this.mData.clear();
+            this.mGeneration++;
+        }
+        this.mPrefetchFrom = 0;
+        this.mPrefetchTo = 0;
+    }
 
-            //Parse the last modification time and permissions
-            StringBuilder sbSummary = new StringBuilder();
-            if (fso instanceof ParentDirectory) {
-                sbSummary.append(res.getString(R.string.parent_dir));
-            } else {
-                sbSummary.append(
-                        FileHelper.formatFileTime(
-                                getContext(), fso.getLastModifiedTime()));
-                sbSummary.append("   "); //$NON-NLS-1$
-                sbSummary.append(fso.toRawPermissionString());
+    /**
+     * Method that returns the data of a row, computing it if it isn't retained.
+     *
+     * @param position The position of the row
+     * @return DataHolder The data of the row
+     */
+    private DataHolder getData(int position) {
+        Integer key = Integer.valueOf(position);
+        synchronized (this.mData) {
+            DataHolder data = this.mData.get(key);
+            if (data != null) {
+                return data;
             }
+        }
+        DataHolder data = computeData(getItem(position));
+        synchronized (this.mData) {
+            this.mData.put(key, data);
+        }
+        return data;
+    }
 
-            //Build the data holder
-            this.mData[i] = new FileSystemObjectAdapter.DataHolder();
-            this.mData[i].mSelected = this.mSelectedItems.contains(fso);
-            this.mData[i].mDynamic = MimeTypeHelper.getIsDynamic(getContext(), fso);
-            this.mData[i].mImagePath = null;
-            if (this.mData[i].mDynamic) {
-                // Produce specific icon for file (e.g. apk or image thumbnail) and store it
-                if (FileHelper.getExtension(fso).equals("apk")) {
-                    this.mData[i].mImagePath = fso.getFullPath();
-                } else if (MimeTypeHelper.getCategory(getContext(), fso) == MimeTypeCategory.IMAGE) {
-                    // Gather image file path for lazy loading
-                    this.mData[i].mImagePath = fso.getFullPath();
-                } else {
-                    // Icon is marked as dynamic in mimetypes.properties but wasn't handled above
-                    this.mData[i].mDwIcon = this.mIconHolder.getDrawable("ic_holo_dark_fs_warning");
+    /**
+     * Method that requests the prefetch of the data of the rows around a displayed row.
+     * The prefetch is only requested when the row is near the edges of the previous
+     * requested rows, so the scroll doesn't request it for every row.
+     *
+     * @param position The position of the displayed row
+     */
+    private void prefetchData(int position) {
+        if (position - (PREFETCH_ROWS / 2) >= this.mPrefetchFrom &&
+            position + (PREFETCH_ROWS / 2) < this.mPrefetchTo) {
+            return;
+        }
+        this.mPrefetchFrom = Math.max(0, position - PREFETCH_ROWS);
+        this.mPrefetchTo = Math.min(getCount(), position + PREFETCH_ROWS + 1);
+
+        // Only the items are read here. The adapter isn't accessed from the background
+        final List<Integer> positions = new ArrayList<Integer>();
+        final List<FileSystemObject> items = new ArrayList<FileSystemObject>();
+        final int generation;
+        synchronized (this.mData) {
+            generation = this.mGeneration;
+            for (int i = this.mPrefetchFrom; i < this.mPrefetchTo; i++) {
+                Integer key = Integer.valueOf(i);
+                if (!this.mData.containsKey(key)) {
+                    positions.add(key);
+                    items.add(getItem(i));
                 }
+            }
+        }
+        if (positions.isEmpty()) {
+            return;
+        }
+        sPrefetchExecutor.execute(new Runnable() {
+            @Override
+            public void run() {
+                int cc = positions.size();
+                for (int i = 0; i < cc; i++) {
+                    synchronized (FileSystemObjectAdapter.this.mData) {
+                        if (FileSystemObjectAdapter.this.mGeneration != generation ||
+                            FileSystemObjectAdapter.this.mData.containsKey(positions.get(i))) {
+                            continue;
+                        }
+                    }
+                    DataHolder data = computeData(items.get(i));
+                    synchronized (FileSystemObjectAdapter.this.mData) {
+                        if (FileSystemObjectAdapter.this.mGeneration == generation) {
+                            FileSystemObjectAdapter.this.mData.put(positions.get(i), data);
+                        }
+                    }
+                }
+            }
+        });
+    }
+
+    /**
+     * Method that computes the data of a row. This method can be invoked from any
+     * thread (the icon is returned as an identifier and loaded when the row is bound).
+     *
+     * @param fso The file system object of the row
+     * @return DataHolder The data of the row
+     */
+    private DataHolder computeData(FileSystemObject fso) {
+        Context ctx = getContext();
+        Resources res = ctx.getResources();
+
+        //Parse the last modification time and permissions
+        StringBuilder sbSummary = new StringBuilder();
+        if (fso instanceof ParentDirectory) {
+            sbSummary.append(res.getString(R.string.parent_dir));
+        } else {
+            sbSummary.append(
+                    FileHelper.formatFileTime(
+                            ctx, fso.getLastModifiedTime()));
+            sbSummary.append("   "); //$NON-NLS-1$
+            sbSummary.append(fso.toRawPermissionString());
+        }
+
+        //Build the data holder
+        DataHolder data = new FileSystemObjectAdapter.DataHolder();
+        data.mDynamic = MimeTypeHelper.getIsDynamic(ctx, fso);
+        data.mImagePath = null;
+        if (data.mDynamic) {
+            // Produce specific icon for file (e.g. apk or image thumbnail) and store it
+            if (FileHelper.getExtension(fso).equals("apk")) {
+                data.mImagePath = fso.getFullPath();
+                data.mApk = true;
+            } else if (MimeTypeHelper.getCategory(ctx, fso) == MimeTypeCategory.IMAGE ||
+                       MimeTypeHelper.getCategory(ctx, fso) == MimeTypeCategory.VIDEO) {
+                // Gather image or video file path for lazy loading
+                data.mImagePath = fso.getFullPath();
             } else {
-                // Display icon according to mimetype
-                this.mData[i].mDwIcon = this.mIconHolder.getDrawable(
-                        MimeTypeHelper.getIcon(getContext(), fso));
+                // Icon is marked as dynamic in mimetypes.properties but wasn't handled above
+                data.mIcon = "ic_holo_dark_fs_warning";
             }
-            this.mData[i].mName = fso.getName();
-            this.mData[i].mSummary = sbSummary.toString();
-            this.mData[i].mSize = FileHelper.getHumanReadableSize(fso);
+        } else {
+            // Display icon according to mimetype
+            data.mIcon = MimeTypeHelper.getIcon(ctx, fso);
         }
+        data.mLastModified = fso.getLastModifiedTimeMillis();
+        data.mName = fso.getName();
+        data.mSummary = sbSummary.toString();
+        data.mSize = FileHelper.getHumanReadableSize(fso);
+        return data;
     }
 
     /**
@@ -296,14 +416,16 @@ public class FileSystemObjectAdapter
         }
 
         //Retrieve data holder
-        final DataHolder dataHolder = this.mData[position];
+        final DataHolder dataHolder = getData(position);
+        final boolean selected = isSelected(position);
+        prefetchData(position);
 
         //Retrieve the view holder
         ViewHolder viewHolder = (ViewHolder)v.getTag();
 
         //Set the data
         //Gather image thumbnail or generate apk icon if it hasn't been generated yet
-        if (displayThumbs && this.mData[position].mImagePath != null && !this.mData[position].mImagePath.isEmpty()) {
+        if (displayThumbs && dataHolder.mImagePath != null && !dataHolder.mImagePath.isEmpty()) {
             viewHolder.mBtIcon.setScaleType(ImageView.ScaleType.CENTER_CROP);
             RelativeLayout.LayoutParams lp = ((RelativeLayout.LayoutParams)viewHolder.mBtIcon.getLayoutParams());
             if(lp != null)
@@ -311,13 +433,23 @@ public class FileSystemObjectAdapter
                 lp.setMargins(0, 0, 0, 0);
                 viewHolder.mBtIcon.setLayoutParams(lp);
             }
-            mImageFetcher.loadImage(this.mData[position].mImagePath, viewHolder.mBtIcon);
+            mImageFetcher.loadImage(
+                    dataHolder.mImagePath, dataHolder.mLastModified, viewHolder.mBtIcon);
         } else {
-            viewHolder.mBtIcon.setImageDrawable(dataHolder.mDwIcon);
+            viewHolder.mBtIcon.setImageDrawable(
+                    dataHolder.mIcon != null ?
+                            this.mIconHolder.getDrawable(dataHolder.mIcon) : null);
         }
         viewHolder.mTvName.setText(dataHolder.mName);
         if (viewHolder.mTvSummary != null) {
-            viewHolder.mTvSummary.setText(dataHolder.mSummary);
+            // The label of a package is known once its icon was loaded
+            String label = dataHolder.mApk ?
+                    ApkInfoCache.getInstance(getContext()).getCachedLabel(
+                            dataHolder.mImagePath) : null;
+            viewHolder.mTvSummary.setText(
+                    label != null ?
+                            label + "   " + dataHolder.mSummary : //$NON-NLS-1$
+                            dataHolder.mSummary);
         }
         if (viewHolder.mTvSize != null) {
             viewHolder.mTvSize.setText(dataHolder.mSize);
@@ -331,13 +463,13 @@ public class FileSystemObjectAdapter
             viewHolder.mBtInfo.setTag(Integer.valueOf(position));
 
             if (viewHolder.mHasSelectedBg == null
-                    || viewHolder.mHasSelectedBg != dataHolder.mSelected) {
-                String drawableId = dataHolder.mSelected
+                    || viewHolder.mHasSelectedBg.booleanValue() != selected) {
+                String drawableId = selected
                         ? "selectors_selected_drawable" //$NON-NLS-1$
                         : "selectors_deselected_drawable"; //$NON-NLS-1$
 
                 theme.setBackgroundDrawable(getContext(), v, drawableId);
-                viewHolder.mHasSelectedBg = dataHolder.mSelected;
+                viewHolder.mHasSelectedBg = Boolean.valueOf(selected);
             }
         }
 
@@ -345,6 +477,18 @@ public class FileSystemObjectAdapter
         return v;
     }
 
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void onMovedToScrapHeap(View view) {
+        // The row was scrolled off-screen. Its thumbnail is not needed anymore
+        ViewHolder viewHolder = (ViewHolder)view.getTag();
+        if (viewHolder != null && viewHolder.mBtIcon != null) {
+            ImageWorker.cancelWork(viewHolder.mBtIcon);
+        }
+    }
+
     /**
      * Method that returns if the item of the passed position is selected.
      *
@@ -352,7 +496,7 @@ public class FileSystemObjectAdapter
      * @return boolean If the item of the passed position is selected
      */
     public boolean isSelected(int position) {
-        return this.mData[position].mSelected;
+        return this.mSelectedItems.contains(getItem(position));
     }
 
     /**
@@ -371,60 +515,49 @@ public class FileSystemObjectAdapter
      * @param fso The file system object to select
      */
     private void toggleSelection(View v, FileSystemObject fso) {
-        if (this.mData != null) {
+        if (this.mDisposed || getPosition(fso) < 0) {
+            return;
+        }
+
+        //Select/Deselect the item
+        final Set<FileSystemObject> selectedItems =
+                FileSystemObjectAdapter.this.mSelectedItems;
+        boolean selected = !selectedItems.contains(fso);
+        if (v != null) {
             Theme theme = ThemeManager.getCurrentTheme(getContext());
-            int cc = this.mData.length;
-            for (int i = 0; i < cc; i++) {
-                DataHolder data = this.mData[i];
-                if (data.mName.compareTo(fso.getName()) == 0) {
-                    //Select/Deselect the item
-                    data.mSelected = !data.mSelected;
-                    if (v != null) {
-                        View viewParent = (View)v.getParent().getParent();
-
-                        viewParent.setSelected(data.mSelected);
-
-                        if (data.mSelected) {
-                            theme.setBackgroundDrawable(
-                                    getContext(),
-                                    viewParent,
-                                    "selectors_selected_drawable"); //$NON-NLS-1$
-                        } else {
-                            theme.setBackgroundDrawable(
-                                    getContext(),
-                                    viewParent,
-                                    "selectors_deselected_drawable"); //$NON-NLS-1$
-                        }
-                    }
+            View viewParent = (View)v.getParent().getParent();
 
-                    //Add or remove from the global selected items
-                    final List<FileSystemObject> selectedItems =
-                            FileSystemObjectAdapter.this.mSelectedItems;
-                    if (data.mSelected) {
-                        if (!selectedItems.contains(fso)) {
-                            selectedItems.add(fso);
-                        }
-                    } else {
-                        if (selectedItems.contains(fso)) {
-                            selectedItems.remove(fso);
-                        }
-                    }
+            viewParent.setSelected(selected);
 
-                    //Communicate event
-                    if (this.mOnSelectionChangedListener != null) {
-                        List<FileSystemObject> selection =
-                                new ArrayList<FileSystemObject>(selectedItems);
-                        this.mOnSelectionChangedListener.onSelectionChanged(selection);
-                    }
+            if (selected) {
+                theme.setBackgroundDrawable(
+                        getContext(),
+                        viewParent,
+                        "selectors_selected_drawable"); //$NON-NLS-1$
+            } else {
+                theme.setBackgroundDrawable(
+                        getContext(),
+                        viewParent,
+                        "selectors_deselected_drawable"); //$NON-NLS-1$
+            }
+        }
 
-                    // The internal structure was update, only super adapter need to be notified
-                    super.notifyDataSetChanged();
+        //Add or remove from the global selected items
+        if (selected) {
+            selectedItems.add(fso);
+        } else {
+            selectedItems.remove(fso);
+        }
 
-                    //Found
-                    return;
-                }
-            }
+        //Communicate event
+        if (this.mOnSelectionChangedListener != null) {
+            List<FileSystemObject> selection =
+                    new ArrayList<FileSystemObject>(selectedItems);
+            this.mOnSelectionChangedListener.onSelectionChanged(selection);
         }
+
+        // The internal structure was update, only super adapter need to be notified
+        super.notifyDataSetChanged();
     }
 
     /**
@@ -455,49 +588,29 @@ public class FileSystemObjectAdapter
      * @param select Indicates if select (true) or deselect (false) all items.
      */
     private void doSelectDeselectAllVisibleItems(boolean select) {
-        if (this.mData != null && this.mData.length > 0) {
+        int cc = getCount();
+        if (!this.mDisposed && cc > 0) {
             // Clear mSelectedItems.  Both deselect all and select all require a blank slate.
-            FileSystemObjectAdapter.this.mSelectedItems.clear();
-
-            Theme theme = ThemeManager.getCurrentTheme(getContext());
-            int cc = this.mData.length;
-            for (int i = 0; i < cc; i++) {
-                DataHolder data = this.mData[i];
-                if (data.mName.compareTo(FileHelper.PARENT_DIRECTORY) == 0) {
-                    // No select the parent directory
-                    continue;
-                }
-                data.mSelected = select;
-                if (data.mSelected) {
-                    data.mDwCheck =
-                            theme.getDrawable(
-                                    getContext(), "checkbox_selected_drawable"); //$NON-NLS-1$
-                } else {
-                    data.mDwCheck =
-                            theme.getDrawable(
-                                    getContext(), "checkbox_deselected_drawable"); //$NON-NLS-1$
-                }
-
-                //Add or remove from the global selected items
-                FileSystemObject fso = getItem(i);
-                final List<FileSystemObject> selectedItems =
-                        FileSystemObjectAdapter.this.mSelectedItems;
-                if (data.mSelected) {
-                    if (!selectedItems.contains(fso)) {
-                        selectedItems.add(fso);
-                    }
-                } else {
-                    if (selectedItems.contains(fso)) {
-                        selectedItems.remove(fso);
+            final Set<FileSystemObject> selectedItems =
+                    FileSystemObjectAdapter.this.mSelectedItems;
+            selectedItems.clear();
+
+            //Add to the global selected items
+            if (select) {
+                for (int i = 0; i < cc; i++) {
+                    FileSystemObject fso = getItem(i);
+                    if (fso instanceof ParentDirectory) {
+                        // No select the parent directory
+                        continue;
                     }
+                    selectedItems.add(fso);
                 }
             }
 
             //Communicate event
             if (this.mOnSelectionChangedListener != null) {
                 List<FileSystemObject> selection =
-                        new ArrayList<FileSystemObject>(
-                                FileSystemObjectAdapter.this.mSelectedItems);
+                        new ArrayList<FileSystemObject>(selectedItems);
                 this.mOnSelectionChangedListener.onSelectionChanged(selection);
             }
 
@@ -521,7 +634,10 @@ public class FileSystemObjectAdapter
      * @param selectedItems The selected items
      */
     public void setSelectedItems(List<FileSystemObject> selectedItems) {
-        this.mSelectedItems = selectedItems;
+        this.mSelectedItems = new LinkedHashSet<FileSystemObject>();
+        if (selectedItems != null) {
+            this.mSelectedItems.addAll(selectedItems);
+        }
     }
 
     public int getSelectedItemsCount() {
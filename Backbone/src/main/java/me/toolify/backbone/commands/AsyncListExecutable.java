@@ -0,0 +1,38 @@
+/*
+ * Copyright (C) 2013 BrandroidTools
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package me.toolify.backbone.commands;
+
+import me.toolify.backbone.model.FileSystemObject;
+
+import java.util.List;
+
+/**
+ * An interface that represents an executable for list a directory progressively.<br/>
+ * <br/>
+ * The files are returned as partial results in chunks (<code>List&lt;FileSystemObject&gt;</code>)
+ * while the directory is listed, so the first files can be displayed before the listing
+ * ends. The chunks are not sorted.
+ */
+public interface AsyncListExecutable extends AsyncResultExecutable {
+
+    /**
+     * Method that returns all the files listed.
+     *
+     * @return List<FileSystemObject> The files listed
+     */
+    List<FileSystemObject> getResult();
+}
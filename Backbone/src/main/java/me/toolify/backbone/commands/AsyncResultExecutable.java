@@ -55,6 +55,18 @@ public interface AsyncResultExecutable extends Executable {
         boolean onCancel();
     }
 
+    /**
+     * An interface that an {@link AsyncResultListener} can implement to be notified when
+     * the execution of the program finished completely. It's invoked after the checks of
+     * the result of the program, so any exception was already notified.
+     */
+    public interface OnFinishListener {
+        /**
+         * Invoked when the execution of the program finished completely
+         */
+        void onAsyncFinish();
+    }
+
     /**
      * Method that return if the command is cancelled.
      *
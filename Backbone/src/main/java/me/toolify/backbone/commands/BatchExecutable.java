@@ -0,0 +1,62 @@
+/*
+ * Copyright (C) 2013 BrandroidTools
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package me.toolify.backbone.commands;
+
+import java.util.List;
+
+/**
+ * An interface that represents an executable for execute a batch of synchronous
+ * executables in only one invocation of the console.<br/>
+ * <br/>
+ * The batch doesn't stop if an executable fails. The exception of every executable
+ * is stored, and it can be retrieved with {@link #getException(int)}. The result of every
+ * executable is retrieved from the executable itself.
+ */
+public interface BatchExecutable extends WritableExecutable {
+
+    /**
+     * Method that returns the executables of the batch.
+     *
+     * @return List<SyncResultExecutable> The executables of the batch
+     */
+    List<SyncResultExecutable> getExecutables();
+
+    /**
+     * Method that returns the exit code of an executable of the batch.
+     *
+     * @param index The index of the executable in the batch
+     * @return int The exit code of the executable, or -1 if the executable wasn't executed
+     */
+    int getExitCode(int index);
+
+    /**
+     * Method that returns the exception thrown by an executable of the batch.
+     *
+     * @param index The index of the executable in the batch
+     * @return Exception The exception thrown by the executable, or <code>null</code>
+     * if the executable was executed successfully
+     */
+    Exception getException(int index);
+
+    /**
+     * Method that returns if all the executables of the batch were executed successfully.
+     *
+     * @return Boolean If all the executables were executed successfully
+     */
+    @Override
+    Boolean getResult();
+}
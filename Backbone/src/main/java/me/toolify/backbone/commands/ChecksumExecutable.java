@@ -17,7 +17,11 @@
 package me.toolify.backbone.commands;
 
 /**
- * An interface that represents an executable for calculate checksum of file system objects.
+ * An interface that represents an executable for calculate checksum of file system objects.<br />
+ * <br />
+ * Partial results are the calculated digests (<code>String</code>), returned in the order
+ * of the {@link CHECKSUMS}. Implementations that can measure the calculation also return
+ * its progress as an <code>Integer</code> percentage.
  */
 public interface ChecksumExecutable extends AsyncResultExecutable {
 
@@ -32,13 +36,22 @@ public interface ChecksumExecutable extends AsyncResultExecutable {
         /**
          * SHA-1 digest algorithm
          */
-        SHA1
+        SHA1,
+        /**
+         * SHA-256 digest algorithm
+         */
+        SHA256,
+        /**
+         * CRC32 checksum
+         */
+        CRC32
     }
 
     /**
-     * Method that returns the calculated MD5 [0] and SHA-1 [1] digests
+     * Method that returns the calculated digests, indexed by the ordinal of its
+     * {@link CHECKSUMS} (MD5 [0], SHA-1 [1], ...). Digests not calculated are <code>null</code>
      *
-     * @return String[] The calculated MD5 [0] and SHA-1 [1] digests
+     * @return String[] The calculated digests
      */
     String[] getResult();
 
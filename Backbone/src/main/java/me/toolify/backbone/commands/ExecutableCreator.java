@@ -27,6 +27,8 @@ import me.toolify.backbone.model.Query;
 import me.toolify.backbone.model.User;
 import me.toolify.backbone.preferences.CompressionMode;
 
+import java.util.List;
+
 /**
  * A interface that defines methods for create {@link Executable} objects.
  */
@@ -267,6 +269,22 @@ public interface ExecutableCreator {
             throws CommandNotFoundException,
             NoSuchFileOrDirectory, InsufficientPermissionsException;
 
+    /**
+     * Method that creates an executable for list a directory progressively.
+     *
+     * @param src The directory where to do the listing
+     * @param asyncResultListener The listener where to return partial results
+     * @return AsyncListExecutable A {@link AsyncListExecutable} executable implementation
+     * reference
+     * @throws CommandNotFoundException If the executable can't be created
+     * @throws NoSuchFileOrDirectory If the file or directory was not found
+     * @throws InsufficientPermissionsException If an operation requires elevated permissions
+     */
+    AsyncListExecutable createAsyncListExecutable(
+            String src, AsyncResultListener asyncResultListener)
+            throws CommandNotFoundException,
+            NoSuchFileOrDirectory, InsufficientPermissionsException;
+
     /**
      * Method that creates an executable for retrieve information of a file
      *
@@ -456,6 +474,7 @@ public interface ExecutableCreator {
      * Method that creates an executable for write data to disk.
      *
      * @param file The file where to write the data
+     * @param length The number of bytes that will be written
      * @param asyncResultListener The listener where to return partial results
      * @return WriteExecutable A {@link WriteExecutable} executable implementation reference
      * @throws CommandNotFoundException If the executable can't be created
@@ -463,7 +482,7 @@ public interface ExecutableCreator {
      * @throws InsufficientPermissionsException If an operation requires elevated permissions
      */
     WriteExecutable createWriteExecutable(
-            String file, AsyncResultListener asyncResultListener)
+            String file, long length, AsyncResultListener asyncResultListener)
             throws CommandNotFoundException,
             NoSuchFileOrDirectory, InsufficientPermissionsException;
 
@@ -533,4 +552,34 @@ public interface ExecutableCreator {
             throws CommandNotFoundException,
             NoSuchFileOrDirectory, InsufficientPermissionsException;
 
+    /**
+     * Method that creates an executable for calculate the requested checksums of file
+     * system objects. The checksums that the implementation can't calculate are
+     * returned as <code>null</code>.
+     *
+     * @param src The source file
+     * @param checksums The checksums to calculate
+     * @param asyncResultListener The listener where to return partial results
+     * @return ChecksumExecutable A {@link ChecksumExecutable} executable implementation reference
+     * @throws CommandNotFoundException If the executable can't be created
+     * @throws NoSuchFileOrDirectory If the file or directory was not found
+     * @throws InsufficientPermissionsException If an operation requires elevated permissions
+     */
+    ChecksumExecutable createChecksumExecutable(
+            String src, ChecksumExecutable.CHECKSUMS[] checksums,
+            AsyncResultListener asyncResultListener)
+            throws CommandNotFoundException,
+            NoSuchFileOrDirectory, InsufficientPermissionsException;
+
+    /**
+     * Method that creates an executable for execute a batch of synchronous executables
+     * in only one invocation of the console.
+     *
+     * @param executables The executables of the batch (created by this creator)
+     * @return BatchExecutable A {@link BatchExecutable} executable implementation reference
+     * @throws CommandNotFoundException If the executable can't be created
+     */
+    BatchExecutable createBatchExecutable(List<SyncResultExecutable> executables)
+            throws CommandNotFoundException;
+
 }
@@ -16,6 +16,8 @@
 
 package me.toolify.backbone.commands;
 
+import me.toolify.backbone.model.CopyProgress;
+
 /**
  * An interface that represents an executable for move a file system object to
  * other file system object.
@@ -27,4 +29,12 @@ public interface MoveExecutable extends WritableExecutable {
      */
     @Override
     Boolean getResult();
+
+    /**
+     * Method that sets the progress of the operation, that the program must feed while
+     * the data is copied.
+     *
+     * @param progress The progress of the operation
+     */
+    void setProgress(CopyProgress progress);
 }
@@ -0,0 +1,235 @@
+/*
+ * Copyright (C) 2013 BrandroidTools
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package me.toolify.backbone.commands.java;
+
+import android.util.Log;
+
+import me.toolify.backbone.commands.AsyncListExecutable;
+import me.toolify.backbone.commands.AsyncResultListener;
+import me.toolify.backbone.console.ExecutionException;
+import me.toolify.backbone.console.InsufficientPermissionsException;
+import me.toolify.backbone.console.NoSuchFileOrDirectory;
+import me.toolify.backbone.model.FileSystemObject;
+import me.toolify.backbone.model.ParentDirectory;
+import me.toolify.backbone.util.FileHelper;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * A class for list the files of a directory progressively.<br/>
+ * <br/>
+ * The names of the directory are read at once, but the information of every file
+ * (the expensive part) is retrieved and returned in chunks.
+ */
+public class AsyncListCommand extends Program implements AsyncListExecutable {
+
+    private static final String TAG = "AsyncListCommand"; //$NON-NLS-1$
+
+    // The number of files returned in every partial result
+    private static final int CHUNK_SIZE = 256;
+
+    private final String mSrc;
+    private final AsyncResultListener mAsyncResultListener;
+    private final List<FileSystemObject> mFiles;
+
+    private boolean mCancelled;
+    private boolean mEnded;
+    private final Object mSync = new Object();
+
+    /**
+     * Constructor of <code>AsyncListCommand</code>.
+     *
+     * @param src The directory to be listed
+     * @param asyncResultListener The partial result listener
+     */
+    public AsyncListCommand(String src, AsyncResultListener asyncResultListener) {
+        super();
+        this.mSrc = src;
+        this.mAsyncResultListener = asyncResultListener;
+        this.mFiles = new ArrayList<FileSystemObject>();
+        this.mCancelled = false;
+        this.mEnded = false;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public boolean isAsynchronous() {
+        return true;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public List<FileSystemObject> getResult() {
+        return this.mFiles;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void execute()
+            throws InsufficientPermissionsException, NoSuchFileOrDirectory, ExecutionException {
+        if (isTrace()) {
+            Log.v(TAG, String.format("Listing %s", this.mSrc)); //$NON-NLS-1$
+        }
+        if (this.mAsyncResultListener != null) {
+            this.mAsyncResultListener.onAsyncStart();
+        }
+
+        File f = new File(this.mSrc);
+        if (!f.exists()) {
+            if (isTrace()) {
+                Log.v(TAG, "Result: FAIL. NoSuchFileOrDirectory"); //$NON-NLS-1$
+            }
+            if (this.mAsyncResultListener != null) {
+                this.mAsyncResultListener.onException(new NoSuchFileOrDirectory(this.mSrc));
+            }
+        } else {
+            List<FileSystemObject> chunk = new ArrayList<FileSystemObject>(CHUNK_SIZE);
+
+            // The parent directory goes first, if not is the root directory
+            if (this.mSrc.compareTo(FileHelper.ROOT_DIRECTORY) != 0) {
+                chunk.add(new ParentDirectory(f.getParent()));
+            }
+
+            File[] files = f.listFiles();
+            if (files != null) {
+                for (int i = 0; i < files.length; i++) {
+                    if (isStopped()) {
+                        break;
+                    }
+                    FileSystemObject fso = FileHelper.createFileSystemObject(files[i]);
+                    if (fso != null) {
+                        chunk.add(fso);
+                    }
+                    if (chunk.size() >= CHUNK_SIZE) {
+                        notifyPartialResult(chunk);
+                        chunk = new ArrayList<FileSystemObject>(CHUNK_SIZE);
+                    }
+                }
+            }
+            notifyPartialResult(chunk);
+        }
+
+        if (this.mAsyncResultListener != null) {
+            this.mAsyncResultListener.onAsyncEnd(isCancelled());
+        }
+        if (this.mAsyncResultListener != null) {
+            this.mAsyncResultListener.onAsyncExitCode(0);
+        }
+
+        if (isTrace()) {
+            Log.v(TAG, "Result: OK"); //$NON-NLS-1$
+        }
+    }
+
+    /**
+     * Method that adds a chunk of files to the result, and notifies it to the listener.
+     *
+     * @param chunk The chunk of files
+     */
+    private void notifyPartialResult(List<FileSystemObject> chunk) {
+        if (chunk.isEmpty()) {
+            return;
+        }
+        this.mFiles.addAll(chunk);
+        if (this.mAsyncResultListener != null) {
+            this.mAsyncResultListener.onPartialResult(chunk);
+        }
+    }
+
+    /**
+     * Method that returns if the listing must stop.
+     *
+     * @return boolean If the listing must stop
+     */
+    private boolean isStopped() {
+        synchronized (this.mSync) {
+            return this.mCancelled || this.mEnded;
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public boolean isCancelled() {
+        synchronized (this.mSync) {
+            return this.mCancelled;
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public boolean cancel() {
+        synchronized (this.mSync) {
+            this.mCancelled = true;
+        }
+        return true;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public boolean end() {
+        synchronized (this.mSync) {
+            this.mEnded = true;
+        }
+        return true;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void setOnEndListener(OnEndListener onEndListener) {
+        //Ignore. Java console don't use this
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void setOnCancelListener(OnCancelListener onCancelListener) {
+        //Ignore. Java console don't use this
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public boolean isCancellable() {
+        return true;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public AsyncResultListener getAsyncResultListener() {
+        return this.mAsyncResultListener;
+    }
+}
@@ -0,0 +1,151 @@
+/*
+ * Copyright (C) 2013 BrandroidTools
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package me.toolify.backbone.commands.java;
+
+import android.util.Log;
+
+import me.toolify.backbone.commands.BatchExecutable;
+import me.toolify.backbone.commands.SyncResultExecutable;
+import me.toolify.backbone.commands.WritableExecutable;
+import me.toolify.backbone.console.ExecutionException;
+import me.toolify.backbone.console.InsufficientPermissionsException;
+import me.toolify.backbone.console.NoSuchFileOrDirectory;
+import me.toolify.backbone.model.MountPoint;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+
+/**
+ * A class for execute a batch of synchronous programs.
+ */
+public class BatchCommand extends Program implements BatchExecutable {
+
+    private static final String TAG = "BatchCommand"; //$NON-NLS-1$
+
+    private final List<SyncResultExecutable> mExecutables;
+    private final int[] mExitCodes;
+    private final Exception[] mExceptions;
+    private Boolean mRet;
+
+    /**
+     * Constructor of <code>BatchCommand</code>.
+     *
+     * @param executables The programs of the batch (must be {@link Program} objects)
+     */
+    public BatchCommand(List<SyncResultExecutable> executables) {
+        super();
+        this.mExecutables = new ArrayList<SyncResultExecutable>(executables);
+        this.mExitCodes = new int[executables.size()];
+        this.mExceptions = new Exception[executables.size()];
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public Boolean getResult() {
+        return this.mRet;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void execute()
+            throws InsufficientPermissionsException, NoSuchFileOrDirectory, ExecutionException {
+        final int cc = this.mExecutables.size();
+        if (isTrace()) {
+            Log.v(TAG,
+                    String.format("Executing batch of %d programs", //$NON-NLS-1$
+                            Integer.valueOf(cc)));
+        }
+
+        Arrays.fill(this.mExitCodes, -1);
+        boolean ret = true;
+        for (int i = 0; i < cc; i++) {
+            Program program = (Program)this.mExecutables.get(i);
+            program.setTrace(isTrace());
+            program.setBufferSize(getBufferSize());
+            try {
+                program.execute();
+                this.mExitCodes[i] = 0;
+                this.mExceptions[i] = null;
+            } catch (Exception ex) {
+                this.mExitCodes[i] = 1;
+                this.mExceptions[i] = ex;
+                ret = false;
+            }
+        }
+        this.mRet = Boolean.valueOf(ret);
+
+        if (isTrace()) {
+            Log.v(TAG, String.format("Result: %s", this.mRet)); //$NON-NLS-1$
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public List<SyncResultExecutable> getExecutables() {
+        return this.mExecutables;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public int getExitCode(int index) {
+        return this.mExitCodes[index];
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public Exception getException(int index) {
+        return this.mExceptions[index];
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public MountPoint getSrcWritableMountPoint() {
+        for (SyncResultExecutable executable : this.mExecutables) {
+            if (executable instanceof WritableExecutable) {
+                return ((WritableExecutable)executable).getSrcWritableMountPoint();
+            }
+        }
+        return null;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public MountPoint getDstWritableMountPoint() {
+        for (SyncResultExecutable executable : this.mExecutables) {
+            if (executable instanceof WritableExecutable) {
+                return ((WritableExecutable)executable).getDstWritableMountPoint();
+            }
+        }
+        return null;
+    }
+}
@@ -29,18 +29,33 @@ import java.io.File;
 import java.io.FileInputStream;
 import java.io.InputStream;
 import java.security.MessageDigest;
+import java.util.Arrays;
 import java.util.Locale;
+import java.util.zip.CRC32;
 
 /**
- * A class for calculate MD5 and SHA-1 checksums of a file system object.<br />
+ * A class for calculate the checksums (MD5 and SHA-1 by default) of a file system
+ * object.<br />
  * <br />
- * Partial results are returned in order (MD5 -> SHA1)
+ * The file is read only once; every chunk read is fed to all the requested digests.
+ * Partial results are the progress of the calculation (percentage), and the digests
+ * in order (MD5 -> SHA1 -> SHA256 -> CRC32)
  */
 public class ChecksumCommand extends Program implements ChecksumExecutable {
 
     private static final String TAG = "ChecksumCommand"; //$NON-NLS-1$
 
+    /**
+     * The checksums calculated by default
+     */
+    public static final CHECKSUMS[] DEFAULT_CHECKSUMS = {CHECKSUMS.MD5, CHECKSUMS.SHA1};
+
+    // The minimum size of every chunk read from the file. Small reads waste time in
+    // syscalls, because the digests are fast
+    private static final int MIN_CHUNK_SIZE = 64 * 1024;
+
     private final File mSrc;
+    private final CHECKSUMS[] mTypes;
     private final String[] mChecksums;
     private final AsyncResultListener mAsyncResultListener;
 
@@ -55,9 +70,23 @@ public class ChecksumCommand extends Program implements ChecksumExecutable {
      */
     public ChecksumCommand(
             String src, AsyncResultListener asyncResultListener) {
+        this(src, DEFAULT_CHECKSUMS, asyncResultListener);
+    }
+
+    /**
+     * Constructor of <code>ChecksumCommand</code>.
+     *
+     * @param src The source file
+     * @param checksums The checksums to calculate
+     * @param asyncResultListener The partial result listener
+     */
+    public ChecksumCommand(
+            String src, CHECKSUMS[] checksums, AsyncResultListener asyncResultListener) {
         super();
         this.mAsyncResultListener = asyncResultListener;
-        this.mChecksums = new String[]{null, null};
+        this.mTypes = checksums.clone();
+        Arrays.sort(this.mTypes);
+        this.mChecksums = new String[CHECKSUMS.values().length];
         this.mSrc = new File(src);
     }
 
@@ -89,16 +118,13 @@ public class ChecksumCommand extends Program implements ChecksumExecutable {
             throw new NoSuchFileOrDirectory(this.mSrc.getAbsolutePath());
         }
 
-        CHECKSUMS checksum = CHECKSUMS.MD5;
         try {
             if (this.mAsyncResultListener != null) {
                 this.mAsyncResultListener.onAsyncStart();
             }
 
             // Calculate digests
-            calculateDigest(checksum);
-            checksum = CHECKSUMS.SHA1;
-            calculateDigest(checksum);
+            calculateDigests();
 
             if (this.mAsyncResultListener != null) {
                 this.mAsyncResultListener.onAsyncEnd(false);
@@ -126,8 +152,8 @@ public class ChecksumCommand extends Program implements ChecksumExecutable {
         } catch (Exception e) {
             Log.e(TAG,
                     String.format(
-                            "Fail to calculate %s checksum of file %s", //$NON-NLS-1$
-                            checksum.name(),
+                            "Fail to calculate %s checksums of file %s", //$NON-NLS-1$
+                            Arrays.toString(this.mTypes),
                             this.mSrc.getAbsolutePath()),
                     e);
             if (this.mAsyncResultListener != null) {
@@ -219,34 +245,74 @@ public class ChecksumCommand extends Program implements ChecksumExecutable {
     }
 
     /**
-     * Method that calculate a digest of the file for the source file
+     * Method that calculate all the requested digests of the source file in one pass
      *
-     * @param type The type of digest to obtain
      * @throws InterruptedException If the operation was cancelled
      * @throws Exception If an error occurs
      */
-    private void calculateDigest(CHECKSUMS type) throws InterruptedException, Exception {
+    private void calculateDigests() throws InterruptedException, Exception {
 
         InputStream is = null;
         try {
-            MessageDigest md = MessageDigest.getInstance(type.name());
+            int cc = this.mTypes.length;
+            MessageDigest[] mds = new MessageDigest[cc];
+            CRC32 crc = null;
+            for (int i = 0; i < cc; i++) {
+                if (this.mTypes[i] == CHECKSUMS.CRC32) {
+                    crc = new CRC32();
+                } else {
+                    mds[i] = MessageDigest.getInstance(getAlgorithm(this.mTypes[i]));
+                }
+            }
             is = new FileInputStream(this.mSrc);
 
-            // Start digesting
-            byte[] data = new byte[getBufferSize()];
+            // Start digesting. Every chunk is fed to all the digests
+            long size = this.mSrc.length();
+            long digested = 0;
+            int progress = -1;
+            int chunk = Math.max(getBufferSize(), MIN_CHUNK_SIZE);
+            byte[] data = new byte[chunk];
             int read = 0;
-            while ((read = is.read(data, 0, getBufferSize())) != -1) {
+            while ((read = is.read(data, 0, chunk)) != -1) {
                 checkCancelled();
-                md.update(data, 0, read);
+                for (int i = 0; i < cc; i++) {
+                    if (mds[i] != null) {
+                        mds[i].update(data, 0, read);
+                    }
+                }
+                if (crc != null) {
+                    crc.update(data, 0, read);
+                }
+
+                // Report the progress only when the percentage changes
+                digested += read;
+                if (size > 0) {
+                    int current = (int)Math.min(100, (digested * 100) / size);
+                    if (current != progress) {
+                        progress = current;
+                        if (this.mAsyncResultListener != null) {
+                            this.mAsyncResultListener.onPartialResult(
+                                    Integer.valueOf(progress));
+                        }
+                    }
+                }
             }
             checkCancelled();
 
             // Finally digest
-            this.mChecksums[type.ordinal()] =
-                    HexDump.toHexString(md.digest()).toLowerCase(Locale.ROOT);
-            checkCancelled();
-            if (this.mAsyncResultListener != null) {
-                this.mAsyncResultListener.onPartialResult(this.mChecksums[type.ordinal()]);
+            for (int i = 0; i < cc; i++) {
+                int pos = this.mTypes[i].ordinal();
+                if (mds[i] != null) {
+                    this.mChecksums[pos] =
+                            HexDump.toHexString(mds[i].digest()).toLowerCase(Locale.ROOT);
+                } else {
+                    this.mChecksums[pos] = String.format("%08x", //$NON-NLS-1$
+                            Long.valueOf(crc.getValue()));
+                }
+                checkCancelled();
+                if (this.mAsyncResultListener != null) {
+                    this.mAsyncResultListener.onPartialResult(this.mChecksums[pos]);
+                }
             }
 
         } finally {
@@ -258,6 +324,23 @@ public class ChecksumCommand extends Program implements ChecksumExecutable {
         }
     }
 
+    /**
+     * Method that returns the name of the digest algorithm of a checksum
+     *
+     * @param type The type of digest
+     * @return String The name of the algorithm
+     */
+    private static String getAlgorithm(CHECKSUMS type) {
+        switch (type) {
+            case SHA1:
+                return "SHA-1"; //$NON-NLS-1$
+            case SHA256:
+                return "SHA-256"; //$NON-NLS-1$
+            default:
+                return type.name();
+        }
+    }
+
     /**
      * Checks if the operation was cancelled
      *
@@ -22,6 +22,7 @@ import me.toolify.backbone.commands.CopyExecutable;
 import me.toolify.backbone.console.ExecutionException;
 import me.toolify.backbone.console.InsufficientPermissionsException;
 import me.toolify.backbone.console.NoSuchFileOrDirectory;
+import me.toolify.backbone.model.CopyProgress;
 import me.toolify.backbone.model.MountPoint;
 import me.toolify.backbone.util.FileHelper;
 import me.toolify.backbone.util.MountPointHelper;
@@ -38,6 +39,7 @@ public class CopyCommand extends Program implements CopyExecutable {
 
     private final String mSrc;
     private final String mDst;
+    private CopyProgress mProgress;
 
     /**
      * Constructor of <code>CopyCommand</code>.
@@ -59,6 +61,14 @@ public class CopyCommand extends Program implements CopyExecutable {
         return Boolean.TRUE;
     }
 
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void setProgress(CopyProgress progress) {
+        this.mProgress = progress;
+    }
+
     /**
      * {@inheritDoc}
      */
@@ -81,7 +91,7 @@ public class CopyCommand extends Program implements CopyExecutable {
         }
 
         //Copy recursively
-        if (!FileHelper.copyRecursive(s, d, getBufferSize())) {
+        if (!FileHelper.copyRecursive(s, d, getBufferSize(), this.mProgress)) {
             if (isTrace()) {
                 Log.v(TAG, "Result: FAIL. InsufficientPermissionsException"); //$NON-NLS-1$
             }
@@ -26,26 +26,53 @@ import me.toolify.backbone.console.NoSuchFileOrDirectory;
 import me.toolify.backbone.model.FileSystemObject;
 import me.toolify.backbone.model.Query;
 import me.toolify.backbone.util.FileHelper;
+import me.toolify.backbone.util.ParallelWalker;
 import me.toolify.backbone.util.SearchHelper;
 
 import java.io.File;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Deque;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.regex.Pattern;
 
 /**
- * A class for search files.
+ * A class for search files.<br/>
+ * <br/>
+ * The directory is walked in parallel by a {@link ParallelWalker}. Every walker uses an
+ * explicit stack instead of recursion. The matches are collected and notified to the listener in batches.
  */
 public class FindCommand extends Program implements FindExecutable {
 
     private static final String TAG = "FindCommand"; //$NON-NLS-1$
 
+    /**
+     * Value of the maximum number of results that means no limit.
+     */
+    public static final int NO_LIMIT = -1;
+
+    // The number of matches that forces a partial result notification
+    private static final int BATCH_SIZE = 64;
+    // The maximum interval between partial result notifications
+    private static final long PROGRESS_INTERVAL = 250L;
+
     private final String mDirectory;
     private final String[] mQueryRegExp;
+    private final Pattern[] mQueryPatterns;
+    private final int mMaxResults;
     private final AsyncResultListener mAsyncResultListener;
 
-    private boolean mCancelled;
-    private boolean mEnded;
+    private volatile boolean mCancelled;
+    private volatile boolean mEnded;
+    private volatile boolean mLimitReached;
     private final Object mSync = new Object();
 
+    private ParallelWalker mWalker;
+    private final AtomicInteger mResults = new AtomicInteger();
+    private final List<FileSystemObject> mMatches = new ArrayList<FileSystemObject>();
+
     /**
      * Constructor of <code>FindCommand</code>.
      *
@@ -54,12 +81,29 @@ public class FindCommand extends Program implements FindExecutable {
      * @param asyncResultListener The partial result listener
      */
     public FindCommand(String directory, Query query, AsyncResultListener asyncResultListener) {
+        this(directory, query, asyncResultListener, NO_LIMIT);
+    }
+
+    /**
+     * Constructor of <code>FindCommand</code>.
+     *
+     * @param directory The absolute directory where start the search
+     * @param query The terms to be searched
+     * @param asyncResultListener The partial result listener
+     * @param maxResults The maximum number of results. The search ends when the
+     * limit is reached. {@link #NO_LIMIT} for no limit.
+     */
+    public FindCommand(String directory, Query query,
+            AsyncResultListener asyncResultListener, int maxResults) {
         super();
         this.mDirectory = directory;
         this.mQueryRegExp = createRegexp(directory, query);
+        this.mQueryPatterns = createPatterns(this.mQueryRegExp);
+        this.mMaxResults = maxResults;
         this.mAsyncResultListener = asyncResultListener;
         this.mCancelled = false;
         this.mEnded = false;
+        this.mLimitReached = false;
     }
 
     /**
@@ -105,7 +149,12 @@ public class FindCommand extends Program implements FindExecutable {
         }
 
         // Find the data
-        findRecursive(f);
+        findParallel(f);
+
+        synchronized (this.mSync) {
+            this.mEnded = true;
+            this.mSync.notifyAll();
+        }
 
         if (this.mAsyncResultListener != null) {
             this.mAsyncResultListener.onAsyncEnd(this.mCancelled);
@@ -120,50 +169,99 @@ public class FindCommand extends Program implements FindExecutable {
     }
 
     /**
-     * Method that search files recursively
+     * Method that search files in parallel. This method blocks until all the
+     * walkers ends, and notifies the partial results meanwhile.
      *
      * @param folder The folder where to start the search
      */
-    private void findRecursive(File folder) {
-        // Obtains the files and folders of the folders
-        File[] files = folder.listFiles();
-        if (files != null) {
-            int cc = files.length;
-            for (int i = 0; i < cc; i++) {
-                if (files[i].isDirectory()) {
-                    findRecursive(files[i]);
-                }
+    private void findParallel(File folder) {
+        this.mWalker = new ParallelWalker(new ParallelWalker.OnWalkListener() {
+            @Override
+            public void onWalk(File subtree) {
+                walk(subtree);
+            }
 
-                // Check if the file or folder matches the regexp
-                try {
-                    int ccc = this.mQueryRegExp.length;
-                    for (int j = 0; j < ccc; j++) {
-                        if (files[i].getName().matches(this.mQueryRegExp[j])) {
-                            FileSystemObject fso =
-                                    FileHelper.createFileSystemObject(files[i]);
-                            if (fso != null) {
-                                if (isTrace()) {
-                                    Log.v(TAG, String.valueOf(fso));
-                                }
-                                if (this.mAsyncResultListener != null) {
-                                    this.mAsyncResultListener.onPartialResult(fso);
-                                }
-                            }
-                        }
-                    }
-                } catch (Exception e) {/**NON-BLOCK**/}
+            @Override
+            public void onProgress() {
+                notifyPartialResult();
+            }
+        }, PROGRESS_INTERVAL);
+        if (!this.mWalker.walk(folder)) {
+            // Stop the walkers
+            this.mCancelled = true;
+        }
+    }
 
-                // Check if the process was cancelled
-                try {
-                    synchronized (this.mSync) {
-                        if (this.mCancelled  || this.mEnded) {
-                            this.mSync.notify();
-                            break;
-                        }
-                    }
-                } catch (Exception e) {/**NON BLOCK**/}
+    /**
+     * Method that returns if the walkers must stop.
+     *
+     * @return boolean If the walkers must stop
+     */
+    boolean isStopped() {
+        return this.mCancelled || this.mEnded || this.mLimitReached;
+    }
+
+    /**
+     * Method that checks if the name of a file matches the query.
+     *
+     * @param name The name of the file
+     * @return boolean If the name matches any of the terms of the query
+     */
+    boolean matches(String name) {
+        int cc = this.mQueryPatterns.length;
+        for (int i = 0; i < cc; i++) {
+            if (this.mQueryPatterns[i].matcher(name).matches()) {
+                return true;
             }
         }
+        return false;
+    }
+
+    /**
+     * Method that adds a match to the pending matches, and checks the limit of results.
+     *
+     * @param fso The file system object that matches the query
+     */
+    void addMatch(FileSystemObject fso) {
+        int results = this.mResults.incrementAndGet();
+        if (this.mMaxResults != NO_LIMIT && results > this.mMaxResults) {
+            this.mLimitReached = true;
+            return;
+        }
+        if (isTrace()) {
+            Log.v(TAG, String.valueOf(fso));
+        }
+        boolean notify = false;
+        synchronized (this.mMatches) {
+            this.mMatches.add(fso);
+            notify = this.mMatches.size() >= BATCH_SIZE;
+        }
+        if (this.mMaxResults != NO_LIMIT && results == this.mMaxResults) {
+            this.mLimitReached = true;
+            notify = true;
+        }
+        if (notify) {
+            this.mWalker.requestProgress();
+        }
+    }
+
+    /**
+     * Method that notifies the pending matches to the listener.
+     */
+    private void notifyPartialResult() {
+        List<FileSystemObject> partial = null;
+        synchronized (this.mMatches) {
+            if (this.mMatches.isEmpty()) {
+                return;
+            }
+            partial = new ArrayList<FileSystemObject>(this.mMatches);
+            this.mMatches.clear();
+        }
+
+        //If a listener is defined, then send the partial result
+        if (this.mAsyncResultListener != null) {
+            this.mAsyncResultListener.onPartialResult(partial);
+        }
     }
 
     /**
@@ -171,9 +269,7 @@ public class FindCommand extends Program implements FindExecutable {
      */
     @Override
     public boolean isCancelled() {
-        synchronized (this.mSync) {
-            return this.mCancelled;
-        }
+        return this.mCancelled;
     }
 
     /**
@@ -183,6 +279,10 @@ public class FindCommand extends Program implements FindExecutable {
     public boolean cancel() {
         try {
             synchronized (this.mSync) {
+                if (this.mEnded) {
+                    this.mCancelled = true;
+                    return true;
+                }
                 this.mCancelled = true;
                 this.mSync.wait(5000L);
             }
@@ -252,4 +352,67 @@ public class FindCommand extends Program implements FindExecutable {
         }
         return args;
     }
+
+    /**
+     * Method that compiles the regexp of this command, so they are not compiled for
+     * every file.
+     *
+     * @param regexps The regexp for filtering files
+     * @return Pattern[] The compiled patterns
+     */
+    private static Pattern[] createPatterns(String[] regexps) {
+        Pattern[] patterns = new Pattern[regexps.length];
+        int cc = regexps.length;
+        for (int i = 0; i < cc; i++) {
+            patterns[i] = Pattern.compile(regexps[i]);
+        }
+        return patterns;
+    }
+
+    /**
+     * Method that walks a subtree looking for files that matches the query. The
+     * subtree is walked with an explicit stack, so deep trees don't overflow the
+     * stack of the thread. Subfolders are walked in a new walker while there are
+     * idle walkers.
+     *
+     * @param folder The folder where the subtree starts
+     */
+    void walk(File folder) {
+        final ParallelWalker walker = this.mWalker;
+        Deque<File> folders = new ArrayDeque<File>();
+        folders.push(folder);
+        while (!folders.isEmpty()) {
+            // Obtains the files and folders of the folders
+            File[] files = folders.pop().listFiles();
+            if (files == null) {
+                continue;
+            }
+            int cc = files.length;
+            for (int i = 0; i < cc; i++) {
+                // Check if the process was cancelled
+                if (isStopped()) {
+                    return;
+                }
+
+                File file = files[i];
+                if (file.isDirectory()) {
+                    if (walker.isSplitRequired()) {
+                        walker.walkAsync(file);
+                    } else {
+                        folders.push(file);
+                    }
+                }
+
+                // Check if the file or folder matches the regexp
+                try {
+                    if (matches(file.getName())) {
+                        FileSystemObject fso = FileHelper.createFileSystemObject(file);
+                        if (fso != null) {
+                            addMatch(fso);
+                        }
+                    }
+                } catch (Exception e) {/**NON-BLOCK**/}
+            }
+        }
+    }
 }
@@ -24,26 +24,48 @@ import me.toolify.backbone.console.ExecutionException;
 import me.toolify.backbone.console.InsufficientPermissionsException;
 import me.toolify.backbone.console.NoSuchFileOrDirectory;
 import me.toolify.backbone.model.FolderUsage;
+import me.toolify.backbone.util.FileHelper;
+import me.toolify.backbone.util.FolderUsageIndex;
 import me.toolify.backbone.util.MimeTypeHelper;
 import me.toolify.backbone.util.MimeTypeHelper.MimeTypeCategory;
+import me.toolify.backbone.util.ParallelWalker;
 
 import java.io.File;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
 
 /**
- * A class for retrieve the disk usage of a folder.
+ * A class for retrieve the disk usage of a folder.<br/>
+ * <br/>
+ * The folder is walked in parallel by a {@link ParallelWalker}. Every walker computes a
+ * partial usage of the subtrees it walks, and merges it with the total usage from time
+ * to time, so the walkers don't contend for every file.<br/>
+ * <br/>
+ * The usage of every folder is kept in the {@link FolderUsageIndex}, so only the folders
+ * that changed since the last computation are listed again.
  */
 public class FolderUsageCommand extends Program implements FolderUsageExecutable {
 
     private static final String TAG = "FolderUsage"; //$NON-NLS-1$
 
+    // The number of entries that a walker computes before merge with the total usage
+    private static final int MERGE_THRESHOLD = 256;
+    // The interval between partial result notifications
+    private static final long PROGRESS_INTERVAL = 250L;
+
     private final String mDirectory;
     private final AsyncResultListener mAsyncResultListener;
     private final FolderUsage mFolderUsage;
 
-    private boolean mCancelled;
-    private boolean mEnded;
+    private volatile boolean mCancelled;
+    private volatile boolean mEnded;
     private final Object mSync = new Object();
 
+    private FolderUsageIndex mIndex;
+    private ParallelWalker mWalker;
+
     /**
      * Constructor of <code>FolderUsageCommand</code>.
      *
@@ -110,12 +132,16 @@ public class FolderUsageCommand extends Program implements FolderUsageExecutable
             }
         }
 
-        // Compute data recursively
-        computeRecursive(f);
+        // Compute data in parallel, and save the index for the next computation
+        this.mIndex = FolderUsageIndex.getInstance();
+        computeParallel(f);
+        if (this.mIndex != null) {
+            this.mIndex.save();
+        }
 
         synchronized (this.mSync) {
             this.mEnded = true;
-            this.mSync.notify();
+            this.mSync.notifyAll();
         }
 
         if (this.mAsyncResultListener != null) {
@@ -131,54 +157,61 @@ public class FolderUsageCommand extends Program implements FolderUsageExecutable
     }
 
     /**
-     * Method that computes the folder usage recursively
+     * Method that computes the folder usage in parallel. This method blocks until all
+     * the walkers ends, and notifies the partial results meanwhile.
      *
      * @param folder The folder where to start the computation
      */
-    private void computeRecursive(File folder) {
-        // Obtains the files and folders of the folders
-        try {
-            File[] files = folder.listFiles();
-            int c = 0;
-            if (files != null) {
-                int cc = files.length;
-                for (int i = 0; i < cc; i++) {
-                    if (files[i].isDirectory()) {
-                        this.mFolderUsage.addFolder();
-                        computeRecursive(files[i]);
-                    } else {
-                        this.mFolderUsage.addFile();
-                        // Compute statistics and size
-                        MimeTypeCategory category =
-                                MimeTypeHelper.getCategory(null, files[i]);
-                        this.mFolderUsage.addFileToCategory(category);
-                        this.mFolderUsage.addSize(files[i].length());
-                    }
-
-                    // Partial notification
-                    if (c % 5 == 0) {
-                        //If a listener is defined, then send the partial result
-                        if (getAsyncResultListener() != null) {
-                            getAsyncResultListener().onPartialResult(this.mFolderUsage);
-                        }
-                    }
+    private void computeParallel(File folder) {
+        this.mWalker = new ParallelWalker(new ParallelWalker.OnWalkListener() {
+            @Override
+            public void onWalk(File subtree) {
+                new Walker().run(subtree);
+            }
 
-                    // Check if the process was cancelled
-                    try {
-                        synchronized (this.mSync) {
-                            if (this.mCancelled  || this.mEnded) {
-                                this.mSync.notify();
-                                break;
-                            }
-                        }
-                    } catch (Exception e) {/**NON BLOCK**/}
-                }
+            @Override
+            public void onProgress() {
+                notifyPartialResult();
             }
-        } finally {
-            //If a listener is defined, then send the partial result
-            if (getAsyncResultListener() != null) {
-                getAsyncResultListener().onPartialResult(this.mFolderUsage);
+        }, PROGRESS_INTERVAL);
+        if (!this.mWalker.walk(folder)) {
+            // Stop the walkers
+            this.mCancelled = true;
+        }
+    }
+
+    /**
+     * Method that returns if the walkers must stop.
+     *
+     * @return boolean If the walkers must stop
+     */
+    boolean isStopped() {
+        return this.mCancelled || this.mEnded;
+    }
+
+    /**
+     * Method that merges a partial usage with the total usage.
+     *
+     * @param partial The partial usage
+     */
+    void merge(FolderUsage partial) {
+        synchronized (this.mFolderUsage) {
+            this.mFolderUsage.merge(partial);
+        }
+    }
+
+    /**
+     * Method that notifies the current usage to the listener. The listener receives
+     * a snapshot, because the walkers are still merging with the total usage.
+     */
+    private void notifyPartialResult() {
+        //If a listener is defined, then send the partial result
+        if (getAsyncResultListener() != null) {
+            FolderUsage snapshot = new FolderUsage(this.mDirectory);
+            synchronized (this.mFolderUsage) {
+                snapshot.merge(this.mFolderUsage);
             }
+            getAsyncResultListener().onPartialResult(snapshot);
         }
     }
 
@@ -187,9 +220,7 @@ public class FolderUsageCommand extends Program implements FolderUsageExecutable
      */
     @Override
     public boolean isCancelled() {
-        synchronized (this.mSync) {
-            return this.mCancelled;
-        }
+        return this.mCancelled;
     }
 
     /**
@@ -255,4 +286,145 @@ public class FolderUsageCommand extends Program implements FolderUsageExecutable
     public AsyncResultListener getAsyncResultListener() {
         return this.mAsyncResultListener;
     }
+
+    /**
+     * A class that walks a subtree and computes its partial usage.
+     */
+    private class Walker {
+
+        private FolderUsage mPartial;
+        private int mEntries;
+
+        /**
+         * Constructor of <code>Walker</code>.
+         */
+        Walker() {
+            super();
+            this.mPartial = new FolderUsage(FolderUsageCommand.this.mDirectory);
+            this.mEntries = 0;
+        }
+
+        /**
+         * Method that walks a subtree, and merges its usage with the total usage.
+         *
+         * @param folder The folder where the subtree starts
+         */
+        void run(File folder) {
+            try {
+                walk(folder);
+            } finally {
+                merge(this.mPartial);
+            }
+        }
+
+        /**
+         * Method that walks a subtree iteratively (a deep tree can't overflow the stack).
+         * Subfolders are walked in a new walker while there are idle walkers.
+         *
+         * @param root The folder where the subtree starts
+         */
+        private void walk(File root) {
+            final FolderUsageIndex index = FolderUsageCommand.this.mIndex;
+            Deque<File> pending = new ArrayDeque<File>();
+            pending.push(root);
+            while (!pending.isEmpty()) {
+                // Check if the process was cancelled
+                if (isStopped()) {
+                    return;
+                }
+
+                // Use the index if the folder didn't change
+                final File folder = pending.pop();
+                final String path = folder.getAbsolutePath();
+                final long lastModified = folder.lastModified();
+                FolderUsageIndex.Entry entry =
+                        index != null ? index.get(path, lastModified) : null;
+                if (entry != null) {
+                    entry.addTo(this.mPartial);
+                    String[] folders = entry.getFolders();
+                    int cc = folders.length;
+                    for (int i = 0; i < cc; i++) {
+                        pushFolder(pending, new File(folder, folders[i]));
+                    }
+                    continue;
+                }
+
+                // Obtains the files and folders of the folders
+                File[] files = folder.listFiles();
+                if (files == null) {
+                    continue;
+                }
+                MimeTypeCategory[] categories = MimeTypeCategory.values();
+                int[] stats = new int[categories.length];
+                List<String> folders = new ArrayList<String>();
+                int numberOfFiles = 0;
+                long size = 0;
+                int cc = files.length;
+                for (int i = 0; i < cc; i++) {
+                    // Check if the process was cancelled
+                    if (isStopped()) {
+                        return;
+                    }
+
+                    File file = files[i];
+                    if (file.isDirectory()) {
+                        this.mPartial.addFolder();
+                        folders.add(file.getName());
+                        pushFolder(pending, file);
+                    } else {
+                        this.mPartial.addFile();
+                        // Compute statistics and size (the file is known to be not a
+                        // directory)
+                        MimeTypeCategory category =
+                                MimeTypeHelper.getCategoryFromExt(
+                                        null, FileHelper.getExtension(file.getName()));
+                        this.mPartial.addFileToCategory(category);
+                        long length = file.length();
+                        this.mPartial.addSize(length);
+                        stats[category.ordinal()]++;
+                        numberOfFiles++;
+                        size += length;
+                        onEntryComputed();
+                    }
+                }
+
+                // Index the folder (only if it was computed completely)
+                if (index != null && !isStopped()) {
+                    index.put(path, new FolderUsageIndex.Entry(
+                            lastModified, numberOfFiles, size, stats,
+                            folders.toArray(new String[folders.size()])));
+                }
+            }
+        }
+
+        /**
+         * Method that adds a subfolder to the pending folders of this walker, or walks
+         * it in a new walker.
+         *
+         * @param pending The pending folders of this walker
+         * @param folder The subfolder to walk
+         */
+        private void pushFolder(Deque<File> pending, File folder) {
+            final ParallelWalker walker = FolderUsageCommand.this.mWalker;
+            if (walker.isSplitRequired()) {
+                walker.walkAsync(folder);
+            } else {
+                pending.push(folder);
+            }
+            onEntryComputed();
+        }
+
+        /**
+         * Method that accounts a computed entry, and merges the partial usage with the
+         * total usage every {@link #MERGE_THRESHOLD} entries.
+         */
+        private void onEntryComputed() {
+            this.mEntries++;
+            if (this.mEntries >= MERGE_THRESHOLD) {
+                merge(this.mPartial);
+                this.mPartial = new FolderUsage(FolderUsageCommand.this.mDirectory);
+                this.mEntries = 0;
+            }
+        }
+    }
 }
@@ -17,7 +17,9 @@
 package me.toolify.backbone.commands.java;
 
 import me.toolify.backbone.R;
+import me.toolify.backbone.commands.AsyncListExecutable;
 import me.toolify.backbone.commands.AsyncResultListener;
+import me.toolify.backbone.commands.BatchExecutable;
 import me.toolify.backbone.commands.ChangeOwnerExecutable;
 import me.toolify.backbone.commands.ChangePermissionsExecutable;
 import me.toolify.backbone.commands.ChecksumExecutable;
@@ -48,6 +50,7 @@ import me.toolify.backbone.commands.ReadExecutable;
 import me.toolify.backbone.commands.ResolveLinkExecutable;
 import me.toolify.backbone.commands.SIGNAL;
 import me.toolify.backbone.commands.SendSignalExecutable;
+import me.toolify.backbone.commands.SyncResultExecutable;
 import me.toolify.backbone.commands.UncompressExecutable;
 import me.toolify.backbone.commands.WriteExecutable;
 import me.toolify.backbone.console.CommandNotFoundException;
@@ -59,6 +62,8 @@ import me.toolify.backbone.model.Query;
 import me.toolify.backbone.model.User;
 import me.toolify.backbone.preferences.CompressionMode;
 
+import java.util.List;
+
 /**
  * A class for create shell {@link "Executable"} objects.
  */
@@ -230,6 +235,16 @@ public class JavaExecutableCreator implements ExecutableCreator {
         return new ListCommand(src, LIST_MODE.DIRECTORY);
     }
 
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public AsyncListExecutable createAsyncListExecutable(
+            String src, AsyncResultListener asyncResultListener)
+            throws CommandNotFoundException {
+        return new AsyncListCommand(src, asyncResultListener);
+    }
+
     /**
      * {@inheritDoc}
      */
@@ -353,7 +368,7 @@ public class JavaExecutableCreator implements ExecutableCreator {
      */
     @Override
     public WriteExecutable createWriteExecutable(
-            String file, AsyncResultListener asyncResultListener)
+            String file, long length, AsyncResultListener asyncResultListener)
             throws CommandNotFoundException {
         return new WriteCommand(file, asyncResultListener);
     }
@@ -401,4 +416,29 @@ public class JavaExecutableCreator implements ExecutableCreator {
         return new ChecksumCommand(src, asyncResultListener);
     }
 
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public ChecksumExecutable createChecksumExecutable(
+            String src, ChecksumExecutable.CHECKSUMS[] checksums,
+            AsyncResultListener asyncResultListener)
+            throws CommandNotFoundException {
+        return new ChecksumCommand(src, checksums, asyncResultListener);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public BatchExecutable createBatchExecutable(List<SyncResultExecutable> executables)
+            throws CommandNotFoundException {
+        for (SyncResultExecutable executable : executables) {
+            if (!(executable instanceof Program)) {
+                throw new CommandNotFoundException("executable not instanceof Program"); //$NON-NLS-1$
+            }
+        }
+        return new BatchCommand(executables);
+    }
+
 }
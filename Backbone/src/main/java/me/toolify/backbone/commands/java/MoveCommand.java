@@ -22,6 +22,7 @@ import me.toolify.backbone.commands.MoveExecutable;
 import me.toolify.backbone.console.ExecutionException;
 import me.toolify.backbone.console.InsufficientPermissionsException;
 import me.toolify.backbone.console.NoSuchFileOrDirectory;
+import me.toolify.backbone.model.CopyProgress;
 import me.toolify.backbone.model.MountPoint;
 import me.toolify.backbone.util.FileHelper;
 import me.toolify.backbone.util.MountPointHelper;
@@ -38,6 +39,7 @@ public class MoveCommand extends Program implements MoveExecutable {
 
     private final String mSrc;
     private final String mDst;
+    private CopyProgress mProgress;
 
     /**
      * Constructor of <code>MoveCommand</code>.
@@ -59,6 +61,14 @@ public class MoveCommand extends Program implements MoveExecutable {
         return Boolean.TRUE;
     }
 
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void setProgress(CopyProgress progress) {
+        this.mProgress = progress;
+    }
+
     /**
      * {@inheritDoc}
      */
@@ -81,7 +91,7 @@ public class MoveCommand extends Program implements MoveExecutable {
 
         //Move or copy recursively
         if (d.exists()) {
-            if (!FileHelper.copyRecursive(s, d, getBufferSize())) {
+            if (!FileHelper.copyRecursive(s, d, getBufferSize(), this.mProgress)) {
                 if (isTrace()) {
                     Log.v(TAG, "Result: FAIL. InsufficientPermissionsException"); //$NON-NLS-1$
                 }
@@ -95,7 +105,7 @@ public class MoveCommand extends Program implements MoveExecutable {
         } else {
             // Move between filesystem is not allow. If rename fails then use copy operation
             if (!s.renameTo(d)) {
-                if (!FileHelper.copyRecursive(s, d, getBufferSize())) {
+                if (!FileHelper.copyRecursive(s, d, getBufferSize(), this.mProgress)) {
                     if (isTrace()) {
                         Log.v(TAG, "Result: FAIL. InsufficientPermissionsException"); //$NON-NLS-1$
                     }
@@ -106,6 +116,9 @@ public class MoveCommand extends Program implements MoveExecutable {
                         Log.v(TAG, "Result: OK. WARNING. Source not deleted."); //$NON-NLS-1$
                     }
                 }
+            } else if (this.mProgress != null) {
+                // The rename doesn't transfer data, so report the moved tree at once
+                this.mProgress.addTree(d);
             }
         }
 
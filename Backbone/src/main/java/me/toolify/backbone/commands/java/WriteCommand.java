@@ -29,6 +29,10 @@ import java.io.File;
 import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.OutputStream;
+import java.lang.reflect.Field;
+import java.lang.reflect.Method;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
 
 /**
  * A class for write data to disk.<br/>
@@ -36,16 +40,31 @@ import java.io.OutputStream;
  * User MUST call the {@link #createOutputStream()} to get the output stream where
  * write the data.<br/>. When no more exist then user MUST call the onEnd method
  * of the asynchronous listener.<br/>
+ * <br/>
+ * The data is written through a file channel to a temporary file in the folder of the
+ * file, and the temporary file replaces the file when the write ends. So a failed or
+ * cancelled write never leaves a truncated file. The file is written in place when its
+ * mode and owner can't be preserved in the temporary file, or when it has hard links
+ * (the replace would break them).
  */
 public class WriteCommand extends Program implements WriteExecutable {
 
     private static final String TAG = "WriteCommand"; //$NON-NLS-1$
 
+    private static final String TEMP_SUFFIX = ".tmp"; //$NON-NLS-1$
+
+    // The permission bits of the mode of a file (without the type)
+    private static final int MODE_MASK = 07777;
+
     private final String mFile;
+    private File mTarget;
+    private File mTemp;
+    private FileChannel mChannel;
     private BufferedOutputStream mBuffer;
     private final AsyncResultListener mAsyncResultListener;
 
     private boolean mCancelled;
+    private boolean mEnded;
     private final Object mSync = new Object();
 
     private static final long TIMEOUT = 1000L;
@@ -65,6 +84,7 @@ public class WriteCommand extends Program implements WriteExecutable {
         this.mFile = file;
         this.mAsyncResultListener = asyncResultListener;
         this.mCancelled = false;
+        this.mEnded = false;
         this.mReady = false;
     }
 
@@ -90,9 +110,31 @@ public class WriteCommand extends Program implements WriteExecutable {
                     } catch (Exception e) {/**NON BLOCK**/}
                 }
             }
+
+            // Resolve the links, so the link is preserved when the file is replaced
+            File target = new File(this.mFile);
+            try {
+                target = target.getCanonicalFile();
+            } catch (IOException ioEx) {/**NON BLOCK**/}
+            this.mTarget = target;
+
+            FileOutputStream fos = null;
+            this.mTemp = createTempFile(target);
+            if (this.mTemp != null) {
+                try {
+                    fos = new FileOutputStream(this.mTemp);
+                } catch (IOException ioEx) {
+                    this.mTemp.delete();
+                    this.mTemp = null;
+                }
+            }
+            if (fos == null) {
+                // Write the file in place
+                fos = new FileOutputStream(target);
+            }
+            this.mChannel = fos.getChannel();
             this.mBuffer = new BufferedOutputStream(
-                            new FileOutputStream(
-                                    new File(this.mFile)), getBufferSize());
+                            Channels.newOutputStream(this.mChannel), getBufferSize());
             return this.mBuffer;
         } catch (IOException ioEx) {
             if (isTrace()) {
@@ -102,15 +144,122 @@ public class WriteCommand extends Program implements WriteExecutable {
         }
     }
 
+    /**
+     * Method that creates the temporary file that replaces the file when the write ends.
+     * The temporary file must have the same mode and owner than the file. Otherwise the
+     * file must be written in place.
+     *
+     * @param target The file where to write the data
+     * @return File The temporary file, or <code>null</code> if the file must be written
+     * in place
+     */
+    private static File createTempFile(File target) {
+        long[] st = null;
+        if (target.exists()) {
+            if (!target.canWrite()) {
+                // The file is read-only. Replace it would bypass its mode
+                return null;
+            }
+            // The replace would break the hard links of the file
+            st = stat(target);
+            if (st == null || st[3] > 1) {
+                return null;
+            }
+        }
+        File temp = null;
+        try {
+            // A unique name, so concurrent writes of the same file don't share the temporary
+            temp = File.createTempFile(
+                    "." + target.getName() + ".", TEMP_SUFFIX, //$NON-NLS-1$ //$NON-NLS-2$
+                    target.getParentFile());
+            if (st == null) {
+                return temp;
+            }
+
+            // Copy the owner and the mode of the file (chown clears the setuid bits, so
+            // the mode goes after), and check that the filesystem preserves them
+            String path = temp.getAbsolutePath();
+            long[] tst = stat(temp);
+            if (tst != null && (tst[1] != st[1] || tst[2] != st[2])) {
+                invokeOs("chown", //$NON-NLS-1$
+                        new Class<?>[]{String.class, int.class, int.class},
+                        path, Integer.valueOf((int)st[1]), Integer.valueOf((int)st[2]));
+            }
+            invokeOs("chmod", new Class<?>[]{String.class, int.class}, //$NON-NLS-1$
+                    path, Integer.valueOf((int)st[0] & MODE_MASK));
+            tst = stat(temp);
+            if (tst != null && (tst[0] & MODE_MASK) == (st[0] & MODE_MASK) &&
+                tst[1] == st[1] && tst[2] == st[2]) {
+                return temp;
+            }
+        } catch (Exception ex) {/**NON BLOCK**/}
+
+        // The folder isn't writable or the mode and owner can't be preserved
+        if (temp != null) {
+            temp.delete();
+        }
+        return null;
+    }
+
+    /**
+     * Method that returns the status of a file
+     *
+     * @param file The file
+     * @return long[] The mode [0], uid [1], gid [2] and number of hard links [3] of the
+     * file, or <code>null</code> if it can't be read
+     */
+    private static long[] stat(File file) {
+        try {
+            Object st = invokeOs(
+                    "stat", new Class<?>[]{String.class}, //$NON-NLS-1$
+                    file.getAbsolutePath());
+            Class<?> cls = st.getClass();
+            return new long[]{
+                    ((Number)cls.getField("st_mode").get(st)).longValue(), //$NON-NLS-1$
+                    ((Number)cls.getField("st_uid").get(st)).longValue(), //$NON-NLS-1$
+                    ((Number)cls.getField("st_gid").get(st)).longValue(), //$NON-NLS-1$
+                    ((Number)cls.getField("st_nlink").get(st)).longValue() //$NON-NLS-1$
+            };
+        } catch (Exception ex) {
+            return null;
+        }
+    }
+
+    /**
+     * Method that invokes a posix call. The SDK only exposes them in
+     * <code>android.system.Os</code> since Lollipop, so the older platforms use the
+     * hidden <code>libcore.io.Libcore.os</code>.
+     *
+     * @param name The name of the call
+     * @param types The types of the arguments
+     * @param args The arguments
+     * @return Object The returned value
+     * @throws Exception If the call fails or isn't available
+     */
+    private static Object invokeOs(String name, Class<?>[] types, Object... args)
+            throws Exception {
+        Object os = null;
+        Class<?> cls;
+        try {
+            cls = Class.forName("android.system.Os"); //$NON-NLS-1$
+        } catch (ClassNotFoundException cnfEx) {
+            Field field = Class.forName("libcore.io.Libcore").getField("os"); //$NON-NLS-1$ //$NON-NLS-2$
+            os = field.get(null);
+            cls = field.getType();
+        }
+        Method method = cls.getMethod(name, types);
+        return method.invoke(os, args);
+    }
+
     /**
      * {@inheritDoc}
      */
     @Override
     public void execute()
             throws InsufficientPermissionsException, NoSuchFileOrDirectory, ExecutionException {
-        synchronized (this.mSync) {
+        synchronized (this.mWriteSync) {
             this.mReady = true;
-            this.mSync.notify();
+            this.mWriteSync.notify();
         }
 
         if (isTrace()) {
@@ -125,7 +274,9 @@ public class WriteCommand extends Program implements WriteExecutable {
         // Wait the finalization
         try {
             synchronized (this.mSync) {
-                this.mSync.wait();
+                while (!this.mEnded) {
+                    this.mSync.wait();
+                }
             }
         } catch (Throwable _throw) {/**NON BLOCK**/}
 
@@ -156,10 +307,11 @@ public class WriteCommand extends Program implements WriteExecutable {
      */
     @Override
     public boolean cancel() {
-        closeBuffer();
-        this.mCancelled = true;
+        closeBuffer(false);
         try {
             synchronized (this.mSync) {
+                this.mCancelled = true;
+                this.mEnded = true;
                 this.mSync.notify();
             }
         } catch (Throwable _throw) {/**NON BLOCK**/}
@@ -171,9 +323,10 @@ public class WriteCommand extends Program implements WriteExecutable {
      */
     @Override
     public boolean end() {
-        closeBuffer();
+        closeBuffer(true);
         try {
             synchronized (this.mSync) {
+                this.mEnded = true;
                 this.mSync.notify();
             }
         } catch (Throwable _throw) {/**NON BLOCK**/}
@@ -181,17 +334,55 @@ public class WriteCommand extends Program implements WriteExecutable {
     }
 
     /**
-     * Method that close the buffer
+     * Method that close the buffer, and replaces the file with the temporary file
+     *
+     * @param commit If the data must be committed to the file
      */
-    private void closeBuffer() {
+    private void closeBuffer(boolean commit) {
+        if (this.mBuffer == null) {
+            return;
+        }
+        boolean written = false;
         try {
-            if (this.mBuffer != null) {
+            this.mBuffer.flush();
+            if (commit) {
+                // Ensure the data is on disk before replace the file
+                this.mChannel.force(true);
+            }
+            written = true;
+        } catch (IOException ioEx) {
+            Log.e(TAG, String.format("Failed to write %s", this.mFile), ioEx); //$NON-NLS-1$
+            notifyException(ioEx);
+        } finally {
+            try {
                 this.mBuffer.close();
+            } catch (Exception ex) {/**NON BLOCK**/}
+            this.mBuffer = null;
+        }
+
+        if (this.mTemp != null) {
+            if (commit && written) {
+                if (!this.mTemp.renameTo(this.mTarget)) {
+                    String msg = String.format("Failed to replace %s", this.mFile); //$NON-NLS-1$
+                    Log.e(TAG, msg);
+                    notifyException(new ExecutionException(msg));
+                }
             }
-        } catch (Exception ex) {/**NON BLOCK**/}
-        try {
-            Thread.yield();
-        } catch (Exception ex) {/**NON BLOCK**/}
+            if (this.mTemp.exists()) {
+                this.mTemp.delete();
+            }
+        }
+    }
+
+    /**
+     * Method that notifies an exception to the listener
+     *
+     * @param cause The cause of the exception
+     */
+    private void notifyException(Exception cause) {
+        if (this.mAsyncResultListener != null) {
+            this.mAsyncResultListener.onException(cause);
+        }
     }
 
     /**
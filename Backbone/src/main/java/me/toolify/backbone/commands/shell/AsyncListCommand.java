@@ -0,0 +1,210 @@
+/*
+ * Copyright (C) 2013 BrandroidTools
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package me.toolify.backbone.commands.shell;
+
+import android.util.Log;
+
+import me.toolify.backbone.commands.AsyncListExecutable;
+import me.toolify.backbone.commands.AsyncResultListener;
+import me.toolify.backbone.commands.SIGNAL;
+import me.toolify.backbone.console.CommandNotFoundException;
+import me.toolify.backbone.console.ExecutionException;
+import me.toolify.backbone.console.InsufficientPermissionsException;
+import me.toolify.backbone.console.NoSuchFileOrDirectory;
+import me.toolify.backbone.model.FileSystemObject;
+import me.toolify.backbone.model.ParentDirectory;
+import me.toolify.backbone.util.FileHelper;
+import me.toolify.backbone.util.ParseHelper;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * A class for list the files of a directory progressively. It uses the same command
+ * than {@link ListCommand}, but the files are parsed and returned while the output of
+ * the command is received.
+ *
+ * {@link "http://unixhelp.ed.ac.uk/CGI/man-cgi?stat"}
+ */
+public class AsyncListCommand extends AsyncResultProgram implements AsyncListExecutable {
+
+    private static final String TAG = "AsyncListCommand"; //$NON-NLS-1$
+
+    private static final String ID = "ls";  //$NON-NLS-1$
+
+    private final String mParentDir;
+    private final List<FileSystemObject> mFiles;
+    private boolean mParentAdded;
+
+    /**
+     * Constructor of <code>AsyncListCommand</code>.
+     *
+     * @param src The directory to be listed
+     * @param asyncResultListener The partial result listener
+     * @throws InvalidCommandDefinitionException If the command has an invalid definition
+     */
+    public AsyncListCommand(String src, AsyncResultListener asyncResultListener)
+            throws InvalidCommandDefinitionException {
+        // Always add backslash for list the files of the directory, instead of
+        // the directory.
+        super(ID, asyncResultListener, new String[]{ FileHelper.addTrailingSlash(src) });
+        this.mFiles = new ArrayList<FileSystemObject>();
+
+        //Retrieve parent directory information
+        if (src.compareTo(FileHelper.ROOT_DIRECTORY) == 0) {
+            this.mParentDir = null;
+        } else {
+            this.mParentDir = new File(src).getAbsolutePath();
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public List<FileSystemObject> getResult() {
+        return this.mFiles;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void onStartParsePartialResult() {
+        this.mFiles.clear();
+        this.mParentAdded = false;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void onEndParsePartialResult(boolean cancelled) {
+        // An empty directory. Return at least the parent directory
+        notifyPartialResult(new ArrayList<FileSystemObject>(1));
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void onParsePartialResult(final String partialIn) {
+        // The partial buffer is always delivered in complete lines
+        final List<FileSystemObject> partialFiles = new ArrayList<FileSystemObject>();
+        final int len = partialIn.length();
+        int start = 0;
+        while (start < len) {
+            int end = partialIn.indexOf(FileHelper.NEWLINE, start);
+            if (end == -1) {
+                end = len;
+            }
+            String line = partialIn.substring(start, end);
+            start = end + 1;
+
+            //Checks that there is some text in the line. Otherwise ignore it
+            if (line.trim().length() == 0) {
+                continue;
+            }
+
+            // Parse and add to result files
+            try {
+                partialFiles.add(ParseHelper.parseStatOutput(line));
+            } catch (Exception e) {
+                // Log the parsing error
+                if (isTrace()) {
+                    Log.w(TAG,
+                        String.format(
+                                "Failed to parse output: %s", //$NON-NLS-1$
+                                String.valueOf(line)));
+                }
+            }
+        }
+        notifyPartialResult(partialFiles);
+    }
+
+    /**
+     * Method that adds a chunk of files to the result, and notifies it to the listener.
+     * The parent directory is added to the first chunk.
+     *
+     * @param chunk The chunk of files
+     */
+    private void notifyPartialResult(List<FileSystemObject> chunk) {
+        if (!this.mParentAdded) {
+            this.mParentAdded = true;
+            if (this.mParentDir != null &&
+                    this.mParentDir.compareTo(FileHelper.ROOT_DIRECTORY) != 0) {
+                chunk.add(0, new ParentDirectory(new File(this.mParentDir).getParent()));
+            }
+        }
+        if (chunk.isEmpty()) {
+            return;
+        }
+        this.mFiles.addAll(chunk);
+        if (getAsyncResultListener() != null) {
+            getAsyncResultListener().onPartialResult(chunk);
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void onParseErrorPartialResult(String partialErr) {/**NON BLOCK**/}
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public SIGNAL onRequestEnd() {
+        return null;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void checkExitCode(int exitCode)
+            throws InsufficientPermissionsException, CommandNotFoundException, ExecutionException {
+        // 123: stat failed ... Function not implemented (for broken symlinks)
+        //Ignore exit code 143 (cancelled)
+        //Ignore exit code 137 (kill -9)
+        if (exitCode != 0 && exitCode != 1 && exitCode != 123 &&
+            exitCode != 143 && exitCode != 137) {
+            throw new ExecutionException(
+                    "exitcode != 0 && != 1 && != 123 && != 143 && != 137"); //$NON-NLS-1$
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void checkStdErr(int exitCode, String err)
+            throws InsufficientPermissionsException, NoSuchFileOrDirectory,
+            CommandNotFoundException, ExecutionException {
+        // The errors of stat are discarded, so only a failed ls writes to stderr. The
+        // exit code 1 alone isn't an error, because it's returned for empty directories
+        if (exitCode != 0 && exitCode != 143 && exitCode != 137 &&
+            err.trim().length() > 0) {
+            if (err.indexOf("Permission denied") != -1) { //$NON-NLS-1$
+                throw new InsufficientPermissionsException();
+            }
+            throw new NoSuchFileOrDirectory(this.mParentDir);
+        }
+    }
+}
@@ -21,6 +21,7 @@ import me.toolify.backbone.commands.AsyncResultListener;
 import me.toolify.backbone.commands.SIGNAL;
 import me.toolify.backbone.util.FileHelper;
 
+import java.nio.ByteBuffer;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.List;
@@ -192,6 +193,30 @@ public abstract class AsyncResultProgram
         }
     }
 
+    /**
+     * Method that parse the raw result of a program invocation (only for programs that
+     * read the {@link #isRawOutput() raw output}). This method is invoked from the thread
+     * that reads the output of the process, and the buffer is only valid during the call.
+     *
+     * @param partialIn A partial standard input buffer (incremental buffer)
+     * @hide
+     */
+    public final void onRequestParsePartialResult(ByteBuffer partialIn) {
+        try {
+            this.onParsePartialResult(partialIn);
+        } catch (Throwable ex) {
+            /**NON BLOCK**/
+        }
+    }
+
+    /**
+     * Method invoked when new raw partial data is ready (only for programs that
+     * read the {@link #isRawOutput() raw output}). The buffer is only valid during the call.
+     *
+     * @param partialIn A partial standard input buffer (incremental buffer)
+     */
+    public void onParsePartialResult(ByteBuffer partialIn) {/**NON BLOCK**/}
+
     /**
      * Method that parse the error result of a program invocation.
      *
@@ -234,6 +259,19 @@ public abstract class AsyncResultProgram
         return true;
     }
 
+    /**
+     * Method that returns if the program reads the raw output of the process. The raw
+     * output is not decoded as text (so binary data is not corrupted), and it's notified
+     * with {@link #onParsePartialResult(ByteBuffer)} instead of
+     * {@link #onParsePartialResult(String)}.
+     *
+     * @return boolean If the program reads the raw output of the process
+     */
+    @SuppressWarnings("static-method")
+    public boolean isRawOutput() {
+        return false;
+    }
+
     /**
      * {@inheritDoc}
      */
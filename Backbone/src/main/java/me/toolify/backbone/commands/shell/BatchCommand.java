@@ -0,0 +1,294 @@
+/*
+ * Copyright (C) 2013 BrandroidTools
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package me.toolify.backbone.commands.shell;
+
+import me.toolify.backbone.commands.BatchExecutable;
+import me.toolify.backbone.commands.SyncResultExecutable;
+import me.toolify.backbone.commands.WritableExecutable;
+import me.toolify.backbone.console.CommandNotFoundException;
+import me.toolify.backbone.console.ExecutionException;
+import me.toolify.backbone.console.InsufficientPermissionsException;
+import me.toolify.backbone.model.MountPoint;
+
+import java.security.SecureRandom;
+import java.text.ParseException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+
+/**
+ * A class for execute a batch of synchronous programs in only one round-trip to the shell.<br/>
+ * <br/>
+ * Every program of the batch is followed by a control code (secure random generated) in
+ * the standard output (with the index and the exit code of the program) and in the standard
+ * error (with the index of the program), so the output of every program can be
+ * demultiplexed and parsed by the program itself.
+ */
+public class BatchCommand extends SyncResultProgram implements BatchExecutable {
+
+    private static final String ID = "batch";  //$NON-NLS-1$
+
+    private static final SecureRandom RANDOM = new SecureRandom();
+
+    private final Shell mShell;
+    private final List<SyncResultExecutable> mExecutables;
+    private final int[] mExitCodes;
+    private final Exception[] mExceptions;
+    private final String mStartId;
+    private final String mEndId;
+    private Boolean mRet;
+
+    /**
+     * Constructor of <code>BatchCommand</code>.
+     *
+     * @param shell The shell in which the batch is executed
+     * @param executables The programs of the batch (must be {@link SyncResultProgram} objects)
+     * @throws InvalidCommandDefinitionException If the command has an invalid definition
+     */
+    public BatchCommand(Shell shell, List<SyncResultExecutable> executables)
+            throws InvalidCommandDefinitionException {
+        super(ID, false);
+        this.mShell = shell;
+        this.mExecutables = new ArrayList<SyncResultExecutable>(executables);
+        this.mExitCodes = new int[executables.size()];
+        this.mExceptions = new Exception[executables.size()];
+        this.mStartId = String.format("/#%d#/", Long.valueOf(RANDOM.nextLong())); //$NON-NLS-1$
+        this.mEndId = String.format("/#%d#/", Long.valueOf(RANDOM.nextLong())); //$NON-NLS-1$
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public String getCommand() {
+        // The control code command is defined by the arguments of the command definition
+        final String control = super.getCommand() + " " + super.getArguments(); //$NON-NLS-1$
+        final String startId = "'" + this.mStartId + "'"; //$NON-NLS-1$ //$NON-NLS-2$
+        final String endId = "'" + this.mEndId + "'"; //$NON-NLS-1$ //$NON-NLS-2$
+
+        StringBuilder sb = new StringBuilder();
+        int cc = this.mExecutables.size();
+        for (int i = 0; i < cc; i++) {
+            Program program = (Program)this.mExecutables.get(i);
+            if (i > 0) {
+                sb.append(" ; "); //$NON-NLS-1$
+            }
+            sb.append(program.getCommand())
+              .append(" ") //$NON-NLS-1$
+              .append(program.getArguments())
+              .append(" ; ") //$NON-NLS-1$
+              .append(String.format(control, startId, String.valueOf(i), endId));
+        }
+        return sb.toString();
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public String getArguments() {
+        // The arguments are part of the command
+        return ""; //$NON-NLS-1$
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public boolean isStdErrComplete(String err) {
+        // The control code of the last program is the last data written to stderr
+        final String last = this.mStartId + (this.mExecutables.size() - 1) + this.mEndId;
+        return err.indexOf(last) != -1;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void parse(String in, String err) throws ParseException {
+        final int cc = this.mExecutables.size();
+        Arrays.fill(this.mExitCodes, -1);
+        String[] outs = new String[cc];
+        String[] errs = new String[cc];
+
+        // Demultiplex the standard output (index and exit code of every program)
+        Pattern pattern = Pattern.compile(
+                Pattern.quote(this.mStartId) + "(\\d+):(\\d{1,3})" + //$NON-NLS-1$
+                Pattern.quote(this.mEndId));
+        Matcher matcher = pattern.matcher(in);
+        int pos = 0;
+        while (matcher.find()) {
+            int index = Integer.parseInt(matcher.group(1));
+            if (index < cc) {
+                outs[index] = in.substring(pos, matcher.start());
+                this.mExitCodes[index] = Integer.parseInt(matcher.group(2));
+            }
+            pos = matcher.end();
+        }
+
+        // Demultiplex the standard error (index of every program)
+        pattern = Pattern.compile(
+                Pattern.quote(this.mStartId) + "(\\d+)" + Pattern.quote(this.mEndId)); //$NON-NLS-1$
+        matcher = pattern.matcher(err);
+        pos = 0;
+        while (matcher.find()) {
+            int index = Integer.parseInt(matcher.group(1));
+            if (index < cc) {
+                errs[index] = err.substring(pos, matcher.start());
+            }
+            pos = matcher.end();
+        }
+        // The console waits (bounded) for the last marker, but it could be not received.
+        // Markers are written in order, so the rest of the buffer belongs to the first
+        // program without a marker
+        for (int i = 0; i < cc; i++) {
+            if (errs[i] == null) {
+                errs[i] = err.substring(pos);
+                break;
+            }
+        }
+
+        // Check and parse the result of every program
+        boolean ret = true;
+        for (int i = 0; i < cc; i++) {
+            SyncResultProgram program = (SyncResultProgram)this.mExecutables.get(i);
+            try {
+                if (outs[i] == null) {
+                    throw new ExecutionException(String.format(
+                            "%s: not executed in batch", program.getId())); //$NON-NLS-1$
+                }
+                if (errs[i] == null) {
+                    errs[i] = ""; //$NON-NLS-1$
+                }
+                int exitCode = this.mExitCodes[i];
+                if (!program.isIgnoreShellStdErrCheck()) {
+                    this.mShell.checkStdErr(program, exitCode, errs[i]);
+                }
+                this.mShell.checkExitCode(exitCode);
+                program.checkExitCode(exitCode);
+                program.checkStdErr(exitCode, errs[i]);
+                program.parse(outs[i], errs[i]);
+                this.mExceptions[i] = null;
+            } catch (Exception ex) {
+                this.mExceptions[i] = ex;
+                ret = false;
+            }
+        }
+        this.mRet = Boolean.valueOf(ret);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public Boolean getResult() {
+        return this.mRet;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public List<SyncResultExecutable> getExecutables() {
+        return this.mExecutables;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public int getExitCode(int index) {
+        return this.mExitCodes[index];
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public Exception getException(int index) {
+        return this.mExceptions[index];
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void checkExitCode(int exitCode)
+            throws InsufficientPermissionsException, CommandNotFoundException, ExecutionException {
+        // The exit code of every program is checked when parsing the output
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public boolean isIgnoreShellStdErrCheck() {
+        // The standard error of every program is checked when parsing the output
+        return true;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public boolean isIndefinitelyWait() {
+        for (SyncResultExecutable executable : this.mExecutables) {
+            if (((Program)executable).isIndefinitelyWait()) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public boolean isWaitOnNewDataReceipt() {
+        // Every program of the batch writes its control code when ends
+        return true;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public MountPoint getSrcWritableMountPoint() {
+        for (SyncResultExecutable executable : this.mExecutables) {
+            if (executable instanceof WritableExecutable) {
+                return ((WritableExecutable)executable).getSrcWritableMountPoint();
+            }
+        }
+        return null;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public MountPoint getDstWritableMountPoint() {
+        for (SyncResultExecutable executable : this.mExecutables) {
+            if (executable instanceof WritableExecutable) {
+                return ((WritableExecutable)executable).getDstWritableMountPoint();
+            }
+        }
+        return null;
+    }
+}
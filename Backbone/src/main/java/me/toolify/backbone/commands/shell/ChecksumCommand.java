@@ -28,7 +28,9 @@ import java.io.File;
 /**
  * A class for calculate MD5 and SHA-1 checksums of a file system object.<br />
  * <br />
- * Partial results are returned in order (MD5 -> SHA1)
+ * Both digests are calculated concurrently, so the file is read from the disk only once
+ * (the second reader gets the data from the page cache). Partial results are returned
+ * in order (MD5 -> SHA1), independently of which digest ends first.
  *
  * {@link "http://unixhelp.ed.ac.uk/CGI/man-cgi?md5sum"}
  * {@link "http://unixhelp.ed.ac.uk/CGI/man-cgi?sha1sum"}
@@ -38,6 +40,11 @@ public class ChecksumCommand extends AsyncResultProgram implements ChecksumExecu
 
     private static final String ID = "checksum";  //$NON-NLS-1$
 
+    // The checksums calculated by this command
+    private static final CHECKSUMS[] TYPES = {CHECKSUMS.MD5, CHECKSUMS.SHA1};
+    // The length of the hex digest of every checksum calculated by this command
+    private static final int[] DIGEST_LENGTHS = {32, 40};
+
     private final String mName;
     private final String[] mChecksums;
     private int mChecksumsCounter;
@@ -53,7 +60,7 @@ public class ChecksumCommand extends AsyncResultProgram implements ChecksumExecu
     public ChecksumCommand(String src, AsyncResultListener asyncResultListener)
             throws InvalidCommandDefinitionException {
         super(ID, asyncResultListener, src);
-        this.mChecksums = new String[]{null, null};
+        this.mChecksums = new String[CHECKSUMS.values().length];
         this.mName = new File(src).getName();
     }
 
@@ -62,8 +69,10 @@ public class ChecksumCommand extends AsyncResultProgram implements ChecksumExecu
      */
     @Override
     public void onStartParsePartialResult() {
-        this.mChecksums[0] = null;
-        this.mChecksums[1] = null;
+        int cc = this.mChecksums.length;
+        for (int i = 0; i < cc; i++) {
+            this.mChecksums[i] = null;
+        }
         this.mChecksumsCounter = 0;
         this.mPartial = ""; //$NON-NLS-1$
     }
@@ -75,12 +84,7 @@ public class ChecksumCommand extends AsyncResultProgram implements ChecksumExecu
     public void onEndParsePartialResult(boolean cancelled) {
         // Send the last partial data
         if (this.mPartial != null && this.mPartial.length() > 0) {
-            if (getAsyncResultListener() != null) {
-                String data = processPartialResult(this.mPartial);
-                if (data != null) {
-                    getAsyncResultListener().onPartialResult(data);
-                }
-            }
+            processPartialResult(this.mPartial);
         }
         this.mPartial = ""; //$NON-NLS-1$
     }
@@ -99,22 +103,12 @@ public class ChecksumCommand extends AsyncResultProgram implements ChecksumExecu
 
         // Return all the lines, except the last
         for (int i = 0; i < lines.length-1; i++) {
-            if (getAsyncResultListener() != null) {
-                String data = processPartialResult(lines[i]);
-                if (data != null) {
-                    getAsyncResultListener().onPartialResult(data);
-                }
-            }
+            processPartialResult(lines[i]);
         }
 
         // Return the last line?
         if (endsWithNewLine) {
-            if (getAsyncResultListener() != null) {
-                String data = processPartialResult(lines[lines.length-1]);
-                if (data != null) {
-                    getAsyncResultListener().onPartialResult(data);
-                }
-            }
+            processPartialResult(lines[lines.length-1]);
             this.mPartial = ""; //$NON-NLS-1$
         } else {
             // Save the partial for next calls
@@ -161,24 +155,41 @@ public class ChecksumCommand extends AsyncResultProgram implements ChecksumExecu
     }
 
     /**
-     * Method that processes a line to determine if it's a valid partial result
+     * Method that processes a line to determine if it's a valid partial result. The
+     * digests are returned to the listener in order, as soon as all the previous
+     * digests are calculated.
      *
      * @param line The line to process
-     * @return String The processed line
      */
-    private String processPartialResult(String line) {
+    private void processPartialResult(String line) {
         // MD5 and SHA-1 return both the digest and the name of the file
         // 4c044b884cf2ff3839713da0e81dced19f099b09  boot.zip
         int pos = line.indexOf(" "); //$NON-NLS-1$
-        if (line.endsWith(this.mName) && pos != -1) {
-            String digest = line.substring(0, pos).trim();
-            if (this.mChecksumsCounter < this.mChecksums.length) {
-                this.mChecksums[this.mChecksumsCounter] = digest;
+        if (!line.endsWith(this.mName) || pos == -1) {
+            return;
+        }
+
+        // Both programs run at the same time. The digest is identified by its length
+        String digest = line.substring(0, pos).trim();
+        int cc = TYPES.length;
+        for (int i = 0; i < cc; i++) {
+            if (digest.length() == DIGEST_LENGTHS[i]) {
+                this.mChecksums[TYPES[i].ordinal()] = digest;
+                break;
+            }
+        }
+
+        // Return the digests that are in order
+        while (this.mChecksumsCounter < cc) {
+            String next = this.mChecksums[TYPES[this.mChecksumsCounter].ordinal()];
+            if (next == null) {
+                break;
             }
             this.mChecksumsCounter++;
-            return digest;
+            if (getAsyncResultListener() != null) {
+                getAsyncResultListener().onPartialResult(next);
+            }
         }
-        return null;
     }
 
     /**
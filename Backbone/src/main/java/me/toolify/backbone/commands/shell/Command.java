@@ -17,19 +17,14 @@
 package me.toolify.backbone.commands.shell;
 
 import android.content.res.Resources;
-import android.content.res.XmlResourceParser;
 import me.toolify.backbone.FileManagerApplication;
-import me.toolify.backbone.R;
+import me.toolify.backbone.commands.shell.CommandRegistry.CommandDefinition;
 import me.toolify.backbone.console.CommandNotFoundException;
 import me.toolify.backbone.console.ExecutionException;
 import me.toolify.backbone.console.InsufficientPermissionsException;
 import me.toolify.backbone.preferences.FileManagerSettings;
 import me.toolify.backbone.preferences.Preferences;
 import me.toolify.backbone.util.ShellHelper;
-import me.toolify.backbone.util.XmlUtils;
-import org.xmlpull.v1.XmlPullParserException;
-
-import java.io.IOException;
 
 /**
  * An abstract class that represents a command to be executed
@@ -39,12 +34,6 @@ import java.io.IOException;
  */
 public abstract class Command {
 
-    // Command list XML tags
-    private static final String TAG_COMMAND_LIST = "CommandList"; //$NON-NLS-1$
-    private static final String TAG_COMMAND = "command"; //$NON-NLS-1$
-    private static final String TAG_STARTCODE = "startcode"; //$NON-NLS-1$
-    private static final String TAG_EXITCODE = "exitcode"; //$NON-NLS-1$
-
     private static final String EXPANDED_ARGS = "[@]"; //$NON-NLS-1$
 
     private final String mId;
@@ -52,9 +41,6 @@ public abstract class Command {
     private String mArgs;   // The real arguments
     private final Object[] mCmdArgs;  //The arguments to be formatted
 
-    private static String sStartCodeCmd;
-    private static String sExitCodeCmd;
-
     private boolean mTrace;
 
     /**
@@ -118,17 +104,17 @@ public abstract class Command {
         int pos = this.mArgs.indexOf(EXPANDED_ARGS);
         if (pos != -1) {
             int cc = args.length;
-            StringBuffer sb = new StringBuffer();
+            StringBuilder sb = new StringBuilder();
             for (int i = 0; i < cc; i++) {
                 //Quote the arguments?
                 if (prepare) {
-                    sb = sb.append("\"" + //$NON-NLS-1$
-                            ShellHelper.prepareArgument(args[i]) + "\""); //$NON-NLS-1$
-                    sb = sb.append(" "); //$NON-NLS-1$
+                    sb.append('"');
+                    sb.append(ShellHelper.prepareArgument(args[i]));
+                    sb.append('"');
                 } else {
-                    sb = sb.append(ShellHelper.prepareArgument(args[i]));
-                    sb = sb.append(" "); //$NON-NLS-1$
+                    sb.append(ShellHelper.prepareArgument(args[i]));
                 }
+                sb.append(' ');
             }
 
             // Replace the expanded argument
@@ -204,118 +190,32 @@ public abstract class Command {
     }
 
     /**
-     * Method that loads the resource command list xml and
+     * Method that loads the definition of the command from the command registry and
      * inflate the internal variables.
      *
      * @param resources The application resource manager
      * @throws InvalidCommandDefinitionException If the command has an invalid definition
      */
     private void getCommandInfo(Resources resources) throws InvalidCommandDefinitionException {
+        CommandDefinition definition = CommandRegistry.getCommand(resources, this.mId);
 
-        //Read the command list xml file
-        XmlResourceParser parser = resources.getXml(R.xml.command_list);
-
-        try {
-            //Find the root element
-            XmlUtils.beginDocument(parser, TAG_COMMAND_LIST);
-            while (true) {
-                XmlUtils.nextElement(parser);
-                String element = parser.getName();
-                if (element == null) {
-                    break;
-                }
-
-                if (TAG_COMMAND.equals(element)) {
-                    CharSequence id = parser.getAttributeValue(R.styleable.Command_commandId);
-                    if (id != null && id.toString().compareTo(this.mId) == 0) {
-                        CharSequence path =
-                                parser.getAttributeValue(R.styleable.Command_commandPath);
-                        CharSequence args =
-                                parser.getAttributeValue(R.styleable.Command_commandArgs);
-                        if (path == null) {
-                            throw new InvalidCommandDefinitionException(
-                                    this.mId + ": path is null"); //$NON-NLS-1$
-                        }
-                        if (args == null) {
-                            throw new InvalidCommandDefinitionException(
-                                    this.mId + ": args is null"); //$NON-NLS-1$
-                        }
-
-                        //Save paths
-                        this.mCmd = path.toString();
-                        this.mArgs = args.toString();
-                        //Format the arguments of the process with the command arguments
-                        if (this.mArgs != null && this.mArgs.length() > 0
-                                && this.mCmdArgs != null && this.mCmdArgs.length > 0) {
-                            this.mArgs = String.format(this.mArgs, this.mCmdArgs);
-                        }
-
-                        return;
-                    }
-                }
-            }
-        } catch (XmlPullParserException e) {
-            throw new RuntimeException(e);
-        } catch (IOException e) {
-            throw new RuntimeException(e);
-        } finally {
-            parser.close();
-        }
-
-        //Command not found
-        throw new InvalidCommandDefinitionException(this.mId);
+        //Save paths
+        this.mCmd = definition.mPath;
+        //Format the arguments of the process with the command arguments
+        this.mArgs = definition.mArgs.format(this.mCmdArgs);
     }
 
     /**
-     * Method that returns the exit code command info.
+     * Method that returns the start code command info.
      *
      * @param resources The application resource manager
-     * @return String The exit code command info
+     * @return String The start code command info
      * @throws InvalidCommandDefinitionException If the command is not present or has an
      * invalid definition
      */
-    public static synchronized String getStartCodeCommandInfo(
+    public static String getStartCodeCommandInfo(
             Resources resources) throws InvalidCommandDefinitionException {
-        //Singleton
-        if (sStartCodeCmd != null) {
-            return new String(sStartCodeCmd);
-        }
-
-        //Read the command list xml file
-        XmlResourceParser parser = resources.getXml(R.xml.command_list);
-
-        try {
-            //Find the root element
-            XmlUtils.beginDocument(parser, TAG_COMMAND_LIST);
-            while (true) {
-                XmlUtils.nextElement(parser);
-                String element = parser.getName();
-                if (element == null) {
-                    break;
-                }
-
-                if (TAG_STARTCODE.equals(element)) {
-                    CharSequence path = parser.getAttributeValue(R.styleable.Command_commandPath);
-                    if (path == null) {
-                        throw new InvalidCommandDefinitionException(
-                                TAG_STARTCODE + ": path is null"); //$NON-NLS-1$
-                    }
-
-                    //Save paths
-                    sStartCodeCmd = path.toString();
-                    return new String(sStartCodeCmd);
-                }
-            }
-        } catch (XmlPullParserException e) {
-            throw new RuntimeException(e);
-        } catch (IOException e) {
-            throw new RuntimeException(e);
-        } finally {
-            parser.close();
-        }
-
-        //Command not found
-        throw new InvalidCommandDefinitionException(TAG_STARTCODE);
+        return CommandRegistry.getStartCodeCommandInfo(resources);
     }
 
     /**
@@ -326,47 +226,8 @@ public abstract class Command {
      * @throws InvalidCommandDefinitionException If the command is not present or has an
      * invalid definition
      */
-    public static synchronized String getExitCodeCommandInfo(
+    public static String getExitCodeCommandInfo(
             Resources resources) throws InvalidCommandDefinitionException {
-        //Singleton
-        if (sExitCodeCmd != null) {
-            return new String(sExitCodeCmd);
-        }
-
-        //Read the command list xml file
-        XmlResourceParser parser = resources.getXml(R.xml.command_list);
-
-        try {
-            //Find the root element
-            XmlUtils.beginDocument(parser, TAG_COMMAND_LIST);
-            while (true) {
-                XmlUtils.nextElement(parser);
-                String element = parser.getName();
-                if (element == null) {
-                    break;
-                }
-
-                if (TAG_EXITCODE.equals(element)) {
-                    CharSequence path = parser.getAttributeValue(R.styleable.Command_commandPath);
-                    if (path == null) {
-                        throw new InvalidCommandDefinitionException(
-                                TAG_EXITCODE + ": path is null"); //$NON-NLS-1$
-                    }
-
-                    //Save paths
-                    sExitCodeCmd = path.toString();
-                    return new String(sExitCodeCmd);
-                }
-            }
-        } catch (XmlPullParserException e) {
-            throw new RuntimeException(e);
-        } catch (IOException e) {
-            throw new RuntimeException(e);
-        } finally {
-            parser.close();
-        }
-
-        //Command not found
-        throw new InvalidCommandDefinitionException(TAG_EXITCODE);
+        return CommandRegistry.getExitCodeCommandInfo(resources);
     }
 }
@@ -0,0 +1,357 @@
+/*
+ * Copyright (C) 2013 BrandroidTools
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package me.toolify.backbone.commands.shell;
+
+import android.content.res.Resources;
+import android.content.res.XmlResourceParser;
+import android.util.Log;
+
+import me.toolify.backbone.FileManagerApplication;
+import me.toolify.backbone.R;
+import me.toolify.backbone.util.XmlUtils;
+
+import org.xmlpull.v1.XmlPullParserException;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * The registry of the definitions of the shell commands.<br/>
+ * <br/>
+ * The command list xml is parsed only once (at the start of the application) into an
+ * immutable map of definitions indexed by the identifier of the command, and the
+ * arguments of every command are compiled into a template. So creating a command
+ * is a lookup and a concatenation of the arguments, instead of a scan of the xml
+ * and a <code>String.format</code>.
+ *
+ * @see "command_list.xml"
+ */
+public final class CommandRegistry {
+
+    private static final String TAG = "CommandRegistry"; //$NON-NLS-1$
+
+    // Command list XML tags
+    private static final String TAG_COMMAND_LIST = "CommandList"; //$NON-NLS-1$
+    private static final String TAG_COMMAND = "command"; //$NON-NLS-1$
+    private static final String TAG_STARTCODE = "startcode"; //$NON-NLS-1$
+    private static final String TAG_EXITCODE = "exitcode"; //$NON-NLS-1$
+
+    /**
+     * The definition of a command.
+     */
+    static final class CommandDefinition {
+        final String mId;
+        final String mPath;
+        final ArgumentsTemplate mArgs;
+        final String mError;
+
+        /**
+         * Constructor of <code>CommandDefinition</code>.
+         *
+         * @param id The identifier of the command
+         * @param path The path of the command
+         * @param args The arguments of the command
+         * @param error The error of the definition, or <code>null</code> if it's valid
+         */
+        CommandDefinition(String id, String path, String args, String error) {
+            super();
+            this.mId = id;
+            this.mPath = path;
+            this.mArgs = args != null ? new ArgumentsTemplate(args) : null;
+            this.mError = error;
+        }
+    }
+
+    /**
+     * The compiled arguments of a command. The arguments of the command definitions only
+     * use positional string specifiers (<code>%1$s</code>, <code>%2$s</code>, ...), so the
+     * template is split in literals and argument indexes once. Templates with any other
+     * specifier are formatted with <code>String.format</code>.
+     */
+    static final class ArgumentsTemplate {
+        private final String mTemplate;
+        private final String[] mLiterals;
+        private final int[] mIndexes;
+        private final int mLiteralsLength;
+
+        /**
+         * Constructor of <code>ArgumentsTemplate</code>.
+         *
+         * @param template The arguments of the command definition
+         */
+        ArgumentsTemplate(String template) {
+            super();
+            this.mTemplate = template;
+
+            List<String> literals = new ArrayList<String>();
+            List<Integer> indexes = new ArrayList<Integer>();
+            boolean compiled = true;
+            int len = template.length();
+            int start = 0;
+            int pos = template.indexOf('%');
+            while (pos != -1) {
+                // Parse a "%<n>$s" specifier
+                int end = pos + 1;
+                while (end < len && Character.isDigit(template.charAt(end))) {
+                    end++;
+                }
+                if (end == pos + 1 || end + 1 >= len ||
+                    template.charAt(end) != '$' || template.charAt(end + 1) != 's') {
+                    compiled = false;
+                    break;
+                }
+                int index;
+                try {
+                    index = Integer.parseInt(template.substring(pos + 1, end)) - 1;
+                } catch (NumberFormatException nfex) {
+                    compiled = false;
+                    break;
+                }
+                if (index < 0) {
+                    compiled = false;
+                    break;
+                }
+                literals.add(template.substring(start, pos));
+                indexes.add(Integer.valueOf(index));
+                start = end + 2;
+                pos = template.indexOf('%', start);
+            }
+
+            if (compiled) {
+                literals.add(template.substring(start));
+                this.mLiterals = literals.toArray(new String[literals.size()]);
+                this.mIndexes = new int[indexes.size()];
+                int literalsLength = 0;
+                for (int i = 0; i < this.mIndexes.length; i++) {
+                    this.mIndexes[i] = indexes.get(i).intValue();
+                }
+                for (int i = 0; i < this.mLiterals.length; i++) {
+                    literalsLength += this.mLiterals[i].length();
+                }
+                this.mLiteralsLength = literalsLength;
+            } else {
+                this.mLiterals = null;
+                this.mIndexes = null;
+                this.mLiteralsLength = 0;
+            }
+        }
+
+        /**
+         * Method that formats the template with the arguments of a command.
+         *
+         * @param args The arguments of the command
+         * @return String The formatted arguments
+         */
+        String format(Object[] args) {
+            // The template isn't formatted if the command has no arguments
+            if (args == null || args.length == 0 || this.mTemplate.length() == 0) {
+                return this.mTemplate;
+            }
+            if (this.mLiterals == null) {
+                return String.format(this.mTemplate, args);
+            }
+
+            int cc = this.mIndexes.length;
+            int length = this.mLiteralsLength;
+            for (int i = 0; i < cc; i++) {
+                if (this.mIndexes[i] >= args.length) {
+                    // Let String.format report the missing argument
+                    return String.format(this.mTemplate, args);
+                }
+                length += String.valueOf(args[this.mIndexes[i]]).length();
+            }
+            StringBuilder sb = new StringBuilder(length);
+            for (int i = 0; i < cc; i++) {
+                sb.append(this.mLiterals[i]);
+                sb.append(String.valueOf(args[this.mIndexes[i]]));
+            }
+            sb.append(this.mLiterals[cc]);
+            return sb.toString();
+        }
+    }
+
+    private static Map<String, CommandDefinition> sCommands;
+    private static String sStartCodeCmd;
+    private static String sExitCodeCmd;
+
+    /**
+     * Constructor of <code>CommandRegistry</code>.
+     */
+    private CommandRegistry() {
+        super();
+    }
+
+    /**
+     * Method that parses the command list xml, if it wasn't parsed yet.
+     *
+     * @param resources The application resource manager
+     */
+    public static synchronized void load(Resources resources) {
+        if (sCommands != null) {
+            return;
+        }
+
+        long start = System.currentTimeMillis();
+        Map<String, CommandDefinition> commands = new HashMap<String, CommandDefinition>();
+        String startCodeCmd = null;
+        String exitCodeCmd = null;
+
+        //Read the command list xml file
+        XmlResourceParser parser = resources.getXml(R.xml.command_list);
+        try {
+            //Find the root element
+            XmlUtils.beginDocument(parser, TAG_COMMAND_LIST);
+            while (true) {
+                XmlUtils.nextElement(parser);
+                String element = parser.getName();
+                if (element == null) {
+                    break;
+                }
+
+                if (TAG_COMMAND.equals(element)) {
+                    CharSequence id = parser.getAttributeValue(R.styleable.Command_commandId);
+                    if (id == null || commands.containsKey(id.toString())) {
+                        // The first definition wins
+                        continue;
+                    }
+                    CharSequence path =
+                            parser.getAttributeValue(R.styleable.Command_commandPath);
+                    CharSequence args =
+                            parser.getAttributeValue(R.styleable.Command_commandArgs);
+                    String error = null;
+                    if (path == null) {
+                        error = id + ": path is null"; //$NON-NLS-1$
+                    } else if (args == null) {
+                        error = id + ": args is null"; //$NON-NLS-1$
+                    }
+                    commands.put(id.toString(), new CommandDefinition(
+                            id.toString(),
+                            path != null ? path.toString() : null,
+                            error == null ? args.toString() : null,
+                            error));
+
+                } else if (TAG_STARTCODE.equals(element) && startCodeCmd == null) {
+                    CharSequence path = parser.getAttributeValue(R.styleable.Command_commandPath);
+                    if (path != null) {
+                        startCodeCmd = path.toString();
+                    }
+
+                } else if (TAG_EXITCODE.equals(element) && exitCodeCmd == null) {
+                    CharSequence path = parser.getAttributeValue(R.styleable.Command_commandPath);
+                    if (path != null) {
+                        exitCodeCmd = path.toString();
+                    }
+                }
+            }
+        } catch (XmlPullParserException e) {
+            throw new RuntimeException(e);
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        } finally {
+            parser.close();
+        }
+
+        sCommands = Collections.unmodifiableMap(commands);
+        sStartCodeCmd = startCodeCmd;
+        sExitCodeCmd = exitCodeCmd;
+        if (FileManagerApplication.isDebuggable()) {
+            Log.v(TAG, String.format(
+                    "Loaded %d commands in %d ms", //$NON-NLS-1$
+                    Integer.valueOf(commands.size()),
+                    Long.valueOf(System.currentTimeMillis() - start)));
+        }
+    }
+
+    /**
+     * Method that returns the definition of a command.
+     *
+     * @param resources The application resource manager
+     * @param id The identifier of the command
+     * @return CommandDefinition The definition of the command
+     * @throws InvalidCommandDefinitionException If the command is not present or has an
+     * invalid definition
+     */
+    static CommandDefinition getCommand(Resources resources, String id)
+            throws InvalidCommandDefinitionException {
+        CommandDefinition definition = getCommands(resources).get(id);
+        if (definition == null) {
+            //Command not found
+            throw new InvalidCommandDefinitionException(id);
+        }
+        if (definition.mError != null) {
+            throw new InvalidCommandDefinitionException(definition.mError);
+        }
+        return definition;
+    }
+
+    /**
+     * Method that returns the start code command info.
+     *
+     * @param resources The application resource manager
+     * @return String The start code command info
+     * @throws InvalidCommandDefinitionException If the command is not present or has an
+     * invalid definition
+     */
+    static String getStartCodeCommandInfo(Resources resources)
+            throws InvalidCommandDefinitionException {
+        getCommands(resources);
+        synchronized (CommandRegistry.class) {
+            if (sStartCodeCmd == null) {
+                throw new InvalidCommandDefinitionException(TAG_STARTCODE);
+            }
+            return sStartCodeCmd;
+        }
+    }
+
+    /**
+     * Method that returns the exit code command info.
+     *
+     * @param resources The application resource manager
+     * @return String The exit code command info
+     * @throws InvalidCommandDefinitionException If the command is not present or has an
+     * invalid definition
+     */
+    static String getExitCodeCommandInfo(Resources resources)
+            throws InvalidCommandDefinitionException {
+        getCommands(resources);
+        synchronized (CommandRegistry.class) {
+            if (sExitCodeCmd == null) {
+                throw new InvalidCommandDefinitionException(TAG_EXITCODE);
+            }
+            return sExitCodeCmd;
+        }
+    }
+
+    /**
+     * Method that returns the map of definitions, parsing the command list xml if needed.
+     *
+     * @param resources The application resource manager
+     * @return Map<String, CommandDefinition> The definitions of the commands
+     */
+    private static synchronized Map<String, CommandDefinition> getCommands(
+            Resources resources) {
+        if (sCommands == null) {
+            load(resources);
+        }
+        return sCommands;
+    }
+}
@@ -20,9 +20,11 @@ import me.toolify.backbone.commands.CopyExecutable;
 import me.toolify.backbone.console.CommandNotFoundException;
 import me.toolify.backbone.console.ExecutionException;
 import me.toolify.backbone.console.InsufficientPermissionsException;
+import me.toolify.backbone.model.CopyProgress;
 import me.toolify.backbone.model.MountPoint;
 import me.toolify.backbone.util.MountPointHelper;
 
+import java.io.File;
 import java.text.ParseException;
 
 
@@ -35,6 +37,7 @@ public class CopyCommand extends SyncResultProgram implements CopyExecutable {
 
     private static final String ID = "cp";  //$NON-NLS-1$
     private Boolean mRet;
+    private final String mSrc;
     private final String mDst;
 
     /**
@@ -46,6 +49,7 @@ public class CopyCommand extends SyncResultProgram implements CopyExecutable {
      */
     public CopyCommand(String src, String dst) throws InvalidCommandDefinitionException {
         super(ID, src, dst);
+        this.mSrc = src;
         this.mDst = dst;
     }
 
@@ -66,6 +70,18 @@ public class CopyCommand extends SyncResultProgram implements CopyExecutable {
         return this.mRet;
     }
 
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void setProgress(CopyProgress progress) {
+        // The shell program can't report its progress, so it is computed from the
+        // size of the destination (only if the app can read it)
+        if (progress != null) {
+            progress.beginSampling(new File(this.mSrc), new File(this.mDst));
+        }
+    }
+
     /**
      * {@inheritDoc}
      */
@@ -30,9 +30,7 @@ import me.toolify.backbone.util.FileHelper;
 import me.toolify.backbone.util.ParseHelper;
 import me.toolify.backbone.util.SearchHelper;
 
-import java.io.BufferedReader;
 import java.io.File;
-import java.io.StringReader;
 import java.util.ArrayList;
 import java.util.List;
 
@@ -47,7 +45,7 @@ public class FindCommand extends AsyncResultProgram implements FindExecutable {
 
     private static final String ID = "find";  //$NON-NLS-1$
 
-    private final File mDirectory;
+    private final String mDirectoryPath;
 
     /**
      * Constructor of <code>FindCommand</code>.
@@ -61,7 +59,7 @@ public class FindCommand extends AsyncResultProgram implements FindExecutable {
             String directory, Query query, AsyncResultListener asyncResultListener)
             throws InvalidCommandDefinitionException {
         super(ID, asyncResultListener, createArgs(FileHelper.addTrailingSlash(directory), query));
-        this.mDirectory = new File(directory);
+        this.mDirectoryPath = new File(directory).getAbsolutePath();
     }
 
     /**
@@ -86,19 +84,24 @@ public class FindCommand extends AsyncResultProgram implements FindExecutable {
     @Override
     public void onParsePartialResult(final String partialIn) {
 
-        // Check the in buffer to extract information
+        // Check the in buffer to extract information. The partial buffer is always
+        // delivered in complete lines, but it could contain the records of many
+        // stat invocations (every invocation stats a group of matches)
         final List<FileSystemObject> partialFiles = new ArrayList<FileSystemObject>();
-        BufferedReader br = null;
         try {
-            //Read the partial + previous partial and clean partial
-            br = new BufferedReader(new StringReader(partialIn));
+            final int len = partialIn.length();
+            int start = 0;
+            while (start < len) {
+                int end = partialIn.indexOf(FileHelper.NEWLINE, start);
+                if (end == -1) {
+                    end = len;
+                }
+                String line = partialIn.substring(start, end);
+                start = end + 1;
 
-            //Add all lines to an array
-            String line = null;
-            while ((line = br.readLine()) != null) {
                 //Checks that there is some text in the line. Otherwise ignore it
                 if (line.trim().length() == 0) {
-                    break;
+                    continue;
                 }
 
                 // Add to the list
@@ -106,7 +109,7 @@ public class FindCommand extends AsyncResultProgram implements FindExecutable {
                     FileSystemObject fso = ParseHelper.parseStatOutput(line);
 
                     // Search directory is not part of the search
-                    if (fso.getFullPath().compareTo(this.mDirectory.getAbsolutePath()) != 0) {
+                    if (fso.getFullPath().compareTo(this.mDirectoryPath) != 0) {
                         partialFiles.add(fso);
                     }
 
@@ -122,21 +125,12 @@ public class FindCommand extends AsyncResultProgram implements FindExecutable {
             }
 
             //If a listener is defined, then send the partial result
-            if (getAsyncResultListener() != null) {
+            if (getAsyncResultListener() != null && partialFiles.size() > 0) {
                 getAsyncResultListener().onPartialResult(partialFiles);
             }
 
         } catch (Exception ex) {
             Log.w(TAG, "Partial result fails", ex); //$NON-NLS-1$
-
-        } finally {
-            try {
-                if (br != null) {
-                    br.close();
-                }
-            } catch (Throwable ex) {
-                /**NON BLOCK**/
-            }
         }
     }
 
@@ -34,11 +34,7 @@ import me.toolify.backbone.model.Symlink;
 import me.toolify.backbone.util.FileHelper;
 import me.toolify.backbone.util.MimeTypeHelper;
 import me.toolify.backbone.util.MimeTypeHelper.MimeTypeCategory;
-
-import java.io.BufferedReader;
-import java.io.StringReader;
-import java.util.ArrayList;
-import java.util.List;
+import me.toolify.backbone.util.ParseHelper;
 
 /**
  * A class for retrieve the disk usage of a folder
@@ -91,111 +87,24 @@ public class FolderUsageCommand extends AsyncResultProgram implements FolderUsag
     @Override
     public void onParsePartialResult(final String partialIn) {
 
-        // Check the in buffer to extract information
-        BufferedReader br = null;
+        // Check the in buffer to extract information. The partial buffer is always
+        // delivered in complete lines, so it's parsed in one pass, moving a cursor over
+        // the lines and their fields (no intermediate lines or fields are created)
         try {
-            // Parse the line. We expect a ls -l output line
-            // -rw-r--r-- root     root            7 2012-12-30 00:49 test.txt
-            //
-            // (1) permissions
-            // (2) number of links and directories
-            // (3) owner
-            // (4) group
-            // (5) size
-            // (6) date
-            // (7) name
-
-            //Partial contains full lines
-            br = new BufferedReader(new StringReader(partialIn));
-
-            //Add all lines to an array
-            List<String> lines = new ArrayList<String>();
-            String line = null;
-            while ((line = br.readLine()) != null) {
-                // Discard empty, paths, and folder links
-                if (line.length() == 0 ||
-                    line.startsWith(FileHelper.ROOT_DIRECTORY) ||
-                    line.startsWith(FileHelper.CURRENT_DIRECTORY) ||
-                    line.startsWith(FileHelper.PARENT_DIRECTORY)) {
-                    continue;
+            final int len = partialIn.length();
+            int start = 0;
+            while (start < len) {
+                int end = partialIn.indexOf(FileHelper.NEWLINE, start);
+                if (end == -1) {
+                    end = len;
                 }
-                lines.add(line);
-            }
-
-            int c = 0;
-            try {
-                while (lines.size() > 0) {
-                    // Retrieve the info
-                    String szLine = lines.remove(0).trim();
-                    try {
-                        // Clean the line (we don't care about names, only need the extension)
-                        // so remove spaces is safe here
-                        while (szLine.indexOf("  ") != -1) { //$NON-NLS-1$
-                            szLine = szLine.replaceAll("  ", " "); //$NON-NLS-1$ //$NON-NLS-2$
-                        }
-
-                        // Don't compute . and ..
-                        // This is not secure, but we don't need a exact precission on this
-                        // method
-                        if (szLine.length() == 0 ||
-                            szLine.endsWith(" " + FileHelper.CURRENT_DIRECTORY) || //$NON-NLS-1$
-                            szLine.endsWith(" " + FileHelper.PARENT_DIRECTORY)) { //$NON-NLS-1$
-                            c++;
-                            continue;
-                        }
-
-                        char type = szLine.charAt(0);
-                        if (type == Symlink.UNIX_ID ||
-                                type == BlockDevice.UNIX_ID ||
-                                type == CharacterDevice.UNIX_ID ||
-                                type == DomainSocket.UNIX_ID ||
-                                type == NamedPipe.UNIX_ID) {
-                            // File + Category
-                            this.mFolderUsage.addFile();
-                            if (type == Symlink.UNIX_ID) {
-                                this.mFolderUsage.addFileToCategory(MimeTypeCategory.NONE);
-                            } else {
-                                this.mFolderUsage.addFileToCategory(MimeTypeCategory.SYSTEM);
-                            }
-
-                        } else if (type == Directory.UNIX_ID) {
-                            // Folder
-                            this.mFolderUsage.addFolder();
-
-                        } else {
-                            // File + Category + Size
-                            try {
-                                // we need a valid line
-                                String[] fields = szLine.split(" "); //$NON-NLS-1$
-                                if (fields.length < 8) {
-                                    continue;
-                                }
-
-                                long size = Long.parseLong(fields[4]);
-                                String name = fields[fields.length-1];// We only need the extension
-                                String ext = FileHelper.getExtension(name);
-                                MimeTypeCategory category =
-                                        MimeTypeHelper.getCategoryFromExt(null, ext);
-                                this.mFolderUsage.addFile();
-                                this.mFolderUsage.addFileToCategory(category);
-                                this.mFolderUsage.addSize(size);
-                            } catch (Exception e) {/**NON BLOCK**/}
-                        }
-                        c++;
-
-                    } catch (Exception e) {
-                        // Ignore.
-                    }
-
-                    // Partial notification
-                    if (c % 5 == 0) {
-                        //If a listener is defined, then send the partial result
-                        if (getAsyncResultListener() != null) {
-                            getAsyncResultListener().onPartialResult(this.mFolderUsage);
-                        }
-                    }
+                try {
+                    parseLine(partialIn, start, end);
+                } catch (Exception e) {
+                    // Ignore. We don't need a exact precission on this method
                 }
-            } catch (Exception ex) { /**NON BLOCK **/ }
+                start = end + 1;
+            }
 
             //If a listener is defined, then send the partial result
             if (getAsyncResultListener() != null) {
@@ -204,16 +113,114 @@ public class FolderUsageCommand extends AsyncResultProgram implements FolderUsag
 
         } catch (Exception ex) {
             Log.w(TAG, "Partial result fails", ex); //$NON-NLS-1$
+        }
+    }
 
-        } finally {
-            try {
-                if (br != null) {
-                    br.close();
-                }
-            } catch (Throwable ex) {
-                /**NON BLOCK**/
+    /**
+     * Method that parses a line of the output and adds it to the folder usage. We
+     * expect a ls -l output line
+     * <pre>
+     * -rw-r--r-- 1 root     root            7 2012-12-30 00:49 test.txt
+     * </pre>
+     * (1) permissions, (2) number of links and directories, (3) owner, (4) group,
+     * (5) size, (6) date, (7) time and (8) name.
+     *
+     * @param s The output
+     * @param start The start of the line (inclusive)
+     * @param end The end of the line (exclusive)
+     */
+    private void parseLine(String s, int start, int end) {
+        // Trim the line
+        while (start < end && s.charAt(start) <= ' ') {
+            start++;
+        }
+        while (end > start && s.charAt(end - 1) <= ' ') {
+            end--;
+        }
+
+        // Discard empty, paths, and folder links
+        if (start == end ||
+            s.startsWith(FileHelper.ROOT_DIRECTORY, start) ||
+            s.startsWith(FileHelper.CURRENT_DIRECTORY, start)) {
+            return;
+        }
+
+        // Don't compute . and ..
+        // This is not secure, but we don't need a exact precission on this method
+        if (endsWithName(s, start, end, FileHelper.CURRENT_DIRECTORY) ||
+            endsWithName(s, start, end, FileHelper.PARENT_DIRECTORY)) {
+            return;
+        }
+
+        char type = s.charAt(start);
+        if (type == Symlink.UNIX_ID ||
+                type == BlockDevice.UNIX_ID ||
+                type == CharacterDevice.UNIX_ID ||
+                type == DomainSocket.UNIX_ID ||
+                type == NamedPipe.UNIX_ID) {
+            // File + Category
+            this.mFolderUsage.addFile();
+            if (type == Symlink.UNIX_ID) {
+                this.mFolderUsage.addFileToCategory(MimeTypeCategory.NONE);
+            } else {
+                this.mFolderUsage.addFileToCategory(MimeTypeCategory.SYSTEM);
             }
+            return;
+        }
+        if (type == Directory.UNIX_ID) {
+            // Folder
+            this.mFolderUsage.addFolder();
+            return;
         }
+
+        // File + Category + Size. Move the cursor to the size (5th field), and check
+        // that the line has all the fields (the last one is the name)
+        int pos = start;
+        int sizeStart = -1;
+        int sizeEnd = -1;
+        int lastFieldStart = -1;
+        for (int field = 0; field < 8; field++) {
+            if (pos >= end) {
+                // Not a valid line
+                return;
+            }
+            lastFieldStart = pos;
+            while (pos < end && s.charAt(pos) != ' ') {
+                pos++;
+            }
+            if (field == 4) {
+                sizeStart = lastFieldStart;
+                sizeEnd = pos;
+            }
+            while (pos < end && s.charAt(pos) == ' ') {
+                pos++;
+            }
+        }
+        long size = ParseHelper.parseLong(s, sizeStart, sizeEnd, 10);
+
+        // We only need the extension, so the last word of the name is enough
+        int nameStart = Math.max(lastFieldStart, s.lastIndexOf(' ', end - 1) + 1);
+        String ext = FileHelper.getExtension(s.substring(nameStart, end));
+        MimeTypeCategory category = MimeTypeHelper.getCategoryFromExt(null, ext);
+        this.mFolderUsage.addFile();
+        this.mFolderUsage.addFileToCategory(category);
+        this.mFolderUsage.addSize(size);
+    }
+
+    /**
+     * Method that checks if the name of a line (the last field) is the passed name.
+     *
+     * @param s The output
+     * @param start The start of the line (inclusive)
+     * @param end The end of the line (exclusive)
+     * @param name The name to check
+     * @return boolean If the line ends with the name
+     */
+    private static boolean endsWithName(String s, int start, int end, String name) {
+        int nameStart = end - name.length();
+        return nameStart > start &&
+                s.charAt(nameStart - 1) == ' ' &&
+                s.regionMatches(nameStart, name, 0, name.length());
     }
 
     /**
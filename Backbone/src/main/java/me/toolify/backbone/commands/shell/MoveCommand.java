@@ -20,9 +20,11 @@ import me.toolify.backbone.commands.MoveExecutable;
 import me.toolify.backbone.console.CommandNotFoundException;
 import me.toolify.backbone.console.ExecutionException;
 import me.toolify.backbone.console.InsufficientPermissionsException;
+import me.toolify.backbone.model.CopyProgress;
 import me.toolify.backbone.model.MountPoint;
 import me.toolify.backbone.util.MountPointHelper;
 
+import java.io.File;
 import java.text.ParseException;
 
 
@@ -68,6 +70,18 @@ public class MoveCommand extends SyncResultProgram implements MoveExecutable {
         return this.mRet;
     }
 
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void setProgress(CopyProgress progress) {
+        // The shell program can't report its progress, so it is computed from the
+        // size of the destination (only if the app can read it)
+        if (progress != null) {
+            progress.beginSampling(new File(this.mSrc), new File(this.mDst));
+        }
+    }
+
     /**
      * {@inheritDoc}
      */
@@ -139,6 +139,21 @@ public abstract class Program extends Command implements Executable {
         return false;
     }
 
+    /**
+     * Returns whether the standard error of the program was fully received. The standard
+     * error is read independently of the standard output, so it could lag behind the end
+     * of the program. Programs that write a control code to the standard error should
+     * check it here.
+     *
+     * @param err The standard error received
+     * @return boolean If the standard error was fully received
+     * @hide
+     */
+    @SuppressWarnings({"static-method", "unused"})
+    public boolean isStdErrComplete(String err) {
+        return true;
+    }
+
     /**
      * Returns whether the shell shouldn't raise a {@link OperationTimeoutException} when
      * the program didn't exited but new data was received.
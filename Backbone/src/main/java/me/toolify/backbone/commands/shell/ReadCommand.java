@@ -23,8 +23,11 @@ import me.toolify.backbone.console.CommandNotFoundException;
 import me.toolify.backbone.console.ExecutionException;
 import me.toolify.backbone.console.InsufficientPermissionsException;
 
+import java.nio.ByteBuffer;
+
 /**
- * A class for read a file
+ * A class for read a file. The output of the command is read raw (without decode it),
+ * so the content of binary or non-ASCII files is not corrupted.
  *
  * {@link "http://unixhelp.ed.ac.uk/CGI/man-cgi?cat"}
  */
@@ -70,6 +73,19 @@ public class ReadCommand extends AsyncResultProgram implements ReadExecutable {
         }
     }
 
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void onParsePartialResult(ByteBuffer partialIn) {
+        //If a listener is defined, then send the partial result
+        if (partialIn.hasRemaining() && getAsyncResultListener() != null) {
+            byte[] data = new byte[partialIn.remaining()];
+            partialIn.get(data);
+            getAsyncResultListener().onPartialResult(data);
+        }
+    }
+
     /**
      * {@inheritDoc}
      */
@@ -92,6 +108,14 @@ public class ReadCommand extends AsyncResultProgram implements ReadExecutable {
         return true;
     }
 
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public boolean isRawOutput() {
+        return true;
+    }
+
     /**
      * {@inheritDoc}
      */
@@ -16,7 +16,9 @@
 
 package me.toolify.backbone.commands.shell;
 
+import me.toolify.backbone.commands.AsyncListExecutable;
 import me.toolify.backbone.commands.AsyncResultListener;
+import me.toolify.backbone.commands.BatchExecutable;
 import me.toolify.backbone.commands.ChangeOwnerExecutable;
 import me.toolify.backbone.commands.ChangePermissionsExecutable;
 import me.toolify.backbone.commands.ChecksumExecutable;
@@ -46,6 +48,7 @@ import me.toolify.backbone.commands.ReadExecutable;
 import me.toolify.backbone.commands.ResolveLinkExecutable;
 import me.toolify.backbone.commands.SIGNAL;
 import me.toolify.backbone.commands.SendSignalExecutable;
+import me.toolify.backbone.commands.SyncResultExecutable;
 import me.toolify.backbone.commands.UncompressExecutable;
 import me.toolify.backbone.commands.WriteExecutable;
 import me.toolify.backbone.console.CommandNotFoundException;
@@ -59,6 +62,8 @@ import me.toolify.backbone.model.Query;
 import me.toolify.backbone.model.User;
 import me.toolify.backbone.preferences.CompressionMode;
 
+import java.util.List;
+
 /**
  * A class for create shell {@link "Executable"} objects.
  */
@@ -295,6 +300,20 @@ public class ShellExecutableCreator implements ExecutableCreator {
         }
     }
 
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public AsyncListExecutable createAsyncListExecutable(
+            String src, AsyncResultListener asyncResultListener)
+            throws CommandNotFoundException {
+        try {
+            return new AsyncListCommand(src, asyncResultListener);
+        } catch (InvalidCommandDefinitionException icdEx) {
+            throw new CommandNotFoundException("AsyncListCommand", icdEx); //$NON-NLS-1$
+        }
+    }
+
     /**
      * {@inheritDoc}
      */
@@ -469,10 +488,10 @@ public class ShellExecutableCreator implements ExecutableCreator {
      */
     @Override
     public WriteExecutable createWriteExecutable(
-            String file, AsyncResultListener asyncResultListener)
+            String file, long length, AsyncResultListener asyncResultListener)
             throws CommandNotFoundException {
         try {
-            return new WriteCommand(file, asyncResultListener);
+            return new WriteCommand(file, length, asyncResultListener);
         } catch (InvalidCommandDefinitionException icdEx) {
             throw new CommandNotFoundException("WriteCommand", icdEx); //$NON-NLS-1$
         }
@@ -538,4 +557,36 @@ public class ShellExecutableCreator implements ExecutableCreator {
         }
     }
 
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public ChecksumExecutable createChecksumExecutable(
+            String src, ChecksumExecutable.CHECKSUMS[] checksums,
+            AsyncResultListener asyncResultListener)
+            throws CommandNotFoundException, NoSuchFileOrDirectory,
+            InsufficientPermissionsException {
+        // The shell only has programs for MD5 and SHA-1. The rest are not calculated
+        return createChecksumExecutable(src, asyncResultListener);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public BatchExecutable createBatchExecutable(List<SyncResultExecutable> executables)
+            throws CommandNotFoundException {
+        for (SyncResultExecutable executable : executables) {
+            if (!(executable instanceof SyncResultProgram)) {
+                throw new CommandNotFoundException(
+                        "executable not instanceof SyncResultProgram"); //$NON-NLS-1$
+            }
+        }
+        try {
+            return new BatchCommand(this.mConsole.getShell(), executables);
+        } catch (InvalidCommandDefinitionException icdEx) {
+            throw new CommandNotFoundException("BatchCommand", icdEx); //$NON-NLS-1$
+        }
+    }
+
 }
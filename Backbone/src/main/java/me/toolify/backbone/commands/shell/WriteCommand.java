@@ -23,6 +23,7 @@ import me.toolify.backbone.console.CommandNotFoundException;
 import me.toolify.backbone.console.ExecutionException;
 import me.toolify.backbone.console.InsufficientPermissionsException;
 
+import java.io.FilterOutputStream;
 import java.io.IOException;
 import java.io.OutputStream;
 
@@ -32,8 +33,13 @@ import java.io.OutputStream;
  * User MUST call the {@link #createOutputStream()} to get the output stream where
  * write the data.<br/>. When no more exist then user MUST call the onEnd method
  * of the asynchronous listener.<br/>
+ * <br/>
+ * The data is written straight to the standard input of the shell, so the pipe applies
+ * the backpressure of <code>head</code> to the writer. <code>head</code> reads the number
+ * of bytes of the write and exits by itself, so the command ends when all the data
+ * reaches the file, without wait or kill it.<br/>
  *
- * {@link "http://unixhelp.ed.ac.uk/CGI/man-cgi?dd"}
+ * {@link "http://unixhelp.ed.ac.uk/CGI/man-cgi?head"}
  */
 public class WriteCommand extends AsyncResultProgram implements WriteExecutable {
 
@@ -41,6 +47,9 @@ public class WriteCommand extends AsyncResultProgram implements WriteExecutable
 
     private static final long TIMEOUT = 1000L;
 
+    private final long mLength;
+    private long mWritten;
+
     /**
      * @hide
      */
@@ -55,25 +64,20 @@ public class WriteCommand extends AsyncResultProgram implements WriteExecutable
      * Constructor of <code>WriteCommand</code>.
      *
      * @param file The file where to write the data
+     * @param length The number of bytes that will be written
      * @param asyncResultListener The partial result listener
      * @throws InvalidCommandDefinitionException If the command has an invalid definition
      */
     public WriteCommand(
-            String file, AsyncResultListener asyncResultListener)
+            String file, long length, AsyncResultListener asyncResultListener)
             throws InvalidCommandDefinitionException {
-        super(ID, asyncResultListener, file);
+        super(ID, asyncResultListener, file, String.valueOf(length));
+        this.mLength = length;
+        this.mWritten = 0;
         this.mReady = false;
         this.mError = false;
     }
 
-    /**
-     * {@inheritDoc}
-     */
-    @Override
-    public boolean isExpectEnd() {
-        return false;
-    }
-
     /**
      * {@inheritDoc}
      */
@@ -88,7 +92,40 @@ public class WriteCommand extends AsyncResultProgram implements WriteExecutable
                 } catch (Exception e) {/**NON BLOCK**/}
             }
         }
-        return getProgramListener().getOutputStream();
+        final OutputStream stdin = getProgramListener().getOutputStream();
+        if (stdin == null) {
+            return null;
+        }
+        return new FilterOutputStream(stdin) {
+            @Override
+            public void write(byte[] buffer, int offset, int length) throws IOException {
+                // Don't write byte to byte. The pipe blocks while head is behind
+                this.out.write(buffer, offset, length);
+                onWritten(length);
+            }
+
+            @Override
+            public void write(int oneByte) throws IOException {
+                this.out.write(oneByte);
+                onWritten(1);
+            }
+
+            @Override
+            public void close() throws IOException {
+                // The stream of the console must not be closed
+                flush();
+            }
+        };
+    }
+
+    /**
+     * Method that accounts the bytes written to the pipe.
+     *
+     * @param bytes The bytes written
+     * @hide
+     */
+    synchronized void onWritten(long bytes) {
+        this.mWritten += bytes;
     }
 
     /**
@@ -118,12 +155,19 @@ public class WriteCommand extends AsyncResultProgram implements WriteExecutable
                 this.getProgramListener().getOutputStream().flush();
             }
         } catch (Exception ex) {/**NON BLOCK**/}
-        try {
-            Thread.yield();
-        } catch (Exception ex) {/**NON BLOCK**/}
         return null;
     }
 
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public synchronized boolean isCancellable() {
+        // When all the data is written head ends by itself. Killing it would lose the
+        // data that is still in the pipe. An incomplete write is killed on end
+        return this.mWritten < this.mLength;
+    }
+
     /**
      * {@inheritDoc}
      */
@@ -100,6 +100,16 @@ public abstract class Console
     */
    public abstract boolean isActive();
 
+   /**
+    * Method that returns if the console is executing (or about to execute) a program
+    * that blocks the next programs sent to the console.
+    *
+    * @return boolean Indicates if the console is busy
+    */
+   public boolean isBusy() {
+       return false;
+   }
+
    /**
     * Method that retrieves the {@link ExecutableFactory} associated with the {@link Console}.
     *
@@ -26,6 +26,7 @@ import me.toolify.backbone.commands.shell.InvalidCommandDefinitionException;
 import me.toolify.backbone.console.java.JavaConsole;
 import me.toolify.backbone.console.shell.NonPriviledgeConsole;
 import me.toolify.backbone.console.shell.PrivilegedConsole;
+import me.toolify.backbone.console.shell.ShellConsole;
 import me.toolify.backbone.preferences.AccessMode;
 import me.toolify.backbone.preferences.FileManagerSettings;
 import me.toolify.backbone.preferences.Preferences;
@@ -107,7 +108,7 @@ public final class ConsoleBuilder {
     public static boolean changeToNonPrivilegedConsole(Context context) {
 
         //Check the current console
-        if (sHolder != null && sHolder.getConsole() instanceof NonPriviledgeConsole) {
+        if (sHolder != null && !sHolder.getConsole().isPrivileged()) {
             //The current console is non-privileged. Not needed
             return true;
         }
@@ -117,7 +118,7 @@ public final class ConsoleBuilder {
         try {
             //Create the console, destroy the current console, and marks as current
             holder = new ConsoleHolder(
-                    createNonPrivilegedConsole(context));
+                    createConsolePool(context, false));
             destroyConsole();
             sHolder = holder;
             return true;
@@ -139,7 +140,7 @@ public final class ConsoleBuilder {
     public static boolean changeToPrivilegedConsole(Context context) {
 
         //Destroy and create the new console
-        if (sHolder != null && sHolder.getConsole() instanceof PrivilegedConsole) {
+        if (sHolder != null && sHolder.getConsole().isPrivileged()) {
             //The current console is privileged. Not needed
             return true;
         }
@@ -149,14 +150,14 @@ public final class ConsoleBuilder {
         try {
             //Create the console, destroy the current console, and marks as current
             holder = new ConsoleHolder(
-                    createAndCheckPrivilegedConsole(context));
+                    createConsolePool(context, true));
             destroyConsole();
             sHolder = holder;
 
             // Change also the background console to privileged
             FileManagerApplication.changeBackgroundConsoleToPriviligedConsole();
 
-            return sHolder.getConsole() instanceof PrivilegedConsole;
+            return sHolder.getConsole().isPrivileged();
 
         } catch (Throwable e) {
             destroyConsole();
@@ -224,8 +225,8 @@ public final class ConsoleBuilder {
             //Check if console settings has changed
             if (sHolder != null) {
                 if (
-                    (sHolder.getConsole() instanceof NonPriviledgeConsole && superuserMode)
-                    || (sHolder.getConsole() instanceof PrivilegedConsole && !superuserMode)) {
+                    (!sHolder.getConsole().isPrivileged() && superuserMode)
+                    || (sHolder.getConsole().isPrivileged() && !superuserMode)) {
                     //Deallocate actual console
                     sHolder.dispose();
                     sHolder = null;
@@ -234,9 +235,7 @@ public final class ConsoleBuilder {
 
             //Is there a console allocated
             if (sHolder == null) {
-                sHolder = (superuserMode)
-                        ? new ConsoleHolder(createAndCheckPrivilegedConsole(context))
-                        : new ConsoleHolder(createNonPrivilegedConsole(context));
+                sHolder = new ConsoleHolder(createConsolePool(context, superuserMode));
                 if (superuserMode) {
                     // Change also the background console to privileged
                     FileManagerApplication.changeBackgroundConsoleToPriviligedConsole();
@@ -260,6 +259,51 @@ public final class ConsoleBuilder {
         sHolder = null;
     }
 
+    /**
+     * Method that creates the current console. Shell consoles are wrapped by a
+     * {@link ConsolePool}, so slow commands don't block the rest of commands.
+     *
+     * @param context The current context
+     * @param privileged If a privileged console should be created
+     * @return Console The current console
+     * @throws FileNotFoundException If the initial directory not exists
+     * @throws IOException If initial directory couldn't be checked
+     * @throws InvalidCommandDefinitionException If the command has an invalid definition
+     * @throws ConsoleAllocException If the console can't be allocated
+     * @throws InsufficientPermissionsException If the console created is not a privileged console
+     * @see ConsolePool
+     */
+    private static Console createConsolePool(Context context, boolean privileged)
+            throws FileNotFoundException, IOException, InvalidCommandDefinitionException,
+            ConsoleAllocException, InsufficientPermissionsException {
+        final Console console = (privileged)
+                ? createAndCheckPrivilegedConsole(context)
+                : createNonPrivilegedConsole(context);
+        int size = context.getResources().getInteger(R.integer.console_pool_size);
+        if (!(console instanceof ShellConsole) || size <= 1) {
+            // Java consoles don't block between commands
+            return console;
+        }
+
+        final Context ctx = context.getApplicationContext();
+        ConsolePool pool = new ConsolePool(console, size, new ConsolePool.ConsoleFactory() {
+            @Override
+            public Console createConsole() throws ConsoleAllocException {
+                try {
+                    return (console.isPrivileged())
+                            ? createPrivilegedConsole(ctx)
+                            : createNonPrivilegedConsole(ctx);
+                } catch (ConsoleAllocException caEx) {
+                    throw caEx;
+                } catch (Exception ex) {
+                    throw new ConsoleAllocException("Console allocation error.", ex); //$NON-NLS-1$
+                }
+            }
+        });
+        pool.alloc();
+        return pool;
+    }
+
     /**
      * Method that creates a new non privileged console.
      *
@@ -403,7 +447,7 @@ public final class ConsoleBuilder {
      * @return boolean If the current console is a privileged console
      */
     public static boolean isPrivileged() {
-        if (sHolder != null && sHolder.getConsole() instanceof PrivilegedConsole) {
+        if (sHolder != null && sHolder.getConsole().isPrivileged()) {
             return true;
         }
         return false;
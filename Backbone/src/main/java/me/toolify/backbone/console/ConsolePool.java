@@ -0,0 +1,538 @@
+/*
+ * Copyright (C) 2013 BrandroidTools
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package me.toolify.backbone.console;
+
+import android.util.Log;
+
+import me.toolify.backbone.commands.AsyncResultExecutable;
+import me.toolify.backbone.commands.Executable;
+import me.toolify.backbone.commands.ExecutableFactory;
+import me.toolify.backbone.commands.SIGNAL;
+import me.toolify.backbone.model.Identity;
+
+import java.util.ArrayList;
+import java.util.LinkedList;
+import java.util.List;
+
+/**
+ * A {@link Console} that holds a pool of consoles of the same kind, so a slow command
+ * doesn't block the rest of commands behind it.<br/>
+ * <br/>
+ * Synchronous programs lease an idle console of the pool, run and return it. Asynchronous
+ * programs (usually long running programs like searches or folder usages) are routed
+ * to a separated set of dedicated consoles: an idle one if there is any, otherwise a new
+ * one. Only when all the consoles are busy and the pool is full, the program waits behind
+ * a busy console. Consoles are allocated lazily, up to the size of the pool.
+ */
+public class ConsolePool extends Console {
+
+    private static final String TAG = "ConsolePool"; //$NON-NLS-1$
+
+    /**
+     * An interface for creating new allocated consoles for the pool.
+     */
+    public interface ConsoleFactory {
+        /**
+         * Method that creates a new allocated console.
+         *
+         * @return Console The new allocated console
+         * @throws ConsoleAllocException If the console can't be allocated
+         */
+        Console createConsole() throws ConsoleAllocException;
+    }
+
+    private final ConsoleFactory mFactory;
+    private final boolean mPrivileged;
+    private int mSize;
+
+    private final Object mSync = new Object();
+    private Console mPrimary;
+    private final List<Console> mConsoles;
+    private final LinkedList<Console> mIdle;
+    private final List<Console> mAsyncConsoles;
+    private int mAllocating;
+    private int mAllocatingAsync;
+    private int mNextAsyncConsole;
+    private boolean mActive;
+
+    // Statistics
+    private long mStartTime;
+    private long mLeases;
+    private long mLeaseWaitTime;
+    private long mMaxLeaseWaitTime;
+    private long mLeaseBusyTime;
+    private int mInUse;
+    private int mMaxInUse;
+    private long mAsyncExecutions;
+
+    /**
+     * Constructor of <code>ConsolePool</code>.
+     *
+     * @param console The first allocated console of the pool
+     * @param size The maximum number of consoles of the pool for synchronous programs
+     * @param factory The factory used to create the rest of consoles of the pool
+     */
+    public ConsolePool(Console console, int size, ConsoleFactory factory) {
+        super();
+        this.mFactory = factory;
+        this.mPrivileged = console.isPrivileged();
+        this.mSize = Math.max(1, size);
+        this.mConsoles = new ArrayList<Console>(this.mSize);
+        this.mIdle = new LinkedList<Console>();
+        this.mAsyncConsoles = new ArrayList<Console>();
+        this.mPrimary = console;
+        this.mConsoles.add(console);
+        this.mIdle.add(console);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public Identity getIdentity() {
+        return this.mPrimary.getIdentity();
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void alloc() throws ConsoleAllocException {
+        synchronized (this.mSync) {
+            if (this.mConsoles.isEmpty()) {
+                Console console = this.mFactory.createConsole();
+                this.mPrimary = console;
+                this.mConsoles.add(console);
+                this.mIdle.add(console);
+            }
+            this.mActive = true;
+            this.mStartTime = System.currentTimeMillis();
+            this.mSync.notifyAll();
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void dealloc() {
+        List<Console> consoles = new ArrayList<Console>();
+        synchronized (this.mSync) {
+            if (this.mActive && isTrace()) {
+                Log.v(TAG, String.format(
+                        "Console pool statistics: leases: %d, average wait: %d ms, " + //$NON-NLS-1$
+                        "max wait: %d ms, utilization: %.2f, max in use: %d/%d, " + //$NON-NLS-1$
+                        "async executions: %d", //$NON-NLS-1$
+                        Long.valueOf(this.mLeases),
+                        Long.valueOf(getAverageLeaseWaitTime()),
+                        Long.valueOf(this.mMaxLeaseWaitTime),
+                        Float.valueOf(getUtilization()),
+                        Integer.valueOf(this.mMaxInUse),
+                        Integer.valueOf(this.mSize),
+                        Long.valueOf(this.mAsyncExecutions)));
+            }
+            this.mActive = false;
+            consoles.addAll(this.mConsoles);
+            consoles.addAll(this.mAsyncConsoles);
+            this.mConsoles.clear();
+            this.mIdle.clear();
+            this.mAsyncConsoles.clear();
+            this.mSync.notifyAll();
+        }
+        for (Console console : consoles) {
+            try {
+                console.dealloc();
+            } catch (Throwable ex) {
+                /**NON BLOCK**/
+            }
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void realloc() throws ConsoleAllocException {
+        dealloc();
+        alloc();
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public boolean isPrivileged() {
+        return this.mPrivileged;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public boolean isActive() {
+        synchronized (this.mSync) {
+            return this.mActive;
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public ExecutableFactory getExecutableFactory() {
+        // Programs don't depend on the console that create them, so any console
+        // of the pool can execute them
+        return this.mPrimary.getExecutableFactory();
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void execute(Executable executable)
+            throws ConsoleAllocException, InsufficientPermissionsException, NoSuchFileOrDirectory,
+            OperationTimeoutException, ExecutionException, CommandNotFoundException,
+            ReadOnlyFilesystemException {
+
+        // Asynchronous programs are routed to a dedicated console. The console returns
+        // as soon as the program is launched
+        if (executable instanceof AsyncResultExecutable) {
+            executeAsync(executable);
+            return;
+        }
+
+        Console console = lease();
+        final long start = System.currentTimeMillis();
+        try {
+            console.execute(executable);
+        } finally {
+            release(console, System.currentTimeMillis() - start);
+        }
+    }
+
+    /**
+     * Method that returns the maximum number of consoles of the pool.
+     *
+     * @return int The size of the pool
+     */
+    public int getSize() {
+        return this.mSize;
+    }
+
+    /**
+     * Method that returns the number of consoles leased from the pool.
+     *
+     * @return long The number of leases
+     */
+    public long getLeaseCount() {
+        synchronized (this.mSync) {
+            return this.mLeases;
+        }
+    }
+
+    /**
+     * Method that returns the average time that a program waits for an idle console.
+     *
+     * @return long The average time of wait (in milliseconds)
+     */
+    public long getAverageLeaseWaitTime() {
+        synchronized (this.mSync) {
+            if (this.mLeases == 0) return 0;
+            return this.mLeaseWaitTime / this.mLeases;
+        }
+    }
+
+    /**
+     * Method that returns the maximum time that a program waited for an idle console.
+     *
+     * @return long The maximum time of wait (in milliseconds)
+     */
+    public long getMaxLeaseWaitTime() {
+        synchronized (this.mSync) {
+            return this.mMaxLeaseWaitTime;
+        }
+    }
+
+    /**
+     * Method that returns the utilization of the pool, as the ratio between the time that
+     * the consoles were leased and the time that the pool was alive.
+     *
+     * @return float The utilization of the pool (between 0 and 1)
+     */
+    public float getUtilization() {
+        synchronized (this.mSync) {
+            long elapsed = System.currentTimeMillis() - this.mStartTime;
+            if (elapsed <= 0) return 0;
+            return Math.min(1.0f, (float)this.mLeaseBusyTime / (elapsed * this.mSize));
+        }
+    }
+
+    /**
+     * Method that returns the number of consoles currently leased.
+     *
+     * @return int The number of consoles in use
+     */
+    public int getInUseCount() {
+        synchronized (this.mSync) {
+            return this.mInUse;
+        }
+    }
+
+    /**
+     * Method that leases an idle console of the pool. If there is no idle console, and the
+     * pool is not full, then a new console is allocated. Otherwise waits for a console.
+     *
+     * @return Console The leased console
+     * @throws ConsoleAllocException If the console can't be allocated
+     */
+    private Console lease() throws ConsoleAllocException {
+        final long start = System.currentTimeMillis();
+        Console console = null;
+        try {
+            while (console == null) {
+                boolean create = false;
+                synchronized (this.mSync) {
+                    while (true) {
+                        if (!this.mActive) {
+                            throw new ConsoleAllocException("No console allocated"); //$NON-NLS-1$
+                        }
+                        if (!this.mIdle.isEmpty()) {
+                            console = this.mIdle.removeFirst();
+                            break;
+                        }
+                        if (this.mConsoles.size() + this.mAllocating < this.mSize) {
+                            this.mAllocating++;
+                            create = true;
+                            break;
+                        }
+                        this.mSync.wait();
+                    }
+                }
+
+                // Allocate the new console outside the lock (this could take a while)
+                if (create) {
+                    console = createConsole();
+                }
+            }
+        } catch (InterruptedException iEx) {
+            throw new ConsoleAllocException("Interrupted while waiting for console", iEx); //$NON-NLS-1$
+        }
+
+        synchronized (this.mSync) {
+            final long wait = System.currentTimeMillis() - start;
+            this.mLeases++;
+            this.mLeaseWaitTime += wait;
+            this.mMaxLeaseWaitTime = Math.max(this.mMaxLeaseWaitTime, wait);
+            this.mInUse++;
+            this.mMaxInUse = Math.max(this.mMaxInUse, this.mInUse);
+        }
+        return console;
+    }
+
+    /**
+     * Method that allocates a new console for the pool. If the console can't be allocated
+     * the pool is shrunk to the number of current consoles, and the leaser will wait
+     * for one of them.
+     *
+     * @return Console The new console or <code>null</code> if the console can't be allocated
+     * @throws ConsoleAllocException If the console can't be allocated and the pool is empty
+     */
+    private Console createConsole() throws ConsoleAllocException {
+        Console console = null;
+        try {
+            console = this.mFactory.createConsole();
+            return console;
+        } catch (ConsoleAllocException caEx) {
+            synchronized (this.mSync) {
+                if (this.mConsoles.isEmpty()) {
+                    throw caEx;
+                }
+                Log.w(TAG, String.format(
+                        "Can't grow the console pool. Shrinking to %d consoles", //$NON-NLS-1$
+                        Integer.valueOf(this.mConsoles.size())), caEx);
+                this.mSize = this.mConsoles.size();
+            }
+            return null;
+        } finally {
+            synchronized (this.mSync) {
+                this.mAllocating--;
+                if (console != null) {
+                    this.mConsoles.add(console);
+                }
+                this.mSync.notifyAll();
+            }
+        }
+    }
+
+    /**
+     * Method that returns a leased console to the pool.
+     *
+     * @param console The leased console
+     * @param busyTime The time that the console was leased
+     */
+    private void release(Console console, long busyTime) {
+        boolean dispose = false;
+        synchronized (this.mSync) {
+            this.mInUse--;
+            this.mLeaseBusyTime += busyTime;
+            if (!this.mActive || !this.mConsoles.contains(console)) {
+                dispose = true;
+            } else if (!console.isActive()) {
+                // The console is dead. Drop it, a new one will be allocated when needed
+                this.mConsoles.remove(console);
+                dispose = true;
+            } else {
+                // Most recently used consoles first
+                this.mIdle.addFirst(console);
+            }
+            this.mSync.notifyAll();
+        }
+        if (dispose) {
+            try {
+                console.dealloc();
+            } catch (Throwable ex) {
+                /**NON BLOCK**/
+            }
+        }
+    }
+
+    /**
+     * Method that executes an asynchronous program in a dedicated console. An idle
+     * console is preferred, then a new console. If the pool is full and all the consoles
+     * are busy, the program waits for the next console in rotation.
+     *
+     * @param executable The asynchronous program
+     * @throws ConsoleAllocException If the console is not allocated
+     * @throws InsufficientPermissionsException If an operation requires elevated permissions
+     * @throws NoSuchFileOrDirectory If the file or directory was not found
+     * @throws OperationTimeoutException If the operation exceeded the maximum time of wait
+     * @throws CommandNotFoundException If the executable program was not found
+     * @throws ExecutionException If the operation returns a invalid exit code
+     * @throws ReadOnlyFilesystemException If the operation writes in a read-only filesystem
+     */
+    private void executeAsync(Executable executable)
+            throws ConsoleAllocException, InsufficientPermissionsException, NoSuchFileOrDirectory,
+            OperationTimeoutException, ExecutionException, CommandNotFoundException,
+            ReadOnlyFilesystemException {
+        Console console = null;
+        synchronized (this.mSync) {
+            if (!this.mActive) {
+                throw new ConsoleAllocException("No console allocated"); //$NON-NLS-1$
+            }
+            this.mAsyncExecutions++;
+
+            // Drop the dead consoles
+            for (int i = this.mAsyncConsoles.size() - 1; i >= 0; i--) {
+                if (!this.mAsyncConsoles.get(i).isActive()) {
+                    this.mAsyncConsoles.remove(i);
+                }
+            }
+
+            // An idle console. The program is launched inside the lock, so the console
+            // is busy before other program can choose it (launching an asynchronous
+            // program in an idle console doesn't block)
+            int cc = this.mAsyncConsoles.size();
+            for (int i = 0; i < cc; i++) {
+                Console c = this.mAsyncConsoles.get(i);
+                if (!c.isBusy()) {
+                    c.execute(executable);
+                    return;
+                }
+            }
+            if (cc + this.mAllocatingAsync >= this.mSize && cc > 0) {
+                console = nextAsyncConsole();
+            } else {
+                this.mAllocatingAsync++;
+            }
+        }
+
+        if (console == null) {
+            // Allocate the new console outside the lock (this could take a while)
+            try {
+                console = this.mFactory.createConsole();
+            } catch (ConsoleAllocException caEx) {
+                synchronized (this.mSync) {
+                    this.mAllocatingAsync--;
+                    if (this.mAsyncConsoles.isEmpty()) {
+                        throw caEx;
+                    }
+                    Log.w(TAG, "Can't allocate a new asynchronous console", caEx); //$NON-NLS-1$
+                    console = nextAsyncConsole();
+                }
+                console.execute(executable);
+                return;
+            }
+
+            // Launch the program before publish the console, so it's busy when the
+            // rest of programs see it
+            try {
+                console.execute(executable);
+            } finally {
+                synchronized (this.mSync) {
+                    this.mAllocatingAsync--;
+                    if (this.mActive) {
+                        this.mAsyncConsoles.add(console);
+                    } else {
+                        console.dealloc();
+                    }
+                }
+            }
+            return;
+        }
+
+        // All the consoles are busy. Wait behind one of them
+        console.execute(executable);
+    }
+
+    /**
+     * Method that returns the next asynchronous console in rotation.
+     *
+     * @return Console The asynchronous console
+     */
+    private Console nextAsyncConsole() {
+        this.mNextAsyncConsole = (this.mNextAsyncConsole + 1) % this.mAsyncConsoles.size();
+        return this.mAsyncConsoles.get(this.mNextAsyncConsole);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public boolean onCancel() {
+        // The program is cancelled by the console that is executing it
+        return false;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public boolean onSendSignal(SIGNAL signal) {
+        // The signal is sent by the console that is executing the program
+        return false;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public boolean onEnd() {
+        // The program is ended by the console that is executing the program
+        return false;
+    }
+
+}
@@ -20,6 +20,8 @@ import android.content.Context;
 import android.os.Process;
 import android.util.Log;
 
+import me.toolify.backbone.commands.AsyncResultExecutable;
+import me.toolify.backbone.commands.AsyncResultListener;
 import me.toolify.backbone.commands.Executable;
 import me.toolify.backbone.commands.ExecutableFactory;
 import me.toolify.backbone.commands.SIGNAL;
@@ -190,6 +192,15 @@ public final class JavaConsole extends Console {
                         Log.v(TAG,
                                 String.format("Async execute failed program: %s", //$NON-NLS-1$
                                 program.getClass().toString()));
+                    } finally {
+                        if (program instanceof AsyncResultExecutable) {
+                            AsyncResultListener listener =
+                                    ((AsyncResultExecutable)program).getAsyncResultListener();
+                            if (listener instanceof AsyncResultExecutable.OnFinishListener) {
+                                ((AsyncResultExecutable.OnFinishListener)listener)
+                                        .onAsyncFinish();
+                            }
+                        }
                     }
                 }
             };
@@ -20,6 +20,7 @@ import android.util.Log;
 
 import me.toolify.backbone.FileManagerApplication;
 import me.toolify.backbone.commands.AsyncResultExecutable;
+import me.toolify.backbone.commands.AsyncResultListener;
 import me.toolify.backbone.commands.Executable;
 import me.toolify.backbone.commands.ExecutableFactory;
 import me.toolify.backbone.commands.GroupsExecutable;
@@ -50,10 +51,12 @@ import java.io.FileNotFoundException;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
+import java.nio.ByteBuffer;
 import java.security.SecureRandom;
 import java.text.ParseException;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 
@@ -77,7 +80,13 @@ public abstract class ShellConsole extends Console implements Program.ProgramLis
     // MAX_OPERATION_TIMEOUT + DEFAULT_TIMEOUT
     private static final long MAX_OPERATION_TIMEOUT = 30000L;
 
+    // The maximum time to wait for the standard error of a program, once the program ended
+    private static final long STDERR_TIMEOUT = 1000L;
+
     private static final int DEFAULT_BUFFER = 512;
+    // The size of the read buffer of the standard input. Raw reads (i.e. the content of
+    // a file) should read the pipe in big chunks to reach the throughput of the device
+    private static final int STDIN_BUFFER = 32 * 1024;
 
     //Shell References
     private final Shell mShell;
@@ -89,6 +98,10 @@ public abstract class ShellConsole extends Console implements Program.ProgramLis
      * @hide
      */
     final Object mPartialSync = new Object();
+    /**
+     * @hide
+     */
+    final Object mErrSync = new Object();
     /**
      * @hide
      */
@@ -100,6 +113,10 @@ public abstract class ShellConsole extends Console implements Program.ProgramLis
      * @hide
      */
     Program mActiveCommand = null;
+    /**
+     * @hide
+     */
+    final AtomicInteger mAsyncPrograms = new AtomicInteger();
     /**
      * @hide
      */
@@ -123,8 +140,18 @@ public abstract class ShellConsole extends Console implements Program.ProgramLis
     StringBuffer mSbErr = null;
 
     private final SecureRandom mRandom;
-    private String mStartControlPattern;
-    private String mEndControlPattern;
+    private Pattern mStartControlPattern;
+    private Pattern mEndControlPattern;
+    // The controls as bytes, for programs that read the raw output
+    private byte[] mStartControl1;
+    private byte[] mStartControl2;
+    private byte[] mEndControl1;
+    private byte[] mEndControl2;
+    private final int[] mControlBounds = new int[2];
+    /**
+     * @hide
+     */
+    int mMaxControlLength;
 
     /**
      * @hide
@@ -168,6 +195,15 @@ public abstract class ShellConsole extends Console implements Program.ProgramLis
         return this.mExecutableFactory;
     }
 
+    /**
+     * Method that returns the shell used to execute commands
+     *
+     * @return Shell The shell of the console
+     */
+    public Shell getShell() {
+        return this.mShell;
+    }
+
     /**
      * {@inheritDoc}
      */
@@ -202,6 +238,15 @@ public abstract class ShellConsole extends Console implements Program.ProgramLis
         return this.mActive;
     }
 
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public boolean isBusy() {
+        // The asynchronous programs hold the console until they end
+        return this.mAsyncPrograms.get() > 0;
+    }
+
     /**
      * {@inheritDoc}
      */
@@ -403,6 +448,7 @@ public abstract class ShellConsole extends Console implements Program.ProgramLis
         //Asynchronous or synchronous execution?
         final Program program = (Program)executable;
         if (executable instanceof AsyncResultExecutable) {
+            this.mAsyncPrograms.incrementAndGet();
             Thread asyncThread = new Thread(new Runnable() {
                 @Override
                 public void run() {
@@ -422,6 +468,13 @@ public abstract class ShellConsole extends Console implements Program.ProgramLis
                             //Capture exception
                             Log.e(TAG, "Fail asynchronous execution", ex); //$NON-NLS-1$
                         }
+                    } finally {
+                        ShellConsole.this.mAsyncPrograms.decrementAndGet();
+                        AsyncResultListener listener =
+                                ((AsyncResultExecutable)executable).getAsyncResultListener();
+                        if (listener instanceof AsyncResultExecutable.OnFinishListener) {
+                            ((AsyncResultExecutable.OnFinishListener)listener).onAsyncFinish();
+                        }
                     }
                 }
             });
@@ -516,8 +569,17 @@ public abstract class ShellConsole extends Console implements Program.ProgramLis
                                            (program instanceof AsyncResultProgram &&
                                             ((AsyncResultProgram)program).isExpectEnd()));
 
-                this.mStartControlPattern = startId1 + "\\d{1,3}" + startId2; //$NON-NLS-1$
-                this.mEndControlPattern = endId1 + "\\d{1,3}" + endId2; //$NON-NLS-1$
+                this.mStartControlPattern =
+                        Pattern.compile(startId1 + "\\d{1,3}" + startId2); //$NON-NLS-1$
+                this.mEndControlPattern =
+                        Pattern.compile(endId1 + "\\d{1,3}" + endId2); //$NON-NLS-1$
+                this.mStartControl1 = startId1.getBytes();
+                this.mStartControl2 = startId2.getBytes();
+                this.mEndControl1 = endId1.getBytes();
+                this.mEndControl2 = endId2.getBytes();
+                this.mMaxControlLength = Math.max(
+                        startId1.length() + startId2.length(),
+                        endId1.length() + endId2.length()) + 3;
                 String startCmd =
                         Command.getStartCodeCommandInfo(
                                 FileManagerApplication.getInstance().getResources());
@@ -601,6 +663,9 @@ public abstract class ShellConsole extends Console implements Program.ProgramLis
                                 String.valueOf(exitCode)));
             }
 
+            //Wait for the standard error of the program, if it knows its end
+            waitForStdErr(program);
+
             //Check if invocation was successfully or not
             if (!program.isIgnoreShellStdErrCheck()) {
                 //Wait for stderr buffer to be filled
@@ -670,181 +735,84 @@ public abstract class ShellConsole extends Console implements Program.ProgramLis
             @Override
             public void run() {
                 final ShellConsole shell = ShellConsole.this;
-                int read = 0;
-                StringBuffer sb = null;
+                final ShellOutputReader reader = new ShellOutputReader(
+                        in, Math.max(shell.mBufferSize, STDIN_BUFFER));
+                final StringBuilder sb = new StringBuilder();
                 try {
                     while (shell.mActive) {
-                        //Read only one byte with active wait
-                        final int r = in.read();
-                        if (r == -1) {
+                        //Read a whole chunk (blocks until data is available)
+                        final ByteBuffer chunk = reader.readBytes();
+                        if (chunk == null) {
                             break;
                         }
 
                         // Type of command
-                        boolean async =
-                                shell.mActiveCommand != null &&
-                                shell.mActiveCommand instanceof AsyncResultProgram;
-                        if (!async || sb == null) {
-                            sb = new StringBuffer();
+                        final Program program = shell.mActiveCommand;
+                        final boolean async =
+                                program != null && program instanceof AsyncResultProgram;
+
+                        // Programs that read the raw output receive the bytes as they
+                        // are read, without decode them
+                        if (async && ((AsyncResultProgram)program).isRawOutput()) {
+                            onRawData(chunk, (AsyncResultProgram)program);
+                            checkIfProcessExits();
+                            continue;
                         }
+                        final String s = reader.decode(chunk);
 
-                        if (!shell.mCancelled) {
-                            shell.mSbIn.append((char)r);
+                        if (!shell.mCancelled && s.length() > 0) {
+                            shell.mSbIn.append(s);
                             if (!shell.mStarted) {
-                                shell.mStarted = isCommandStarted(shell.mSbIn);
-                                if (shell.mStarted) {
-                                    sb = new StringBuffer(shell.mSbIn.toString());
-                                    if (async) {
-                                        synchronized (shell.mPartialSync) {
-                                            ((AsyncResultProgram)
-                                                    shell.mActiveCommand).
-                                                        onRequestStartParsePartialResult();
-                                        }
+                                sb.setLength(0);
+                                shell.mStarted = isCommandStarted(shell.mSbIn, s.length());
+                                if (shell.mStarted && async) {
+                                    sb.append(shell.mSbIn);
+                                    synchronized (shell.mPartialSync) {
+                                        ((AsyncResultProgram)program).
+                                                onRequestStartParsePartialResult();
                                     }
-                                } else {
-                                    sb.append(shell.mSbIn.toString());
                                 }
-                            } else {
-                                sb.append((char)r);
+                            } else if (async) {
+                                sb.append(s);
                             }
 
                             // New data received
                             onNewData();
 
                             //Check if the command has finished (and extract the control)
-                            boolean finished = isCommandFinished(shell.mSbIn, sb);
+                            boolean finished = isCommandFinished(
+                                    shell.mSbIn, async ? sb : null, s.length());
 
-                            //Notify asynchronous partial data
+                            //Notify asynchronous partial data. The tail that could be the
+                            //beginning of the end control is held back until the next chunk
                             if (shell.mStarted && async) {
-                                AsyncResultProgram program =
-                                        ((AsyncResultProgram)shell.mActiveCommand);
-                                String partial = sb.toString();
-                                int cc = shell.mEndControlPattern.length();
-                                if (partial.length() >= cc) {
-                                    program.onRequestParsePartialResult(partial);
-                                    shell.toStdIn(partial);
-
-                                    // Reset the temp buffer
-                                    sb = new StringBuffer();
+                                AsyncResultProgram asyncProgram = (AsyncResultProgram)program;
+                                int holdback = 0;
+                                if (!finished && asyncProgram.isExpectEnd()) {
+                                    holdback = getControlHoldback(sb);
                                 }
-                            }
-
-                            if (finished) {
-                                if (!async) {
-                                    shell.toStdIn(String.valueOf((char)r));
-                                } else {
-                                    AsyncResultProgram program =
-                                            ((AsyncResultProgram)shell.mActiveCommand);
-                                    String partial = sb.toString();
-                                    if (program != null) {
-                                        program.onRequestParsePartialResult(partial);
-                                    }
+                                int len = sb.length() - holdback;
+                                if (len > 0) {
+                                    String partial = sb.substring(0, len);
+                                    asyncProgram.onRequestParsePartialResult(partial);
                                     shell.toStdIn(partial);
-                                }
-
-                                //Notify the end
-                                notifyProcessFinished();
-                                break;
-                            }
-                            if (!async && !finished) {
-                                shell.toStdIn(String.valueOf((char)r));
-                            }
-                        }
-
-                        //Has more data? Read with available as more as exists
-                        //or maximum loop count is rebased
-                        int count = 0;
-                        while (in.available() > 0 && count < 10) {
-                            count++;
-                            int available =
-                                    Math.min(in.available(), shell.mBufferSize);
-                            byte[] data = new byte[available];
-                            read = in.read(data);
-
-                            // Type of command
-                            async =
-                                    shell.mActiveCommand != null &&
-                                    shell.mActiveCommand instanceof AsyncResultProgram;
-
-                            // Exit if active command is cancelled
-                            if (shell.mCancelled) continue;
-
-                            final String s = new String(data, 0, read);
-                            shell.mSbIn.append(s);
-                            if (!shell.mStarted) {
-                                shell.mStarted = isCommandStarted(shell.mSbIn);
-                                if (shell.mStarted) {
-                                    sb = new StringBuffer(shell.mSbIn.toString());
-                                    if (async) {
-                                        synchronized (shell.mPartialSync) {
-                                            AsyncResultProgram p =
-                                                    ((AsyncResultProgram)shell.mActiveCommand);
-                                            if (p != null) {
-                                                p.onRequestStartParsePartialResult();
-                                            }
-                                        }
-                                    }
-                                } else {
-                                    sb.append(shell.mSbIn.toString());
+                                    sb.delete(0, len);
                                 }
                             } else {
-                                sb.append(s);
-                            }
-
-                            // New data received
-                            onNewData();
-
-                            //Check if the command has finished (and extract the control)
-                            boolean finished = isCommandFinished(shell.mSbIn, sb);
-
-                            //Notify asynchronous partial data
-                            if (async) {
-                                AsyncResultProgram program = ((AsyncResultProgram)shell.mActiveCommand);
-                                String partial = sb.toString();
-                                int cc = shell.mEndControlPattern.length();
-                                if (partial.length() >= cc) {
-                                    if (program != null) {
-                                        program.onRequestParsePartialResult(partial);
-                                    }
-                                    shell.toStdIn(partial);
-
-                                    // Reset the temp buffer
-                                    sb = new StringBuffer();
-                                }
+                                shell.toStdIn(s);
                             }
 
                             if (finished) {
-                                if (!async) {
-                                    shell.toStdIn(s);
-                                } else {
-                                    AsyncResultProgram program =
-                                            ((AsyncResultProgram)shell.mActiveCommand);
-                                    String partial = sb.toString();
-                                    if (program != null) {
-                                        program.onRequestParsePartialResult(partial);
-                                    }
-                                    shell.toStdIn(partial);
-                                }
-
                                 //Notify the end
+                                sb.setLength(0);
                                 notifyProcessFinished();
-                                break;
-                            }
-                            if (!async && !finished) {
-                                shell.toStdIn(s);
                             }
-
-                            //Wait for buffer to be filled
-                            try {
-                                Thread.sleep(1L);
-                            } catch (Throwable ex) {/**NON BLOCK**/}
                         }
 
                         //Asynchronous programs can cause a lot of output, control buffers
                         //for a low memory footprint
                         if (async) {
                             trimBuffer(shell.mSbIn);
-                            trimBuffer(shell.mSbErr);
                         }
 
                         //Check if process has exited
@@ -883,102 +851,50 @@ public abstract class ShellConsole extends Console implements Program.ProgramLis
      */
     private Thread createStdErrThread(final InputStream err) {
         Thread t = new Thread(new Runnable() {
+            @SuppressWarnings("synthetic-access")
             @Override
             public void run() {
                 final ShellConsole shell = ShellConsole.this;
-                int read = 0;
+                final ShellOutputReader reader = new ShellOutputReader(err, shell.mBufferSize);
                 try {
                     while (shell.mActive) {
-                        //Read only one byte with active wait
-                        int r = err.read();
-                        if (r == -1) {
+                        //Read a whole chunk (blocks until data is available)
+                        final String s = reader.read();
+                        if (s == null) {
                             break;
                         }
 
                         // Has the process received something that we dont expect?
-                        if (shell.mActiveCommand != null &&
-                            shell.mActiveCommand.isExitOnStdErrOutput()) {
+                        final Program program = shell.mActiveCommand;
+                        if (program != null && program.isExitOnStdErrOutput()) {
                             notifyProcessFinished();
                             continue;
                         }
 
                         // Type of command
-                        boolean async =
-                                shell.mActiveCommand != null &&
-                                shell.mActiveCommand instanceof AsyncResultProgram;
+                        final boolean async =
+                                program != null && program instanceof AsyncResultProgram;
 
-                        StringBuffer sb = new StringBuffer();
-                        if (!shell.mCancelled) {
-                            shell.mSbErr.append((char)r);
-                            sb.append((char)r);
+                        if (!shell.mCancelled && s.length() > 0) {
+                            shell.mSbErr.append(s);
+                            synchronized (shell.mErrSync) {
+                                shell.mErrSync.notifyAll();
+                            }
 
                             //Notify asynchronous partial data
                             if (shell.mStarted && async) {
-                                AsyncResultProgram program =
-                                        ((AsyncResultProgram)shell.mActiveCommand);
-                                if (program != null) {
-                                    program.parsePartialErrResult(new String(new char[]{(char)r}));
-                                }
+                                ((AsyncResultProgram)program).parsePartialErrResult(s);
                             }
 
-                            toStdErr(sb.toString());
+                            toStdErr(s);
                         }
 
                         // New data received
                         onNewData();
 
-                        //Has more data? Read with available as more as exists
-                        //or maximum loop count is rebased
-                        int count = 0;
-                        while (err.available() > 0 && count < 10) {
-                            count++;
-                            int available = Math.min(err.available(), shell.mBufferSize);
-                            byte[] data = new byte[available];
-                            read = err.read(data);
-
-                            // Type of command
-                            async =
-                                    shell.mActiveCommand != null &&
-                                    shell.mActiveCommand instanceof AsyncResultProgram;
-
-                            // Add to stderr
-                            String s = new String(data, 0, read);
-                            shell.mSbErr.append(s);
-                            sb.append(s);
-
-                            //Notify asynchronous partial data
-                            if (async) {
-                                AsyncResultProgram program =
-                                        ((AsyncResultProgram)shell.mActiveCommand);
-                                if (program != null) {
-                                    program.parsePartialErrResult(s);
-                                }
-                            }
-                            toStdErr(s);
-
-                            // Has the process received something that we dont expect?
-                            if (shell.mActiveCommand != null &&
-                                shell.mActiveCommand.isExitOnStdErrOutput()) {
-                                notifyProcessFinished();
-                                break;
-                            }
-
-                            // New data received
-                            onNewData();
-
-                            //Wait for buffer to be filled
-                            try {
-                                Thread.sleep(1L);
-                            } catch (Throwable ex) {
-                                /**NON BLOCK**/
-                            }
-                        }
-
                         //Asynchronous programs can cause a lot of output, control buffers
                         //for a low memory footprint
-                        if (shell.mActiveCommand != null &&
-                                shell.mActiveCommand instanceof AsyncResultProgram) {
-                            trimBuffer(shell.mSbIn);
+                        if (async) {
                             trimBuffer(shell.mSbErr);
                         }
                     }
@@ -992,6 +908,28 @@ public abstract class ShellConsole extends Console implements Program.ProgramLis
         return t;
     }
 
+    /**
+     * Method that waits until the standard error of the program is fully received, or
+     * until {@link #STDERR_TIMEOUT} expires.
+     *
+     * @param program The program
+     * @throws InterruptedException If the wait was interrupted
+     */
+    private void waitForStdErr(Program program) throws InterruptedException {
+        final long start = System.currentTimeMillis();
+        synchronized (this.mErrSync) {
+            while (!program.isStdErrComplete(this.mSbErr.toString())) {
+                long remaining = STDERR_TIMEOUT - (System.currentTimeMillis() - start);
+                if (remaining <= 0) {
+                    Log.w(TAG, String.format(
+                            "%s: stderr not fully received", program.getId())); //$NON-NLS-1$
+                    return;
+                }
+                this.mErrSync.wait(remaining);
+            }
+        }
+    }
+
     /**
      * Method that echoes the stderr
      *
@@ -1085,15 +1023,18 @@ public abstract class ShellConsole extends Console implements Program.ProgramLis
      * from the buffer, if it's present, leaving in the buffer the new data bytes.
      *
      * @param stdin The standard in buffer
+     * @param newData The number of chars appended to the buffer since the last check. Only
+     * these chars (and the previous ones that could contain a partial control) are scanned
      * @return boolean If the command has started
      * @hide
      */
-    boolean isCommandStarted(StringBuffer stdin) {
-        if (stdin == null) return false;
-        Pattern pattern = Pattern.compile(this.mStartControlPattern);
-        Matcher matcher = pattern.matcher(stdin.toString());
+    boolean isCommandStarted(StringBuffer stdin, int newData) {
+        final Pattern pattern = this.mStartControlPattern;
+        if (stdin == null || pattern == null) return false;
+        Matcher matcher = pattern.matcher(stdin);
+        matcher.region(getControlScanStart(stdin.length(), newData), stdin.length());
         if (matcher.find()) {
-            stdin.replace(0, matcher.end(), ""); //$NON-NLS-1$
+            stdin.delete(0, matcher.end());
             return true;
         }
         return false;
@@ -1104,24 +1045,209 @@ public abstract class ShellConsole extends Console implements Program.ProgramLis
      * standard input buffer.
      *
      * @param stdin The standard in buffer
+     * @param partial The partial buffer from which the control must be removed (may be null)
+     * @param newData The number of chars appended to the buffer since the last check. Only
+     * these chars (and the previous ones that could contain a partial control) are scanned
      * @return boolean If the command has finished
      * @hide
      */
-    boolean isCommandFinished(StringBuffer stdin, StringBuffer partial) {
-        Pattern pattern = Pattern.compile(this.mEndControlPattern);
-        if (stdin == null) return false;
-        Matcher matcher = pattern.matcher(stdin.toString());
+    boolean isCommandFinished(StringBuffer stdin, StringBuilder partial, int newData) {
+        final Pattern pattern = this.mEndControlPattern;
+        if (stdin == null || pattern == null) return false;
+        Matcher matcher = pattern.matcher(stdin);
+        matcher.region(getControlScanStart(stdin.length(), newData), stdin.length());
         boolean ret = matcher.find();
         // Remove partial
         if (ret && partial != null) {
-            matcher = pattern.matcher(partial.toString());
+            matcher = pattern.matcher(partial);
             if (matcher.find()) {
-                partial.replace(matcher.start(), matcher.end(), ""); //$NON-NLS-1$
+                partial.delete(matcher.start(), matcher.end());
             }
         }
         return ret;
     }
 
+    /**
+     * Method that processes a chunk of the raw output of a program. The controls are
+     * searched in the bytes of the chunk, and the data between them is notified to the
+     * program without decode it. The bytes that could be the beginning of a control
+     * are not consumed, so they are returned again by the reader with the next chunk.
+     *
+     * @param chunk The chunk read from the standard input
+     * @param program The active program
+     * @hide
+     */
+    void onRawData(ByteBuffer chunk, AsyncResultProgram program) {
+        final byte[] data = chunk.array();
+        final int[] bounds = this.mControlBounds;
+        final int to = chunk.limit();
+        int pos = chunk.position();
+        if (this.mCancelled || pos == to) {
+            chunk.position(to);
+            return;
+        }
+
+        if (!this.mStarted) {
+            if (findControl(data, pos, to,
+                    this.mStartControl1, this.mStartControl2, bounds) == -1) {
+                // Hold back the tail that could be the beginning of the start control
+                chunk.position(Math.max(pos, to - (this.mMaxControlLength - 1)));
+                return;
+            }
+            this.mStarted = true;
+            pos = bounds[1];
+            synchronized (this.mPartialSync) {
+                program.onRequestStartParsePartialResult();
+            }
+        }
+
+        // New data received
+        onNewData();
+
+        //Check if the command has finished. The control is moved to the stdin buffer
+        //to extract the exit code
+        boolean finished = false;
+        int end = to;
+        if (findControl(data, pos, to, this.mEndControl1, this.mEndControl2, bounds) != -1) {
+            finished = true;
+            end = bounds[0];
+            this.mSbIn.append(new String(data, bounds[0], bounds[1] - bounds[0]));
+        } else if (program.isExpectEnd()) {
+            end = to - getControlHoldback(data, pos, to);
+        }
+
+        //Notify asynchronous partial data
+        if (end > pos) {
+            program.onRequestParsePartialResult(ByteBuffer.wrap(data, pos, end - pos));
+            if (isTrace()) {
+                Log.v(TAG,
+                        String.format(
+                                "stdin: %d bytes", Integer.valueOf(end - pos))); //$NON-NLS-1$
+            }
+        }
+        chunk.position(finished ? to : end);
+
+        if (finished) {
+            //Notify the end
+            notifyProcessFinished();
+        }
+    }
+
+    /**
+     * Method that finds a control (control code 1 + exit code + control code 2) in
+     * a region of a byte buffer.
+     *
+     * @param data The buffer
+     * @param from The start of the region
+     * @param to The end of the region (exclusive)
+     * @param control1 The control code 1
+     * @param control2 The control code 2
+     * @param bounds The start and the end (exclusive) of the control, if it was found
+     * @return int The start of the control, or -1 if the control wasn't found
+     * @hide
+     */
+    static int findControl(
+            byte[] data, int from, int to, byte[] control1, byte[] control2, int[] bounds) {
+        final byte first = control1[0];
+        final int last = to - control1.length - 1 - control2.length;
+        for (int i = from; i <= last; i++) {
+            if (data[i] != first || !regionMatches(data, i, control1)) {
+                continue;
+            }
+            int pos = i + control1.length;
+            int digits = 0;
+            while (digits < 3 && pos < to && data[pos] >= '0' && data[pos] <= '9') {
+                pos++;
+                digits++;
+            }
+            if (digits == 0 || pos + control2.length > to ||
+                !regionMatches(data, pos, control2)) {
+                continue;
+            }
+            bounds[0] = i;
+            bounds[1] = pos + control2.length;
+            return i;
+        }
+        return -1;
+    }
+
+    /**
+     * Method that checks if a buffer contains a sequence of bytes at a position.
+     *
+     * @param data The buffer
+     * @param offset The position in the buffer
+     * @param seq The sequence of bytes
+     * @return boolean If the buffer contains the sequence at the position
+     */
+    private static boolean regionMatches(byte[] data, int offset, byte[] seq) {
+        int cc = seq.length;
+        for (int i = 0; i < cc; i++) {
+            if (data[offset + i] != seq[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Method that returns the position of a buffer from where the controls must be
+     * scanned, so only the new data (plus the chars needed to match a control split
+     * between two chunks) is checked.
+     *
+     * @param length The current length of the buffer
+     * @param newData The number of chars appended to the buffer since the last check
+     * @return int The position from where scan the buffer
+     * @hide
+     */
+    int getControlScanStart(int length, int newData) {
+        return Math.max(0, length - newData - (this.mMaxControlLength - 1));
+    }
+
+    /**
+     * Method that returns the number of chars at the end of a partial buffer that
+     * could be the beginning of a control (a control is only composed by slashes,
+     * hashes, digits and minus signs) and can't be notified to the program yet.
+     *
+     * @param partial The partial buffer
+     * @return int The number of chars to hold back
+     * @hide
+     */
+    int getControlHoldback(CharSequence partial) {
+        final int max = Math.min(partial.length(), this.mMaxControlLength - 1);
+        int count = 0;
+        while (count < max) {
+            char c = partial.charAt(partial.length() - count - 1);
+            if (c != '/' && c != '#' && c != '-' && (c < '0' || c > '9')) {
+                break;
+            }
+            count++;
+        }
+        return count;
+    }
+
+    /**
+     * Method that returns the number of bytes at the end of a region of a raw buffer
+     * that could be the beginning of a control and can't be notified to the program yet.
+     *
+     * @param data The buffer
+     * @param from The start of the region
+     * @param to The end of the region (exclusive)
+     * @return int The number of bytes to hold back
+     * @hide
+     */
+    int getControlHoldback(byte[] data, int from, int to) {
+        final int max = Math.min(to - from, this.mMaxControlLength - 1);
+        int count = 0;
+        while (count < max) {
+            byte c = data[to - count - 1];
+            if (c != '/' && c != '#' && c != '-' && (c < '0' || c > '9')) {
+                break;
+            }
+            count++;
+        }
+        return count;
+    }
+
     /**
      * New data was received
      * @hide
@@ -1147,8 +1273,7 @@ public abstract class ShellConsole extends Console implements Program.ProgramLis
 
         // Parse the stdin seeking exit code pattern
         String txt = stdin.toString();
-        Pattern pattern = Pattern.compile(this.mEndControlPattern);
-        Matcher matcher = pattern.matcher(txt);
+        Matcher matcher = this.mEndControlPattern.matcher(txt);
         if (matcher.find()) {
             this.mSbIn = new StringBuffer(txt.substring(0, matcher.start()));
             String exitTxt = matcher.group();
@@ -1344,7 +1469,6 @@ public abstract class ShellConsole extends Console implements Program.ProgramLis
             if (this.mOut != null) {
                 this.mOut.write(data, offset, byteCount);
                 this.mOut.flush();
-                Thread.yield();
                 return true;
             }
         } catch (Exception ex) {
@@ -0,0 +1,121 @@
+/*
+ * Copyright (C) 2013 BrandroidTools
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package me.toolify.backbone.console.shell;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.charset.Charset;
+import java.nio.charset.CharsetDecoder;
+import java.nio.charset.CodingErrorAction;
+
+/**
+ * A block-buffered reader of the output of a shell process.<br/>
+ * <br/>
+ * This class reads the process stream in chunks into a reusable byte buffer, and decodes
+ * them incrementally, so multi-byte characters split across two reads are not corrupted.
+ * Every call to {@link #read()} blocks until at least one byte is available, so no active
+ * wait is needed by the caller.<br/>
+ * <br/>
+ * Programs that need the raw output (i.e. the content of a binary file) read the chunks
+ * with {@link #readBytes()}, that returns the read buffer without decoding it.
+ */
+class ShellOutputReader {
+
+    private static final int MIN_BUFFER = 8192;
+
+    private final InputStream mIn;
+    private final CharsetDecoder mDecoder;
+    private final ByteBuffer mBytes;
+    private final CharBuffer mChars;
+
+    /**
+     * Constructor of <code>ShellOutputReader</code>.
+     *
+     * @param in The process stream to read from
+     * @param bufferSize The preferred size of the read buffer
+     */
+    ShellOutputReader(InputStream in, int bufferSize) {
+        super();
+        this.mIn = in;
+        this.mDecoder = Charset.defaultCharset().newDecoder()
+                .onMalformedInput(CodingErrorAction.REPLACE)
+                .onUnmappableCharacter(CodingErrorAction.REPLACE);
+        int size = Math.max(bufferSize, MIN_BUFFER);
+        this.mBytes = ByteBuffer.allocate(size);
+        this.mBytes.flip();
+        this.mChars = CharBuffer.allocate(
+                (int)Math.ceil(size * this.mDecoder.maxCharsPerByte()) + 1);
+    }
+
+    /**
+     * Method that reads the next chunk of the stream. The bytes of an incomplete
+     * character at the end of the chunk are retained and decoded with the next one.
+     *
+     * @return String The decoded chunk (may be empty), or <code>null</code> if the end
+     * of the stream was reached
+     * @throws IOException If an I/O error occurs
+     */
+    String read() throws IOException {
+        ByteBuffer bytes = readBytes();
+        if (bytes == null) {
+            return null;
+        }
+        return decode(bytes);
+    }
+
+    /**
+     * Method that reads the next chunk of the stream without decoding it. The returned
+     * buffer is the read buffer of this reader: it starts with the bytes not consumed in
+     * the previous call (the caller can leave bytes to be returned again with the next
+     * chunk, i.e. the beginning of a control), followed by the new bytes. The buffer is
+     * only valid until the next call.
+     *
+     * @return ByteBuffer The chunk, or <code>null</code> if the end of the stream
+     * was reached
+     * @throws IOException If an I/O error occurs
+     */
+    ByteBuffer readBytes() throws IOException {
+        // Keep the bytes not consumed in the previous call
+        this.mBytes.compact();
+        final byte[] data = this.mBytes.array();
+        int pos = this.mBytes.position();
+        int read = this.mIn.read(data, pos, data.length - pos);
+        if (read == -1) {
+            this.mBytes.flip();
+            return null;
+        }
+        this.mBytes.position(pos + read);
+        this.mBytes.flip();
+        return this.mBytes;
+    }
+
+    /**
+     * Method that decodes a chunk returned by {@link #readBytes()}. The bytes of an
+     * incomplete character are not consumed, so they are decoded with the next chunk.
+     *
+     * @param bytes The chunk
+     * @return String The decoded chunk (may be empty)
+     */
+    String decode(ByteBuffer bytes) {
+        this.mChars.clear();
+        this.mDecoder.decode(bytes, this.mChars, false);
+        this.mChars.flip();
+        return this.mChars.toString();
+    }
+}
@@ -18,6 +18,8 @@ package me.toolify.backbone.fragments;
 
 import java.io.File;
 import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
@@ -50,8 +52,10 @@ import me.toolify.backbone.activities.AbstractNavigationActivity;
 import me.toolify.backbone.activities.NavigationActivity;
 import me.toolify.backbone.adapters.FileSystemObjectAdapter;
 import me.toolify.backbone.adapters.FileSystemObjectAdapter.OnSelectionChangedListener;
+import me.toolify.backbone.commands.AsyncResultListener;
 import me.toolify.backbone.console.ConsoleAllocException;
 import me.toolify.backbone.console.InsufficientPermissionsException;
+import me.toolify.backbone.listeners.OnDirectoryChangesListener;
 import me.toolify.backbone.listeners.OnHistoryListener;
 import me.toolify.backbone.listeners.OnRequestRefreshListener;
 import me.toolify.backbone.listeners.OnSelectionListener;
@@ -72,11 +76,15 @@ import me.toolify.backbone.util.*;
 
 public class NavigationFragment extends Fragment implements
         AdapterView.OnItemClickListener, AdapterView.OnItemLongClickListener,
-        OnHistoryListener, OnSelectionChangedListener, OnSelectionListener, OnRequestRefreshListener {
+        OnHistoryListener, OnSelectionChangedListener, OnSelectionListener, OnRequestRefreshListener,
+        OnDirectoryChangesListener {
 
     private static final String TAG = "NavigationFragment"; //$NON-NLS-1$
     private static final String IMAGE_CACHE_DIR = "thumbs";
 
+    // The time to wait for a listing before render the files listed until then
+    private static final long FIRST_SCREEN_DELAY = 150L;
+
     /**
      * An interface to communicate a request for show the menu associated
      * with an item.
@@ -192,6 +200,7 @@ public class NavigationFragment extends Fragment implements
      */
     List<FileSystemObject> mFiles;
     private FileSystemObjectAdapter mAdapter;
+    private DirectoryWatcher mWatcher;
 
     public List<History> mHistory;
 
@@ -352,6 +361,9 @@ public class NavigationFragment extends Fragment implements
         mImageFetcher.setPauseWork(false);
         mImageFetcher.setExitTasksEarly(true);
         mImageFetcher.flushCache();
+        if (FileManagerApplication.isDebuggable()) {
+            Log.v(TAG, "Thumbnails: " + mImageFetcher.getStatistics()); //$NON-NLS-1$
+        }
     }
 
     /**
@@ -361,6 +373,7 @@ public class NavigationFragment extends Fragment implements
     public void onDestroy() {
         super.onDestroy();
         mImageFetcher.closeCache();
+        watchDirectory(null);
     }
 
     /**
@@ -1005,6 +1018,7 @@ public class NavigationFragment extends Fragment implements
             //Set the adapter
             this.mAdapter = adapter;
             newView.setAdapter(this.mAdapter);
+            newView.setRecyclerListener(this.mAdapter);
             newView.setOnItemClickListener(NavigationFragment.this);
 
             //Add the new layout
@@ -1171,7 +1185,7 @@ public class NavigationFragment extends Fragment implements
                             //(sort, hidden, ...)
                             List<FileSystemObject> files = NavigationFragment.this.mFiles;
                             if (!useCurrent) {
-                                files = CommandHelper.listFiles(mActivity, fNewDir, null);
+                                files = listFilesProgressively();
                             }
                             return files;
                             
@@ -1259,6 +1273,90 @@ public class NavigationFragment extends Fragment implements
                         return null;
                     }
 
+                    /**
+                     * Method that lists the new directory. The files are sorted while
+                     * they are received, and the first screen is rendered if the
+                     * listing is slow (huge directories).
+                     *
+                     * @return List<FileSystemObject> The files of the directory
+                     * @throws Exception If the directory couldn't be listed
+                     */
+                    private List<FileSystemObject> listFilesProgressively() throws Exception {
+                        final long start = System.currentTimeMillis();
+                        final SortedRunsMerger<FileSystemObject> merger =
+                                new SortedRunsMerger<FileSystemObject>(
+                                        FileHelper.createSortComparator());
+                        final boolean[] listing = {true};
+                        Runnable firstScreen = new Runnable() {
+                            @Override
+                            public void run() {
+                                synchronized (listing) {
+                                    if (!listing[0] || merger.size() == 0) {
+                                        return;
+                                    }
+                                }
+                                // The runs are already sorted. Only filter them
+                                List<FileSystemObject> partial =
+                                        FileHelper.applyUserPreferences(
+                                                merger.getResult(), mRestrictions,
+                                                true, mChRooted);
+                                loadData(partial);
+                                fadeEfect(false);
+                                if (FileManagerApplication.isDebuggable()) {
+                                    Log.v(TAG, String.format(
+                                            "Time to first row of %s: %d ms (%d files)", //$NON-NLS-1$
+                                            fNewDir,
+                                            Long.valueOf(System.currentTimeMillis() - start),
+                                            Integer.valueOf(partial.size())));
+                                }
+                            }
+                        };
+                        mNavigationViewHolder.postDelayed(firstScreen, FIRST_SCREEN_DELAY);
+                        try {
+                            List<FileSystemObject> files = CommandHelper.listFiles(
+                                    mActivity, fNewDir, !reload,
+                                    new AsyncResultListener() {
+                                        @Override
+                                        public void onAsyncStart() {/**NON BLOCK**/}
+                                        @Override
+                                        public void onAsyncEnd(boolean cancelled) {
+                                            /**NON BLOCK**/
+                                        }
+                                        @Override
+                                        public void onAsyncExitCode(int exitCode) {
+                                            /**NON BLOCK**/
+                                        }
+                                        @Override
+                                        @SuppressWarnings("unchecked")
+                                        public void onPartialResult(Object result) {
+                                            merger.add((List<FileSystemObject>)result);
+                                        }
+                                        @Override
+                                        public void onException(Exception cause) {
+                                            /**NON BLOCK**/
+                                        }
+                                    }, null);
+
+                            // A cached listing is not notified, so it isn't sorted yet
+                            if (merger.size() == files.size()) {
+                                files = merger.getResult();
+                            }
+                            if (FileManagerApplication.isDebuggable()) {
+                                Log.v(TAG, String.format(
+                                        "Listed %s: %d ms (%d files)", //$NON-NLS-1$
+                                        fNewDir,
+                                        Long.valueOf(System.currentTimeMillis() - start),
+                                        Integer.valueOf(files.size())));
+                            }
+                            return files;
+                        } finally {
+                            synchronized (listing) {
+                                listing[0] = false;
+                            }
+                            mNavigationViewHolder.removeCallbacks(firstScreen);
+                        }
+                    }
+
                     /**
                      * {@inheritDoc}
                      */
@@ -1393,6 +1491,7 @@ public class NavigationFragment extends Fragment implements
 
             //The current directory is now the "newDir"
             this.mCurrentDir = newDir;
+            watchDirectory(newDir);
             if (this.mOnDirectoryChangedListener != null) {
                 FileSystemObject dir = FileHelper.createFileSystemObject(new File(newDir));
                 this.mOnDirectoryChangedListener.onDirectoryChanged(dir);
@@ -1412,6 +1511,150 @@ public class NavigationFragment extends Fragment implements
         }
     }
 
+    /**
+     * Method that watches the changes of a directory, and stops watching the previous
+     * watched directory.
+     *
+     * @param directory The directory to watch, or <code>null</code> to stop watching
+     */
+    private void watchDirectory(String directory) {
+        if (this.mWatcher != null) {
+            if (directory != null && directory.compareTo(this.mWatcher.getDirectory()) == 0) {
+                return;
+            }
+            this.mWatcher.stopWatching();
+            this.mWatcher = null;
+        }
+        if (directory != null) {
+            this.mWatcher = new DirectoryWatcher(directory, this);
+            this.mWatcher.startWatching();
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void onDirectoryChanges(final String directory, final List<String> names) {
+        if (this.mCurrentDir == null || this.mCurrentDir.compareTo(directory) != 0) {
+            return;
+        }
+
+        // Retrieve the current info of the changed entries in background, in only
+        // one invocation of the console
+        final List<String> paths = new ArrayList<String>(names.size());
+        int cc = names.size();
+        for (int i = 0; i < cc; i++) {
+            paths.add(new File(directory, names.get(i)).getAbsolutePath());
+        }
+        AsyncTask<Void, Void, FileSystemObject[]> task =
+                new AsyncTask<Void, Void, FileSystemObject[]>() {
+            @Override
+            protected FileSystemObject[] doInBackground(Void... params) {
+                try {
+                    return CommandHelper.getFilesInfo(mActivity, paths, true, null);
+                } catch (Exception e) {
+                    Log.w(TAG, "Failed to retrieve the changed entries", e); //$NON-NLS-1$
+                    return null;
+                }
+            }
+
+            @Override
+            protected void onPostExecute(FileSystemObject[] result) {
+                if (result == null) {
+                    onDirectoryReloadRequired(directory);
+                } else {
+                    applyDirectoryChanges(directory, paths, result);
+                }
+            }
+        };
+        task.execute();
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void onDirectoryReloadRequired(String directory) {
+        if (this.mCurrentDir != null && this.mCurrentDir.compareTo(directory) == 0) {
+            refresh(true);
+        }
+    }
+
+    /**
+     * Method that applies the changes of the entries of a directory to the view, without
+     * reload the directory.
+     *
+     * @param directory The directory
+     * @param paths The paths of the changed entries
+     * @param files The current info of the changed entries (<code>null</code> if the
+     * entry was deleted)
+     * @hide
+     */
+    void applyDirectoryChanges(String directory, List<String> paths, FileSystemObject[] files) {
+        if (this.mCurrentDir == null || this.mCurrentDir.compareTo(directory) != 0 ||
+            this.mFiles == null || this.mAdapter == null) {
+            return;
+        }
+        ListingCache.invalidate(directory);
+
+        Comparator<FileSystemObject> comparator = FileHelper.createSortComparator();
+        FileSystemObjectAdapter adapter = this.mAdapter;
+        adapter.setNotifyOnChange(false);
+        int cc = paths.size();
+        for (int i = 0; i < cc; i++) {
+            // Remove the previous entry
+            FileSystemObject old = adapter.getItem(paths.get(i));
+            if (old != null) {
+                adapter.remove(old);
+            }
+            this.mFiles.remove(old != null ? old : files[i]);
+
+            // Add the current entry, if the user preferences allow to display it
+            FileSystemObject fso = files[i];
+            if (fso == null) {
+                continue;
+            }
+            List<FileSystemObject> check = new ArrayList<FileSystemObject>(1);
+            check.add(fso);
+            if (FileHelper.applyUserPreferences(
+                    check, this.mRestrictions, true, this.mChRooted).isEmpty()) {
+                continue;
+            }
+            int pos = Collections.binarySearch(this.mFiles, fso, comparator);
+            this.mFiles.add(pos < 0 ? -(pos + 1) : pos, fso);
+            adapter.insert(fso, findInsertPosition(adapter, fso, comparator));
+        }
+        adapter.notifyDataSetChanged();
+    }
+
+    /**
+     * Method that returns the position of the adapter where insert a file system object,
+     * so the adapter remains sorted.
+     *
+     * @param adapter The adapter
+     * @param fso The file system object to insert
+     * @param comparator The comparator of the sort
+     * @return int The position where insert the file system object
+     */
+    private static int findInsertPosition(FileSystemObjectAdapter adapter,
+            FileSystemObject fso, Comparator<FileSystemObject> comparator) {
+        int low = 0;
+        int high = adapter.getCount() - 1;
+        while (low <= high) {
+            int mid = (low + high) >>> 1;
+            int cmp = comparator.compare(adapter.getItem(mid), fso);
+            if (cmp < 0) {
+                low = mid + 1;
+            } else if (cmp > 0) {
+                high = mid - 1;
+            } else {
+                return mid;
+            }
+        }
+        return low;
+    }
+
     /**
      * Method that loads the files in the adapter.
      *
@@ -0,0 +1,44 @@
+/*
+ * Copyright (C) 2013 BrandroidTools
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package me.toolify.backbone.listeners;
+
+import java.util.List;
+
+/**
+ * A listener for the changes of a watched directory.
+ */
+public interface OnDirectoryChangesListener {
+
+    /**
+     * Invoked when entries of the directory were created, deleted or modified. The
+     * changes of a short interval are notified together, and an entry is notified
+     * only once, independently of the number of changes.
+     *
+     * @param directory The directory
+     * @param names The names of the entries that changed
+     */
+    void onDirectoryChanges(String directory, List<String> names);
+
+    /**
+     * Invoked when the changes of the directory can't be notified as entries (the
+     * directory was deleted or moved, or there are too many changes), and the directory
+     * must be reloaded.
+     *
+     * @param directory The directory
+     */
+    void onDirectoryReloadRequired(String directory);
+}
@@ -0,0 +1,445 @@
+/*
+ * Copyright (C) 2013 BrandroidTools
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package me.toolify.backbone.model;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * A class that holds the progress of a copy or move operation (bytes and files done,
+ * throughput and estimated time to end).<br/>
+ * <br/>
+ * The progress is fed in two ways. Programs that copy the data by themselves report
+ * every chunk of data with {@link #addBytes(long)} and {@link #addFiles(int)}. Programs
+ * that can't report the progress (i.e. an external process) declare the destination
+ * with {@link #beginSampling(File, File)}, and then the progress is computed from the size
+ * of the destination every time the progress is {@link #sample() sampled}. The folders of
+ * the destination that are complete (same files than the source) are not measured
+ * again. Operations that don't transfer data (i.e. renames) report the moved tree with
+ * {@link #addTree(File)}.<br/>
+ * <br/>
+ * The trees are walked without follow the symlinks, so a link loop doesn't hang the
+ * walk.<br/>
+ * <br/>
+ * This class is thread-safe. The progress is fed by the program while it is sampled and
+ * read by other threads.
+ */
+public class CopyProgress {
+
+    /**
+     * The value of an unknown total or estimated time.
+     */
+    public static final long UNKNOWN = -1L;
+
+    // The weight of the last measure in the throughput (exponential moving average)
+    private static final double THROUGHPUT_WEIGHT = 0.3d;
+    // The minimum interval between measures of the destination, as a factor of the
+    // time spent in the last measure (measure big trees is expensive)
+    private static final int SAMPLING_FACTOR = 4;
+    // Folders modified recently are not considered complete. The time of some filesystems
+    // has a resolution of seconds, so another change in the same second won't be detected
+    private static final long RACY_INTERVAL = 2000L;
+
+    /**
+     * A folder of the destination which files were complete when it was measured.
+     */
+    private static class SettledFolder {
+        final long mLastModified;
+        final long mBytes;
+        final int mFiles;
+        final String[] mFolders;
+
+        /**
+         * Constructor of <code>SettledFolder</code>.
+         *
+         * @param lastModified The last modified time of the folder
+         * @param bytes The size of the files of the folder
+         * @param files The number of files of the folder
+         * @param folders The names of the subfolders
+         */
+        SettledFolder(long lastModified, long bytes, int files, String[] folders) {
+            super();
+            this.mLastModified = lastModified;
+            this.mBytes = bytes;
+            this.mFiles = files;
+            this.mFolders = folders;
+        }
+    }
+
+    private final AtomicLong mBytes = new AtomicLong();
+    private final AtomicInteger mFiles = new AtomicInteger();
+    private volatile long mTotalBytes = UNKNOWN;
+    private volatile int mTotalFiles = (int)UNKNOWN;
+
+    private final Object mSync = new Object();
+    private File mSampleSource;
+    private File mSampleTarget;
+    private final Map<String, SettledFolder> mSettled = new HashMap<String, SettledFolder>();
+    private volatile boolean mMeasurable = true;
+    private long mSampleBase;
+    private int mSampleBaseFiles;
+    private long mSampleCost;
+    private long mLastMeasureTime;
+
+    private long mLastSampleTime;
+    private long mLastSampleBytes;
+    private volatile long mThroughput;
+
+    /**
+     * Constructor of <code>CopyProgress</code>.
+     */
+    public CopyProgress() {
+        super();
+    }
+
+    /**
+     * Method that sets the total of the operation.
+     *
+     * @param totalBytes The total number of bytes to copy
+     * @param totalFiles The total number of files to copy
+     */
+    public void setTotal(long totalBytes, int totalFiles) {
+        this.mTotalBytes = totalBytes;
+        this.mTotalFiles = totalFiles;
+    }
+
+    /**
+     * Method that computes the total of a list of sources, and sets it as the total
+     * of the operation.
+     *
+     * @param sources The source files or folders of the operation
+     */
+    public void computeTotal(File[] sources) {
+        long[] size = new long[2];
+        for (File source : sources) {
+            computeSize(source, null, null, size);
+        }
+        setTotal(size[0], (int)size[1]);
+    }
+
+    /**
+     * Method that adds a file or folder moved without transfer its data (i.e. renamed)
+     * to the progress.
+     *
+     * @param moved The moved file or folder (in its new location)
+     */
+    public void addTree(File moved) {
+        long[] size = new long[2];
+        computeSize(moved, null, null, size);
+        addBytes(size[0]);
+        addFiles((int)size[1]);
+    }
+
+    /**
+     * Method that adds copied bytes to the progress.
+     *
+     * @param bytes The bytes copied
+     */
+    public void addBytes(long bytes) {
+        this.mBytes.addAndGet(bytes);
+    }
+
+    /**
+     * Method that adds copied files to the progress.
+     *
+     * @param files The files copied
+     */
+    public void addFiles(int files) {
+        this.mFiles.addAndGet(files);
+    }
+
+    /**
+     * Method that starts the sampling of a destination. The progress of the operation
+     * is computed from the size of the destination until {@link #endSampling()} is called.
+     *
+     * @param source The source file or folder of the operation
+     * @param target The destination file or folder of the operation
+     */
+    public void beginSampling(File source, File target) {
+        synchronized (this.mSync) {
+            this.mSampleSource = source;
+            this.mSampleTarget = target;
+            this.mSettled.clear();
+            this.mMeasurable = true;
+            this.mSampleBase = this.mBytes.get();
+            this.mSampleBaseFiles = this.mFiles.get();
+            this.mSampleCost = 0;
+            this.mLastMeasureTime = 0;
+        }
+    }
+
+    /**
+     * Method that ends the sampling of the destination (the operation ended). The
+     * final size of the destination is added to the progress.
+     */
+    public void endSampling() {
+        synchronized (this.mSync) {
+            if (this.mSampleTarget != null) {
+                measure();
+                this.mSampleSource = null;
+                this.mSampleTarget = null;
+                this.mSettled.clear();
+            }
+        }
+    }
+
+    /**
+     * Method that samples the progress. This method should be invoked periodically (and
+     * not from the main thread, because it could measure the destination), so
+     * the throughput is updated.
+     */
+    public void sample() {
+        synchronized (this.mSync) {
+            long now = System.currentTimeMillis();
+            if (this.mSampleTarget != null &&
+                (now - this.mLastMeasureTime) >= (this.mSampleCost * SAMPLING_FACTOR)) {
+                measure();
+                this.mSampleCost = System.currentTimeMillis() - now;
+                this.mLastMeasureTime = now;
+            }
+
+            // Update the throughput
+            long bytes = this.mBytes.get();
+            if (this.mLastSampleTime > 0 && now > this.mLastSampleTime) {
+                long rate = ((bytes - this.mLastSampleBytes) * 1000L) /
+                        (now - this.mLastSampleTime);
+                this.mThroughput = this.mThroughput == 0 ?
+                        rate :
+                        (long)(THROUGHPUT_WEIGHT * rate +
+                                (1 - THROUGHPUT_WEIGHT) * this.mThroughput);
+            }
+            this.mLastSampleTime = now;
+            this.mLastSampleBytes = bytes;
+        }
+    }
+
+    /**
+     * Method that returns the number of bytes copied.
+     *
+     * @return long The number of bytes copied
+     */
+    public long getBytes() {
+        return this.mBytes.get();
+    }
+
+    /**
+     * Method that returns the number of files copied.
+     *
+     * @return int The number of files copied
+     */
+    public int getFiles() {
+        return this.mFiles.get();
+    }
+
+    /**
+     * Method that returns if the current destination of the operation could be
+     * measured. The destinations that only a privileged user can read can't be measured by the
+     * application.
+     *
+     * @return boolean If the destination could be measured
+     */
+    public boolean isMeasurable() {
+        return this.mMeasurable;
+    }
+
+    /**
+     * Method that returns the total number of bytes of the operation.
+     *
+     * @return long The total number of bytes, or {@link #UNKNOWN}
+     */
+    public long getTotalBytes() {
+        return this.mTotalBytes;
+    }
+
+    /**
+     * Method that returns the total number of files of the operation.
+     *
+     * @return int The total number of files, or {@link #UNKNOWN}
+     */
+    public int getTotalFiles() {
+        return this.mTotalFiles;
+    }
+
+    /**
+     * Method that returns the current throughput of the operation.
+     *
+     * @return long The current throughput in bytes per second
+     */
+    public long getThroughput() {
+        return this.mThroughput;
+    }
+
+    /**
+     * Method that returns the estimated time to end the operation.
+     *
+     * @return long The estimated time in seconds, or {@link #UNKNOWN}
+     */
+    public long getEta() {
+        long total = this.mTotalBytes;
+        long throughput = this.mThroughput;
+        if (total == UNKNOWN || throughput <= 0) {
+            return UNKNOWN;
+        }
+        return Math.max(0, total - this.mBytes.get()) / throughput;
+    }
+
+    /**
+     * Method that measures the destination and updates the bytes and files copied.
+     */
+    private void measure() {
+        File target = this.mSampleTarget;
+        if (target.exists() && !target.canRead()) {
+            // Only a privileged user can read it
+            this.mMeasurable = false;
+            return;
+        }
+        long[] size = new long[2];
+        computeSize(target, this.mSampleSource, this.mSettled, size);
+        long bytes = this.mSampleBase + size[0];
+        long current = this.mBytes.get();
+        if (bytes > current) {
+            this.mBytes.set(bytes);
+        }
+        int files = this.mSampleBaseFiles + (int)size[1];
+        int currentFiles = this.mFiles.get();
+        if (files > currentFiles) {
+            this.mFiles.set(files);
+        }
+    }
+
+    /**
+     * Method that computes the size and the number of files of a file or folder. The
+     * tree is walked iteratively, and the symlinks to folders are not followed.<br/>
+     * <br/>
+     * If a source and the settled folders are passed, then the folders which files
+     * are complete (the same size than in the source) are added to the settled
+     * folders, and the settled folders that didn't change are not listed again.
+     *
+     * @param file The file or folder
+     * @param source The source of the file or folder (a copy), or <code>null</code>
+     * @param settled The settled folders, or <code>null</code>
+     * @param size The size (position 0) and number of files (position 1) computed
+     */
+    private static void computeSize(
+            File file, File source, Map<String, SettledFolder> settled, long[] size) {
+        String canonical;
+        try {
+            canonical = file.getCanonicalPath();
+        } catch (IOException ioex) {
+            return;
+        }
+        if (!file.isDirectory()) {
+            if (file.isFile()) {
+                size[0] += file.length();
+                size[1]++;
+            }
+            return;
+        }
+
+        // The pending folders, with its canonical path and its source
+        Deque<Object[]> pending = new ArrayDeque<Object[]>();
+        pending.push(new Object[]{file, canonical, source});
+        long now = System.currentTimeMillis();
+        while (!pending.isEmpty()) {
+            Object[] next = pending.pop();
+            File folder = (File)next[0];
+            String path = (String)next[1];
+            File src = (File)next[2];
+
+            // A folder that didn't change since its files were complete
+            long lastModified = folder.lastModified();
+            SettledFolder known = settled != null ? settled.get(path) : null;
+            if (known != null && known.mLastModified == lastModified) {
+                size[0] += known.mBytes;
+                size[1] += known.mFiles;
+                int cc = known.mFolders.length;
+                for (int i = 0; i < cc; i++) {
+                    String name = known.mFolders[i];
+                    pending.push(new Object[]{
+                            new File(folder, name),
+                            path + File.separator + name,
+                            src != null ? new File(src, name) : null});
+                }
+                continue;
+            }
+
+            File[] files = folder.listFiles();
+            if (files == null) {
+                continue;
+            }
+            long bytes = 0;
+            int count = 0;
+            boolean complete = src != null && settled != null;
+            List<String> folders = new ArrayList<String>();
+            int cc = files.length;
+            for (int i = 0; i < cc; i++) {
+                File f = files[i];
+                String name = f.getName();
+                if (f.isDirectory()) {
+                    // Don't follow the symlinks (the canonical path isn't the path
+                    // of the child in the folder)
+                    String child = path + File.separator + name;
+                    try {
+                        if (!child.equals(f.getCanonicalPath())) {
+                            continue;
+                        }
+                    } catch (IOException ioex) {
+                        continue;
+                    }
+                    folders.add(name);
+                    pending.push(new Object[]{
+                            f, child, src != null ? new File(src, name) : null});
+                } else {
+                    long length = f.length();
+                    bytes += length;
+                    count++;
+                    if (complete && new File(src, name).length() != length) {
+                        complete = false;
+                    }
+                }
+            }
+            size[0] += bytes;
+            size[1] += count;
+            if (complete && now - lastModified >= RACY_INTERVAL) {
+                settled.put(path, new SettledFolder(
+                        lastModified, bytes, count,
+                        folders.toArray(new String[folders.size()])));
+            }
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public String toString() {
+        return "CopyProgress [bytes=" + getBytes() + //$NON-NLS-1$
+                ", files=" + getFiles() + //$NON-NLS-1$
+                ", totalBytes=" + getTotalBytes() + //$NON-NLS-1$
+                ", totalFiles=" + getTotalFiles() + //$NON-NLS-1$
+                ", throughput=" + getThroughput() + //$NON-NLS-1$
+                ", eta=" + getEta() + "]"; //$NON-NLS-1$//$NON-NLS-2$
+    }
+}
@@ -31,9 +31,15 @@ import java.util.Date;
  * @see Symlink
  * @see SystemFile
  */
-public abstract class FileSystemObject implements Serializable, Comparable<FileSystemObject> {
+public abstract class FileSystemObject
+        implements Serializable, Comparable<FileSystemObject>, Cloneable {
 
-    private static final long serialVersionUID = 5877049750925761305L;
+    private static final long serialVersionUID = -2392765712349576530L;
+
+    /**
+     * The value of a time that is not known.
+     */
+    public static final long NO_TIME = Long.MIN_VALUE;
 
     //Resource identifier for default icon
     private static final int RESOURCE_ICON_DEFAULT = R.drawable.ic_fso_default;
@@ -45,9 +51,11 @@ public abstract class FileSystemObject implements Serializable, Comparable<FileS
     private Group mGroup;
     private Permissions mPermissions;
     private long mSize;
-    private Date mLastAccessedTime;
-    private Date mLastModifiedTime;
-    private Date mLastChangedTime;
+    // Times are stored as primitive values (milliseconds) to reduce the memory
+    // footprint of big listings
+    private long mLastAccessedTime;
+    private long mLastModifiedTime;
+    private long mLastChangedTime;
 
 
     /**
@@ -73,9 +81,9 @@ public abstract class FileSystemObject implements Serializable, Comparable<FileS
         this.mGroup = group;
         this.mPermissions = permissions;
         this.mSize = size;
-        this.mLastAccessedTime = lastAccessedTime;
-        this.mLastModifiedTime = lastModifiedTime;
-        this.mLastChangedTime = lastChangedTime;
+        this.mLastAccessedTime = toMillis(lastAccessedTime);
+        this.mLastModifiedTime = toMillis(lastModifiedTime);
+        this.mLastChangedTime = toMillis(lastChangedTime);
         this.mResourceIconId = RESOURCE_ICON_DEFAULT;
     }
 
@@ -200,6 +208,15 @@ public abstract class FileSystemObject implements Serializable, Comparable<FileS
      * @return Date The last time that the object was accessed
      */
     public Date getLastAccessedTime() {
+        return toDate(this.mLastAccessedTime);
+    }
+
+    /**
+     * Method that returns the last time that the object was accessed, in milliseconds.
+     *
+     * @return long The last time that the object was accessed, or {@link #NO_TIME}
+     */
+    public long getLastAccessedTimeMillis() {
         return this.mLastAccessedTime;
     }
 
@@ -209,6 +226,15 @@ public abstract class FileSystemObject implements Serializable, Comparable<FileS
      * @param lastAccessedTime The last time that the object was accessed
      */
     public void setLastAccessedTime(Date lastAccessedTime) {
+        this.mLastAccessedTime = toMillis(lastAccessedTime);
+    }
+
+    /**
+     * Method that sets the last time that the object was accessed, in milliseconds.
+     *
+     * @param lastAccessedTime The last time that the object was accessed, or {@link #NO_TIME}
+     */
+    public void setLastAccessedTimeMillis(long lastAccessedTime) {
         this.mLastAccessedTime = lastAccessedTime;
     }
 
@@ -218,6 +244,15 @@ public abstract class FileSystemObject implements Serializable, Comparable<FileS
      * @return Date The last time that the object was modified
      */
     public Date getLastModifiedTime() {
+        return toDate(this.mLastModifiedTime);
+    }
+
+    /**
+     * Method that returns the last time that the object was modified, in milliseconds.
+     *
+     * @return long The last time that the object was modified, or {@link #NO_TIME}
+     */
+    public long getLastModifiedTimeMillis() {
         return this.mLastModifiedTime;
     }
 
@@ -227,6 +262,15 @@ public abstract class FileSystemObject implements Serializable, Comparable<FileS
      * @param lastModifiedTime The last time that the object was modified
      */
     public void setLastModifiedTime(Date lastModifiedTime) {
+        this.mLastModifiedTime = toMillis(lastModifiedTime);
+    }
+
+    /**
+     * Method that sets the last time that the object was modified, in milliseconds.
+     *
+     * @param lastModifiedTime The last time that the object was modified, or {@link #NO_TIME}
+     */
+    public void setLastModifiedTimeMillis(long lastModifiedTime) {
         this.mLastModifiedTime = lastModifiedTime;
     }
 
@@ -236,6 +280,15 @@ public abstract class FileSystemObject implements Serializable, Comparable<FileS
      * @return Date The last time that the object was changed
      */
     public Date getLastChangedTime() {
+        return toDate(this.mLastChangedTime);
+    }
+
+    /**
+     * Method that returns the last time that the object was changed, in milliseconds.
+     *
+     * @return long The last time that the object was changed, or {@link #NO_TIME}
+     */
+    public long getLastChangedTimeMillis() {
         return this.mLastChangedTime;
     }
 
@@ -245,6 +298,15 @@ public abstract class FileSystemObject implements Serializable, Comparable<FileS
      * @param lastChangedTime The last time that the object was changed
      */
     public void setLastChangedTime(Date lastChangedTime) {
+        this.mLastChangedTime = toMillis(lastChangedTime);
+    }
+
+    /**
+     * Method that sets the last time that the object was changed, in milliseconds.
+     *
+     * @param lastChangedTime The last time that the object was changed, or {@link #NO_TIME}
+     */
+    public void setLastChangedTimeMillis(long lastChangedTime) {
         this.mLastChangedTime = lastChangedTime;
     }
 
@@ -296,6 +358,23 @@ public abstract class FileSystemObject implements Serializable, Comparable<FileS
         return this.mParent + File.separator + this.mName;
     }
 
+    /**
+     * Method that returns a copy of the object. The copy shares the immutable values
+     * (names, identities, permissions) of the object, so changing the properties of
+     * the copy through its setters doesn't change the object.
+     *
+     * @return FileSystemObject The copy of the object
+     */
+    @Override
+    public FileSystemObject clone() {
+        try {
+            return (FileSystemObject)super.clone();
+        } catch (CloneNotSupportedException cnsex) {
+            // Not possible. The class is cloneable
+            throw new IllegalStateException(cnsex);
+        }
+    }
+
     /**
      * {@inheritDoc}
      */
@@ -362,10 +441,30 @@ public abstract class FileSystemObject implements Serializable, Comparable<FileS
                 + ", mUser=" + this.mUser + ", mGroup=" + this.mGroup //$NON-NLS-1$ //$NON-NLS-2$
                 + ", mPermissions=" + this.mPermissions //$NON-NLS-1$
                 + ", mSize=" + this.mSize //$NON-NLS-1$
-                + ", mLastAccessedTime=" + this.mLastAccessedTime //$NON-NLS-1$
-                + ", mLastModifiedTime=" + this.mLastModifiedTime //$NON-NLS-1$
-                + ", mLastChangedTime=" + this.mLastChangedTime //$NON-NLS-1$
+                + ", mLastAccessedTime=" + getLastAccessedTime() //$NON-NLS-1$
+                + ", mLastModifiedTime=" + getLastModifiedTime() //$NON-NLS-1$
+                + ", mLastChangedTime=" + getLastChangedTime() //$NON-NLS-1$
                 + "]"; //$NON-NLS-1$
     }
 
+
+    /**
+     * Method that converts a date to its primitive value.
+     *
+     * @param date The date
+     * @return long The milliseconds of the date, or {@link #NO_TIME} if date is <code>null</code>
+     */
+    private static long toMillis(Date date) {
+        return date == null ? NO_TIME : date.getTime();
+    }
+
+    /**
+     * Method that converts a primitive time to a date.
+     *
+     * @param millis The milliseconds of the time
+     * @return Date The date, or <code>null</code> if the time is {@link #NO_TIME}
+     */
+    private static Date toDate(long millis) {
+        return millis == NO_TIME ? null : new Date(millis);
+    }
 }
@@ -72,6 +72,24 @@ public class FolderUsage implements Serializable, Cloneable {
         this.mNumberOfFiles ++;
     }
 
+    /**
+     * Method that adds folders to the total number of folders.
+     *
+     * @param count The number of folders to add
+     */
+    public void addFolders(int count) {
+        this.mNumberOfFolders += count;
+    }
+
+    /**
+     * Method that adds files to the total number of files.
+     *
+     * @param count The number of files to add
+     */
+    public void addFiles(int count) {
+        this.mNumberOfFiles += count;
+    }
+
     /**
      * Method that adds to the total size.
      *
@@ -92,6 +110,37 @@ public class FolderUsage implements Serializable, Cloneable {
         this.mStatistics.put(category.ordinal(), Long.valueOf(count));
     }
 
+    /**
+     * Method that add files to the category
+     *
+     * @param category The category
+     * @param count The number of files to add
+     */
+    public void addFilesToCategory(MimeTypeCategory category, long count) {
+        long total = this.mStatistics.get(category.ordinal()).longValue() + count;
+        this.mStatistics.put(category.ordinal(), Long.valueOf(total));
+    }
+
+    /**
+     * Method that adds the usage of other (partial) computation to this usage.
+     *
+     * @param other The partial usage to add
+     */
+    public void merge(FolderUsage other) {
+        this.mNumberOfFolders += other.mNumberOfFolders;
+        this.mNumberOfFiles += other.mNumberOfFiles;
+        this.mTotalSize += other.mTotalSize;
+        int cc = other.mStatistics.size();
+        for (int i = 0; i < cc; i++) {
+            long count = other.mStatistics.valueAt(i).longValue();
+            if (count > 0) {
+                int key = other.mStatistics.keyAt(i);
+                count += this.mStatistics.get(key, Long.valueOf(0)).longValue();
+                this.mStatistics.put(key, Long.valueOf(count));
+            }
+        }
+    }
+
     /**
      * Method that returns the folder of which retrieve the usage.
      *
@@ -34,7 +34,7 @@ public class GroupPermission extends Permission {
      */
     public static final char SETGID = 'S';
 
-    private boolean mSetGid;
+    private final boolean mSetGid;
 
     /**
      * Constructor of <code>GroupPermission</code>.
@@ -70,16 +70,6 @@ public class GroupPermission extends Permission {
         return this.mSetGid;
     }
 
-    /**
-     * Method that sets if the object has the setgid bit active.
-     *
-     * @param setgid If the object has the setgid bit active
-     */
-    public void setSetGID(boolean setgid) {
-        this.mSetGid = setgid;
-        invalidateRawString();
-    }
-
     /**
      * {@inheritDoc}
      */
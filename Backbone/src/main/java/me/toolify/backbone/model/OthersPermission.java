@@ -34,7 +34,7 @@ public class OthersPermission extends Permission {
      */
     public static final char STICKY = 'T';
 
-    private boolean mStickybit;
+    private final boolean mStickybit;
 
     /**
      * Constructor of <code>OthersPermission</code>.
@@ -70,16 +70,6 @@ public class OthersPermission extends Permission {
         return this.mStickybit;
     }
 
-    /**
-     * Method that sets if the object has the sticky bit active.
-     *
-     * @param stickybit If the object has the sticky bit active
-     */
-    public void setStickybit(boolean stickybit) {
-        this.mStickybit = stickybit;
-        invalidateRawString();
-    }
-
     /**
      * {@inheritDoc}
      */
@@ -31,9 +31,9 @@ public class Permissions implements Serializable, Comparable<Permissions> {
 
     private static final long serialVersionUID = -8268598363293965341L;
 
-    private UserPermission mUser;
-    private GroupPermission mGroup;
-    private OthersPermission mOthers;
+    private final UserPermission mUser;
+    private final GroupPermission mGroup;
+    private final OthersPermission mOthers;
 
     /**
      * Constructor of <code>Permissions</code>.
@@ -58,15 +58,6 @@ public class Permissions implements Serializable, Comparable<Permissions> {
         return this.mUser;
     }
 
-    /**
-     * Method that returns the permissions for the proprietary user of the filesystem object.
-     *
-     * @param user The permissions for the proprietary user of the filesystem object
-     */
-    public void setUser(UserPermission user) {
-        this.mUser = user;
-    }
-
     /**
      * Method that returns the permissions for the proprietary group of the filesystem object.
      *
@@ -76,15 +67,6 @@ public class Permissions implements Serializable, Comparable<Permissions> {
         return this.mGroup;
     }
 
-    /**
-     * Method that returns the permissions for the proprietary group of the filesystem object.
-     *
-     * @param group The permissions for the proprietary group of the filesystem object
-     */
-    public void setGroup(GroupPermission group) {
-        this.mGroup = group;
-    }
-
     /**
      * Method that returns the permissions for the non proprietary users of the filesystem object.
      *
@@ -94,15 +76,6 @@ public class Permissions implements Serializable, Comparable<Permissions> {
         return this.mOthers;
     }
 
-    /**
-     * Method that returns the permissions for the non proprietary users of the filesystem object.
-     *
-     * @param others The permissions for the non proprietary users of the filesystem object
-     */
-    public void setOthers(OthersPermission others) {
-        this.mOthers = others;
-    }
-
     /**
      * {@inheritDoc}
      */
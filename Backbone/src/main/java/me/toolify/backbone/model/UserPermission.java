@@ -34,7 +34,7 @@ public class UserPermission extends Permission {
      */
     public static final char SETUID = 'S';
 
-    private boolean mSetuid;
+    private final boolean mSetuid;
 
     /**
      * Constructor of <code>UserPermission</code>.
@@ -70,16 +70,6 @@ public class UserPermission extends Permission {
         return this.mSetuid;
     }
 
-    /**
-     * Method that sets if the object has the setuid bit active.
-     *
-     * @param setuid If the object has the setuid bit active
-     */
-    public void setSetUID(boolean setuid) {
-        this.mSetuid = setuid;
-        invalidateRawString();
-    }
-
     /**
      * {@inheritDoc}
      */
@@ -29,7 +29,9 @@ import java.util.concurrent.Executor;
 import java.util.concurrent.ExecutionException;
 import java.util.concurrent.Executors;
 import java.util.concurrent.FutureTask;
+import java.util.concurrent.LinkedBlockingDeque;
 import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionHandler;
 import java.util.concurrent.ThreadFactory;
 import java.util.concurrent.ThreadPoolExecutor;
 import java.util.concurrent.TimeUnit;
@@ -50,6 +52,7 @@ import java.util.concurrent.atomic.AtomicInteger;
  *    (Executors.newSingleThreadExecutor) and is the default
  *    -the default THREAD_POOL_EXECUTOR was changed to use DiscardOldestPolicy
  *    -a new fixed thread pool called DUAL_THREAD_EXECUTOR was added
+ *    -a new bounded LIFO thread pool called THUMBNAIL_EXECUTOR was added
  * *************************************
  *
  * <p>ImageAsyncTask enables proper and easy use of the UI thread. This class allows to
@@ -229,6 +232,20 @@ public abstract class ImageAsyncTask<Params, Progress, Result> {
     public static final Executor DUAL_THREAD_EXECUTOR =
             Executors.newFixedThreadPool(2, sThreadFactory);
 
+    private static final int THUMBNAIL_POOL_SIZE =
+            Math.max(2, Math.min(4, Runtime.getRuntime().availableProcessors()));
+    private static final int THUMBNAIL_QUEUE_SIZE = 64;
+
+    /**
+     * An {@link Executor} that decodes thumbnails in parallel. The last submitted tasks (the
+     * rows just displayed) are executed first, and the oldest pending tasks are discarded
+     * when the queue is full (their rows were probably scrolled off-screen).
+     */
+    public static final Executor THUMBNAIL_EXECUTOR =
+            new ThreadPoolExecutor(THUMBNAIL_POOL_SIZE, THUMBNAIL_POOL_SIZE, KEEP_ALIVE,
+            TimeUnit.SECONDS, new LifoBlockingDeque(THUMBNAIL_QUEUE_SIZE), sThreadFactory,
+            new DiscardLastPolicy());
+
     private static final int MESSAGE_POST_RESULT = 0x1;
     private static final int MESSAGE_POST_PROGRESS = 0x2;
 
@@ -243,6 +260,36 @@ public abstract class ImageAsyncTask<Params, Progress, Result> {
     private final AtomicBoolean mCancelled = new AtomicBoolean();
     private final AtomicBoolean mTaskInvoked = new AtomicBoolean();
 
+    /**
+     * A bounded deque that returns the last inserted tasks first.
+     */
+    private static class LifoBlockingDeque extends LinkedBlockingDeque<Runnable> {
+        private static final long serialVersionUID = 1L;
+
+        public LifoBlockingDeque(int capacity) {
+            super(capacity);
+        }
+
+        @Override
+        public boolean offer(Runnable r) {
+            return super.offerFirst(r);
+        }
+    }
+
+    /**
+     * A handler for rejected tasks that discards the oldest pending task (the last
+     * of the deque) and retries.
+     */
+    private static class DiscardLastPolicy implements RejectedExecutionHandler {
+        @Override
+        public void rejectedExecution(Runnable r, ThreadPoolExecutor e) {
+            if (!e.isShutdown()) {
+                ((LinkedBlockingDeque<Runnable>)e.getQueue()).pollLast();
+                e.execute(r);
+            }
+        }
+    }
+
     @TargetApi(11)
     private static class SerialExecutor implements Executor {
         final ArrayDeque<Runnable> mTasks = new ArrayDeque<Runnable>();
@@ -33,6 +33,7 @@ import android.widget.Toast;
 import me.toolify.backbone.R;
 import me.toolify.backbone.commands.AsyncResultExecutable;
 import me.toolify.backbone.commands.AsyncResultListener;
+import me.toolify.backbone.commands.ChecksumExecutable.CHECKSUMS;
 import me.toolify.backbone.model.FileSystemObject;
 import me.toolify.backbone.ui.ThemeManager;
 import me.toolify.backbone.ui.ThemeManager.Theme;
@@ -72,7 +73,7 @@ public class ComputeChecksumDialog implements
     /**
      * @hide
      */
-    EditText[] mChecksums = new EditText[2];
+    EditText[] mChecksums = new EditText[CHECKSUMS.values().length];
 
     /**
      * @hide
@@ -107,10 +108,16 @@ public class ComputeChecksumDialog implements
         tvFileName.setText(fso.getFullPath());
         this.mChecksums[0] = (EditText)layout.findViewById(R.id.checksum_md5);
         this.mChecksums[1] = (EditText)layout.findViewById(R.id.checksum_sha1);
+        this.mChecksums[2] = (EditText)layout.findViewById(R.id.checksum_sha256);
+        this.mChecksums[3] = (EditText)layout.findViewById(R.id.checksum_crc32);
         View btMD5 = layout.findViewById(R.id.bt_md5_clipboard);
         btMD5.setOnClickListener(this);
         View btSHA1 = layout.findViewById(R.id.bt_sha1_clipboard);
         btSHA1.setOnClickListener(this);
+        View btSHA256 = layout.findViewById(R.id.bt_sha256_clipboard);
+        btSHA256.setOnClickListener(this);
+        View btCRC32 = layout.findViewById(R.id.bt_crc32_clipboard);
+        btCRC32.setOnClickListener(this);
 
         // Apply the theme
         applyTheme(context, layout);
@@ -127,7 +134,8 @@ public class ComputeChecksumDialog implements
 
         // Start checksum compute
         try {
-            this.mCmd = CommandHelper.checksum(context, fso.getFullPath(), this, null);
+            this.mCmd = CommandHelper.checksum(
+                    context, fso.getFullPath(), CHECKSUMS.values(), this, null);
         } catch (Exception e) {
             ExceptionUtil.translateException(context, e);
         }
@@ -186,6 +194,14 @@ public class ComputeChecksumDialog implements
                 digest = this.mChecksums[1].getText().toString();
                 label = String.format("SHA-1 Checksum - %s", this.mFso.getFullPath()); //$NON-NLS-1$
                 break;
+            case R.id.bt_sha256_clipboard:
+                digest = this.mChecksums[2].getText().toString();
+                label = String.format("SHA-256 Checksum - %s", this.mFso.getFullPath()); //$NON-NLS-1$
+                break;
+            case R.id.bt_crc32_clipboard:
+                digest = this.mChecksums[3].getText().toString();
+                label = String.format("CRC32 Checksum - %s", this.mFso.getFullPath()); //$NON-NLS-1$
+                break;
 
             default:
                 break;
@@ -219,18 +235,21 @@ public class ComputeChecksumDialog implements
      * {@inheritDoc}
      */
     @Override
-    public void onAsyncExitCode(int exitCode) {
-        if (exitCode != 0) {
-            this.mHandler.post(new Runnable() {
-                @Override
-                public void run() {
-                    int cc = ComputeChecksumDialog.this.mChecksums.length;
-                    for (int i = ComputeChecksumDialog.this.mComputeStatus; i < cc; i++) {
-                        ComputeChecksumDialog.this.mChecksums[i].setText(R.string.error_message);
-                    }
+    public void onAsyncExitCode(final int exitCode) {
+        this.mHandler.post(new Runnable() {
+            @Override
+            public void run() {
+                // The digests are returned in order, and the console may not be able to
+                // calculate the last ones (i.e. the shell only calculates MD5 and SHA-1)
+                int msg = exitCode != 0
+                        ? R.string.error_message
+                        : R.string.compute_checksum_not_available_msg;
+                int cc = ComputeChecksumDialog.this.mChecksums.length;
+                for (int i = ComputeChecksumDialog.this.mComputeStatus; i < cc; i++) {
+                    ComputeChecksumDialog.this.mChecksums[i].setText(msg);
                 }
-            });
-        }
+            }
+        });
     }
 
     /**
@@ -241,7 +260,11 @@ public class ComputeChecksumDialog implements
         this.mHandler.post(new Runnable() {
             @Override
             public void run() {
-                setChecksum(String.valueOf(result));
+                if (result instanceof Integer) {
+                    setProgress(((Integer)result).intValue());
+                } else {
+                    setChecksum(String.valueOf(result));
+                }
             }
         });
     }
@@ -265,6 +288,22 @@ public class ComputeChecksumDialog implements
         this.mComputeStatus++;
     }
 
+    /**
+     * Method that shows the progress of the calculation in the pending checksums
+     *
+     * @param progress The progress of the calculation (percentage)
+     * @hide
+     */
+    synchronized void setProgress(int progress) {
+        String msg = this.mContext.getString(
+                R.string.compute_checksum_computing_checksum_progress_msg,
+                Integer.valueOf(progress));
+        int cc = this.mChecksums.length;
+        for (int i = this.mComputeStatus; i < cc; i++) {
+            this.mChecksums[i].setText(msg);
+        }
+    }
+
     /**
      * Method that applies the current theme to the dialog
      *
@@ -291,5 +330,17 @@ public class ComputeChecksumDialog implements
         theme.setImageDrawable(ctx, (ImageView)v, "ic_copy_drawable"); //$NON-NLS-1$
         v = root.findViewById(R.id.bt_sha1_clipboard);
         theme.setImageDrawable(ctx, (ImageView)v, "ic_copy_drawable"); //$NON-NLS-1$
+        v = root.findViewById(R.id.checksum_sha256_label);
+        theme.setTextColor(ctx, (TextView)v, "text_color"); //$NON-NLS-1$
+        theme.setBackgroundColor(ctx, this.mChecksums[2], "console_bg_color"); //$NON-NLS-1$
+        theme.setTextColor(ctx, this.mChecksums[2], "console_fg_color"); //$NON-NLS-1$
+        v = root.findViewById(R.id.checksum_crc32_label);
+        theme.setTextColor(ctx, (TextView)v, "text_color"); //$NON-NLS-1$
+        theme.setBackgroundColor(ctx, this.mChecksums[3], "console_bg_color"); //$NON-NLS-1$
+        theme.setTextColor(ctx, this.mChecksums[3], "console_fg_color"); //$NON-NLS-1$
+        v = root.findViewById(R.id.bt_sha256_clipboard);
+        theme.setImageDrawable(ctx, (ImageView)v, "ic_copy_drawable"); //$NON-NLS-1$
+        v = root.findViewById(R.id.bt_crc32_clipboard);
+        theme.setImageDrawable(ctx, (ImageView)v, "ic_copy_drawable"); //$NON-NLS-1$
     }
 }
@@ -0,0 +1,354 @@
+/*
+ * Copyright (C) 2013 BrandroidTools
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package me.toolify.backbone.ui.image;
+
+import android.content.Context;
+import android.content.pm.ApplicationInfo;
+import android.content.pm.PackageInfo;
+import android.content.pm.PackageManager;
+import android.graphics.Bitmap;
+import android.graphics.Bitmap.CompressFormat;
+import android.graphics.BitmapFactory;
+import android.graphics.Canvas;
+import android.graphics.drawable.BitmapDrawable;
+import android.graphics.drawable.Drawable;
+import android.support.v4.util.LruCache;
+import android.util.Log;
+
+import me.toolify.backbone.util.DiskLruCache;
+
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+
+/**
+ * A persistent cache of the icons and labels of application packages (apk files).<br/>
+ * <br/>
+ * Parsing an apk with the package manager is expensive (the manifest and the resources
+ * of the archive are read), so the results are stored in a disk cache keyed by the path,
+ * size and last modified time of the file. A folder of packages is parsed only once, and
+ * any change of the file invalidates its entry. Files that aren't valid packages are
+ * cached too, so they are not parsed again. This is the only persistent store of the icons
+ * of the packages (the image cache only keeps them in memory).<br/>
+ * <br/>
+ * The labels of the last packages are also kept in memory, so the listings can show them
+ * without I/O. The other methods of this class do I/O, so they must be invoked from a
+ * background thread (i.e. the thumbnail pool of
+ * {@link me.toolify.backbone.tasks.ImageAsyncTask}).
+ */
+public final class ApkInfoCache {
+    private static final String TAG = "BB.ApkInfoCache";
+    private static final boolean DEBUG = false;
+
+    private static final String DISK_CACHE_DIR = "apk_info";
+    private static final int DISK_CACHE_SIZE = 5 * 1024 * 1024; // 5MB
+    private static final int APP_VERSION = 1;
+    private static final int VALUE_COUNT = 3;
+    private static final int INDEX_PACKAGE = 0;
+    private static final int INDEX_LABEL = 1;
+    private static final int INDEX_ICON = 2;
+    private static final int ICON_QUALITY = 100;
+
+    // Icons bigger than this size are scaled down before being stored
+    private static final int MAX_ICON_SIZE = 192;
+    // The number of labels kept in memory
+    private static final int MAX_LABELS = 512;
+
+    // The entry of the files that aren't valid packages
+    private static final ApkInfo INVALID = new ApkInfo("", "", null);
+
+    private static ApkInfoCache sInstance;
+
+    /**
+     * The information of an application package.
+     */
+    public static final class ApkInfo {
+        private final String mPackageName;
+        private final String mLabel;
+        private final Bitmap mIcon;
+
+        ApkInfo(String packageName, String label, Bitmap icon) {
+            mPackageName = packageName;
+            mLabel = label;
+            mIcon = icon;
+        }
+
+        /**
+         * @return The package name of the application
+         */
+        public String getPackageName() {
+            return mPackageName;
+        }
+
+        /**
+         * @return The label of the application (the package name if it has no label)
+         */
+        public String getLabel() {
+            return mLabel;
+        }
+
+        /**
+         * @return The icon of the application, or null if it has no icon
+         */
+        public Bitmap getIcon() {
+            return mIcon;
+        }
+    }
+
+    private final Context mContext;
+    private final File mDiskCacheDir;
+    private DiskLruCache mDiskCache;
+    private boolean mDiskCacheStarting = true;
+    private final Object mDiskCacheLock = new Object();
+    private final LruCache<String, String> mLabels = new LruCache<String, String>(MAX_LABELS);
+
+    private ApkInfoCache(Context context) {
+        mContext = context.getApplicationContext();
+        mDiskCacheDir = ImageCache.getDiskCacheDir(mContext, DISK_CACHE_DIR);
+    }
+
+    /**
+     * Return the cache of the application.
+     *
+     * @param context The current context
+     * @return The cache
+     */
+    public static synchronized ApkInfoCache getInstance(Context context) {
+        if (sInstance == null) {
+            sInstance = new ApkInfoCache(context);
+        }
+        return sInstance;
+    }
+
+    /**
+     * Return the information of an application package, from the cache if the file didn't
+     * change since it was parsed.
+     *
+     * @param path The full path of the apk file
+     * @return The information of the package, or null if the file isn't a valid package
+     */
+    public ApkInfo getApkInfo(String path) {
+        final File file = new File(path);
+        final String key = ImageCache.hashKeyForDisk(
+                path + '|' + file.length() + '|' + file.lastModified());
+
+        ApkInfo info = getFromDiskCache(key);
+        if (info == null) {
+            info = parse(path);
+            // Cache also the invalid packages, so they aren't parsed in every bind
+            addToDiskCache(key, info != null ? info : INVALID);
+        }
+        if (info == null || info.getPackageName().length() == 0) {
+            mLabels.remove(path);
+            return null;
+        }
+        mLabels.put(path, info.getLabel());
+        return info;
+    }
+
+    /**
+     * Return the label of an application package, only if it's in memory. This method
+     * doesn't do I/O, so it can be invoked from the main thread.
+     *
+     * @param path The full path of the apk file
+     * @return The label of the package, or null if the package wasn't read yet
+     */
+    public String getCachedLabel(String path) {
+        return mLabels.get(path);
+    }
+
+    /**
+     * Flush the disk cache to disk.
+     */
+    public void flush() {
+        synchronized (mDiskCacheLock) {
+            if (mDiskCache != null) {
+                try {
+                    mDiskCache.flush();
+                } catch (IOException e) {
+                    Log.e(TAG, "flush - " + e);
+                }
+            }
+        }
+    }
+
+    /**
+     * Open the disk cache the first time it's used.
+     *
+     * @return The disk cache, or null if it isn't available
+     */
+    private DiskLruCache getDiskCache() {
+        synchronized (mDiskCacheLock) {
+            if (mDiskCacheStarting) {
+                mDiskCacheStarting = false;
+                if (!mDiskCacheDir.exists()) {
+                    mDiskCacheDir.mkdirs();
+                }
+                if (ImageCache.getUsableSpace(mDiskCacheDir) > DISK_CACHE_SIZE) {
+                    try {
+                        mDiskCache = DiskLruCache.open(
+                                mDiskCacheDir, APP_VERSION, VALUE_COUNT, DISK_CACHE_SIZE);
+                    } catch (IOException e) {
+                        Log.e(TAG, "getDiskCache - " + e);
+                        mDiskCache = null;
+                    }
+                }
+            }
+            return mDiskCache;
+        }
+    }
+
+    private ApkInfo getFromDiskCache(String key) {
+        final DiskLruCache cache = getDiskCache();
+        if (cache == null) {
+            return null;
+        }
+        DiskLruCache.Snapshot snapshot = null;
+        try {
+            snapshot = cache.get(key);
+            if (snapshot == null) {
+                return null;
+            }
+            if (DEBUG) {
+                Log.d(TAG, "Disk cache hit");
+            }
+            final String packageName = snapshot.getString(INDEX_PACKAGE);
+            final String label = snapshot.getString(INDEX_LABEL);
+            final InputStream in = snapshot.getInputStream(INDEX_ICON);
+            final Bitmap icon = BitmapFactory.decodeStream(in);
+            return new ApkInfo(packageName, label, icon);
+        } catch (IOException e) {
+            Log.e(TAG, "getFromDiskCache - " + e);
+        } finally {
+            if (snapshot != null) {
+                snapshot.close();
+            }
+        }
+        return null;
+    }
+
+    private void addToDiskCache(String key, ApkInfo info) {
+        final DiskLruCache cache = getDiskCache();
+        if (cache == null) {
+            return;
+        }
+        DiskLruCache.Editor editor = null;
+        OutputStream out = null;
+        try {
+            // Null if another thread is writing the same entry
+            editor = cache.edit(key);
+            if (editor == null) {
+                return;
+            }
+            editor.set(INDEX_PACKAGE, info.getPackageName());
+            editor.set(INDEX_LABEL, info.getLabel());
+            out = new BufferedOutputStream(editor.newOutputStream(INDEX_ICON));
+            if (info.getIcon() != null) {
+                info.getIcon().compress(CompressFormat.PNG, ICON_QUALITY, out);
+            }
+            out.close();
+            out = null;
+            editor.commit();
+            editor = null;
+        } catch (IOException e) {
+            Log.e(TAG, "addToDiskCache - " + e);
+        } finally {
+            DiskLruCache.closeQuietly(out);
+            if (editor != null) {
+                try {
+                    editor.abort();
+                } catch (IOException e) {}
+            }
+        }
+    }
+
+    /**
+     * Parse an application package with the package manager. Only the manifest is requested
+     * (no activities, services, ...), and the icon is loaded from the resources of the archive.
+     *
+     * @param path The full path of the apk file
+     * @return The information of the package, or null if the file isn't a valid package
+     */
+    private ApkInfo parse(String path) {
+        final long start = System.currentTimeMillis();
+        final PackageManager pm = mContext.getPackageManager();
+        final PackageInfo packageInfo;
+        try {
+            packageInfo = pm.getPackageArchiveInfo(path, 0);
+        } catch (RuntimeException e) {
+            // A corrupted package
+            Log.w(TAG, "parse - " + e);
+            return null;
+        }
+        if (packageInfo == null || packageInfo.applicationInfo == null) {
+            return null;
+        }
+
+        // The resources of the archive are only resolved if the source is set
+        final ApplicationInfo appInfo = packageInfo.applicationInfo;
+        appInfo.sourceDir = path;
+        appInfo.publicSourceDir = path;
+
+        String label = packageInfo.packageName;
+        Bitmap icon = null;
+        try {
+            final CharSequence appLabel = appInfo.loadLabel(pm);
+            if (appLabel != null) {
+                label = appLabel.toString();
+            }
+            icon = toBitmap(appInfo.loadIcon(pm));
+        } catch (RuntimeException e) {
+            Log.w(TAG, "parse - " + e);
+        }
+        if (DEBUG) {
+            Log.d(TAG, "parse - " + path + " in " + (System.currentTimeMillis() - start) + "ms");
+        }
+        return new ApkInfo(packageInfo.packageName, label, icon);
+    }
+
+    /**
+     * Render a drawable (not all the icons are bitmaps) into a bitmap no bigger
+     * than {@link #MAX_ICON_SIZE}.
+     */
+    private static Bitmap toBitmap(Drawable drawable) {
+        if (drawable == null) {
+            return null;
+        }
+        int width = drawable.getIntrinsicWidth();
+        int height = drawable.getIntrinsicHeight();
+        if (drawable instanceof BitmapDrawable
+                && width <= MAX_ICON_SIZE && height <= MAX_ICON_SIZE) {
+            return ((BitmapDrawable) drawable).getBitmap();
+        }
+        if (width <= 0 || height <= 0) {
+            width = MAX_ICON_SIZE;
+            height = MAX_ICON_SIZE;
+        }
+        final float scale = Math.min(1f,
+                (float) MAX_ICON_SIZE / Math.max(width, height));
+        width = Math.max(1, Math.round(width * scale));
+        height = Math.max(1, Math.round(height * scale));
+        final Bitmap bitmap = Bitmap.createBitmap(width, height, Bitmap.Config.ARGB_8888);
+        final Canvas canvas = new Canvas(bitmap);
+        drawable.setBounds(0, 0, width, height);
+        drawable.draw(canvas);
+        return bitmap;
+    }
+}
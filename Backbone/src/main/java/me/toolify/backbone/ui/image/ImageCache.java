@@ -31,15 +31,20 @@ import android.util.Log;
 
 import me.toolify.backbone.util.DiskLruCache;
 
+import java.io.ByteArrayOutputStream;
 import java.io.File;
+import java.io.FileInputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
 import java.lang.ref.SoftReference;
 import java.security.MessageDigest;
 import java.security.NoSuchAlgorithmException;
-import java.util.HashSet;
+import java.util.HashMap;
 import java.util.Iterator;
+import java.util.LinkedList;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
 
 /**
  * This class handles disk and memory caching of bitmaps in conjunction with the
@@ -66,7 +71,7 @@ public class ImageCache {
 
     // Constants to easily toggle various caches
     private static final boolean DEFAULT_MEM_CACHE_ENABLED = true;
-    private static final boolean DEFAULT_DISK_CACHE_ENABLED = false;
+    private static final boolean DEFAULT_DISK_CACHE_ENABLED = true;
     private static final boolean DEFAULT_INIT_DISK_CACHE_ON_CREATE = false;
 
     private DiskLruCache mDiskLruCache;
@@ -75,7 +80,16 @@ public class ImageCache {
     private final Object mDiskCacheLock = new Object();
     private boolean mDiskCacheStarting = true;
 
-    private HashSet<SoftReference<Bitmap>> mReusableBitmaps;
+    // The maximum number of reusable bitmaps of the same size
+    private static final int MAX_REUSABLE_BITMAPS_PER_SIZE = 8;
+
+    // The bitmaps evicted from the memory cache, grouped by size, for use with inBitmap
+    private Map<Long, LinkedList<SoftReference<Bitmap>>> mReusableBitmaps;
+
+    private final AtomicLong mMemCacheHits = new AtomicLong();
+    private final AtomicLong mMemCacheMisses = new AtomicLong();
+    private final AtomicLong mDiskCacheHits = new AtomicLong();
+    private final AtomicLong mDiskCacheMisses = new AtomicLong();
 
     /**
      * Create a new ImageCache object using the specified parameters. This should not be
@@ -129,7 +143,7 @@ public class ImageCache {
                 Log.d(TAG, "Memory cache created (size = " + mCacheParams.memCacheSize + ")");
             }
 
-            mReusableBitmaps = new HashSet<SoftReference<Bitmap>>();
+            mReusableBitmaps = new HashMap<Long, LinkedList<SoftReference<Bitmap>>>();
 
             mMemoryCache = new LruCache<String, BitmapDrawable>(mCacheParams.memCacheSize) {
 
@@ -141,7 +155,7 @@ public class ImageCache {
                         BitmapDrawable oldValue, BitmapDrawable newValue) {
 
                     // Add the bitmap to a SoftRefrence set for possible use with inBitmap later
-                    mReusableBitmaps.add(new SoftReference<Bitmap>(oldValue.getBitmap()));
+                    addReusableBitmap(oldValue.getBitmap());
 
                 }
 
@@ -199,6 +213,21 @@ public class ImageCache {
         }
     }
 
+    /**
+     * Adds a bitmap to the memory cache only (i.e. for bitmaps that are persisted by
+     * another cache).
+     * @param data Unique identifier for the bitmap to store
+     * @param value The bitmap drawable to store
+     */
+    public void addBitmapToMemCache(String data, BitmapDrawable value) {
+        if (data == null || value == null) {
+            return;
+        }
+        if (mMemoryCache != null) {
+            mMemoryCache.put(data, value);
+        }
+    }
+
     /**
      * Adds a bitmap to both memory and disk cache.
      * @param data Unique identifier for the bitmap to store
@@ -214,6 +243,18 @@ public class ImageCache {
             mMemoryCache.put(data, value);
         }
 
+        if (mDiskLruCache == null) {
+            return;
+        }
+
+        // Compress outside the lock, so the decode threads don't wait for it. Bitmaps
+        // with alpha (i.e. apk icons) are compressed as png to keep the transparency
+        final Bitmap bitmap = value.getBitmap();
+        final ByteArrayOutputStream compressed = new ByteArrayOutputStream();
+        bitmap.compress(
+                bitmap.hasAlpha() ? CompressFormat.PNG : mCacheParams.compressFormat,
+                mCacheParams.compressQuality, compressed);
+
         synchronized (mDiskCacheLock) {
             // Add to disk cache
             if (mDiskLruCache != null) {
@@ -225,8 +266,7 @@ public class ImageCache {
                         final DiskLruCache.Editor editor = mDiskLruCache.edit(key);
                         if (editor != null) {
                             out = editor.newOutputStream(DISK_CACHE_INDEX);
-                            value.getBitmap().compress(
-                                    mCacheParams.compressFormat, mCacheParams.compressQuality, out);
+                            compressed.writeTo(out);
                             editor.commit();
                             out.close();
                         }
@@ -261,8 +301,13 @@ public class ImageCache {
             memValue = mMemoryCache.get(data);
         }
 
-        if (DEBUG && memValue != null) {
-            Log.d(TAG, "Memory cache hit");
+        if (memValue != null) {
+            mMemCacheHits.incrementAndGet();
+            if (DEBUG) {
+                Log.d(TAG, "Memory cache hit");
+            }
+        } else {
+            mMemCacheMisses.incrementAndGet();
         }
 
         return memValue;
@@ -277,6 +322,7 @@ public class ImageCache {
     public Bitmap getBitmapFromDiskCache(String data) {
         final String key = hashKeyForDisk(data);
         Bitmap bitmap = null;
+        InputStream inputStream = null;
 
         synchronized (mDiskCacheLock) {
             while (mDiskCacheStarting) {
@@ -285,7 +331,6 @@ public class ImageCache {
                 } catch (InterruptedException e) {}
             }
             if (mDiskLruCache != null) {
-                InputStream inputStream = null;
                 try {
                     final DiskLruCache.Snapshot snapshot = mDiskLruCache.get(key);
                     if (snapshot != null) {
@@ -293,24 +338,60 @@ public class ImageCache {
                             Log.d(TAG, "Disk cache hit");
                         }
                         inputStream = snapshot.getInputStream(DISK_CACHE_INDEX);
-                        if (inputStream != null) {
-                            // Decode bitmap, but we don't want to sample so give
-                            // MAX_VALUE as the target dimensions
-                            bitmap = ImageResizer.decodeSampledBitmapFromFile(
-                                    data, Integer.MAX_VALUE, Integer.MAX_VALUE, this);
-                        }
                     }
                 } catch (final IOException e) {
                     Log.e(TAG, "getBitmapFromDiskCache - " + e);
-                } finally {
-                    try {
-                        if (inputStream != null) {
-                            inputStream.close();
-                        }
-                    } catch (IOException e) {}
                 }
             }
-            return bitmap;
+        }
+
+        // Decode the cached thumbnail outside the lock, so other threads can use the cache
+        try {
+            if (inputStream instanceof FileInputStream) {
+                // Decode bitmap, but we don't want to sample so give
+                // MAX_VALUE as the target dimensions
+                bitmap = ImageResizer.decodeSampledBitmapFromDescriptor(
+                        ((FileInputStream) inputStream).getFD(),
+                        Integer.MAX_VALUE, Integer.MAX_VALUE, this);
+            }
+        } catch (final IOException e) {
+            Log.e(TAG, "getBitmapFromDiskCache - " + e);
+        } finally {
+            try {
+                if (inputStream != null) {
+                    inputStream.close();
+                }
+            } catch (IOException e) {}
+        }
+
+        if (bitmap != null) {
+            mDiskCacheHits.incrementAndGet();
+        } else {
+            mDiskCacheMisses.incrementAndGet();
+        }
+        return bitmap;
+    }
+
+    /**
+     * Adds a bitmap evicted from the memory cache to the reusable bitmaps.
+     *
+     * @param bitmap The bitmap evicted
+     */
+    private void addReusableBitmap(Bitmap bitmap) {
+        if (bitmap == null || !bitmap.isMutable()) {
+            return;
+        }
+        synchronized (mReusableBitmaps) {
+            final Long size = getSizeKey(bitmap.getWidth(), bitmap.getHeight());
+            LinkedList<SoftReference<Bitmap>> bitmaps = mReusableBitmaps.get(size);
+            if (bitmaps == null) {
+                bitmaps = new LinkedList<SoftReference<Bitmap>>();
+                mReusableBitmaps.put(size, bitmaps);
+            }
+            if (bitmaps.size() >= MAX_REUSABLE_BITMAPS_PER_SIZE) {
+                bitmaps.removeFirst();
+            }
+            bitmaps.addLast(new SoftReference<Bitmap>(bitmap));
         }
     }
 
@@ -321,25 +402,29 @@ public class ImageCache {
     protected Bitmap getBitmapFromReusableSet(BitmapFactory.Options options) {
         Bitmap bitmap = null;
 
-        if (mReusableBitmaps != null && !mReusableBitmaps.isEmpty()) {
-            final Iterator<SoftReference<Bitmap>> iterator = mReusableBitmaps.iterator();
-            Bitmap item;
-
-            while (iterator.hasNext()) {
-                item = iterator.next().get();
-
-                if (null != item && item.isMutable()) {
-                    // Check to see it the item can be used for inBitmap
-                    if (canUseForInBitmap(item, options)) {
-                        bitmap = item;
-
-                        // Remove from reusable set so it can't be used again
+        if (mReusableBitmaps != null) {
+            // Only bitmaps of the same size can be used for inBitmap
+            final Long size = getSizeKey(
+                    options.outWidth / options.inSampleSize,
+                    options.outHeight / options.inSampleSize);
+            synchronized (mReusableBitmaps) {
+                final LinkedList<SoftReference<Bitmap>> bitmaps = mReusableBitmaps.get(size);
+                if (bitmaps != null) {
+                    final Iterator<SoftReference<Bitmap>> iterator = bitmaps.iterator();
+                    while (iterator.hasNext()) {
+                        final Bitmap item = iterator.next().get();
+
+                        // Remove from reusable set so it can't be used again (or if the
+                        // reference has been cleared)
                         iterator.remove();
-                        break;
+                        if (null != item && item.isMutable()) {
+                            bitmap = item;
+                            break;
+                        }
+                    }
+                    if (bitmaps.isEmpty()) {
+                        mReusableBitmaps.remove(size);
                     }
-                } else {
-                    // Remove from the set if the reference has been cleared.
-                    iterator.remove();
                 }
             }
         }
@@ -347,6 +432,34 @@ public class ImageCache {
         return bitmap;
     }
 
+    /**
+     * @return The number of requests served from the memory cache
+     */
+    public long getMemCacheHits() {
+        return mMemCacheHits.get();
+    }
+
+    /**
+     * @return The number of requests not served from the memory cache
+     */
+    public long getMemCacheMisses() {
+        return mMemCacheMisses.get();
+    }
+
+    /**
+     * @return The number of requests served from the disk cache
+     */
+    public long getDiskCacheHits() {
+        return mDiskCacheHits.get();
+    }
+
+    /**
+     * @return The number of requests not served from the disk cache
+     */
+    public long getDiskCacheMisses() {
+        return mDiskCacheMisses.get();
+    }
+
     /**
      * Clears both the memory and disk cache associated with this ImageCache object. Note that
      * this includes disk access so this should not be executed on the main/UI thread.
@@ -466,17 +579,12 @@ public class ImageCache {
     }
 
     /**
-     * @param candidate - Bitmap to check
-     * @param targetOptions - Options that have the out* value populated
-     * @return true if <code>candidate</code> can be used for inBitmap re-use with
-     *      <code>targetOptions</code>
+     * @param width The width of a bitmap
+     * @param height The height of a bitmap
+     * @return The key of the reusable bitmaps of that size
      */
-    private static boolean canUseForInBitmap(
-            Bitmap candidate, BitmapFactory.Options targetOptions) {
-        int width = targetOptions.outWidth / targetOptions.inSampleSize;
-        int height = targetOptions.outHeight / targetOptions.inSampleSize;
-
-        return candidate.getWidth() == width && candidate.getHeight() == height;
+    private static Long getSizeKey(int width, int height) {
+        return Long.valueOf(((long) width << 32) | (height & 0xFFFFFFFFL));
     }
 
     /**
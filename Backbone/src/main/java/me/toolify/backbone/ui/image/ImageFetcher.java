@@ -16,11 +16,22 @@
 
 package me.toolify.backbone.ui.image;
 
+import android.content.ContentResolver;
 import android.content.Context;
+import android.database.Cursor;
 import android.graphics.Bitmap;
+import android.graphics.BitmapFactory;
+import android.media.ExifInterface;
+import android.media.ThumbnailUtils;
+import android.net.Uri;
+import android.provider.BaseColumns;
+import android.provider.MediaStore;
 import android.util.Log;
 
 import me.toolify.backbone.util.DiskLruCache;
+import me.toolify.backbone.util.FileHelper;
+import me.toolify.backbone.util.MimeTypeHelper;
+import me.toolify.backbone.util.MimeTypeHelper.MimeTypeCategory;
 
 import java.io.BufferedInputStream;
 import java.io.BufferedOutputStream;
@@ -45,6 +56,11 @@ public class ImageFetcher extends ImageResizer {
     private boolean mHttpDiskCacheStarting = true;
     private final Object mHttpDiskCacheLock = new Object();
     private static final int DISK_CACHE_INDEX = 0;
+    // The size of the micro thumbnails of the media provider (96x96)
+    private static final int MICRO_THUMBNAIL_SIZE = 96;
+
+    private Context mAppContext;
+    private ContentResolver mContentResolver;
 
     /**
      * Initialize providing a target image width and height for the processing images.
@@ -71,6 +87,8 @@ public class ImageFetcher extends ImageResizer {
 
     private void init(Context context) {
         //checkConnection(context);
+        mAppContext = context.getApplicationContext();
+        mContentResolver = context.getContentResolver();
         mHttpCacheDir = ImageCache.getDiskCacheDir(context, HTTP_CACHE_DIR);
     }
 
@@ -123,6 +141,7 @@ public class ImageFetcher extends ImageResizer {
     @Override
     protected void flushCacheInternal() {
         super.flushCacheInternal();
+        ApkInfoCache.getInstance(mAppContext).flush();
         synchronized (mHttpDiskCacheLock) {
             if (mHttpDiskCache != null) {
                 try {
@@ -174,10 +193,12 @@ public class ImageFetcher extends ImageResizer {
 
     /**
      * The main process method, which will be called by the ImageWorker in the ImageAsyncTask background
-     * thread.
+     * thread. The cheapest preview source is tried first: the thumbnail embedded in the EXIF
+     * data of the image, then the thumbnail of the media provider, and then the full image
+     * (sampled down). Videos use the thumbnail of the media provider, or a frame of the video.
      *
-     * @param data The data to load the bitmap, in this case, a regular http URL
-     * @return The downloaded and resized bitmap
+     * @param data The data to load the bitmap, in this case, the full path of a local file
+     * @return The resized bitmap
      */
     private Bitmap processBitmap(String data) {
         if (DEBUG) {
@@ -186,13 +207,161 @@ public class ImageFetcher extends ImageResizer {
 
         Bitmap bitmap = null;
         if (data != null) {
-            bitmap = decodeSampledBitmapFromFile(data, mImageWidth,
-                    mImageHeight, getImageCache());
+            final MimeTypeCategory category = MimeTypeHelper.getCategoryFromExt(
+                    mAppContext, FileHelper.getExtension(data));
+            if (category == MimeTypeCategory.VIDEO) {
+                bitmap = processVideo(data);
+            } else {
+                bitmap = processExifThumbnail(data);
+                if (bitmap == null) {
+                    bitmap = processMediaStoreThumbnail(data);
+                }
+                if (bitmap == null) {
+                    bitmap = decodeSampledBitmapFromFile(data, mImageWidth,
+                            mImageHeight, getImageCache());
+                }
+            }
         }
 
         return bitmap;
     }
 
+    /**
+     * Decode the thumbnail embedded in the EXIF data of a jpeg image. Only the header of the
+     * file is read. Thumbnails too small for the requested size are discarded.
+     *
+     * @param path The full path of the image
+     * @return The thumbnail, or null if the image has no usable thumbnail
+     */
+    private Bitmap processExifThumbnail(String path) {
+        final String ext = FileHelper.getExtension(path);
+        if (ext == null
+                || (!ext.equalsIgnoreCase("jpg") && !ext.equalsIgnoreCase("jpeg"))) {
+            return null;
+        }
+        try {
+            final ExifInterface exif = new ExifInterface(path);
+            if (!exif.hasThumbnail()) {
+                return null;
+            }
+            final byte[] thumbnail = exif.getThumbnail();
+            if (thumbnail == null) {
+                return null;
+            }
+
+            // Check the dimensions before decoding. An upscaled thumbnail looks blurry
+            final BitmapFactory.Options options = new BitmapFactory.Options();
+            options.inJustDecodeBounds = true;
+            BitmapFactory.decodeByteArray(thumbnail, 0, thumbnail.length, options);
+            if (options.outWidth < mImageWidth / 2 || options.outHeight < mImageHeight / 2) {
+                return null;
+            }
+            return decodeSampledBitmapFromByteArray(
+                    thumbnail, mImageWidth, mImageHeight, getImageCache());
+        } catch (final IOException e) {
+            Log.w(TAG, "processExifThumbnail - " + e);
+        }
+        return null;
+    }
+
+    /**
+     * Return the thumbnail of an image generated by the media provider, if the image
+     * was scanned. The micro thumbnail is used when it's big enough for the requested size.
+     *
+     * @param path The full path of the image
+     * @return The thumbnail, or null if the media provider has no thumbnail of the image
+     */
+    private Bitmap processMediaStoreThumbnail(String path) {
+        final long id = queryMediaId(MediaStore.Images.Media.EXTERNAL_CONTENT_URI, path);
+        if (id == -1) {
+            return null;
+        }
+        final BitmapFactory.Options options = new BitmapFactory.Options();
+        if (Math.max(mImageWidth, mImageHeight) <= MICRO_THUMBNAIL_SIZE) {
+            return MediaStore.Images.Thumbnails.getThumbnail(mContentResolver, id,
+                    MediaStore.Images.Thumbnails.MICRO_KIND, options);
+        }
+        final Bitmap bitmap = MediaStore.Images.Thumbnails.getThumbnail(mContentResolver, id,
+                MediaStore.Images.Thumbnails.MINI_KIND, options);
+        return scaleDown(bitmap);
+    }
+
+    /**
+     * Return the thumbnail of a video. The thumbnail of the media provider is used if the
+     * video was scanned; otherwise a frame of the video is extracted.
+     *
+     * @param path The full path of the video
+     * @return The thumbnail, or null if the video couldn't be read
+     */
+    private Bitmap processVideo(String path) {
+        Bitmap bitmap = null;
+        final long id = queryMediaId(MediaStore.Video.Media.EXTERNAL_CONTENT_URI, path);
+        if (id != -1) {
+            final int kind = Math.max(mImageWidth, mImageHeight) <= MICRO_THUMBNAIL_SIZE
+                    ? MediaStore.Video.Thumbnails.MICRO_KIND
+                    : MediaStore.Video.Thumbnails.MINI_KIND;
+            bitmap = MediaStore.Video.Thumbnails.getThumbnail(
+                    mContentResolver, id, kind, new BitmapFactory.Options());
+        }
+        if (bitmap == null) {
+            bitmap = ThumbnailUtils.createVideoThumbnail(
+                    path, MediaStore.Video.Thumbnails.MINI_KIND);
+        }
+        return scaleDown(bitmap);
+    }
+
+    /**
+     * Return the id of a file in a table of the media provider.
+     *
+     * @param uri The uri of the table
+     * @param path The full path of the file
+     * @return The id of the file, or -1 if the file isn't in the table
+     */
+    private long queryMediaId(Uri uri, String path) {
+        Cursor cursor = null;
+        try {
+            cursor = mContentResolver.query(uri, new String[]{BaseColumns._ID},
+                    MediaStore.MediaColumns.DATA + "=?", new String[]{path}, null);
+            if (cursor != null && cursor.moveToFirst()) {
+                return cursor.getLong(0);
+            }
+        } catch (final RuntimeException e) {
+            // The media provider isn't available (i.e. the storage isn't mounted)
+            Log.w(TAG, "queryMediaId - " + e);
+        } finally {
+            if (cursor != null) {
+                cursor.close();
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Scale down a bitmap to the requested size, if it's much bigger. The memory cache
+     * retains the bitmaps, so they should not be bigger than the view.
+     *
+     * @param bitmap The bitmap to scale
+     * @return The scaled bitmap (or the same bitmap if it's small enough)
+     */
+    private Bitmap scaleDown(Bitmap bitmap) {
+        if (bitmap == null) {
+            return null;
+        }
+        final int width = bitmap.getWidth();
+        final int height = bitmap.getHeight();
+        if (width <= mImageWidth * 2 || height <= mImageHeight * 2) {
+            return bitmap;
+        }
+        final float scale = Math.max(
+                (float) mImageWidth / width, (float) mImageHeight / height);
+        final Bitmap scaled = Bitmap.createScaledBitmap(bitmap,
+                Math.round(width * scale), Math.round(height * scale), true);
+        if (scaled != bitmap) {
+            bitmap.recycle();
+        }
+        return scaled;
+    }
+
     @Override
     protected Bitmap processBitmap(Object data) {
         return processBitmap(String.valueOf(data));
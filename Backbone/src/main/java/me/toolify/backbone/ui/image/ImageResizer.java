@@ -189,6 +189,36 @@ public class ImageResizer extends ImageWorker {
         return BitmapFactory.decodeFileDescriptor(fileDescriptor, null, options);
     }
 
+    /**
+     * Decode and sample down a bitmap from a byte array (i.e. an embedded thumbnail) to the
+     * requested width and height.
+     *
+     * @param data The compressed image data
+     * @param reqWidth The requested width of the resulting bitmap
+     * @param reqHeight The requested height of the resulting bitmap
+     * @param cache The ImageCache used to find candidate bitmaps for use with inBitmap
+     * @return A bitmap sampled down from the original with the same aspect ratio and dimensions
+     *         that are equal to or greater than the requested width and height
+     */
+    public static Bitmap decodeSampledBitmapFromByteArray(
+            byte[] data, int reqWidth, int reqHeight, ImageCache cache) {
+
+        // First decode with inJustDecodeBounds=true to check dimensions
+        final BitmapFactory.Options options = new BitmapFactory.Options();
+        options.inJustDecodeBounds = true;
+        BitmapFactory.decodeByteArray(data, 0, data.length, options);
+
+        // Calculate inSampleSize
+        options.inSampleSize = calculateInSampleSize(options, reqWidth, reqHeight);
+
+        // Use inBitmap since we're only supporting 4.0+
+        addInBitmapOptions(options, cache);
+
+        // Decode bitmap with inSampleSize set
+        options.inJustDecodeBounds = false;
+        return BitmapFactory.decodeByteArray(data, 0, data.length, options);
+    }
+
     @TargetApi(Build.VERSION_CODES.HONEYCOMB)
     private static void addInBitmapOptions(BitmapFactory.Options options, ImageCache cache) {
         // inBitmap only works with mutable bitmaps so force the decoder to
@@ -19,9 +19,6 @@ package me.toolify.backbone.ui.image;
 import android.app.Activity;
 import android.app.FragmentManager;
 import android.content.Context;
-import android.content.pm.ApplicationInfo;
-import android.content.pm.PackageInfo;
-import android.content.pm.PackageManager;
 import android.content.res.Resources;
 import android.graphics.Bitmap;
 import android.graphics.BitmapFactory;
@@ -30,13 +27,13 @@ import android.graphics.drawable.ColorDrawable;
 import android.graphics.drawable.Drawable;
 import android.graphics.drawable.TransitionDrawable;
 import android.os.AsyncTask;
-import android.os.Build;
 import android.util.Log;
 import android.widget.ImageView;
 
 import me.toolify.backbone.tasks.ImageAsyncTask;
 
 import java.lang.ref.WeakReference;
+import java.util.concurrent.atomic.AtomicLong;
 
 /**
  * This class wraps up completing some arbitrary long running work when loading a bitmap to an
@@ -60,6 +57,9 @@ public abstract class ImageWorker {
 
     protected Resources mResources;
 
+    private final AtomicLong mDecodes = new AtomicLong();
+    private final AtomicLong mDecodeTime = new AtomicLong();
+
     private static final int MESSAGE_CLEAR = 0;
     private static final int MESSAGE_INIT_DISK_CACHE = 1;
     private static final int MESSAGE_FLUSH = 2;
@@ -82,34 +82,80 @@ public abstract class ImageWorker {
      * @param imageView The ImageView to bind the scaled down image to.
      */
     public void loadImage(String path, ImageView imageView) {
+        loadImage(path, 0, imageView);
+    }
+
+    /**
+     * Load an image specified by the data parameter into an ImageView. The last modified
+     * time of the image is part of the cache key, so a cached image of a previous version
+     * of the file is not used.
+     *
+     * @param path The path of the image to download.
+     * @param lastModified The last modified time of the image (0 if unknown).
+     * @param imageView The ImageView to bind the scaled down image to.
+     */
+    public void loadImage(String path, long lastModified, ImageView imageView) {
         if(DEBUG)
             Log.v(TAG, "loadImage(" + path + ")");
         if (path == null) {
             return;
         }
 
+        final String key = lastModified > 0 ? path + '@' + lastModified : path;
         BitmapDrawable value = null;
 
         if (mImageCache != null) {
-            value = mImageCache.getBitmapFromMemCache(String.valueOf(path));
+            value = mImageCache.getBitmapFromMemCache(key);
         }
 
         if (value != null) {
             // Bitmap found in memory cache
             imageView.setImageDrawable(value);
-        } else if (cancelPotentialWork(path, imageView)) {
-            ImageAsyncTask task = new BitmapWorkerTask(imageView);
+        } else if (cancelPotentialWork(key, imageView)) {
+            ImageAsyncTask task = new BitmapWorkerTask(imageView, key);
             final ThumbnailAsyncDrawable thumbnailAsyncDrawable =
                     new ThumbnailAsyncDrawable(mResources, mLoadingBitmap, task);
             imageView.setImageDrawable(thumbnailAsyncDrawable);
 
             // NOTE: This uses a custom version of ImageAsyncTask that has been pulled from the
             // framework and slightly modified. Refer to the docs at the top of the class
-            // for more info on what was changed.
-            task.executeOnExecutor(ImageAsyncTask.DUAL_THREAD_EXECUTOR, path);
+            // for more info on what was changed. The thumbnail executor decodes several
+            // images in parallel, and the last requested images first
+            task.executeOnExecutor(ImageAsyncTask.THUMBNAIL_EXECUTOR, path);
         }
     }
 
+    /**
+     * @return The number of images decoded (not found in the caches)
+     */
+    public long getDecodeCount() {
+        return mDecodes.get();
+    }
+
+    /**
+     * @return The average time to decode an image, in milliseconds
+     */
+    public long getAverageDecodeTime() {
+        final long decodes = mDecodes.get();
+        return decodes == 0 ? 0 : mDecodeTime.get() / decodes;
+    }
+
+    /**
+     * @return A summary of the decode latency and the hit rate of the caches
+     */
+    public String getStatistics() {
+        final StringBuilder sb = new StringBuilder();
+        sb.append("decodes=").append(getDecodeCount())
+          .append(", avgDecodeTime=").append(getAverageDecodeTime()).append("ms");
+        if (mImageCache != null) {
+            sb.append(", memHits=").append(mImageCache.getMemCacheHits())
+              .append(", memMisses=").append(mImageCache.getMemCacheMisses())
+              .append(", diskHits=").append(mImageCache.getDiskCacheHits())
+              .append(", diskMisses=").append(mImageCache.getDiskCacheMisses());
+        }
+        return sb.toString();
+    }
+
     /**
      * Set placeholder bitmap that shows when the the background thread is running.
      *
@@ -212,7 +258,8 @@ public abstract class ImageWorker {
             if(bitmapWorkerTask instanceof BitmapWorkerTask)
             {
                 final Object bitmapData = ((BitmapWorkerTask)bitmapWorkerTask).data;
-                if (bitmapData == null || !bitmapData.equals(data)) {
+                if (bitmapData == null || !bitmapData.equals(data)
+                        || bitmapWorkerTask.isCancelled()) {
                     bitmapWorkerTask.cancel(true);
                     if (DEBUG) {
                         Log.d(TAG, "cancelPotentialWork - cancelled work for " + data);
@@ -247,10 +294,12 @@ public abstract class ImageWorker {
      */
     private class BitmapWorkerTask extends ImageAsyncTask<Object, Void, BitmapDrawable> {
         private Object data;
+        private final String key;
         private final WeakReference<ImageView> imageViewReference;
 
-        public BitmapWorkerTask(ImageView imageView) {
+        public BitmapWorkerTask(ImageView imageView, String key) {
             imageViewReference = new WeakReference<ImageView>(imageView);
+            this.key = key;
         }
 
         /**
@@ -262,8 +311,8 @@ public abstract class ImageWorker {
                 Log.d(TAG, "doInBackground - starting work");
             }
 
-            data = params[0];
-            final String dataString = String.valueOf(data);
+            // The data is set when the work starts, so a discarded task is restarted
+            data = key;
             Bitmap bitmap = null;
             BitmapDrawable drawable = null;
 
@@ -279,10 +328,13 @@ public abstract class ImageWorker {
             // If the image cache is available and this task has not been cancelled by another
             // thread and the ImageView that was originally bound to this task is still bound back
             // to this task and our "exit early" flag is not set then try and fetch the bitmap from
-            // the cache
+            // the cache. The icons of the application packages are persisted by the
+            // ApkInfoCache, so they aren't stored twice
+            final String path = String.valueOf(params[0]);
+            final boolean apk = path.toLowerCase().endsWith(".apk");
             if (mImageCache != null && !isCancelled() && getAttachedImageView() != null
-                    && !mExitTasksEarly) {
-                bitmap = mImageCache.getBitmapFromDiskCache(dataString);
+                    && !mExitTasksEarly && !apk) {
+                bitmap = mImageCache.getBitmapFromDiskCache(key);
             }
 
             // If the bitmap was not found in the cache and this task has not been cancelled by
@@ -291,11 +343,13 @@ public abstract class ImageWorker {
             // process method (as implemented by a subclass)
             if (bitmap == null && !isCancelled() && getAttachedImageView() != null
                     && !mExitTasksEarly) {
-                String path = String.valueOf(params[0]).toLowerCase();
-                if(path.endsWith(".apk"))
-                    bitmap = processApk(String.valueOf(params[0]));
+                final long start = System.currentTimeMillis();
+                if (apk)
+                    bitmap = processApk(path);
                 else
                     bitmap = processBitmap(params[0]);
+                mDecodes.incrementAndGet();
+                mDecodeTime.addAndGet(System.currentTimeMillis() - start);
             }
 
             // If the bitmap was processed and the image cache is available, then add the processed
@@ -307,7 +361,11 @@ public abstract class ImageWorker {
                 drawable = new BitmapDrawable(mResources, bitmap);
 
                 if (mImageCache != null) {
-                    mImageCache.addBitmapToCache(dataString, drawable);
+                    if (apk) {
+                        mImageCache.addBitmapToMemCache(key, drawable);
+                    } else {
+                        mImageCache.addBitmapToCache(key, drawable);
+                    }
                 }
             }
 
@@ -318,21 +376,13 @@ public abstract class ImageWorker {
             return drawable;
         }
 
-        private Bitmap processApk(String path)
-        {
-            Bitmap bitmap = null;
-            PackageInfo packageInfo = mContext.getPackageManager().getPackageArchiveInfo(
-                    path, PackageManager.GET_ACTIVITIES);
-            if (packageInfo != null) {
-                ApplicationInfo appInfo = packageInfo.applicationInfo;
-                if (Build.VERSION.SDK_INT >= 8) {
-                    appInfo.sourceDir = path;
-                    appInfo.publicSourceDir = path;
-                }
-                Drawable icon = appInfo.loadIcon(mContext.getPackageManager());
-                bitmap =  ((BitmapDrawable) icon).getBitmap();
-            }
-            return bitmap;
+        /**
+         * Return the icon of an application package. The package is parsed only the first
+         * time; then the icon is served from the persistent cache of packages.
+         */
+        private Bitmap processApk(String path) {
+            final ApkInfoCache.ApkInfo info = ApkInfoCache.getInstance(mContext).getApkInfo(path);
+            return info != null ? info.getIcon() : null;
         }
 
         /**
@@ -21,6 +21,8 @@ import android.content.Context;
 import android.content.DialogInterface;
 import android.text.Html;
 import android.text.Spanned;
+import android.text.format.DateUtils;
+import android.util.Log;
 
 import me.toolify.backbone.R;
 import me.toolify.backbone.console.NoSuchFileOrDirectory;
@@ -28,21 +30,30 @@ import me.toolify.backbone.console.RelaunchableException;
 import me.toolify.backbone.listeners.OnCopyMoveListener;
 import me.toolify.backbone.listeners.OnRequestRefreshListener;
 import me.toolify.backbone.listeners.OnSelectionListener;
+import me.toolify.backbone.model.CopyProgress;
 import me.toolify.backbone.model.FileSystemObject;
 import me.toolify.backbone.util.CommandHelper;
 import me.toolify.backbone.util.DialogHelper;
 import me.toolify.backbone.util.ExceptionUtil;
 import me.toolify.backbone.util.ExceptionUtil.OnRelaunchCommandResult;
+import me.toolify.backbone.util.FileHelper;
 
 import java.io.File;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.Timer;
+import java.util.TimerTask;
 
 /**
  * A class with the convenience methods for resolve copy/move related actions
  */
 public final class CopyMoveActionPolicy extends ActionsPolicy {
 
+    private static final String TAG = "CopyMoveActionPolicy"; //$NON-NLS-1$
+
+    // The interval between updates of the progress of the operation
+    private static final long PROGRESS_INTERVAL = 1000L;
+
     /**
      * @hide
      */
@@ -238,6 +249,7 @@ public final class CopyMoveActionPolicy extends ActionsPolicy {
             final COPY_MOVE_OPERATION mOperation = operation;
             final List<LinkedResource> mFiles = files;
             final OnRequestRefreshListener mOnRequestRefreshListener = onRequestRefreshListener;
+            final CopyProgress mProgress = new CopyProgress();
 
             final Object mSync = new Object();
             Throwable mCause;
@@ -273,7 +285,57 @@ public final class CopyMoveActionPolicy extends ActionsPolicy {
                                    R.string.waiting_dialog_copying_msg,
                               src.getAbsolutePath(),
                               dst.getAbsolutePath());
-                return Html.fromHtml(progress);
+                return Html.fromHtml(progress + getTransferProgress());
+            }
+
+            /**
+             * Method that returns the progress of the transfer (bytes, files, throughput
+             * and estimated time), if the transfer started. If the transfer can't be
+             * measured, the number of the current item is returned instead
+             *
+             * @return String The progress of the transfer
+             */
+            private String getTransferProgress() {
+                final CopyProgress p = this.mProgress;
+                if ((p.getBytes() == 0 && p.getFiles() == 0) || !p.isMeasurable()) {
+                    if (this.mFiles.size() <= 1) {
+                        return ""; //$NON-NLS-1$
+                    }
+                    return "<br/><br/>" + //$NON-NLS-1$
+                            this.mCtx.getString(
+                                R.string.waiting_dialog_transfer_items_msg,
+                                Integer.valueOf(this.mCurrent + 1),
+                                Integer.valueOf(this.mFiles.size()));
+                }
+                StringBuilder sb = new StringBuilder("<br/><br/>"); //$NON-NLS-1$
+                if (p.getTotalBytes() != CopyProgress.UNKNOWN) {
+                    sb.append(this.mCtx.getString(
+                            R.string.waiting_dialog_transfer_msg,
+                            FileHelper.getHumanReadableSize(p.getBytes()),
+                            FileHelper.getHumanReadableSize(p.getTotalBytes()),
+                            Integer.valueOf(p.getFiles()),
+                            Integer.valueOf(p.getTotalFiles())));
+                } else {
+                    sb.append(this.mCtx.getString(
+                            R.string.waiting_dialog_transfer_unknown_msg,
+                            FileHelper.getHumanReadableSize(p.getBytes()),
+                            Integer.valueOf(p.getFiles())));
+                }
+                if (p.getThroughput() > 0) {
+                    sb.append("<br/>"); //$NON-NLS-1$
+                    long eta = p.getEta();
+                    if (eta != CopyProgress.UNKNOWN) {
+                        sb.append(this.mCtx.getString(
+                                R.string.waiting_dialog_transfer_rate_msg,
+                                FileHelper.getHumanReadableSize(p.getThroughput()),
+                                DateUtils.formatElapsedTime(eta)));
+                    } else {
+                        sb.append(this.mCtx.getString(
+                                R.string.waiting_dialog_transfer_rate_unknown_msg,
+                                FileHelper.getHumanReadableSize(p.getThroughput())));
+                    }
+                }
+                return sb.toString();
             }
 
             @Override
@@ -292,20 +354,51 @@ public final class CopyMoveActionPolicy extends ActionsPolicy {
 
                 // This method expect to receive
                 // 1.- BackgroundAsyncTask
-                BackgroundAsyncTask task = (BackgroundAsyncTask)params[0];
+                final BackgroundAsyncTask task = (BackgroundAsyncTask)params[0];
+
+                // Update the progress of the transfer periodically. The total is computed
+                // in the timer thread, so the operation is not delayed
+                final File[] sources = new File[this.mFiles.size()];
+                for (int i = 0; i < sources.length; i++) {
+                    sources[i] = this.mFiles.get(i).mSrc;
+                }
+                Timer timer = new Timer(true);
+                timer.schedule(new TimerTask() {
+                    private boolean mTotalComputed = false;
+                    @Override
+                    @SuppressWarnings("synthetic-access")
+                    public void run() {
+                        // An uncaught exception cancels the timer, so the progress
+                        // would silently stop
+                        try {
+                            if (!this.mTotalComputed) {
+                                this.mTotalComputed = true;
+                                mProgress.computeTotal(sources);
+                            }
+                            mProgress.sample();
+                            task.onRequestProgress();
+                        } catch (Throwable ex) {
+                            Log.w(TAG, "Failed to update the transfer progress", ex); //$NON-NLS-1$
+                        }
+                    }
+                }, PROGRESS_INTERVAL, PROGRESS_INTERVAL);
 
-                int cc2 = this.mFiles.size();
-                for (int i = 0; i < cc2; i++) {
-                    File src = this.mFiles.get(i).mSrc;
-                    File dst = this.mFiles.get(i).mDst;
+                try {
+                    int cc2 = this.mFiles.size();
+                    for (int i = 0; i < cc2; i++) {
+                        File src = this.mFiles.get(i).mSrc;
+                        File dst = this.mFiles.get(i).mDst;
 
-                    doOperation(this.mCtx, src, dst, this.mOperation);
+                        doOperation(this.mCtx, src, dst, this.mOperation);
 
-                    // Next file
-                    this.mCurrent++;
-                    if (this.mCurrent < this.mFiles.size()) {
-                        task.onRequestProgress();
+                        // Next file
+                        if (this.mCurrent < this.mFiles.size() - 1) {
+                            this.mCurrent++;
+                            task.onRequestProgress();
+                        }
                     }
+                } finally {
+                    timer.cancel();
                 }
             }
 
@@ -332,12 +425,14 @@ public final class CopyMoveActionPolicy extends ActionsPolicy {
                                 ctx,
                                 src.getAbsolutePath(),
                                 dst.getAbsolutePath(),
+                                this.mProgress,
                                 null);
                     } else {
                         CommandHelper.copy(
                                 ctx,
                                 src.getAbsolutePath(),
                                 dst.getAbsolutePath(),
+                                this.mProgress,
                                 null);
                     }
                 } catch (Exception e) {
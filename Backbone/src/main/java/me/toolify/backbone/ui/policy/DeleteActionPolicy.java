@@ -137,11 +137,17 @@ public final class DeleteActionPolicy extends ActionsPolicy {
                 return;
             }
         }
-        // 2.- Sort the items by path to avoid delete parents fso prior to child fso
+        // 2.- Sort the items deepest first (a child path is always longer than its
+        //     parent path) to avoid delete parents fso prior to child fso
         final List<FileSystemObject> sortedFsos  = new ArrayList<FileSystemObject>(files);
         Collections.sort(sortedFsos, new Comparator<FileSystemObject>() {
             @Override
             public int compare(FileSystemObject lhs, FileSystemObject rhs) {
+                int lhsLength = lhs.getFullPath().length();
+                int rhsLength = rhs.getFullPath().length();
+                if (lhsLength != rhsLength) {
+                    return lhsLength > rhsLength ? -1 : 1;
+                }
                 return lhs.compareTo(rhs) * -1; //Reverse
             }
         });
@@ -212,20 +218,77 @@ public final class DeleteActionPolicy extends ActionsPolicy {
                 // 1.- BackgroundAsyncTask
                 BackgroundAsyncTask task = (BackgroundAsyncTask)params[0];
 
+                // Delete the files in batches (only one round-trip to the console per batch).
+                // The files are sorted deepest first, and the batch is executed in
+                // order, so children are deleted prior to their parents
                 int cc = this.mFiles.size();
-                for (int i = 0; i < cc; i++) {
-                    FileSystemObject fso = this.mFiles.get(i);
+                for (int start = 0; start < cc; start += CommandHelper.MAX_BATCH_SIZE) {
+                    int end = Math.min(cc, start + CommandHelper.MAX_BATCH_SIZE);
+                    List<FileSystemObject> batch = this.mFiles.subList(start, end);
 
-                    doOperation(this.mCtx, fso);
+                    doBatchOperation(this.mCtx, batch);
 
-                    // Next file
-                    this.mCurrent++;
+                    // Next batch
+                    this.mCurrent = end;
                     if (this.mCurrent < this.mFiles.size()) {
                         task.onRequestProgress();
                     }
                 }
             }
 
+            /**
+             * Method that deletes a batch of files and directories. Files that couldn't
+             * be deleted in the batch are deleted again one by one, so the relaunchable
+             * exceptions can be handled.
+             *
+             * @param ctx The current context
+             * @param fsos The files or folders to be deleted
+             */
+            @SuppressWarnings("hiding")
+            private void doBatchOperation(
+                    final Context ctx, final List<FileSystemObject> fsos) throws Throwable {
+                Exception[] causes = null;
+                try {
+                    causes = CommandHelper.deleteFileSystemObjects(ctx, fsos, null);
+                } catch (Exception e) {
+                    // The batch could not be executed. Fallback to single operations
+                }
+
+                // Check that the operation was completed retrieving the deleted fsos
+                List<String> paths = new ArrayList<String>(fsos.size());
+                for (FileSystemObject fso : fsos) {
+                    paths.add(fso.getFullPath());
+                }
+                FileSystemObject[] remaining = null;
+                if (causes != null) {
+                    try {
+                        remaining = CommandHelper.getFilesInfo(ctx, paths, false, null);
+                    } catch (Exception e) {
+                        // Check every file with its single operation
+                    }
+                }
+
+                int cc = fsos.size();
+                for (int i = 0; i < cc; i++) {
+                    FileSystemObject fso = fsos.get(i);
+                    if (causes == null || causes[i] != null) {
+                        doOperation(ctx, fso);
+                    } else if (remaining == null) {
+                        checkOperation(ctx, fso);
+                    } else if (remaining[i] != null) {
+                        // Cancels the flinger
+                        if (onItemFlingerResponder != null) {
+                            onItemFlingerResponder.cancel();
+                        }
+
+                        throw new ExecutionException(
+                                String.format(
+                                        "Failed to delete file: %s", //$NON-NLS-1$
+                                        fso.getFullPath()));
+                    }
+                }
+            }
+
             /**
              * Method that deletes the file or directory
              *
@@ -299,7 +362,20 @@ public final class DeleteActionPolicy extends ActionsPolicy {
                     }
                 }
 
-                // Check that the operation was completed retrieving the deleted fso
+                // Check that the operation was completed
+                checkOperation(ctx, fso);
+            }
+
+            /**
+             * Method that checks that the file or directory was deleted, retrieving
+             * the deleted fso
+             *
+             * @param ctx The current context
+             * @param fso The file or folder deleted
+             */
+            @SuppressWarnings("hiding")
+            private void checkOperation(
+                    final Context ctx, final FileSystemObject fso) throws Throwable {
                 boolean failed = false;
                 try {
                     CommandHelper.getFileInfo(ctx, fso.getFullPath(), false, null);
@@ -19,12 +19,20 @@ package me.toolify.backbone.util;
 import android.content.Context;
 import android.util.Log;
 
+import java.io.File;
 import java.io.FileNotFoundException;
 import java.io.IOException;
+import java.util.ArrayList;
 import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
 
 import me.toolify.backbone.BuildConfig;
+import me.toolify.backbone.commands.AsyncListExecutable;
+import me.toolify.backbone.commands.AsyncResultExecutable;
 import me.toolify.backbone.commands.AsyncResultListener;
+import me.toolify.backbone.commands.BatchExecutable;
 import me.toolify.backbone.commands.ChangeOwnerExecutable;
 import me.toolify.backbone.commands.ChangePermissionsExecutable;
 import me.toolify.backbone.commands.ChecksumExecutable;
@@ -38,6 +46,7 @@ import me.toolify.backbone.commands.DiskUsageExecutable;
 import me.toolify.backbone.commands.EchoExecutable;
 import me.toolify.backbone.commands.ExecExecutable;
 import me.toolify.backbone.commands.Executable;
+import me.toolify.backbone.commands.ExecutableCreator;
 import me.toolify.backbone.commands.FindExecutable;
 import me.toolify.backbone.commands.FolderUsageExecutable;
 import me.toolify.backbone.commands.GroupsExecutable;
@@ -68,6 +77,7 @@ import me.toolify.backbone.console.InsufficientPermissionsException;
 import me.toolify.backbone.console.NoSuchFileOrDirectory;
 import me.toolify.backbone.console.OperationTimeoutException;
 import me.toolify.backbone.console.ReadOnlyFilesystemException;
+import me.toolify.backbone.model.CopyProgress;
 import me.toolify.backbone.model.DiskUsage;
 import me.toolify.backbone.model.FileSystemObject;
 import me.toolify.backbone.model.FolderUsage;
@@ -86,6 +96,14 @@ import me.toolify.backbone.preferences.CompressionMode;
  */
 public final class CommandHelper {
 
+    /**
+     * The maximum number of programs executed in only one invocation of the console
+     */
+    public static final int MAX_BATCH_SIZE = 100;
+
+    // The maximum time that a progressive listing can be without returning data
+    private static final long LIST_TIMEOUT = 10000L;
+
     /**
      * A wrapper class for asynchronous operations that need restore the filesystem
      * after the operation.
@@ -97,6 +115,7 @@ public final class CommandHelper {
         boolean mUnmount = false;
         Console mConsole;
         MountPoint mMountPoint;
+        String mChangedPath;
 
         /**
          * Constructor of <code>UnmountAsyncResultListener</code>
@@ -120,6 +139,10 @@ public final class CommandHelper {
          */
         @Override
         public void onAsyncEnd(boolean cancelled) {
+            // The file system object changed while the operation was running
+            if (this.mChangedPath != null) {
+                ListingCache.invalidateChange(this.mChangedPath);
+            }
             if (this.mRef != null) {
                 this.mRef.onAsyncEnd(cancelled);
             }
@@ -183,6 +206,83 @@ public final class CommandHelper {
         }
     }
 
+    /**
+     * A wrapper class for progressive listings. It forwards the chunks to the listener
+     * and releases the caller when the execution finished completely, so the exceptions
+     * of the checks of the result of the program are not lost.
+     */
+    private static class ProgressiveListListener
+            implements AsyncResultListener, AsyncResultExecutable.OnFinishListener {
+
+        final AsyncResultListener mRef;
+        final CountDownLatch mDone = new CountDownLatch(1);
+        final AtomicLong mLastData = new AtomicLong(System.currentTimeMillis());
+        volatile Exception mError;
+
+        /**
+         * Constructor of <code>ProgressiveListListener</code>
+         *
+         * @param ref The listener to forward to
+         */
+        public ProgressiveListListener(AsyncResultListener ref) {
+            super();
+            this.mRef = ref;
+        }
+
+        /**
+         * {@inheritDoc}
+         */
+        @Override
+        public void onAsyncStart() {
+            this.mLastData.set(System.currentTimeMillis());
+            this.mRef.onAsyncStart();
+        }
+
+        /**
+         * {@inheritDoc}
+         */
+        @Override
+        public void onAsyncEnd(boolean cancelled) {
+            this.mRef.onAsyncEnd(cancelled);
+        }
+
+        /**
+         * {@inheritDoc}
+         */
+        @Override
+        public void onAsyncExitCode(int exitCode) {
+            this.mRef.onAsyncExitCode(exitCode);
+        }
+
+        /**
+         * {@inheritDoc}
+         */
+        @Override
+        public void onPartialResult(Object result) {
+            this.mLastData.set(System.currentTimeMillis());
+            this.mRef.onPartialResult(result);
+        }
+
+        /**
+         * {@inheritDoc}
+         */
+        @Override
+        public void onException(Exception cause) {
+            // Keep the first one. It's rethrown to the caller
+            if (this.mError == null) {
+                this.mError = cause;
+            }
+        }
+
+        /**
+         * {@inheritDoc}
+         */
+        @Override
+        public void onAsyncFinish() {
+            this.mDone.countDown();
+        }
+    }
+
     /**
      * Constructor of <code>CommandHelper</code>.
      */
@@ -222,7 +322,11 @@ public final class CommandHelper {
         ChangeOwnerExecutable executable =
                 c.getExecutableFactory().
                     newCreator().createChangeOwnerExecutable(src, user, group);
-        writableExecute(context, executable, c);
+        try {
+            writableExecute(context, executable, c);
+        } finally {
+            ListingCache.invalidateChange(src);
+        }
         return executable.getResult().booleanValue();
     }
 
@@ -257,7 +361,11 @@ public final class CommandHelper {
         ChangePermissionsExecutable executable =
                 c.getExecutableFactory().newCreator().
                     createChangePermissionsExecutable(src, permissions);
-        writableExecute(context, executable, c);
+        try {
+            writableExecute(context, executable, c);
+        } finally {
+            ListingCache.invalidateChange(src);
+        }
         return executable.getResult().booleanValue();
     }
 
@@ -289,7 +397,11 @@ public final class CommandHelper {
         Console c = ensureConsole(context, console);
         CreateDirExecutable executable =
                 c.getExecutableFactory().newCreator().createCreateDirectoryExecutable(directory);
-        writableExecute(context, executable, c);
+        try {
+            writableExecute(context, executable, c);
+        } finally {
+            ListingCache.invalidateChange(directory);
+        }
         return executable.getResult().booleanValue();
     }
 
@@ -321,7 +433,11 @@ public final class CommandHelper {
         Console c = ensureConsole(context, console);
         CreateFileExecutable executable =
                 c.getExecutableFactory().newCreator().createCreateFileExecutable(file);
-        writableExecute(context, executable, c);
+        try {
+            writableExecute(context, executable, c);
+        } finally {
+            ListingCache.invalidateChange(file);
+        }
         return executable.getResult().booleanValue();
     }
 
@@ -353,7 +469,11 @@ public final class CommandHelper {
         Console c = ensureConsole(context, console);
         DeleteDirExecutable executable =
                 c.getExecutableFactory().newCreator().createDeleteDirExecutable(directory);
-        writableExecute(context, executable, c);
+        try {
+            writableExecute(context, executable, c);
+        } finally {
+            ListingCache.invalidateChange(directory);
+        }
         return executable.getResult().booleanValue();
     }
 
@@ -385,10 +505,74 @@ public final class CommandHelper {
         Console c = ensureConsole(context, console);
         DeleteFileExecutable executable =
                 c.getExecutableFactory().newCreator().createDeleteFileExecutable(file);
-        writableExecute(context, executable, c);
+        try {
+            writableExecute(context, executable, c);
+        } finally {
+            ListingCache.invalidateChange(file);
+        }
         return executable.getResult().booleanValue();
     }
 
+    /**
+     * Method that deletes a list of files and directories. The programs are executed
+     * in batches of {@link #MAX_BATCH_SIZE}, with only one invocation of the console
+     * per batch. The batch doesn't stop if a program fails.
+     *
+     * @param context The current context (needed if console == null)
+     * @param fsos The files and directories to delete
+     * @param console The console in which execute the program. <code>null</code>
+     * to attach to the default console
+     * @return Exception[] The exception of every delete operation, or <code>null</code> if the
+     * file system object was deleted successfully
+     * @throws FileNotFoundException If the initial directory not exists
+     * @throws IOException If initial directory couldn't be checked
+     * @throws InvalidCommandDefinitionException If the command has an invalid definition
+     * @throws NoSuchFileOrDirectory If the file or directory was not found
+     * @throws ConsoleAllocException If the console can't be allocated
+     * @throws InsufficientPermissionsException If an operation requires elevated permissions
+     * @throws CommandNotFoundException If the command was not found
+     * @throws OperationTimeoutException If the operation exceeded the maximum time of wait
+     * @throws ExecutionException If the operation returns a invalid exit code
+     * @throws ReadOnlyFilesystemException If the operation writes in a read-only filesystem
+     * @see BatchExecutable
+     */
+    public static Exception[] deleteFileSystemObjects(
+            Context context, List<FileSystemObject> fsos, Console console)
+            throws FileNotFoundException, IOException, ConsoleAllocException,
+            NoSuchFileOrDirectory, InsufficientPermissionsException,
+            CommandNotFoundException, OperationTimeoutException,
+            ExecutionException, InvalidCommandDefinitionException, ReadOnlyFilesystemException {
+        Console c = ensureConsole(context, console);
+        Exception[] result = new Exception[fsos.size()];
+        int cc = fsos.size();
+        for (int start = 0; start < cc; start += MAX_BATCH_SIZE) {
+            int end = Math.min(cc, start + MAX_BATCH_SIZE);
+            ExecutableCreator creator = c.getExecutableFactory().newCreator();
+            List<SyncResultExecutable> executables =
+                    new ArrayList<SyncResultExecutable>(end - start);
+            for (int i = start; i < end; i++) {
+                FileSystemObject fso = fsos.get(i);
+                if (FileHelper.isDirectory(fso)) {
+                    executables.add(creator.createDeleteDirExecutable(fso.getFullPath()));
+                } else {
+                    executables.add(creator.createDeleteFileExecutable(fso.getFullPath()));
+                }
+            }
+            BatchExecutable executable = creator.createBatchExecutable(executables);
+            try {
+                writableExecute(context, executable, c);
+            } finally {
+                for (int i = start; i < end; i++) {
+                    ListingCache.invalidateChange(fsos.get(i).getFullPath());
+                }
+            }
+            for (int i = start; i < end; i++) {
+                result[i] = executable.getException(i - start);
+            }
+        }
+        return result;
+    }
+
     /**
      * Method that resolves a symlink to its real file system object.
      *
@@ -489,6 +673,66 @@ public final class CommandHelper {
         return null;
     }
 
+    /**
+     * Method that retrieves the information of a list of file system objects. The programs
+     * are executed in batches of {@link #MAX_BATCH_SIZE}, with only one invocation of the
+     * console per batch.
+     *
+     * @param context The current context (needed if console == null)
+     * @param srcs The file system objects
+     * @param followSymlinks It should be follow the symlinks
+     * @param console The console in which execute the program. <code>null</code>
+     * to attach to the default console
+     * @return FileSystemObject[] The file system object references. An item is
+     * <code>null</code> if its information couldn't be retrieved (i.e. it not exists)
+     * @throws FileNotFoundException If the initial directory not exists
+     * @throws IOException If initial directory couldn't be checked
+     * @throws InvalidCommandDefinitionException If the command has an invalid definition
+     * @throws NoSuchFileOrDirectory If the file or directory was not found
+     * @throws ConsoleAllocException If the console can't be allocated
+     * @throws InsufficientPermissionsException If an operation requires elevated permissions
+     * @throws CommandNotFoundException If the command was not found
+     * @throws OperationTimeoutException If the operation exceeded the maximum time of wait
+     * @throws ExecutionException If the operation returns a invalid exit code
+     * @see BatchExecutable
+     */
+    public static FileSystemObject[] getFilesInfo(
+            Context context, List<String> srcs, boolean followSymlinks, Console console)
+            throws FileNotFoundException, IOException, ConsoleAllocException,
+            NoSuchFileOrDirectory, InsufficientPermissionsException,
+            CommandNotFoundException, OperationTimeoutException,
+            ExecutionException, InvalidCommandDefinitionException {
+        Console c = ensureConsole(context, console);
+        FileSystemObject[] result = new FileSystemObject[srcs.size()];
+        int cc = srcs.size();
+        for (int start = 0; start < cc; start += MAX_BATCH_SIZE) {
+            int end = Math.min(cc, start + MAX_BATCH_SIZE);
+            ExecutableCreator creator = c.getExecutableFactory().newCreator();
+            List<SyncResultExecutable> executables =
+                    new ArrayList<SyncResultExecutable>(end - start);
+            for (int i = start; i < end; i++) {
+                executables.add(creator.createFileInfoExecutable(srcs.get(i), followSymlinks));
+            }
+            BatchExecutable executable = creator.createBatchExecutable(executables);
+            execute(context, executable, c);
+            for (int i = start; i < end; i++) {
+                if (executable.getException(i - start) != null) {
+                    continue;
+                }
+                List<FileSystemObject> files =
+                        ((ListExecutable)executables.get(i - start)).getResult();
+                if (files != null && files.size() > 0) {
+                    // Resolve symlinks prior to return the object
+                    if (followSymlinks) {
+                        FileHelper.resolveSymlinks(context, files);
+                    }
+                    result[i] = files.get(0);
+                }
+            }
+        }
+        return result;
+    }
+
     /**
      * Method that retrieves the information of the groups of the current user.
      *
@@ -670,13 +914,158 @@ public final class CommandHelper {
             NoSuchFileOrDirectory, InsufficientPermissionsException,
             CommandNotFoundException, OperationTimeoutException,
             ExecutionException, InvalidCommandDefinitionException {
+        return listFiles(context, directory, false, console);
+    }
+
+    /**
+     * Method that lists a directory, using the {@link ListingCache} if requested. A
+     * cached listing is returned without executing any command, if the directory
+     * didn't change since it was listed.
+     *
+     * @param context The current context (needed if console == null)
+     * @param directory The path of the directory to list
+     * @param useCache If the listing can be obtained from (and stored in) the cache
+     * @param console The console in which execute the program. <code>null</code>
+     * to attach to the default console
+     * @return List<FileSystemObject> The list of files of the directory
+     * @throws FileNotFoundException If the initial directory not exists
+     * @throws IOException If initial directory couldn't be checked
+     * @throws InvalidCommandDefinitionException If the command has an invalid definition
+     * @throws NoSuchFileOrDirectory If the file or directory was not found
+     * @throws ConsoleAllocException If the console can't be allocated
+     * @throws InsufficientPermissionsException If an operation requires elevated permissions
+     * @throws CommandNotFoundException If the command was not found
+     * @throws OperationTimeoutException If the operation exceeded the maximum time of wait
+     * @throws ExecutionException If the operation returns a invalid exit code
+     * @see ListExecutable
+     */
+    public static List<FileSystemObject> listFiles(
+            Context context, String directory, boolean useCache, Console console)
+            throws FileNotFoundException, IOException, ConsoleAllocException,
+            NoSuchFileOrDirectory, InsufficientPermissionsException,
+            CommandNotFoundException, OperationTimeoutException,
+            ExecutionException, InvalidCommandDefinitionException {
         Console c = ensureConsole(context, console);
+
+        // The time is read before list the directory, so a change while listing
+        // invalidates the cached listing
+        long lastModified = 0;
+        if (useCache) {
+            lastModified = new File(directory).lastModified();
+            List<FileSystemObject> cached =
+                    ListingCache.get(
+                            directory, c.getClass(), c.isPrivileged(), lastModified);
+            if (cached != null) {
+                return cached;
+            }
+        }
+
         ListExecutable executable =
                 c.getExecutableFactory().newCreator().
                     createListExecutable(directory);
         execute(context, executable, c);
         List<FileSystemObject> result = executable.getResult();
         FileHelper.resolveSymlinks(context, result);
+        if (useCache) {
+            ListingCache.put(
+                    directory, c.getClass(), c.isPrivileged(), lastModified, result);
+        }
+        return result;
+    }
+
+    /**
+     * Method that lists a directory progressively. The files are returned to the listener
+     * in unsorted chunks while the directory is listed, so the caller can show the first
+     * files of a huge directory before the listing ends. This method blocks until the
+     * listing ends, and returns all the files listed (with the symlinks resolved).
+     *
+     * @param context The current context (needed if console == null)
+     * @param directory The path of the directory to list
+     * @param useCache If the listing can be obtained from (and stored in) the cache. A
+     * cached listing is returned without notifying the listener
+     * @param asyncResultListener The partial result listener
+     * @param console The console in which execute the program. <code>null</code>
+     * to attach to the default console
+     * @return List<FileSystemObject> The list of files of the directory
+     * @throws FileNotFoundException If the initial directory not exists
+     * @throws IOException If initial directory couldn't be checked
+     * @throws InvalidCommandDefinitionException If the command has an invalid definition
+     * @throws NoSuchFileOrDirectory If the file or directory was not found
+     * @throws ConsoleAllocException If the console can't be allocated
+     * @throws InsufficientPermissionsException If an operation requires elevated permissions
+     * @throws CommandNotFoundException If the command was not found
+     * @throws OperationTimeoutException If the operation exceeded the maximum time of wait
+     * @throws ExecutionException If the operation returns a invalid exit code
+     * @see AsyncListExecutable
+     */
+    public static List<FileSystemObject> listFiles(
+            Context context, String directory, boolean useCache,
+            final AsyncResultListener asyncResultListener, Console console)
+            throws FileNotFoundException, IOException, ConsoleAllocException,
+            NoSuchFileOrDirectory, InsufficientPermissionsException,
+            CommandNotFoundException, OperationTimeoutException,
+            ExecutionException, InvalidCommandDefinitionException {
+        if (asyncResultListener == null) {
+            return listFiles(context, directory, useCache, console);
+        }
+        Console c = ensureConsole(context, console);
+
+        // The time is read before list the directory, so a change while listing
+        // invalidates the cached listing
+        long lastModified = 0;
+        if (useCache) {
+            lastModified = new File(directory).lastModified();
+            List<FileSystemObject> cached =
+                    ListingCache.get(
+                            directory, c.getClass(), c.isPrivileged(), lastModified);
+            if (cached != null) {
+                return cached;
+            }
+        }
+
+        // Forward the chunks, and wait for the end of the listing
+        ProgressiveListListener listener = new ProgressiveListListener(asyncResultListener);
+        AsyncListExecutable executable =
+                c.getExecutableFactory().newCreator().
+                    createAsyncListExecutable(directory, listener);
+        execute(context, executable, c);
+        try {
+            // The listing can take a while in huge directories, so it only times out
+            // if it doesn't return data (i.e. the console is dead or busy)
+            while (!listener.mDone.await(LIST_TIMEOUT, TimeUnit.MILLISECONDS)) {
+                long idle = System.currentTimeMillis() - listener.mLastData.get();
+                if (idle >= LIST_TIMEOUT) {
+                    executable.cancel();
+                    throw new OperationTimeoutException(
+                            idle, "list " + directory); //$NON-NLS-1$
+                }
+            }
+        } catch (InterruptedException iex) {
+            executable.cancel();
+            throw new ExecutionException("listing interrupted", iex); //$NON-NLS-1$
+        }
+        Exception error = listener.mError;
+        if (error != null) {
+            if (error instanceof NoSuchFileOrDirectory) {
+                throw (NoSuchFileOrDirectory)error;
+            }
+            if (error instanceof InsufficientPermissionsException) {
+                throw (InsufficientPermissionsException)error;
+            }
+            if (error instanceof ExecutionException) {
+                throw (ExecutionException)error;
+            }
+            throw new ExecutionException("listing failed", error); //$NON-NLS-1$
+        }
+
+        // The symlinks are resolved when the listing ended, because the resolution
+        // executes commands in the same console
+        List<FileSystemObject> result = executable.getResult();
+        FileHelper.resolveSymlinks(context, result);
+        if (useCache) {
+            ListingCache.put(
+                    directory, c.getClass(), c.isPrivileged(), lastModified, result);
+        }
         return result;
     }
 
@@ -706,10 +1095,52 @@ public final class CommandHelper {
             NoSuchFileOrDirectory, InsufficientPermissionsException,
             CommandNotFoundException, OperationTimeoutException,
             ExecutionException, InvalidCommandDefinitionException, ReadOnlyFilesystemException {
+        return move(context, src, dst, null, console);
+    }
+
+    /**
+     * Method that moves a file system object, feeding the progress of the operation.
+     *
+     * @param context The current context (needed if console == null)
+     * @param src The file system object to move
+     * @param dst The destination file system object
+     * @param progress The progress of the operation (optional)
+     * @param console The console in which execute the program. <code>null</code>
+     * to attach to the default console
+     * @return boolean The operation result
+     * @throws FileNotFoundException If the initial directory not exists
+     * @throws IOException If initial directory couldn't be checked
+     * @throws InvalidCommandDefinitionException If the command has an invalid definition
+     * @throws NoSuchFileOrDirectory If the file or directory was not found
+     * @throws ConsoleAllocException If the console can't be allocated
+     * @throws InsufficientPermissionsException If an operation requires elevated permissions
+     * @throws CommandNotFoundException If the command was not found
+     * @throws OperationTimeoutException If the operation exceeded the maximum time of wait
+     * @throws ExecutionException If the operation returns a invalid exit code
+     * @throws ReadOnlyFilesystemException If the operation writes in a read-only filesystem
+     * @see MoveExecutable
+     */
+    public static boolean move(
+            Context context, String src, String dst, CopyProgress progress, Console console)
+            throws FileNotFoundException, IOException, ConsoleAllocException,
+            NoSuchFileOrDirectory, InsufficientPermissionsException,
+            CommandNotFoundException, OperationTimeoutException,
+            ExecutionException, InvalidCommandDefinitionException, ReadOnlyFilesystemException {
         Console c = ensureConsole(context, console);
         MoveExecutable executable =
                 c.getExecutableFactory().newCreator().createMoveExecutable(src, dst);
-        writableExecute(context, executable, c);
+        if (progress != null) {
+            executable.setProgress(progress);
+        }
+        try {
+            writableExecute(context, executable, c);
+        } finally {
+            ListingCache.invalidateChange(src);
+            ListingCache.invalidateChange(dst);
+            if (progress != null) {
+                progress.endSampling();
+            }
+        }
         return executable.getResult().booleanValue();
     }
 
@@ -739,10 +1170,51 @@ public final class CommandHelper {
             NoSuchFileOrDirectory, InsufficientPermissionsException,
             CommandNotFoundException, OperationTimeoutException,
             ExecutionException, InvalidCommandDefinitionException, ReadOnlyFilesystemException {
+        return copy(context, src, dst, null, console);
+    }
+
+    /**
+     * Method that copies a file system object, feeding the progress of the operation.
+     *
+     * @param context The current context (needed if console == null)
+     * @param src The file system object to copy
+     * @param dst The destination file system object
+     * @param progress The progress of the operation (optional)
+     * @param console The console in which execute the program. <code>null</code>
+     * to attach to the default console
+     * @return boolean The operation result
+     * @throws FileNotFoundException If the initial directory not exists
+     * @throws IOException If initial directory couldn't be checked
+     * @throws InvalidCommandDefinitionException If the command has an invalid definition
+     * @throws NoSuchFileOrDirectory If the file or directory was not found
+     * @throws ConsoleAllocException If the console can't be allocated
+     * @throws InsufficientPermissionsException If an operation requires elevated permissions
+     * @throws CommandNotFoundException If the command was not found
+     * @throws OperationTimeoutException If the operation exceeded the maximum time of wait
+     * @throws ExecutionException If the operation returns a invalid exit code
+     * @throws ReadOnlyFilesystemException If the operation writes in a read-only filesystem
+     * @see CopyExecutable
+     */
+    public static boolean copy(
+            Context context, String src, String dst, CopyProgress progress, Console console)
+            throws FileNotFoundException, IOException, ConsoleAllocException,
+            NoSuchFileOrDirectory, InsufficientPermissionsException,
+            CommandNotFoundException, OperationTimeoutException,
+            ExecutionException, InvalidCommandDefinitionException, ReadOnlyFilesystemException {
         Console c = ensureConsole(context, console);
         CopyExecutable executable =
                 c.getExecutableFactory().newCreator().createCopyExecutable(src, dst);
-        writableExecute(context, executable, c);
+        if (progress != null) {
+            executable.setProgress(progress);
+        }
+        try {
+            writableExecute(context, executable, c);
+        } finally {
+            ListingCache.invalidateChange(dst);
+            if (progress != null) {
+                progress.endSampling();
+            }
+        }
         return executable.getResult().booleanValue();
     }
 
@@ -1191,6 +1663,7 @@ public final class CommandHelper {
      *
      * @param context The current context (needed if console == null)
      * @param file The file where to write the data
+     * @param length The number of bytes that will be written
      * @param asyncResultListener The partial result listener
      * @param console The console in which execute the program.
      * <code>null</code> to attach to the default console
@@ -1208,7 +1681,7 @@ public final class CommandHelper {
      * @see WriteExecutable
      */
     public static WriteExecutable write(
-            Context context, String file,
+            Context context, String file, long length,
             AsyncResultListener asyncResultListener, Console console)
             throws FileNotFoundException, IOException, ConsoleAllocException,
             NoSuchFileOrDirectory, InsufficientPermissionsException,
@@ -1232,11 +1705,12 @@ public final class CommandHelper {
             // Configure the rest of attributes of the wrapper listener
             wrapperListener.mUnmount = unmount;
             wrapperListener.mMountPoint = executable1.getDstWritableMountPoint();
+            wrapperListener.mChangedPath = file;
 
             //- Write
             WriteExecutable executable2 =
                     c.getExecutableFactory().newCreator().
-                        createWriteExecutable(file, wrapperListener);
+                        createWriteExecutable(file, length, wrapperListener);
             execute(context, executable2, c);
             return executable2;
         }
@@ -1298,6 +1772,7 @@ public final class CommandHelper {
             // Configure the rest of attributes of the wrapper listener
             wrapperListener.mUnmount = unmount;
             wrapperListener.mMountPoint = executable2.getDstWritableMountPoint();
+            wrapperListener.mChangedPath = compressOutFile;
 
             // Some archive modes requires a new file. Ensure that the created
             // file doesn't exists
@@ -1370,6 +1845,7 @@ public final class CommandHelper {
             // Configure the rest of attributes of the wrapper listener
             wrapperListener.mUnmount = unmount;
             wrapperListener.mMountPoint = executable2.getDstWritableMountPoint();
+            wrapperListener.mChangedPath = compressOutFile;
 
             //- Compress
             execute(context, executable1, c);
@@ -1444,6 +1920,7 @@ public final class CommandHelper {
             // Configure the rest of attributes of the wrapper listener
             wrapperListener.mUnmount = unmount;
             wrapperListener.mMountPoint = executable2.getDstWritableMountPoint();
+            wrapperListener.mChangedPath = compressOutFile;
 
             //- Compress
             execute(context, executable1, c);
@@ -1488,6 +1965,43 @@ public final class CommandHelper {
         return executable;
     }
 
+    /**
+     * Method that calculates the requested checksums of a file system object. The
+     * checksums that the console can't calculate are returned as <code>null</code>.
+     *
+     * @param context The current context (needed if console == null)
+     * @param src The source file
+     * @param checksums The checksums to calculate
+     * @param asyncResultListener The partial result listener
+     * @param console The console in which execute the program.
+     * <code>null</code> to attach to the default console
+     * @return ChecksumExecutable The command executed in background
+     * @throws FileNotFoundException If the initial directory not exists
+     * @throws IOException If initial directory couldn't be checked
+     * @throws InvalidCommandDefinitionException If the command has an invalid definition
+     * @throws NoSuchFileOrDirectory If the file or directory was not found
+     * @throws ConsoleAllocException If the console can't be allocated
+     * @throws InsufficientPermissionsException If an operation requires elevated permissions
+     * @throws CommandNotFoundException If the command was not found
+     * @throws OperationTimeoutException If the operation exceeded the maximum time of wait
+     * @throws ExecutionException If the operation returns a invalid exit code
+     * @see ChecksumExecutable
+     */
+    public static ChecksumExecutable checksum(
+            Context context, String src, ChecksumExecutable.CHECKSUMS[] checksums,
+            AsyncResultListener asyncResultListener, Console console)
+            throws FileNotFoundException, IOException, ConsoleAllocException,
+            NoSuchFileOrDirectory, InsufficientPermissionsException,
+            CommandNotFoundException, OperationTimeoutException,
+            ExecutionException, InvalidCommandDefinitionException {
+        Console c = ensureConsole(context, console);
+        ChecksumExecutable executable =
+                c.getExecutableFactory().newCreator().
+                    createChecksumExecutable(src, checksums, asyncResultListener);
+        execute(context, executable, c);
+        return executable;
+    }
+
     /**
      * Method that re-execute the command.
      *
@@ -0,0 +1,172 @@
+/*
+ * Copyright (C) 2013 BrandroidTools
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package me.toolify.backbone.util;
+
+import android.os.FileObserver;
+import android.os.Handler;
+import android.os.Looper;
+
+import me.toolify.backbone.listeners.OnDirectoryChangesListener;
+
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * A class that watches the entries of a directory (through inotify), and notifies
+ * the changes to a {@link OnDirectoryChangesListener} in the main thread.<br/>
+ * <br/>
+ * The events are coalesced over a short interval, so a burst of changes (i.e. a camera
+ * writing 200 pictures) is notified as a few lists of entries, and not one change
+ * per event. The listener must check the current state of the entries.
+ */
+public class DirectoryWatcher extends FileObserver {
+
+    // The events watched. Modifications are notified when the file is closed
+    private static final int EVENTS =
+            CREATE | DELETE | MOVED_FROM | MOVED_TO | CLOSE_WRITE | ATTRIB |
+            DELETE_SELF | MOVE_SELF;
+    // The events that invalidates the directory itself
+    private static final int SELF_EVENTS = DELETE_SELF | MOVE_SELF;
+    // The interval over which the events are coalesced
+    private static final long COALESCE_INTERVAL = 300L;
+    // The maximum number of changed entries notified. More changes requires a reload
+    private static final int MAX_CHANGES = 500;
+
+    private final String mDirectory;
+    private final OnDirectoryChangesListener mListener;
+    private final Handler mHandler;
+
+    private final Object mSync = new Object();
+    private Set<String> mChanges;
+    private boolean mReloadRequired;
+    private boolean mScheduled;
+    private boolean mWatching;
+
+    private final Runnable mFlush = new Runnable() {
+        @Override
+        public void run() {
+            flush();
+        }
+    };
+
+    /**
+     * Constructor of <code>DirectoryWatcher</code>.
+     *
+     * @param directory The absolute path of the directory to watch
+     * @param listener The listener of the changes
+     */
+    public DirectoryWatcher(String directory, OnDirectoryChangesListener listener) {
+        super(directory, EVENTS);
+        this.mDirectory = directory;
+        this.mListener = listener;
+        this.mHandler = new Handler(Looper.getMainLooper());
+        this.mChanges = new LinkedHashSet<String>();
+        this.mReloadRequired = false;
+        this.mScheduled = false;
+        this.mWatching = false;
+    }
+
+    /**
+     * Method that returns the watched directory.
+     *
+     * @return String The absolute path of the directory
+     */
+    public String getDirectory() {
+        return this.mDirectory;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void startWatching() {
+        synchronized (this.mSync) {
+            this.mWatching = true;
+        }
+        super.startWatching();
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void stopWatching() {
+        super.stopWatching();
+        synchronized (this.mSync) {
+            this.mWatching = false;
+            this.mChanges.clear();
+            this.mReloadRequired = false;
+            this.mScheduled = false;
+        }
+        this.mHandler.removeCallbacks(this.mFlush);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void onEvent(int event, String path) {
+        synchronized (this.mSync) {
+            if (!this.mWatching) {
+                return;
+            }
+            if ((event & SELF_EVENTS) != 0 || path == null) {
+                // The directory changed, or the events queue overflowed
+                this.mReloadRequired = true;
+            } else if (!this.mReloadRequired) {
+                this.mChanges.add(path);
+                if (this.mChanges.size() > MAX_CHANGES) {
+                    this.mReloadRequired = true;
+                    this.mChanges.clear();
+                }
+            }
+
+            // Notify the changes when the interval elapses
+            if (!this.mScheduled) {
+                this.mScheduled = true;
+                this.mHandler.postDelayed(this.mFlush, COALESCE_INTERVAL);
+            }
+        }
+    }
+
+    /**
+     * Method that notifies the coalesced changes to the listener.
+     */
+    void flush() {
+        List<String> changes = null;
+        boolean reloadRequired = false;
+        synchronized (this.mSync) {
+            this.mScheduled = false;
+            if (!this.mWatching) {
+                return;
+            }
+            reloadRequired = this.mReloadRequired;
+            if (!reloadRequired && !this.mChanges.isEmpty()) {
+                changes = new ArrayList<String>(this.mChanges);
+            }
+            this.mChanges.clear();
+            this.mReloadRequired = false;
+        }
+        if (reloadRequired) {
+            this.mListener.onDirectoryReloadRequired(this.mDirectory);
+        } else if (changes != null) {
+            this.mListener.onDirectoryChanges(this.mDirectory, changes);
+        }
+    }
+}
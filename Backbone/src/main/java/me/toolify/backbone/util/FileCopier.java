@@ -0,0 +1,345 @@
+/*
+ * Copyright (C) 2013 BrandroidTools
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package me.toolify.backbone.util;
+
+import android.util.Log;
+
+import me.toolify.backbone.console.ExecutionException;
+import me.toolify.backbone.model.CopyProgress;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * A class for copy files and folders recursively.<br/>
+ * <br/>
+ * The data of the files is transferred between file channels (the kernel copies the data
+ * without pass it through the java heap). Large files are copied in the calling thread
+ * one at a time, because they are limited by the bandwidth of the device, while small
+ * files are pipelined across a bounded pool of threads, because they are limited by
+ * the latency of open/create/close. The last modified time of the files and folders is
+ * preserved when the filesystem allows it.<br/>
+ * <br/>
+ * A <code>FileCopier</code> instance is intended to be used for only one operation.
+ */
+public final class FileCopier {
+
+    private static final String TAG = "FileCopier"; //$NON-NLS-1$
+
+    // Files greater than this size are copied in the calling thread
+    private static final long LARGE_FILE_SIZE = 1024L * 1024L;
+    // The maximum number of bytes transferred in every call to the channel
+    private static final long TRANSFER_CHUNK_SIZE = 8L * 1024L * 1024L;
+    // The number of threads that copies small files
+    private static final int SMALL_FILE_THREADS = 3;
+    // The maximum number of small files waiting to be copied
+    private static final int SMALL_FILE_QUEUE_SIZE = 64;
+
+    private final int mBufferSize;
+    private final CopyProgress mProgress;
+
+    private final AtomicBoolean mFailed = new AtomicBoolean(false);
+    private final AtomicLong mBytesCopied = new AtomicLong();
+    private final AtomicInteger mFilesCopied = new AtomicInteger();
+    private long mStartTime;
+
+    /**
+     * Constructor of <code>FileCopier</code>.
+     *
+     * @param bufferSize The buffer size for the operation (only used when the channels
+     * can't transfer the data)
+     */
+    public FileCopier(int bufferSize) {
+        this(bufferSize, null);
+    }
+
+    /**
+     * Constructor of <code>FileCopier</code>.
+     *
+     * @param bufferSize The buffer size for the operation (only used when the channels
+     * can't transfer the data)
+     * @param progress The progress to feed while the data is copied (optional)
+     */
+    public FileCopier(int bufferSize, CopyProgress progress) {
+        super();
+        this.mBufferSize = bufferSize;
+        this.mProgress = progress;
+    }
+
+    /**
+     * Method that copies recursively to the destination
+     *
+     * @param src The source file or folder
+     * @param dst The destination file or folder
+     * @return boolean If the operation complete successfully
+     * @throws ExecutionException If a problem was detected in the operation
+     */
+    public boolean copy(final File src, final File dst) throws ExecutionException {
+        this.mStartTime = System.currentTimeMillis();
+
+        // Small files are copied by the pool. When the queue is full the calling
+        // thread copies the file itself, so the walk never gets too far ahead
+        ThreadPoolExecutor executor = new ThreadPoolExecutor(
+                SMALL_FILE_THREADS, SMALL_FILE_THREADS, 0L, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<Runnable>(SMALL_FILE_QUEUE_SIZE),
+                new ThreadPoolExecutor.CallerRunsPolicy());
+        List<File[]> folders = new ArrayList<File[]>();
+        try {
+            copyRecursive(src, dst, executor, folders);
+        } finally {
+            executor.shutdown();
+            try {
+                executor.awaitTermination(Long.MAX_VALUE, TimeUnit.MILLISECONDS);
+            } catch (InterruptedException iex) {
+                executor.shutdownNow();
+                this.mFailed.set(true);
+            }
+        }
+
+        // Now that the content of the folders is written, restore their times
+        int cc = folders.size();
+        for (int i = cc - 1; i >= 0; i--) {
+            File[] folder = folders.get(i);
+            preserveTime(folder[0], folder[1]);
+        }
+        return !this.mFailed.get();
+    }
+
+    /**
+     * Method that returns the number of bytes copied until now.
+     *
+     * @return long The number of bytes copied
+     */
+    public long getBytesCopied() {
+        return this.mBytesCopied.get();
+    }
+
+    /**
+     * Method that returns the number of files copied until now.
+     *
+     * @return int The number of files copied
+     */
+    public int getFilesCopied() {
+        return this.mFilesCopied.get();
+    }
+
+    /**
+     * Method that returns the average throughput of the operation.
+     *
+     * @return long The average throughput in bytes per second
+     */
+    public long getThroughput() {
+        long elapsed = System.currentTimeMillis() - this.mStartTime;
+        if (this.mStartTime == 0 || elapsed <= 0) {
+            return 0;
+        }
+        return (this.mBytesCopied.get() * 1000L) / elapsed;
+    }
+
+    /**
+     * Method that copies recursively to the destination
+     *
+     * @param src The source file or folder
+     * @param dst The destination file or folder
+     * @param executor The executor of the small files
+     * @param folders The copied folders (source and destination)
+     * @throws ExecutionException If a problem was detected in the operation
+     */
+    private void copyRecursive(final File src, final File dst,
+            ThreadPoolExecutor executor, List<File[]> folders) throws ExecutionException {
+        if (this.mFailed.get()) {
+            return;
+        }
+        if (src.isDirectory()) {
+            // Create the directory
+            if (dst.exists() && !dst.isDirectory()) {
+                Log.e(TAG,
+                        String.format("Failed to check destionation dir: %s", dst)); //$NON-NLS-1$
+                throw new ExecutionException("the path exists but is not a folder"); //$NON-NLS-1$
+            }
+            if (!dst.exists()) {
+                if (!dst.mkdir()) {
+                    Log.e(TAG, String.format("Failed to create directory: %s", dst)); //$NON-NLS-1$
+                    this.mFailed.set(true);
+                    return;
+                }
+            }
+            folders.add(new File[]{src, dst});
+            File[] files = src.listFiles();
+            if (files != null) {
+                for (int i = 0; i < files.length; i++) {
+                    copyRecursive(files[i], new File(dst, files[i].getName()), executor, folders);
+                    if (this.mFailed.get()) {
+                        return;
+                    }
+                }
+            }
+        } else if (src.length() > LARGE_FILE_SIZE) {
+            // Large files are copied in the current thread
+            copyFile(src, dst);
+        } else {
+            // Small files are pipelined
+            executor.execute(new Runnable() {
+                @Override
+                public void run() {
+                    if (!FileCopier.this.mFailed.get()) {
+                        copyFile(src, dst);
+                    }
+                }
+            });
+        }
+    }
+
+    /**
+     * Method that copies a file
+     *
+     * @param src The source file
+     * @param dst The destination file
+     */
+    void copyFile(final File src, final File dst) {
+        boolean copied = false;
+        long[] transferred = new long[1];
+        IOException cause = null;
+        // The special files (/proc, sysfs, fifos, ...) report a size of zero, so the
+        // channels would copy nothing. They are read with streams until their end
+        if (src.isFile() && src.length() > 0) {
+            try {
+                copied = transfer(src, dst, transferred);
+            } catch (IOException ioex) {
+                cause = ioex;
+            }
+        }
+        if (!copied) {
+            // The channels can't transfer the whole file (i.e. a special file). Use
+            // streams. The stream copy starts again, so discount the bytes already reported
+            onBytesCopied(-transferred[0]);
+            if (FileHelper.bufferedCopy(src, dst, this.mBufferSize)) {
+                onBytesCopied(dst.length());
+                copied = true;
+            } else {
+                Log.e(TAG, String.format(
+                        "Failed to copy from %s to %s", src, dst), cause); //$NON-NLS-1$
+            }
+        }
+        if (!copied) {
+            this.mFailed.set(true);
+            return;
+        }
+        preserveTime(src, dst);
+        this.mFilesCopied.incrementAndGet();
+        if (this.mProgress != null) {
+            this.mProgress.addFiles(1);
+        }
+    }
+
+    /**
+     * Method that accounts copied bytes.
+     *
+     * @param bytes The bytes copied
+     */
+    private void onBytesCopied(long bytes) {
+        this.mBytesCopied.addAndGet(bytes);
+        if (this.mProgress != null) {
+            this.mProgress.addBytes(bytes);
+        }
+    }
+
+    /**
+     * Method that transfer the data of a file between channels
+     *
+     * @param src The source file
+     * @param dst The destination file
+     * @param transferred Returns the number of bytes transferred (and reported)
+     * @return boolean If the operation complete successfully (all the data of the
+     * source file was transferred)
+     * @throws IOException If the data couldn't be transferred
+     */
+    private boolean transfer(final File src, final File dst, long[] transferred)
+            throws IOException {
+        FileInputStream fis = null;
+        FileOutputStream fos = null;
+        try {
+            fis = new FileInputStream(src);
+            fos = new FileOutputStream(dst);
+            FileChannel in = fis.getChannel();
+            FileChannel out = fos.getChannel();
+            long size = in.size();
+            if (size == 0) {
+                // The size is unknown
+                return false;
+            }
+            long position = 0;
+            while (position < size) {
+                long count = in.transferTo(
+                        position, Math.min(TRANSFER_CHUNK_SIZE, size - position), out);
+                if (count <= 0) {
+                    // The channel can't transfer more data (i.e. the file was
+                    // truncated while copying)
+                    break;
+                }
+                position += count;
+                transferred[0] = position;
+                onBytesCopied(count);
+            }
+            if (position != size) {
+                Log.w(TAG, String.format(
+                        "Short transfer from %s to %s: %d of %d bytes", //$NON-NLS-1$
+                        src, dst, Long.valueOf(position), Long.valueOf(size)));
+                return false;
+            }
+            return true;
+
+        } finally {
+            try {
+                if (fis != null) {
+                    fis.close();
+                }
+            } catch (Throwable e) {/**NON BLOCK**/}
+            try {
+                if (fos != null) {
+                    fos.close();
+                }
+            } catch (Throwable e) {/**NON BLOCK**/}
+        }
+    }
+
+    /**
+     * Method that sets the last modified time of the source to the destination. Some
+     * filesystems (i.e. vfat mounted by the fuse daemon) don't allow it.
+     *
+     * @param src The source file or folder
+     * @param dst The destination file or folder
+     */
+    private static void preserveTime(File src, File dst) {
+        long lastModified = src.lastModified();
+        if (lastModified > 0) {
+            // Ignore the result. Not a reason to fail the copy
+            dst.setLastModified(lastModified);
+        }
+    }
+}
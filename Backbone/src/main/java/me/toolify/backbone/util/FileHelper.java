@@ -31,6 +31,7 @@ import me.toolify.backbone.console.InsufficientPermissionsException;
 import me.toolify.backbone.model.AID;
 import me.toolify.backbone.model.BlockDevice;
 import me.toolify.backbone.model.CharacterDevice;
+import me.toolify.backbone.model.CopyProgress;
 import me.toolify.backbone.model.Directory;
 import me.toolify.backbone.model.DomainSocket;
 import me.toolify.backbone.model.FileSystemObject;
@@ -52,15 +53,13 @@ import me.toolify.backbone.preferences.ObjectStringIdentifier;
 import me.toolify.backbone.preferences.Preferences;
 import me.toolify.backbone.util.MimeTypeHelper.MimeTypeCategory;
 
-import java.io.BufferedInputStream;
-import java.io.BufferedOutputStream;
 import java.io.File;
 import java.io.FileInputStream;
 import java.io.FileOutputStream;
 import java.io.IOException;
 import java.text.DateFormat;
 import java.text.SimpleDateFormat;
-import java.util.Collections;
+import java.util.Arrays;
 import java.util.Comparator;
 import java.util.Date;
 import java.util.Iterator;
@@ -561,105 +560,258 @@ public final class FileHelper {
     public static List<FileSystemObject> applyUserPreferences(
             List<FileSystemObject> files, Map<DisplayRestrictions, Object> restrictions,
             boolean noSort, boolean chRooted) {
-        //Retrieve user preferences
+        //Retrieve user preferences (only once, not for every file)
         SharedPreferences prefs = Preferences.getSharedPreferences();
-        FileManagerSettings sortModePref = FileManagerSettings.SETTINGS_SORT_MODE;
-        FileManagerSettings showDirsFirstPref = FileManagerSettings.SETTINGS_SHOW_DIRS_FIRST;
         FileManagerSettings showHiddenPref = FileManagerSettings.SETTINGS_SHOW_HIDDEN;
         FileManagerSettings showSystemPref = FileManagerSettings.SETTINGS_SHOW_SYSTEM;
         FileManagerSettings showSymlinksPref = FileManagerSettings.SETTINGS_SHOW_SYMLINKS;
+        final boolean showHidden = !chRooted &&
+                prefs.getBoolean(
+                    showHiddenPref.getId(),
+                    ((Boolean)showHiddenPref.getDefaultValue()).booleanValue());
+        final boolean showSystem = !chRooted &&
+                prefs.getBoolean(
+                    showSystemPref.getId(),
+                    ((Boolean)showSystemPref.getDefaultValue()).booleanValue());
+        final boolean showSymlinks = !chRooted &&
+                prefs.getBoolean(
+                    showSymlinksPref.getId(),
+                    ((Boolean)showSymlinksPref.getDefaultValue()).booleanValue());
 
-        //Remove all unnecessary files (no required by the user)
+        //Remove all unnecessary files (no required by the user). The allowed files
+        //are compacted to the head of the list, and the tail is removed at once
         int cc = files.size();
-        for (int i = cc - 1; i >= 0; i--) {
+        int count = 0;
+        for (int i = 0; i < cc; i++) {
             FileSystemObject file = files.get(i);
 
             //Hidden files
-            if (!prefs.getBoolean(
-                    showHiddenPref.getId(),
-                    ((Boolean)showHiddenPref.getDefaultValue()).booleanValue()) || chRooted) {
-                if (file.isHidden()) {
-                    files.remove(i);
-                    continue;
-                }
+            if (!showHidden && file.isHidden()) {
+                continue;
             }
 
             //System files
-            if (!prefs.getBoolean(
-                    showSystemPref.getId(),
-                    ((Boolean)showSystemPref.getDefaultValue()).booleanValue()) || chRooted) {
-                if (file instanceof SystemFile) {
-                    files.remove(i);
-                    continue;
-                }
+            if (!showSystem && file instanceof SystemFile) {
+                continue;
             }
 
             //Symlinks files
-            if (!prefs.getBoolean(
-                    showSymlinksPref.getId(),
-                    ((Boolean)showSymlinksPref.getDefaultValue()).booleanValue()) || chRooted) {
-                if (file instanceof Symlink) {
-                    files.remove(i);
-                    continue;
-                }
+            if (!showSymlinks && file instanceof Symlink) {
+                continue;
             }
 
             // Restrictions (only apply to files)
             if (restrictions != null) {
                 if (!isDirectory(file)) {
                     if (!isDisplayAllowed(file, restrictions)) {
-                        files.remove(i);
                         continue;
                     }
                 }
             }
+
+            if (count != i) {
+                files.set(count, file);
+            }
+            count++;
+        }
+        if (count < cc) {
+            files.subList(count, cc).clear();
         }
 
         //Apply sort mode
         if (!noSort) {
-            final boolean showDirsFirst =
+            sort(files);
+        }
+
+        //Return the files
+        return files;
+    }
+
+    /**
+     * Method that sorts the files as the user preferences (sort mode and directories
+     * first). The sort keys of the files are computed once before sort, instead of in
+     * every comparison.
+     *
+     * @param files The files to sort
+     */
+    public static void sort(List<FileSystemObject> files) {
+        int cc = files.size();
+        if (cc < 2) {
+            return;
+        }
+        SortPreferences sortPrefs = new SortPreferences();
+        SortKey[] keys = new SortKey[cc];
+        for (int i = 0; i < cc; i++) {
+            keys[i] = new SortKey(files.get(i), sortPrefs);
+        }
+        Arrays.sort(keys);
+        for (int i = 0; i < cc; i++) {
+            files.set(i, keys[i].mFso);
+        }
+    }
+
+    /**
+     * Method that creates a comparator that sorts the files as the user preferences
+     * (sort mode and directories first).
+     *
+     * @return Comparator<FileSystemObject> The comparator
+     */
+    public static Comparator<FileSystemObject> createSortComparator() {
+        final SortPreferences sortPrefs = new SortPreferences();
+        return new Comparator<FileSystemObject>() {
+            @Override
+            public int compare(FileSystemObject lhs, FileSystemObject rhs) {
+                //Parent directory always goes first
+                boolean isLhsParentDirectory = lhs instanceof ParentDirectory;
+                boolean isRhsParentDirectory = rhs instanceof ParentDirectory;
+                if (isLhsParentDirectory || isRhsParentDirectory) {
+                    if (isLhsParentDirectory && isRhsParentDirectory) {
+                        return 0;
+                    }
+                    return (isLhsParentDirectory) ? -1 : 1;
+                }
+
+                //Need to sort directory first?
+                if (sortPrefs.mShowDirsFirst) {
+                    boolean isLhsDirectory = FileHelper.isDirectory(lhs);
+                    boolean isRhsDirectory = FileHelper.isDirectory(rhs);
+                    if (isLhsDirectory || isRhsDirectory) {
+                        if (isLhsDirectory && isRhsDirectory) {
+                            //Apply sort mode
+                            return FileHelper.doCompare(
+                                    lhs, rhs, sortPrefs.mSortMode, sortPrefs.mCaseSensitive);
+                        }
+                        return (isLhsDirectory) ? -1 : 1;
+                    }
+                }
+
+                //Apply sort mode
+                return FileHelper.doCompare(
+                        lhs, rhs, sortPrefs.mSortMode, sortPrefs.mCaseSensitive);
+            }
+
+        };
+    }
+
+    /**
+     * A snapshot of the sort preferences of the user.
+     */
+    private static class SortPreferences {
+        final boolean mShowDirsFirst;
+        final NavigationSortMode mSortMode;
+        final boolean mCaseSensitive;
+
+        /**
+         * Constructor of <code>SortPreferences</code>. Reads the current preferences.
+         */
+        SortPreferences() {
+            super();
+            SharedPreferences prefs = Preferences.getSharedPreferences();
+            FileManagerSettings sortModePref = FileManagerSettings.SETTINGS_SORT_MODE;
+            FileManagerSettings showDirsFirstPref = FileManagerSettings.SETTINGS_SHOW_DIRS_FIRST;
+            FileManagerSettings caseSensitivePref =
+                    FileManagerSettings.SETTINGS_CASE_SENSITIVE_SORT;
+            this.mShowDirsFirst =
                     prefs.getBoolean(
                             showDirsFirstPref.getId(),
                         ((Boolean)showDirsFirstPref.getDefaultValue()).booleanValue());
-            final NavigationSortMode sortMode =
+            this.mSortMode =
                     NavigationSortMode.fromId(
                             prefs.getInt(sortModePref.getId(),
                             ((ObjectIdentifier)sortModePref.getDefaultValue()).getId()));
-            Collections.sort(files, new Comparator<FileSystemObject>() {
-                @Override
-                public int compare(FileSystemObject lhs, FileSystemObject rhs) {
-                    //Parent directory always goes first
-                    boolean isLhsParentDirectory = lhs instanceof ParentDirectory;
-                    boolean isRhsParentDirectory = rhs instanceof ParentDirectory;
-                    if (isLhsParentDirectory || isRhsParentDirectory) {
-                        if (isLhsParentDirectory && isRhsParentDirectory) {
-                            return 0;
-                        }
-                        return (isLhsParentDirectory) ? -1 : 1;
-                    }
-
-                    //Need to sort directory first?
-                    if (showDirsFirst) {
-                        boolean isLhsDirectory = FileHelper.isDirectory(lhs);
-                        boolean isRhsDirectory = FileHelper.isDirectory(rhs);
-                        if (isLhsDirectory || isRhsDirectory) {
-                            if (isLhsDirectory && isRhsDirectory) {
-                                //Apply sort mode
-                                return FileHelper.doCompare(lhs, rhs, sortMode);
-                            }
-                            return (isLhsDirectory) ? -1 : 1;
-                        }
-                    }
+            this.mCaseSensitive =
+                    prefs.getBoolean(
+                            caseSensitivePref.getId(),
+                        ((Boolean)caseSensitivePref.getDefaultValue()).booleanValue());
+        }
+    }
 
-                    //Apply sort mode
-                    return FileHelper.doCompare(lhs, rhs, sortMode);
-                }
+    /**
+     * The precomputed sort key of a file. The keys sort in the same order than the
+     * comparator returned by {@link FileHelper#createSortComparator()}.
+     */
+    private static class SortKey implements Comparable<SortKey> {
+        // The groups of files. Parent directory always goes first, and then the
+        // directories (if they must go first)
+        private static final int GROUP_PARENT = 0;
+        private static final int GROUP_DIRECTORY = 1;
+        private static final int GROUP_OTHER = 2;
+
+        final FileSystemObject mFso;
+        final int mGroup;
+        final NavigationSortMode mSortMode;
+        final String mName;
+        final long mTime;
+
+        /**
+         * Constructor of <code>SortKey</code>.
+         *
+         * @param fso The file system object
+         * @param sortPrefs The sort preferences
+         */
+        SortKey(FileSystemObject fso, SortPreferences sortPrefs) {
+            super();
+            this.mFso = fso;
+            if (fso instanceof ParentDirectory) {
+                this.mGroup = GROUP_PARENT;
+            } else if (sortPrefs.mShowDirsFirst && isDirectory(fso)) {
+                this.mGroup = GROUP_DIRECTORY;
+            } else {
+                this.mGroup = GROUP_OTHER;
+            }
+            this.mSortMode = sortPrefs.mSortMode;
+            if (this.mSortMode == NavigationSortMode.NAME_ASC ||
+                this.mSortMode == NavigationSortMode.NAME_DESC) {
+                this.mName = sortPrefs.mCaseSensitive ?
+                        fso.getName() : foldCase(fso.getName());
+                this.mTime = 0;
+            } else {
+                this.mName = null;
+                this.mTime = fso.getLastModifiedTimeMillis();
+            }
+        }
 
-            });
+        /**
+         * {@inheritDoc}
+         */
+        @Override
+        public int compareTo(SortKey another) {
+            if (this.mGroup != another.mGroup) {
+                return this.mGroup < another.mGroup ? -1 : 1;
+            }
+            if (this.mGroup == GROUP_PARENT) {
+                return 0;
+            }
+            if (this.mSortMode == NavigationSortMode.NAME_ASC) {
+                return this.mName.compareTo(another.mName);
+            }
+            if (this.mSortMode == NavigationSortMode.NAME_DESC) {
+                return this.mName.compareTo(another.mName) * -1;
+            }
+            if (this.mSortMode == NavigationSortMode.DATE_ASC) {
+                return compareTime(this.mTime, another.mTime);
+            }
+            if (this.mSortMode == NavigationSortMode.DATE_DESC) {
+                return compareTime(this.mTime, another.mTime) * -1;
+            }
+            return this.mFso.compareTo(another.mFso);
         }
 
-        //Return the files
-        return files;
+        /**
+         * Method that folds the case of a name, so the folded names compare as
+         * {@link String#compareToIgnoreCase(String)} compares the names.
+         *
+         * @param name The name
+         * @return String The folded name
+         */
+        private static String foldCase(String name) {
+            int len = name.length();
+            char[] folded = new char[len];
+            for (int i = 0; i < len; i++) {
+                folded[i] = Character.toLowerCase(Character.toUpperCase(name.charAt(i)));
+            }
+            return new String(folded);
+        }
     }
 
     /**
@@ -782,6 +934,28 @@ public final class FileHelper {
                         FileManagerSettings.SETTINGS_CASE_SENSITIVE_SORT.getId(),
                         ((Boolean)FileManagerSettings.SETTINGS_CASE_SENSITIVE_SORT.
                                 getDefaultValue()).booleanValue());
+        return doCompare(fso1, fso2, mode, caseSensitive);
+    }
+
+    /**
+     * Method that do a comparison between 2 file system objects.
+     *
+     * @param fso1 The first file system objects
+     * @param fso2 The second file system objects
+     * @param mode The sort mode
+     * @param caseSensitive If the names are compared case sensitive
+     * @return int a negative integer if {@code fso1} is less than {@code fso2};
+     *         a positive integer if {@code fso1} is greater than {@code fso2};
+     *         0 if {@code fso1} has the same order as {@code fso2}.
+     */
+    private static int doCompare(
+            final FileSystemObject fso1,
+            final FileSystemObject fso2,
+            final NavigationSortMode mode,
+            final boolean caseSensitive) {
+        if (mode == null) {
+            return fso1.compareTo(fso2);
+        }
 
         //Name (ascending)
         if (mode.getId() == NavigationSortMode.NAME_ASC.getId()) {
@@ -800,17 +974,30 @@ public final class FileHelper {
 
         //Date (ascending)
         if (mode.getId() == NavigationSortMode.DATE_ASC.getId()) {
-            return fso1.getLastModifiedTime().compareTo(fso2.getLastModifiedTime());
+            return compareTime(fso1.getLastModifiedTimeMillis(), fso2.getLastModifiedTimeMillis());
         }
         //Date (descending)
         if (mode.getId() == NavigationSortMode.DATE_DESC.getId()) {
-            return fso1.getLastModifiedTime().compareTo(fso2.getLastModifiedTime()) * -1;
+            return compareTime(
+                    fso1.getLastModifiedTimeMillis(), fso2.getLastModifiedTimeMillis()) * -1;
         }
 
         //Comparison between files directly
         return fso1.compareTo(fso2);
     }
 
+    /**
+     * Method that compares two primitive times.
+     *
+     * @param time1 The first time
+     * @param time2 The second time
+     * @return int A negative, zero or positive value if the first time is less than,
+     * equal to or greater than the second time
+     */
+    private static int compareTime(long time1, long time2) {
+        return time1 < time2 ? -1 : (time1 == time2 ? 0 : 1);
+    }
+
     /**
      * Method that add to the path the trailing slash
      *
@@ -1022,34 +1209,23 @@ public final class FileHelper {
      */
     public static boolean copyRecursive(
             final File src, final File dst, int bufferSize) throws ExecutionException {
-        if (src.isDirectory()) {
-            // Create the directory
-            if (dst.exists() && !dst.isDirectory()) {
-                Log.e(TAG,
-                        String.format("Failed to check destionation dir: %s", dst)); //$NON-NLS-1$
-                throw new ExecutionException("the path exists but is not a folder"); //$NON-NLS-1$
-            }
-            if (!dst.exists()) {
-                if (!dst.mkdir()) {
-                    Log.e(TAG, String.format("Failed to create directory: %s", dst)); //$NON-NLS-1$
-                    return false;
-                }
-            }
-            File[] files = src.listFiles();
-            if (files != null) {
-                for (int i = 0; i < files.length; i++) {
-                    if (!copyRecursive(files[i], new File(dst, files[i].getName()), bufferSize)) {
-                        return false;
-                    }
-                }
-            }
-        } else {
-            // Copy the directory
-            if (!bufferedCopy(src, dst,bufferSize)) {
-                return false;
-            }
-        }
-        return true;
+        return copyRecursive(src, dst, bufferSize, null);
+    }
+
+    /**
+     * Method that copies recursively to the destination
+     *
+     * @param src The source file or folder
+     * @param dst The destination file or folder
+     * @param bufferSize The buffer size for the operation
+     * @param progress The progress to feed while the data is copied (optional)
+     * @return boolean If the operation complete successfully
+     * @throws ExecutionException If a problem was detected in the operation
+     */
+    public static boolean copyRecursive(
+            final File src, final File dst, int bufferSize, CopyProgress progress)
+            throws ExecutionException {
+        return new FileCopier(bufferSize, progress).copy(src, dst);
     }
 
     /**
@@ -1061,31 +1237,32 @@ public final class FileHelper {
      * @return boolean If the operation complete successfully
      */
     public static boolean bufferedCopy(final File src, final File dst, int bufferSize) {
-        BufferedInputStream bis = null;
-        BufferedOutputStream bos = null;
+        FileInputStream fis = null;
+        FileOutputStream fos = null;
         try {
-            bis = new BufferedInputStream(new FileInputStream(src), bufferSize);
-            bos = new BufferedOutputStream(new FileOutputStream(dst), bufferSize);
+            // The data buffer is the only buffer needed
+            fis = new FileInputStream(src);
+            fos = new FileOutputStream(dst);
             int read = 0;
             byte[] data = new byte[bufferSize];
-            while ((read = bis.read(data, 0, bufferSize)) != -1) {
-                bos.write(data, 0, read);
+            while ((read = fis.read(data, 0, bufferSize)) != -1) {
+                fos.write(data, 0, read);
             }
             return true;
 
         } catch (Throwable e) {
             Log.e(TAG,
-                    String.format(TAG, "Failed to copy from %s to %d", src, dst), e); //$NON-NLS-1$
+                    String.format("Failed to copy from %s to %s", src, dst), e); //$NON-NLS-1$
             return false;
         } finally {
             try {
-                if (bis != null) {
-                    bis.close();
+                if (fis != null) {
+                    fis.close();
                 }
             } catch (Throwable e) {/**NON BLOCK**/}
             try {
-                if (bos != null) {
-                    bos.close();
+                if (fos != null) {
+                    fos.close();
                 }
             } catch (Throwable e) {/**NON BLOCK**/}
         }
@@ -1340,14 +1517,13 @@ public final class FileHelper {
                 }
                 sReloadDateTimeFormats = false;
             }
-        }
 
-        // Apply the user settings
-        if (sFiletimeFormatMode.compareTo(FileTimeFormatMode.SYSTEM) == 0) {
-            String date = sDateFormat.format(filetime);
-            String time = sTimeFormat.format(filetime);
-            return String.format(sDateTimeFormatOrder, date, time);
-        } else {
+            // Apply the user settings (the formats are not thread-safe)
+            if (sFiletimeFormatMode.compareTo(FileTimeFormatMode.SYSTEM) == 0) {
+                String date = sDateFormat.format(filetime);
+                String time = sTimeFormat.format(filetime);
+                return String.format(sDateTimeFormatOrder, date, time);
+            }
             return sDateFormat.format(filetime);
         }
     }
@@ -0,0 +1,465 @@
+/*
+ * Copyright (C) 2013 BrandroidTools
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package me.toolify.backbone.util;
+
+import android.util.Log;
+
+import me.toolify.backbone.FileManagerApplication;
+import me.toolify.backbone.model.FolderUsage;
+import me.toolify.backbone.util.MimeTypeHelper.MimeTypeCategory;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.SortedMap;
+import java.util.Timer;
+import java.util.TimerTask;
+import java.util.TreeMap;
+
+/**
+ * A persistent index of the usage of the folders.<br/>
+ * <br/>
+ * Every entry holds the usage of the direct content of one folder (files, size and
+ * categories) and the names of its subfolders, and it's valid while the last modified
+ * time of the folder doesn't change (the time of a folder changes when an entry is
+ * created, deleted or renamed in it). So the usage of a tree can be computed only
+ * checking the time of its folders, and listing only the folders that changed.<br/>
+ * <br/>
+ * Changes of the size of the existing files don't change the time of their folder, so
+ * they are not detected until the folder changes.<br/>
+ * <br/>
+ * The index holds folders up to an estimated memory size. When it's full, the folders
+ * least recently used are evicted. The order of use is saved with the index. The saves
+ * are delayed, so the computations in a short period are written only once.<br/>
+ * <br/>
+ * This class is thread-safe.
+ */
+public final class FolderUsageIndex {
+
+    private static final String TAG = "FolderUsageIndex"; //$NON-NLS-1$
+
+    // The file of the index (in the cache directory of the application)
+    private static final String INDEX_FILE = "folder_usage.idx"; //$NON-NLS-1$
+    // The version of the format of the index file
+    private static final int VERSION = 1;
+    // The maximum estimated memory of the index (the least recently used are evicted)
+    private static final long MAX_MEMORY =
+            Math.min(4L * 1024L * 1024L, Runtime.getRuntime().maxMemory() / 32);
+    // The delay before write the index to disk, so close changes are written only once
+    private static final long SAVE_DELAY = 10000L;
+    // Folders modified recently are not indexed. The time of some filesystems has a
+    // resolution of seconds, so another change in the same second won't be detected
+    private static final long RACY_INTERVAL = 2000L;
+
+    private static FolderUsageIndex sInstance;
+
+    /**
+     * An entry of the index (the usage of the direct content of a folder).
+     */
+    public static final class Entry {
+        final long mLastModified;
+        final int mFiles;
+        final long mSize;
+        final int[] mCategories;
+        final String[] mFolders;
+        final int mMemory;
+
+        /**
+         * Constructor of <code>Entry</code>.
+         *
+         * @param lastModified The last modified time of the folder
+         * @param files The number of files in the folder
+         * @param size The size of the files in the folder
+         * @param categories The number of files of every {@link MimeTypeCategory}
+         * @param folders The names of the subfolders
+         */
+        public Entry(
+                long lastModified, int files, long size, int[] categories, String[] folders) {
+            super();
+            this.mLastModified = lastModified;
+            this.mFiles = files;
+            this.mSize = size;
+            this.mCategories = categories;
+            this.mFolders = folders;
+
+            // An estimation of the heap used by the entry (objects, arrays and strings)
+            int memory = 64 + 16 + (categories.length * 4) + 16 + (folders.length * 4);
+            int cc = folders.length;
+            for (int i = 0; i < cc; i++) {
+                memory += 40 + (folders[i].length() * 2);
+            }
+            this.mMemory = memory;
+        }
+
+        /**
+         * Method that returns the names of the subfolders.
+         *
+         * @return String[] The names of the subfolders
+         */
+        public String[] getFolders() {
+            return this.mFolders;
+        }
+
+        /**
+         * Method that adds the usage of the folder to a folder usage.
+         *
+         * @param usage The folder usage
+         */
+        public void addTo(FolderUsage usage) {
+            usage.addFolders(this.mFolders.length);
+            usage.addFiles(this.mFiles);
+            usage.addSize(this.mSize);
+            MimeTypeCategory[] categories = MimeTypeCategory.values();
+            int cc = Math.min(categories.length, this.mCategories.length);
+            for (int i = 0; i < cc; i++) {
+                if (this.mCategories[i] > 0) {
+                    usage.addFilesToCategory(categories[i], this.mCategories[i]);
+                }
+            }
+        }
+    }
+
+    private final File mFile;
+    // Sorted by path, so the entries of a tree are contiguous. Guarded by itself
+    private final TreeMap<String, Entry> mEntries;
+    // In order of use (access-order), the least recently used first. Guarded by mEntries
+    private final LinkedHashMap<String, Entry> mUsage;
+    // The estimated memory of the entries. Guarded by mEntries
+    private long mMemory;
+    private boolean mDirty;
+    private Timer mSaveTimer;
+
+    /**
+     * Constructor of <code>FolderUsageIndex</code>.
+     *
+     * @param file The file of the index
+     */
+    private FolderUsageIndex(File file) {
+        super();
+        this.mFile = file;
+        this.mEntries = new TreeMap<String, Entry>();
+        this.mUsage = new LinkedHashMap<String, Entry>(64, 0.75f, true);
+        this.mMemory = 0;
+        this.mDirty = false;
+    }
+
+    /**
+     * Method that returns the index of the application. The index is loaded the first
+     * time, so this method should not be invoked from the main thread.
+     *
+     * @return FolderUsageIndex The index, or <code>null</code> if the application
+     * isn't available
+     */
+    public static synchronized FolderUsageIndex getInstance() {
+        if (sInstance == null) {
+            FileManagerApplication app = FileManagerApplication.getInstance();
+            if (app == null) {
+                return null;
+            }
+            sInstance = new FolderUsageIndex(new File(app.getCacheDir(), INDEX_FILE));
+            sInstance.load();
+        }
+        return sInstance;
+    }
+
+    /**
+     * Method that returns the entry of a folder, if the folder doesn't change since
+     * it was indexed.
+     *
+     * @param path The absolute path of the folder
+     * @param lastModified The current last modified time of the folder
+     * @return Entry The entry of the folder, or <code>null</code> if the folder isn't
+     * indexed or it changed
+     */
+    public Entry get(String path, long lastModified) {
+        Entry entry;
+        synchronized (this.mEntries) {
+            // Through the usage map, so the entry is marked as recently used
+            entry = this.mUsage.get(path);
+        }
+        if (entry != null && entry.mLastModified == lastModified) {
+            return entry;
+        }
+        return null;
+    }
+
+    /**
+     * Method that indexes a folder. The entries of the subfolders of the previous entry
+     * that don't exist in the new entry are removed. If the index is full, the folders
+     * least recently used are evicted.
+     *
+     * @param path The absolute path of the folder
+     * @param entry The entry of the folder
+     */
+    public void put(String path, Entry entry) {
+        if (entry.mLastModified <= 0 ||
+            System.currentTimeMillis() - entry.mLastModified < RACY_INTERVAL) {
+            return;
+        }
+        synchronized (this.mEntries) {
+            Entry old = add(path, entry);
+            this.mDirty = true;
+
+            // Remove the subfolders that don't exist anymore
+            if (old != null) {
+                int cc = old.mFolders.length;
+                for (int i = 0; i < cc; i++) {
+                    if (!contains(entry.mFolders, old.mFolders[i])) {
+                        removeTree(new File(path, old.mFolders[i]).getAbsolutePath());
+                    }
+                }
+            }
+            trim();
+        }
+    }
+
+    /**
+     * Method that requests to write the index to disk, if it changed. The index is
+     * written after a delay, so the changes requested in that time are written once.
+     */
+    public void save() {
+        synchronized (this.mEntries) {
+            if (!this.mDirty || this.mSaveTimer != null) {
+                return;
+            }
+            this.mSaveTimer = new Timer(TAG, true);
+            this.mSaveTimer.schedule(new TimerTask() {
+                @Override
+                public void run() {
+                    write();
+                }
+            }, SAVE_DELAY);
+        }
+    }
+
+    /**
+     * Method that writes the index to disk.
+     * @hide
+     */
+    synchronized void write() {
+        // Take a snapshot in order of use, so the order is restored on load. The file
+        // is written without hold the lock
+        List<String> paths;
+        List<Entry> entries;
+        synchronized (this.mEntries) {
+            this.mSaveTimer.cancel();
+            this.mSaveTimer = null;
+            this.mDirty = false;
+            paths = new ArrayList<String>(this.mUsage.keySet());
+            entries = new ArrayList<Entry>(this.mUsage.values());
+        }
+
+        // Write to a temporary file, so a failure doesn't destroy the index
+        File tmp = new File(this.mFile.getAbsolutePath() + ".tmp"); //$NON-NLS-1$
+        DataOutputStream dos = null;
+        try {
+            dos = new DataOutputStream(
+                    new BufferedOutputStream(new FileOutputStream(tmp)));
+            dos.writeInt(VERSION);
+            dos.writeInt(MimeTypeCategory.values().length);
+            int count = paths.size();
+            dos.writeInt(count);
+            for (int n = 0; n < count; n++) {
+                Entry entry = entries.get(n);
+                dos.writeUTF(paths.get(n));
+                dos.writeLong(entry.mLastModified);
+                dos.writeInt(entry.mFiles);
+                dos.writeLong(entry.mSize);
+                int cc = entry.mCategories.length;
+                for (int i = 0; i < cc; i++) {
+                    dos.writeInt(entry.mCategories[i]);
+                }
+                cc = entry.mFolders.length;
+                dos.writeInt(cc);
+                for (int i = 0; i < cc; i++) {
+                    dos.writeUTF(entry.mFolders[i]);
+                }
+            }
+            dos.close();
+            dos = null;
+            if (!tmp.renameTo(this.mFile)) {
+                Log.w(TAG, String.format("Failed to write index %s", this.mFile)); //$NON-NLS-1$
+            }
+
+        } catch (IOException ioex) {
+            Log.w(TAG, String.format("Failed to write index %s", this.mFile), ioex); //$NON-NLS-1$
+
+        } finally {
+            try {
+                if (dos != null) {
+                    dos.close();
+                }
+            } catch (Throwable e) {/**NON BLOCK**/}
+            if (tmp.exists()) {
+                tmp.delete();
+            }
+        }
+    }
+
+    /**
+     * Method that reads the index from disk.
+     */
+    private void load() {
+        if (!this.mFile.exists()) {
+            return;
+        }
+        DataInputStream dis = null;
+        try {
+            dis = new DataInputStream(
+                    new BufferedInputStream(new FileInputStream(this.mFile)));
+            int version = dis.readInt();
+            int categories = dis.readInt();
+            if (version != VERSION || categories != MimeTypeCategory.values().length) {
+                // An old index. Discard it
+                return;
+            }
+            int count = dis.readInt();
+            for (int i = 0; i < count; i++) {
+                String path = dis.readUTF();
+                long lastModified = dis.readLong();
+                int files = dis.readInt();
+                long size = dis.readLong();
+                int[] stats = new int[categories];
+                for (int j = 0; j < categories; j++) {
+                    stats[j] = dis.readInt();
+                }
+                String[] folders = new String[dis.readInt()];
+                for (int j = 0; j < folders.length; j++) {
+                    folders[j] = dis.readUTF();
+                }
+                synchronized (this.mEntries) {
+                    add(path, new Entry(lastModified, files, size, stats, folders));
+                }
+            }
+            synchronized (this.mEntries) {
+                trim();
+            }
+
+        } catch (IOException ioex) {
+            // A corrupted index. Discard it
+            Log.w(TAG, String.format("Failed to read index %s", this.mFile), ioex); //$NON-NLS-1$
+            synchronized (this.mEntries) {
+                this.mEntries.clear();
+                this.mUsage.clear();
+                this.mMemory = 0;
+            }
+
+        } finally {
+            try {
+                if (dis != null) {
+                    dis.close();
+                }
+            } catch (Throwable e) {/**NON BLOCK**/}
+        }
+    }
+
+    /**
+     * Method that adds an entry to the index. The caller must hold the lock of the
+     * entries.
+     *
+     * @param path The absolute path of the folder
+     * @param entry The entry of the folder
+     * @return Entry The previous entry of the folder, or <code>null</code>
+     */
+    private Entry add(String path, Entry entry) {
+        Entry old = this.mEntries.put(path, entry);
+        this.mUsage.put(path, entry);
+        this.mMemory += 40 + (path.length() * 2) + entry.mMemory;
+        if (old != null) {
+            this.mMemory -= 40 + (path.length() * 2) + old.mMemory;
+        }
+        return old;
+    }
+
+    /**
+     * Method that evicts the folders least recently used while the index is full. The
+     * caller must hold the lock of the entries.
+     */
+    private void trim() {
+        Iterator<Map.Entry<String, Entry>> it = this.mUsage.entrySet().iterator();
+        while (this.mMemory > MAX_MEMORY && it.hasNext()) {
+            Map.Entry<String, Entry> eldest = it.next();
+            String path = eldest.getKey();
+            Entry entry = eldest.getValue();
+            it.remove();
+            this.mEntries.remove(path);
+            this.mMemory -= 40 + (path.length() * 2) + entry.mMemory;
+        }
+    }
+
+    /**
+     * Method that removes the entries of a folder and all its subfolders. The caller
+     * must hold the lock of the entries.
+     *
+     * @param path The absolute path of the folder
+     */
+    private void removeTree(String path) {
+        remove(path);
+
+        // The paths of the subfolders are between "path/" and "path0" ('0' follows '/')
+        SortedMap<String, Entry> tree =
+                this.mEntries.subMap(
+                        path + File.separatorChar,
+                        path + (char)(File.separatorChar + 1));
+        List<String> paths = new ArrayList<String>(tree.keySet());
+        int cc = paths.size();
+        for (int i = 0; i < cc; i++) {
+            remove(paths.get(i));
+        }
+    }
+
+    /**
+     * Method that removes the entry of a folder. The caller must hold the lock of the
+     * entries.
+     *
+     * @param path The absolute path of the folder
+     */
+    private void remove(String path) {
+        Entry entry = this.mEntries.remove(path);
+        if (entry != null) {
+            this.mUsage.remove(path);
+            this.mMemory -= 40 + (path.length() * 2) + entry.mMemory;
+        }
+    }
+
+    /**
+     * Method that checks if an array contains a name.
+     *
+     * @param names The array of names
+     * @param name The name to check
+     * @return boolean If the array contains the name
+     */
+    private static boolean contains(String[] names, String name) {
+        int cc = names.length;
+        for (int i = 0; i < cc; i++) {
+            if (names[i].equals(name)) {
+                return true;
+            }
+        }
+        return false;
+    }
+}
@@ -0,0 +1,230 @@
+/*
+ * Copyright (C) 2013 BrandroidTools
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package me.toolify.backbone.util;
+
+import me.toolify.backbone.model.FileSystemObject;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * A LRU cache of the listings of the directories.<br/>
+ * <br/>
+ * A listing is valid while the last modified time of its directory doesn't change (the
+ * time of a directory changes when an entry is created, deleted or renamed in it), and
+ * while the listing is requested from the same type of console with the same privileges
+ * (consoles with different privileges list different files). The cache is bounded by the
+ * total number of file system objects of the listings, so a few big directories don't
+ * retain all the memory. The changes that don't change the time of the directory (the
+ * mode, owner or content of its entries) are invalidated by the operations of the
+ * application through {@link #invalidateChange(String)}.<br/>
+ * <br/>
+ * The callers change the file system objects of the listings (i.e. resolving the
+ * symlinks), so the cache stores and returns copies of the objects.
+ */
+public final class ListingCache {
+
+    // The maximum number of file system objects retained by the cache
+    private static final int MAX_OBJECTS = 20000;
+    // Directories modified recently are not cached. The time of some filesystems has a
+    // resolution of seconds, so another change in the same second won't be detected
+    private static final long RACY_INTERVAL = 2000L;
+
+    /**
+     * A cached listing.
+     */
+    private static class Entry {
+        final Class<?> mConsoleType;
+        final boolean mPrivileged;
+        final long mLastModified;
+        final List<FileSystemObject> mFiles;
+
+        /**
+         * Constructor of <code>Entry</code>.
+         *
+         * @param consoleType The type of the console that listed the directory
+         * @param privileged If the console that listed the directory is privileged
+         * @param lastModified The last modified time of the directory
+         * @param files The listing of the directory
+         */
+        Entry(Class<?> consoleType, boolean privileged,
+                long lastModified, List<FileSystemObject> files) {
+            super();
+            this.mConsoleType = consoleType;
+            this.mPrivileged = privileged;
+            this.mLastModified = lastModified;
+            this.mFiles = files;
+        }
+    }
+
+    private static final LinkedHashMap<String, Entry> sEntries =
+            new LinkedHashMap<String, Entry>(16, 0.75f, true);
+    private static int sObjects = 0;
+    private static long sHits = 0;
+    private static long sMisses = 0;
+
+    /**
+     * Constructor of <code>ListingCache</code>.
+     */
+    private ListingCache() {
+        super();
+    }
+
+    /**
+     * Method that returns the cached listing of a directory, if the directory didn't
+     * change since it was listed.
+     *
+     * @param directory The absolute path of the directory
+     * @param consoleType The type of the console that lists the directory
+     * @param privileged If the console that lists the directory is privileged
+     * @param lastModified The current last modified time of the directory
+     * @return List<FileSystemObject> A copy of the cached listing, or <code>null</code>
+     * if the directory isn't cached or it changed
+     */
+    public static synchronized List<FileSystemObject> get(
+            String directory, Class<?> consoleType, boolean privileged, long lastModified) {
+        Entry entry = sEntries.get(directory);
+        if (entry == null ||
+            entry.mConsoleType != consoleType ||
+            entry.mPrivileged != privileged ||
+            entry.mLastModified != lastModified ||
+            lastModified <= 0) {
+            sMisses++;
+            return null;
+        }
+        sHits++;
+        // The listing and its objects are modified by the callers (preferences,
+        // parent directory, symlinks, ...)
+        return copy(entry.mFiles);
+    }
+
+    /**
+     * Method that caches the listing of a directory.
+     *
+     * @param directory The absolute path of the directory
+     * @param consoleType The type of the console that listed the directory
+     * @param privileged If the console that listed the directory is privileged
+     * @param lastModified The last modified time of the directory before it was listed
+     * @param files The listing of the directory
+     */
+    public static synchronized void put(
+            String directory, Class<?> consoleType, boolean privileged,
+            long lastModified, List<FileSystemObject> files) {
+        invalidate(directory);
+        int size = files.size();
+        if (lastModified <= 0 ||
+            size > MAX_OBJECTS / 2 ||
+            System.currentTimeMillis() - lastModified < RACY_INTERVAL) {
+            return;
+        }
+
+        // Evict the least recently used listings until the new one fits
+        Iterator<Map.Entry<String, Entry>> it = sEntries.entrySet().iterator();
+        while (sObjects + size > MAX_OBJECTS && it.hasNext()) {
+            sObjects -= it.next().getValue().mFiles.size();
+            it.remove();
+        }
+        sEntries.put(directory, new Entry(
+                consoleType, privileged, lastModified, copy(files)));
+        sObjects += size;
+    }
+
+    /**
+     * Method that removes the listing of a directory from the cache.
+     *
+     * @param directory The absolute path of the directory
+     */
+    public static synchronized void invalidate(String directory) {
+        Entry entry = sEntries.remove(directory);
+        if (entry != null) {
+            sObjects -= entry.mFiles.size();
+        }
+    }
+
+    /**
+     * Method that removes from the cache the listings affected by a change of a file
+     * system object done by the application. The time of a directory doesn't change
+     * when the mode, the owner or the content of its entries change, so the listing of
+     * the parent directory is removed. The listings of the object and its subdirectories
+     * are removed too, in case that it's a directory that was deleted or moved.
+     *
+     * @param path The absolute path of the changed file system object
+     */
+    public static synchronized void invalidateChange(String path) {
+        File file = new File(path);
+        String parent = file.getParent();
+        if (parent != null) {
+            invalidate(parent);
+        }
+        String directory = file.getAbsolutePath();
+        String prefix = FileHelper.addTrailingSlash(directory);
+        Iterator<Map.Entry<String, Entry>> it = sEntries.entrySet().iterator();
+        while (it.hasNext()) {
+            Map.Entry<String, Entry> e = it.next();
+            String key = e.getKey();
+            if (key.equals(directory) || key.startsWith(prefix)) {
+                sObjects -= e.getValue().mFiles.size();
+                it.remove();
+            }
+        }
+    }
+
+    /**
+     * Method that removes all the listings from the cache.
+     */
+    public static synchronized void clear() {
+        sEntries.clear();
+        sObjects = 0;
+    }
+
+    /**
+     * Method that copies a listing and its file system objects.
+     *
+     * @param files The listing
+     * @return List<FileSystemObject> The copy of the listing
+     */
+    private static List<FileSystemObject> copy(List<FileSystemObject> files) {
+        int cc = files.size();
+        List<FileSystemObject> copy = new ArrayList<FileSystemObject>(cc);
+        for (int i = 0; i < cc; i++) {
+            copy.add(files.get(i).clone());
+        }
+        return copy;
+    }
+
+    /**
+     * Method that returns the number of requests served from the cache.
+     *
+     * @return long The number of hits
+     */
+    public static synchronized long getHits() {
+        return sHits;
+    }
+
+    /**
+     * Method that returns the number of requests not served from the cache.
+     *
+     * @return long The number of misses
+     */
+    public static synchronized long getMisses() {
+        return sMisses;
+    }
+}
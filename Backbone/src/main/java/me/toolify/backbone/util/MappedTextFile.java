@@ -0,0 +1,400 @@
+/*
+ * Copyright (C) 2013 BrandroidTools
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package me.toolify.backbone.util;
+
+import android.util.Log;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+
+/**
+ * A read-only view of the lines of a text file of any size.<br/>
+ * <br/>
+ * A sparse index of the offsets of the lines (one offset every {@link #INDEX_STRIDE}
+ * lines) is built in a background thread, that reads the file sequentially into one
+ * reused buffer. A window of lines is read scanning forward from the nearest indexed
+ * line in a memory-mapped region of the file (only the region being read is mapped,
+ * never the whole file), so only the requested lines are decoded to the java heap.<br/>
+ * <br/>
+ * This class is thread-safe.
+ */
+public final class MappedTextFile {
+
+    private static final String TAG = "MappedTextFile"; //$NON-NLS-1$
+
+    // The number of lines between two indexed offsets
+    private static final int INDEX_STRIDE = 256;
+    // The size of the regions of the file mapped in memory to read the lines
+    private static final long MAP_REGION_SIZE = 8L * 1024L * 1024L;
+    // The size of the buffer used to index the file
+    private static final int SCAN_BUFFER_SIZE = 64 * 1024;
+    // The maximum number of bytes of a window of lines (protects the heap from files
+    // with very long lines)
+    private static final int MAX_WINDOW_BYTES = 1024 * 1024;
+
+    /**
+     * A window of consecutive lines of the file.
+     */
+    public static final class Window {
+        final int mFirstLine;
+        final int mLines;
+        final String mText;
+        final boolean mEof;
+
+        /**
+         * Constructor of <code>Window</code>.
+         *
+         * @param firstLine The index of the first line of the window
+         * @param lines The number of lines of the window
+         * @param text The text of the lines
+         * @param eof If the window reaches the end of the file
+         */
+        Window(int firstLine, int lines, String text, boolean eof) {
+            super();
+            this.mFirstLine = firstLine;
+            this.mLines = lines;
+            this.mText = text;
+            this.mEof = eof;
+        }
+
+        /**
+         * Method that returns the index of the first line of the window.
+         *
+         * @return int The index of the first line
+         */
+        public int getFirstLine() {
+            return this.mFirstLine;
+        }
+
+        /**
+         * Method that returns the number of lines of the window.
+         *
+         * @return int The number of lines
+         */
+        public int getLines() {
+            return this.mLines;
+        }
+
+        /**
+         * Method that returns the text of the lines of the window.
+         *
+         * @return String The text of the lines
+         */
+        public String getText() {
+            return this.mText;
+        }
+
+        /**
+         * Method that returns if the window reaches the end of the file.
+         *
+         * @return boolean If the window reaches the end of the file
+         */
+        public boolean isEof() {
+            return this.mEof;
+        }
+    }
+
+    private final File mFile;
+    private final RandomAccessFile mRaf;
+    private final FileChannel mChannel;
+    private final long mSize;
+
+    private final Object mIndexSync = new Object();
+    private long[] mIndex;
+    private int mIndexCount;
+    private int mIndexedLines;
+    private volatile boolean mIndexed;
+    private volatile boolean mClosed;
+    private Thread mIndexer;
+
+    private MappedByteBuffer mRegion;
+    private long mRegionStart;
+    private long mRegionEnd;
+
+    /**
+     * Constructor of <code>MappedTextFile</code>. The file is opened, but not indexed.
+     *
+     * @param file The file to open
+     * @throws IOException If the file can't be opened
+     * @see #startIndexing(Runnable)
+     */
+    public MappedTextFile(File file) throws IOException {
+        super();
+        this.mFile = file;
+        this.mRaf = new RandomAccessFile(file, "r"); //$NON-NLS-1$
+        this.mChannel = this.mRaf.getChannel();
+        this.mSize = this.mChannel.size();
+        this.mIndex = new long[64];
+        this.mIndex[0] = 0;
+        this.mIndexCount = 1;
+        this.mIndexedLines = 0;
+        this.mIndexed = this.mSize == 0;
+    }
+
+    /**
+     * Method that returns the size of the file when it was opened.
+     *
+     * @return long The size of the file
+     */
+    public long getSize() {
+        return this.mSize;
+    }
+
+    /**
+     * Method that returns if the index of the lines is complete.
+     *
+     * @return boolean If the index of the lines is complete
+     */
+    public boolean isIndexed() {
+        return this.mIndexed;
+    }
+
+    /**
+     * Method that returns the number of lines indexed until now. When the index is
+     * complete this is the number of lines of the file.
+     *
+     * @return int The number of lines indexed
+     */
+    public int getIndexedLines() {
+        synchronized (this.mIndexSync) {
+            return this.mIndexedLines;
+        }
+    }
+
+    /**
+     * Method that starts to build the index of the lines in a background thread.
+     *
+     * @param onIndexed Invoked from the background thread when the index is complete
+     * (optional)
+     */
+    public synchronized void startIndexing(final Runnable onIndexed) {
+        if (this.mIndexer != null || this.mClosed) {
+            return;
+        }
+        this.mIndexer = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    index();
+                    if (MappedTextFile.this.mIndexed && onIndexed != null) {
+                        onIndexed.run();
+                    }
+                } catch (IOException ioex) {
+                    if (!MappedTextFile.this.mClosed) {
+                        Log.w(TAG, String.format(
+                                "Failed to index %s", MappedTextFile.this.mFile), ioex); //$NON-NLS-1$
+                    }
+                }
+            }
+        }, TAG);
+        this.mIndexer.setPriority(Thread.MIN_PRIORITY);
+        this.mIndexer.start();
+    }
+
+    /**
+     * Method that reads a window of lines of the file.
+     *
+     * @param firstLine The index of the first line of the window
+     * @param lines The maximum number of lines of the window
+     * @return Window The window of lines. It has less lines than requested if the end of
+     * the file or the maximum size of a window are reached
+     * @throws IOException If the file can't be read
+     */
+    public synchronized Window readLines(int firstLine, int lines) throws IOException {
+        if (this.mClosed) {
+            throw new IOException("file closed"); //$NON-NLS-1$
+        }
+
+        // Start from the nearest indexed line
+        long offset;
+        int line;
+        synchronized (this.mIndexSync) {
+            int pos = Math.min(Math.max(firstLine, 0) / INDEX_STRIDE, this.mIndexCount - 1);
+            offset = this.mIndex[pos];
+            line = pos * INDEX_STRIDE;
+        }
+        while (line < firstLine && offset < this.mSize) {
+            offset = nextLine(offset, this.mSize);
+            line++;
+        }
+
+        // Collect the lines of the window
+        long start = offset;
+        long limit = Math.min(this.mSize, start + MAX_WINDOW_BYTES);
+        int count = 0;
+        while (count < lines && offset < limit) {
+            offset = nextLine(offset, limit);
+            count++;
+        }
+        byte[] data = new byte[(int)(offset - start)];
+        read(start, data);
+        return new Window(line, count, new String(data), offset >= this.mSize);
+    }
+
+    /**
+     * Method that closes the file and stops the indexer.
+     */
+    public void close() {
+        this.mClosed = true;
+        Thread indexer;
+        synchronized (this) {
+            indexer = this.mIndexer;
+            this.mRegion = null;
+        }
+        if (indexer != null) {
+            indexer.interrupt();
+        }
+        try {
+            this.mRaf.close();
+        } catch (Throwable e) {/**NON BLOCK**/}
+    }
+
+    /**
+     * Method that builds the index of the lines.
+     *
+     * @throws IOException If the file can't be read
+     */
+    void index() throws IOException {
+        long start = System.currentTimeMillis();
+        // The file is read (not mapped) to build the index, so the address space used
+        // doesn't grow with the size of the file
+        ByteBuffer buffer = ByteBuffer.allocate(SCAN_BUFFER_SIZE);
+        byte[] data = buffer.array();
+        int lines = 0;
+        long position = 0;
+        boolean lastIsNewLine = false;
+        while (position < this.mSize) {
+            if (this.mClosed || Thread.currentThread().isInterrupted()) {
+                return;
+            }
+            buffer.clear();
+            // Positional reads, so the channel can be shared with the reads of the lines
+            int read = this.mChannel.read(buffer, position);
+            if (read <= 0) {
+                // The file was truncated
+                break;
+            }
+            for (int i = 0; i < read; i++) {
+                if (data[i] == '\n') {
+                    lines++;
+                    if (lines % INDEX_STRIDE == 0) {
+                        addIndex(position + i + 1, lines);
+                    }
+                }
+            }
+            lastIsNewLine = data[read - 1] == '\n';
+            position += read;
+            synchronized (this.mIndexSync) {
+                this.mIndexedLines = lines;
+            }
+        }
+
+        // An unterminated last line is a line too
+        if (this.mSize > 0 && !lastIsNewLine) {
+            lines++;
+        }
+        synchronized (this.mIndexSync) {
+            this.mIndexedLines = lines;
+        }
+        this.mIndexed = true;
+        Log.i(TAG, String.format("Indexed %s: %d bytes, %d lines in %d ms", //$NON-NLS-1$
+                this.mFile, Long.valueOf(this.mSize), Integer.valueOf(lines),
+                Long.valueOf(System.currentTimeMillis() - start)));
+    }
+
+    /**
+     * Method that adds an offset to the index.
+     *
+     * @param offset The offset of the line
+     * @param line The index of the line
+     */
+    private void addIndex(long offset, int line) {
+        synchronized (this.mIndexSync) {
+            if (this.mIndexCount == this.mIndex.length) {
+                long[] index = new long[this.mIndex.length * 2];
+                System.arraycopy(this.mIndex, 0, index, 0, this.mIndexCount);
+                this.mIndex = index;
+            }
+            this.mIndex[this.mIndexCount] = offset;
+            this.mIndexCount++;
+            this.mIndexedLines = line;
+        }
+    }
+
+    /**
+     * Method that returns the offset of the line next to a position.
+     *
+     * @param offset The position
+     * @param limit The maximum offset to scan
+     * @return long The offset of the next line, or the limit if there is no next line
+     * @throws IOException If the file can't be read
+     */
+    private long nextLine(long offset, long limit) throws IOException {
+        long pos = offset;
+        while (pos < limit) {
+            ByteBuffer region = map(pos);
+            int end = (int)(Math.min(limit, this.mRegionEnd) - this.mRegionStart);
+            for (int i = (int)(pos - this.mRegionStart); i < end; i++) {
+                if (region.get(i) == '\n') {
+                    return this.mRegionStart + i + 1;
+                }
+            }
+            pos = this.mRegionStart + end;
+        }
+        return limit;
+    }
+
+    /**
+     * Method that reads data of the file.
+     *
+     * @param offset The position of the data
+     * @param data The buffer to fill
+     * @throws IOException If the file can't be read
+     */
+    private void read(long offset, byte[] data) throws IOException {
+        int read = 0;
+        while (read < data.length) {
+            ByteBuffer region = map(offset + read).duplicate();
+            region.position((int)(offset + read - this.mRegionStart));
+            int count = Math.min(data.length - read, region.remaining());
+            region.get(data, read, count);
+            read += count;
+        }
+    }
+
+    /**
+     * Method that maps the region of the file that contains a position.
+     *
+     * @param offset The position
+     * @return ByteBuffer The mapped region
+     * @throws IOException If the file can't be mapped
+     */
+    private ByteBuffer map(long offset) throws IOException {
+        if (this.mRegion == null || offset < this.mRegionStart || offset >= this.mRegionEnd) {
+            long start = (offset / MAP_REGION_SIZE) * MAP_REGION_SIZE;
+            long size = Math.min(MAP_REGION_SIZE, this.mSize - start);
+            this.mRegion = this.mChannel.map(FileChannel.MapMode.READ_ONLY, start, size);
+            this.mRegionStart = start;
+            this.mRegionEnd = start + size;
+        }
+        return this.mRegion;
+    }
+}
@@ -0,0 +1,206 @@
+/*
+ * Copyright (C) 2013 BrandroidTools
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package me.toolify.backbone.util;
+
+import android.util.Log;
+
+import java.io.File;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * A class for walk folders in parallel with a bounded pool of walkers.<br/>
+ * <br/>
+ * Every walk invokes {@link OnWalkListener#onWalk(File)} in a walker. The listener walks
+ * the subtree by itself, and hands subfolders to other walkers with
+ * {@link #walkAsync(File)} while {@link #isSplitRequired()}. The thread that starts the
+ * walk waits for all the walkers, and invokes {@link OnWalkListener#onProgress()}
+ * meanwhile.<br/>
+ * <br/>
+ * A <code>ParallelWalker</code> instance is intended to be used for only one walk.
+ */
+public final class ParallelWalker {
+
+    private static final String TAG = "ParallelWalker"; //$NON-NLS-1$
+
+    // The maximum number of walker threads
+    private static final int MAX_WALKERS = 4;
+    // The maximum time to wait for the walkers when the walk is interrupted
+    private static final long TERMINATION_TIMEOUT = 2000L;
+
+    /**
+     * An interface to communicate the events of a parallel walk.
+     */
+    public interface OnWalkListener {
+        /**
+         * Method invoked in a walker to walk a folder and its subtree
+         *
+         * @param folder The folder to walk
+         */
+        void onWalk(File folder);
+
+        /**
+         * Method invoked in the thread that started the walk, periodically and when the
+         * walk ends, to notify the progress of the walk
+         */
+        void onProgress();
+    }
+
+    private final OnWalkListener mListener;
+    private final long mProgressInterval;
+    private final int mWalkers;
+    private ExecutorService mExecutor;
+    private final AtomicInteger mPendingWalks = new AtomicInteger();
+    private final Object mSync = new Object();
+
+    /**
+     * Constructor of <code>ParallelWalker</code>.
+     *
+     * @param listener The listener that walks the folders
+     * @param progressInterval The maximum interval between progress notifications
+     */
+    public ParallelWalker(OnWalkListener listener, long progressInterval) {
+        super();
+        this.mListener = listener;
+        this.mProgressInterval = progressInterval;
+        this.mWalkers = Math.max(1,
+                Math.min(MAX_WALKERS, Runtime.getRuntime().availableProcessors()));
+    }
+
+    /**
+     * Method that walks a folder in parallel. This method blocks until all the
+     * walkers ends, and notifies the progress meanwhile.
+     *
+     * @param folder The folder where to start the walk
+     * @return boolean If the walk was completed; <code>false</code> if the thread was
+     * interrupted while it waited for the walkers
+     */
+    public boolean walk(File folder) {
+        this.mExecutor = Executors.newFixedThreadPool(this.mWalkers);
+        try {
+            walkAsync(folder);
+
+            // Wait for the walkers, and notify the progress
+            while (true) {
+                synchronized (this.mSync) {
+                    if (this.mPendingWalks.get() == 0) {
+                        break;
+                    }
+                    this.mSync.wait(this.mProgressInterval);
+                }
+                this.mListener.onProgress();
+            }
+            return true;
+
+        } catch (InterruptedException iex) {
+            return false;
+
+        } finally {
+            // The walkers still running merge their usage, so wait (bounded) for them
+            // before the last progress
+            this.mExecutor.shutdownNow();
+            try {
+                if (!this.mExecutor.awaitTermination(
+                        TERMINATION_TIMEOUT, TimeUnit.MILLISECONDS)) {
+                    Log.w(TAG, "Walkers didn't end after the walk"); //$NON-NLS-1$
+                }
+            } catch (InterruptedException iex) {
+                Thread.currentThread().interrupt();
+            }
+            this.mListener.onProgress();
+        }
+    }
+
+    /**
+     * Method that walks a folder in a new walker. If the walker can't be started, then
+     * the folder is walked in the current thread.
+     *
+     * @param folder The folder to walk
+     */
+    public void walkAsync(File folder) {
+        this.mPendingWalks.incrementAndGet();
+        try {
+            this.mExecutor.execute(new Walker(folder));
+        } catch (RejectedExecutionException reEx) {
+            new Walker(folder).run();
+        }
+    }
+
+    /**
+     * Method that returns if a new walker should be started for a subfolder, instead of
+     * walk it in the current walker.
+     *
+     * @return boolean If a new walker should be started
+     */
+    public boolean isSplitRequired() {
+        return this.mPendingWalks.get() < this.mWalkers * 2;
+    }
+
+    /**
+     * Method that requests a progress notification now, instead of wait for the
+     * progress interval.
+     */
+    public void requestProgress() {
+        synchronized (this.mSync) {
+            this.mSync.notifyAll();
+        }
+    }
+
+    /**
+     * Method that notifies the end of a walker.
+     */
+    void onWalkEnd() {
+        if (this.mPendingWalks.decrementAndGet() == 0) {
+            requestProgress();
+        }
+    }
+
+    /**
+     * A class that walks a folder in a walker.
+     */
+    private class Walker implements Runnable {
+
+        private final File mFolder;
+
+        /**
+         * Constructor of <code>Walker</code>.
+         *
+         * @param folder The folder to walk
+         */
+        Walker(File folder) {
+            super();
+            this.mFolder = folder;
+        }
+
+        /**
+         * {@inheritDoc}
+         */
+        @Override
+        public void run() {
+            try {
+                ParallelWalker.this.mListener.onWalk(this.mFolder);
+            } catch (RuntimeException rEx) {
+                Log.w(TAG, String.format("Failed to walk %s", this.mFolder), rEx); //$NON-NLS-1$
+            } finally {
+                onWalkEnd();
+            }
+        }
+    }
+}
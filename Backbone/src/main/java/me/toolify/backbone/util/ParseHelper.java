@@ -36,7 +36,8 @@ import me.toolify.backbone.model.UserPermission;
 
 import java.io.File;
 import java.text.ParseException;
-import java.util.Date;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicReferenceArray;
 
 /**
  * A helper class with useful methods for deal with parse of results.
@@ -62,7 +63,21 @@ public final class ParseHelper {
         CHANGE,
         IOBLOCK
     }
-    private static int TERSE_STAT_STRUCT_LENGTH = TERSE_STAT_STRUCT.values().length;
+    private static final TERSE_STAT_STRUCT[] TERSE_STAT_VALUES = TERSE_STAT_STRUCT.values();
+    private static final int TERSE_STAT_STRUCT_LENGTH = TERSE_STAT_VALUES.length;
+
+    // The mask of the permission bits of a raw mode (including setuid, setgid and sticky)
+    private static final int PERMISSIONS_MASK = 07777;
+
+    // Shared instances of the parsed stat data. Big listings contains thousands of objects
+    // with the same owner and permissions, so all of them reference the same (immutable)
+    // instance
+    private static final AtomicReferenceArray<Permissions> sPermissions =
+            new AtomicReferenceArray<Permissions>(PERMISSIONS_MASK + 1);
+    private static final ConcurrentHashMap<Integer, User> sUsers =
+            new ConcurrentHashMap<Integer, User>();
+    private static final ConcurrentHashMap<Integer, Group> sGroups =
+            new ConcurrentHashMap<Integer, Group>();
 
     // The structure of raw mode in hex format (defined with octal values)
     // http://unix.stackexchange.com/questions/39716/what-is-raw-mode-in-hex-from-stat-output
@@ -136,36 +151,69 @@ public final class ParseHelper {
     public static FileSystemObject parseStatOutput(final String output) throws ParseException {
 
         try {
-            // Split the terse line
-            String[] data = output.split(" "); //$NON-NLS-1$
-            boolean valid = true;
-            try {
-                getTerseStatInt(data, TERSE_STAT_STRUCT.IOBLOCK);
-            } catch (Exception e) {
-                valid = false;
-            }
-            if (valid && output.startsWith("stat:")) { //$NON-NLS-1$
+            if (output.startsWith("stat:")) { //$NON-NLS-1$
                 throw new ParseException(
                         String.format("Stat failed: %s", output), 0); //$NON-NLS-1$
             }
-            if (valid && data.length < TERSE_STAT_STRUCT.values().length) {
-                throw new ParseException(
-                        String.format("Not enought data: %s", output), 0); //$NON-NLS-1$
+
+            // Walk the terse line from the end (the filename could contain spaces), without
+            // split it. Every field is parsed in place
+            int mode = 0;
+            int uid = 0;
+            int gid = 0;
+            long size = 0;
+            long lastAccessedTime = 0;
+            long lastModifiedTime = 0;
+            long lastChangedTime = 0;
+            int end = output.length();
+            while (end > 0 && output.charAt(end - 1) == ' ') {
+                end--;
+            }
+            for (int i = TERSE_STAT_STRUCT_LENGTH - 1; i > 0; i--) {
+                int start = output.lastIndexOf(' ', end - 1) + 1;
+                if (start == 0) {
+                    throw new ParseException(
+                            String.format("Not enought data: %s", output), 0); //$NON-NLS-1$
+                }
+                switch (TERSE_STAT_VALUES[i]) {
+                    case SIZE:
+                        size = parseLong(output, start, end, 10);
+                        break;
+                    case RAW_MODE:
+                        mode = (int)parseLong(output, start, end, 16);
+                        break;
+                    case UID:
+                        uid = (int)parseLong(output, start, end, 10);
+                        break;
+                    case GID:
+                        gid = (int)parseLong(output, start, end, 10);
+                        break;
+                    case ACCESS:
+                        lastAccessedTime = parseLong(output, start, end, 10) * 1000L;
+                        break;
+                    case MODIFY:
+                        lastModifiedTime = parseLong(output, start, end, 10) * 1000L;
+                        break;
+                    case CHANGE:
+                        lastChangedTime = parseLong(output, start, end, 10) * 1000L;
+                        break;
+                    case IOBLOCK:
+                        // Not used, but must be a number (a valid stat line)
+                        parseLong(output, start, end, 10);
+                        break;
+                    default:
+                        // Ignored
+                        break;
+                }
+                end = start - 1;
             }
 
             // Parse the line
-            String raw = getTerseRawPermissions(data);
-            char type = raw.charAt(0);
-            Permissions permissions = parsePermission(raw);
-            Date lastAccessedTime = getTerseStatDate(data, TERSE_STAT_STRUCT.ACCESS);
-            Date lastModifiedTime = getTerseStatDate(data, TERSE_STAT_STRUCT.MODIFY);
-            Date lastChangedTime = getTerseStatDate(data, TERSE_STAT_STRUCT.CHANGE);
-            int uid = getTerseStatInt(data, TERSE_STAT_STRUCT.UID);
-            User user = new User(uid, AIDHelper.getNullSafeName(uid));
-            int gid = getTerseStatInt(data, TERSE_STAT_STRUCT.GID);
-            Group group = new Group(gid, AIDHelper.getNullSafeName(gid));
-            long size = getTerseStatLong(data, TERSE_STAT_STRUCT.SIZE);
-            File file = new File(getTerseStatName(data));
+            char type = getType(mode);
+            Permissions permissions = getPermissions(mode);
+            User user = getUser(uid);
+            Group group = getGroup(gid);
+            File file = new File(output.substring(0, end));
             String name = file.getName();
             if (name.trim().length() == 0) {
                 name = FileHelper.ROOT_DIRECTORY;
@@ -186,14 +234,15 @@ public final class ParseHelper {
                 char refType = refFile.isDirectory() ? Directory.UNIX_ID : RegularFile.UNIX_ID;
                 String refName = refFile.getName();
                 String refParentDir = FileHelper.getParentDir(refFile);
-                Date refLastModifiedTime = new Date(refFile.lastModified());
+                long refLastModifiedTime = refFile.lastModified();
                 long refSize = refFile.length();
 
                 // Create the ref file system object
                 FileSystemObject refFso =
                         createObject(
                             refParentDir, refType, refName, null, null, null, null,
-                            refSize, null, refLastModifiedTime, null);
+                            refSize, FileSystemObject.NO_TIME, refLastModifiedTime,
+                            FileSystemObject.NO_TIME);
 
                 // Update the symlink ref
                 symlink.setLink(refParentDir);
@@ -350,7 +399,7 @@ public final class ParseHelper {
     private static FileSystemObject createObject(
             String parentDir, char type, String name, String link, User user,
             Group group, Permissions permissions, long size,
-            Date lastAccessedTime, Date lastModifiedTime, Date lastChangedTime)
+            long lastAccessedTime, long lastModifiedTime, long lastChangedTime)
             throws ParseException {
 
         String parent =
@@ -358,34 +407,29 @@ public final class ParseHelper {
                             FileHelper.ROOT_DIRECTORY :
                             parentDir;
 
+        FileSystemObject fso = null;
         if (type == RegularFile.UNIX_ID) {
-            return new RegularFile(
-                    name, parent, user, group, permissions, size,
-                    lastAccessedTime, lastModifiedTime, lastChangedTime);
-        }
-        if (type == Directory.UNIX_ID) {
-            return new Directory(name, parent, user, group, permissions,
-                    lastAccessedTime, lastModifiedTime, lastChangedTime);
-        }
-        if (type == Symlink.UNIX_ID) {
-            return new Symlink(name, link, parent, user, group, permissions,
-                    lastAccessedTime, lastModifiedTime, lastChangedTime);
-        }
-        if (type == BlockDevice.UNIX_ID) {
-            return new BlockDevice(name, parent, user, group, permissions,
-                    lastAccessedTime, lastModifiedTime, lastChangedTime);
-        }
-        if (type == CharacterDevice.UNIX_ID) {
-            return new CharacterDevice(name, parent, user, group, permissions,
-                    lastAccessedTime, lastModifiedTime, lastChangedTime);
+            fso = new RegularFile(
+                    name, parent, user, group, permissions, size, null, null, null);
+        } else if (type == Directory.UNIX_ID) {
+            fso = new Directory(name, parent, user, group, permissions, null, null, null);
+        } else if (type == Symlink.UNIX_ID) {
+            fso = new Symlink(name, link, parent, user, group, permissions, null, null, null);
+        } else if (type == BlockDevice.UNIX_ID) {
+            fso = new BlockDevice(name, parent, user, group, permissions, null, null, null);
+        } else if (type == CharacterDevice.UNIX_ID) {
+            fso = new CharacterDevice(name, parent, user, group, permissions, null, null, null);
+        } else if (type == NamedPipe.UNIX_ID) {
+            fso = new NamedPipe(name, parent, user, group, permissions, null, null, null);
+        } else if (type == DomainSocket.UNIX_ID) {
+            fso = new DomainSocket(name, parent, user, group, permissions, null, null, null);
         }
-        if (type == NamedPipe.UNIX_ID) {
-            return new NamedPipe(name, parent, user, group, permissions,
-                    lastAccessedTime, lastModifiedTime, lastChangedTime);
-        }
-        if (type == DomainSocket.UNIX_ID) {
-            return new DomainSocket(name, parent, user, group, permissions,
-                    lastAccessedTime, lastModifiedTime, lastChangedTime);
+        if (fso != null) {
+            // Times are set as primitive values (avoid the creation of dates)
+            fso.setLastAccessedTimeMillis(lastAccessedTime);
+            fso.setLastModifiedTimeMillis(lastModifiedTime);
+            fso.setLastChangedTimeMillis(lastChangedTime);
+            return fso;
         }
         throw new ParseException("no file system object", 0); //$NON-NLS-1$
     }
@@ -415,73 +459,107 @@ public final class ParseHelper {
     }
 
     /**
-     * Method that extract a date from a terse stat ouput.
+     * Method that parses a number from a region of a string, without create
+     * intermediate objects.
      *
-     * @param stat The terse stat data
-     * @param e The position of the date
-     * @return Date The date
+     * @param s The string
+     * @param start The start of the region (inclusive)
+     * @param end The end of the region (exclusive)
+     * @param radix The radix of the number
+     * @return long The parsed number
+     * @throws NumberFormatException If the region isn't a valid number
      */
-    private static Date getTerseStatDate(String[] stat, TERSE_STAT_STRUCT e) {
-        int cc = stat.length;
-        return new Date(
-                Long.parseLong(stat[cc - (TERSE_STAT_STRUCT_LENGTH - e.ordinal())]) * 1000L);
+    public static long parseLong(String s, int start, int end, int radix) {
+        if (start >= end) {
+            throw new NumberFormatException("empty number"); //$NON-NLS-1$
+        }
+        boolean negative = s.charAt(start) == '-';
+        int i = negative ? start + 1 : start;
+        if (i >= end) {
+            throw new NumberFormatException(s.substring(start, end));
+        }
+        long value = 0;
+        for (; i < end; i++) {
+            int digit = Character.digit(s.charAt(i), radix);
+            if (digit < 0) {
+                throw new NumberFormatException(s.substring(start, end));
+            }
+            value = value * radix + digit;
+        }
+        return negative ? -value : value;
     }
 
     /**
-     * Method that extract a integer value from a terse stat ouput.
+     * Method that returns the shared instance of the user with the uid.
      *
-     * @param stat The terse stat data
-     * @param e The position of the date
-     * @return int The integer value
+     * @param uid The user identifier
+     * @return User The user
      */
-    private static int getTerseStatInt(String[] stat, TERSE_STAT_STRUCT e) {
-        int cc = stat.length;
-        return Integer.parseInt(stat[cc - (TERSE_STAT_STRUCT_LENGTH - e.ordinal())]);
+    private static User getUser(int uid) {
+        String name = AIDHelper.getNullSafeName(uid);
+        Integer key = Integer.valueOf(uid);
+        User user = sUsers.get(key);
+        if (user == null || !equals(user.getName(), name)) {
+            // The AIDs could be reloaded, so the name must be checked
+            user = new User(uid, name);
+            sUsers.put(key, user);
+        }
+        return user;
     }
 
     /**
-     * Method that extract a long value from a terse stat ouput.
+     * Method that returns the shared instance of the group with the gid.
      *
-     * @param stat The terse stat data
-     * @param e The position of the date
-     * @return long The long value
+     * @param gid The group identifier
+     * @return Group The group
      */
-    private static long getTerseStatLong(String[] stat, TERSE_STAT_STRUCT e) {
-        int cc = stat.length;
-        return Long.parseLong(stat[cc - (TERSE_STAT_STRUCT_LENGTH - e.ordinal())]);
+    private static Group getGroup(int gid) {
+        String name = AIDHelper.getNullSafeName(gid);
+        Integer key = Integer.valueOf(gid);
+        Group group = sGroups.get(key);
+        if (group == null || !equals(group.getName(), name)) {
+            // The AIDs could be reloaded, so the name must be checked
+            group = new Group(gid, name);
+            sGroups.put(key, group);
+        }
+        return group;
     }
 
     /**
-     * Method that returns the name of file
+     * Method that returns the shared instance of the permissions of a raw mode.
      *
-     * @param stat The terse stat data
-     * @return String The name of file
+     * @param mode The raw mode
+     * @return Permissions The permissions
+     * @throws ParseException If the permissions can't be parsed
      */
-    private static String getTerseStatName(String[] stat) {
-        int cc = stat.length;
-        int to = cc - (TERSE_STAT_STRUCT_LENGTH - TERSE_STAT_STRUCT.SIZE.ordinal());
-        StringBuilder sb = new StringBuilder();
-        for (int i = 0; i < to; i++) {
-            sb.append(stat[i]);
-            if (i < to-1) {
-                sb.append(" "); //$NON-NLS-1$
-            }
+    private static Permissions getPermissions(int mode) throws ParseException {
+        int bits = mode & PERMISSIONS_MASK;
+        Permissions permissions = sPermissions.get(bits);
+        if (permissions == null) {
+            permissions = parsePermission(getRawPermissions(mode));
+            sPermissions.set(bits, permissions);
         }
-        return sb.toString();
+        return permissions;
     }
 
     /**
-     * Method that retrieve the raw string with the permissions.
+     * Method that compares two nullable strings.
      *
-     * @param stat The terse stat data
-     * @return String The raw string
+     * @param s1 The first string
+     * @param s2 The second string
+     * @return boolean If both strings are equals
      */
-    private static String getTerseRawPermissions(String[] stat) {
-        int cc = stat.length;
-        int rawInt = Integer.parseInt(
-                stat[cc - (TERSE_STAT_STRUCT_LENGTH - TERSE_STAT_STRUCT.RAW_MODE.ordinal())],16);
+    private static boolean equals(String s1, String s2) {
+        return s1 == null ? s2 == null : s1.equals(s2);
+    }
 
-        // Extract the type
+    /**
+     * Method that extract the type of the object from a raw mode.
+     *
+     * @param rawInt The raw mode
+     * @return char The unix identifier of the type
+     */
+    private static char getType(int rawInt) {
         char t = RegularFile.UNIX_ID;
         if (RMIHF.S_IFSOCK.mValue == (rawInt & RMIHF.S_IFSOCK.mValue)) {
             t = DomainSocket.UNIX_ID;
@@ -498,6 +576,18 @@ public final class ParseHelper {
         } else if (RMIHF.S_IFIFO.mValue == (rawInt & RMIHF.S_IFIFO.mValue)) {
             t = NamedPipe.UNIX_ID;
         }
+        return t;
+    }
+
+    /**
+     * Method that retrieve the raw string with the permissions.
+     *
+     * @param rawInt The raw mode
+     * @return String The raw string
+     */
+    private static String getRawPermissions(int rawInt) {
+        // Extract the type
+        char t = getType(rawInt);
 
         // Extract User/Group/Others
         boolean us = RMIHF.S_ISUID.mValue == (rawInt & RMIHF.S_ISUID.mValue);
@@ -0,0 +1,137 @@
+/*
+ * Copyright (C) 2013 BrandroidTools
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package me.toolify.backbone.util;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+
+/**
+ * A class that sorts a list incrementally, while its elements are received in chunks.<br/>
+ * <br/>
+ * Every chunk is sorted as a run, and the runs are merged while the last run is not
+ * smaller than the previous one, so there are only a logarithmic number of runs and
+ * every element is merged a logarithmic number of times. The sorted list can be
+ * requested at any time, so a partial result can be shown before all the chunks are
+ * received.<br/>
+ * <br/>
+ * This class is thread-safe.
+ *
+ * @param <T> The type of the elements
+ */
+public class SortedRunsMerger<T> {
+
+    private final Comparator<? super T> mComparator;
+    private final List<List<T>> mRuns;
+    private int mSize;
+
+    /**
+     * Constructor of <code>SortedRunsMerger</code>.
+     *
+     * @param comparator The comparator of the elements
+     */
+    public SortedRunsMerger(Comparator<? super T> comparator) {
+        super();
+        this.mComparator = comparator;
+        this.mRuns = new ArrayList<List<T>>();
+        this.mSize = 0;
+    }
+
+    /**
+     * Method that adds a chunk of elements.
+     *
+     * @param chunk The chunk of elements (not modified)
+     */
+    public synchronized void add(List<? extends T> chunk) {
+        if (chunk.isEmpty()) {
+            return;
+        }
+        List<T> run = new ArrayList<T>(chunk);
+        Collections.sort(run, this.mComparator);
+        this.mRuns.add(run);
+        this.mSize += run.size();
+
+        // Keep the runs sorted by decreasing size
+        int cc = this.mRuns.size();
+        while (cc > 1 && this.mRuns.get(cc - 2).size() <= this.mRuns.get(cc - 1).size()) {
+            List<T> last = this.mRuns.remove(cc - 1);
+            List<T> previous = this.mRuns.remove(cc - 2);
+            this.mRuns.add(merge(previous, last));
+            cc--;
+        }
+    }
+
+    /**
+     * Method that returns the number of elements added.
+     *
+     * @return int The number of elements
+     */
+    public synchronized int size() {
+        return this.mSize;
+    }
+
+    /**
+     * Method that returns the sorted list of all the elements added until now.
+     *
+     * @return List<T> A new sorted list of the elements
+     */
+    public synchronized List<T> getResult() {
+        int cc = this.mRuns.size();
+        if (cc == 0) {
+            return new ArrayList<T>();
+        }
+        List<T> result = this.mRuns.get(cc - 1);
+        for (int i = cc - 2; i >= 0; i--) {
+            result = merge(this.mRuns.get(i), result);
+        }
+        if (result == this.mRuns.get(cc - 1)) {
+            result = new ArrayList<T>(result);
+        }
+        return result;
+    }
+
+    /**
+     * Method that merges two sorted runs. The elements of the first run go first when
+     * they are equal (the merge is stable).
+     *
+     * @param a The first run
+     * @param b The second run
+     * @return List<T> The merged run
+     */
+    private List<T> merge(List<T> a, List<T> b) {
+        int sa = a.size();
+        int sb = b.size();
+        List<T> merged = new ArrayList<T>(sa + sb);
+        int i = 0;
+        int j = 0;
+        while (i < sa && j < sb) {
+            if (this.mComparator.compare(b.get(j), a.get(i)) < 0) {
+                merged.add(b.get(j++));
+            } else {
+                merged.add(a.get(i++));
+            }
+        }
+        while (i < sa) {
+            merged.add(a.get(i++));
+        }
+        while (j < sb) {
+            merged.add(b.get(j++));
+        }
+        return merged;
+    }
+}